@@ -0,0 +1,54 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.analytics.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.msd365fp.manualreview.analytics.model.ItemLabelingBucket;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.model.Label;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding of Cosmos DB query results through an intermediate
+ * string with the direct tree decoding used by
+ * {@link ExtendedCosmosContainer#castCosmosObjectToClassInstance(Object, Class)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CosmosObjectDecodingBenchmark {
+
+    private ObjectMapper jsonMapper;
+    private ExtendedCosmosContainer container;
+    private JsonNode bucket;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        container = new ExtendedCosmosContainer(null, jsonMapper);
+        ItemLabelingBucket sample = new ItemLabelingBucket();
+        sample.setLabel(Label.GOOD);
+        sample.setMerchantRuleDecision("Approve");
+        sample.setCnt(42);
+        sample.setId("queue-1");
+        sample.setBucket(7);
+        bucket = jsonMapper.valueToTree(sample);
+    }
+
+    @Benchmark
+    public ItemLabelingBucket itemLabelingBucketThroughString() throws IOException {
+        return jsonMapper.readValue(bucket.toString(), ItemLabelingBucket.class);
+    }
+
+    @Benchmark
+    public Optional<ItemLabelingBucket> itemLabelingBucketThroughTree() {
+        return container.castCosmosObjectToClassInstance(bucket, ItemLabelingBucket.class);
+    }
+}
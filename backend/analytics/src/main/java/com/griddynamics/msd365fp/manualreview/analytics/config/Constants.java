@@ -34,6 +34,9 @@ public class Constants {
     public static final String APP_SETTINGS_CONTAINER_NAME = "ConfigurableAppSettings";
     public static final String HEALTH_CHECK_CONTAINER_NAME = "HealthChecks";
 
+    public static final String IN_MEMORY_DATABASE_PROFILE = "in-memory";
+    public static final String NOT_IN_MEMORY_DATABASE_PROFILE = "!" + IN_MEMORY_DATABASE_PROFILE;
+
     public static final String REGISTRATION_NAME = "azure-dfp-api";
 
     public static final String OVERALL_SIZE_ID = "overall";
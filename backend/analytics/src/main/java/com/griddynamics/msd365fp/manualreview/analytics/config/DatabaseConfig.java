@@ -8,14 +8,25 @@ import com.azure.cosmos.CosmosAsyncDatabase;
 import com.azure.cosmos.CosmosClient;
 import com.azure.cosmos.CosmosDatabase;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.azure.spring.autoconfigure.cosmos.CosmosProperties;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.CosmosQueryMetrics;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainerFactory;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.RequestUnitBudget;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
 
 import static com.griddynamics.msd365fp.manualreview.analytics.config.Constants.*;
 
@@ -28,42 +39,86 @@ public class DatabaseConfig {
     @Qualifier("cosmosdbObjectMapper")
     private final ObjectMapper jsonMapper;
 
+    @Value("${azure.cosmos.request-unit-budget.units-per-second}")
+    private double requestUnitsPerSecond;
+    @Value("${azure.cosmos.request-unit-budget.capacity}")
+    private double requestUnitCapacity;
+
+    @Bean
+    public CosmosQueryMetrics cosmosQueryMetrics(MeterRegistry meterRegistry,
+                                                 @Nullable @Value("${azure.cosmos.slow-query-threshold:#{null}}")
+                                                         Duration slowQueryThreshold) {
+        return new CosmosQueryMetrics(meterRegistry, slowQueryThreshold);
+    }
+
+    /**
+     * Registers {@link CosmosQueryMetrics} as a diagnostics processor
+     * of Spring Data repositories before the Cosmos DB configuration is built.
+     */
     @Bean
+    public static BeanPostProcessor cosmosDiagnosticsProcessorRegistrar(
+            ObjectProvider<CosmosQueryMetrics> cosmosQueryMetrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof CosmosProperties) {
+                    ((CosmosProperties) bean).setResponseDiagnosticsProcessor(
+                            diagnostics -> cosmosQueryMetrics.getObject().processResponseDiagnostics(diagnostics));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @Profile(NOT_IN_MEMORY_DATABASE_PROFILE)
     public CosmosAsyncDatabase cosmosDatabase(CosmosAsyncClient cosmosClient,
                                               @Value("${azure.cosmos.database}") String databaseId) {
         return cosmosClient.getDatabase(databaseId);
     }
 
+    /**
+     * Each container has its own budget, so background processing
+     * of one container doesn't slow down processing of the others.
+     */
+    @Bean
+    @Profile(NOT_IN_MEMORY_DATABASE_PROFILE)
+    public ExtendedCosmosContainerFactory cosmosContainerFactory(CosmosAsyncDatabase cosmosDatabase,
+                                                                 CosmosQueryMetrics cosmosQueryMetrics) {
+        return containerName -> new ExtendedCosmosContainer(
+                cosmosDatabase.getContainer(containerName),
+                jsonMapper,
+                new RequestUnitBudget(requestUnitsPerSecond, requestUnitCapacity),
+                cosmosQueryMetrics);
+    }
+
     @Bean
-    public ExtendedCosmosContainer resolutionContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(cosmosDatabase.getContainer(RESOLUTION_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer resolutionContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(RESOLUTION_CONTAINER_NAME);
     }
 
     @Bean
-    public ExtendedCosmosContainer itemLabelActivityContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(cosmosDatabase.getContainer(ITEM_LABEL_ACTIVITY_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer itemLabelActivityContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(ITEM_LABEL_ACTIVITY_CONTAINER_NAME);
     }
 
     @Bean
-    public ExtendedCosmosContainer itemLockActivityContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(cosmosDatabase.getContainer(ITEM_LOCK_ACTIVITY_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer itemLockActivityContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(ITEM_LOCK_ACTIVITY_CONTAINER_NAME);
     }
 
     @Bean
-    public ExtendedCosmosContainer itemPlacementActivityContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(
-                cosmosDatabase.getContainer(ITEM_PLACEMENT_ACTIVITY_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer itemPlacementActivityContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(ITEM_PLACEMENT_ACTIVITY_CONTAINER_NAME);
     }
 
     @Bean
-    public ExtendedCosmosContainer queueSizeCalculationActivityContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(
-                cosmosDatabase.getContainer(QUEUE_SIZE_CALCULATION_ACTIVITY_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer queueSizeCalculationActivityContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(QUEUE_SIZE_CALCULATION_ACTIVITY_CONTAINER_NAME);
     }
 
     @Bean
-    public ExtendedCosmosContainer collectedQueueInfoContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(
-                cosmosDatabase.getContainer(COLLECTED_QUEUE_INFO_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer collectedQueueInfoContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(COLLECTED_QUEUE_INFO_CONTAINER_NAME);
     }
 }
@@ -24,6 +24,7 @@ import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -40,6 +41,7 @@ import static com.griddynamics.msd365fp.manualreview.analytics.config.ScheduledJ
 
 //TODO: temporary!
 @RestController
+@Profile(NOT_IN_MEMORY_DATABASE_PROFILE)
 @RequestMapping("/api/testing")
 @Tag(name = "testing", description = "The API for testing purposes")
 @Slf4j
@@ -3,6 +3,8 @@
 
 package com.griddynamics.msd365fp.manualreview.analytics.repository;
 
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.griddynamics.msd365fp.manualreview.analytics.model.AnalystDetails;
 import com.griddynamics.msd365fp.manualreview.analytics.model.ItemLabelingBucket;
 import com.griddynamics.msd365fp.manualreview.analytics.model.LabelBucket;
@@ -12,25 +14,27 @@ import com.griddynamics.msd365fp.manualreview.model.Label;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
-import org.springframework.util.CollectionUtils;
 
 import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.QueryParameterUtility.andInCondition;
+
 @Slf4j
 @RequiredArgsConstructor
 public class ItemLabelActivityRepositoryImpl implements ItemLabelActivityRepositoryCustomMethods {
 
     private final ExtendedCosmosContainer itemLabelActivityContainer;
 
-    private static final String labelsThatFormResolutionAsString = Label.getLabelsThatFormsResolution().stream()
+    private static final List<String> labelsThatFormResolution = Label.getLabelsThatFormsResolution().stream()
             .map(Enum::name)
-            .collect(Collectors.joining("','"));
+            .collect(Collectors.toList());
 
     @Override
     public List<ItemLabelingBucket> getQueuePerformance(@NonNull final OffsetDateTime startDateTime,
@@ -38,24 +42,22 @@ public class ItemLabelActivityRepositoryImpl implements ItemLabelActivityReposit
                                                         @NonNull final Duration aggregation,
                                                         final Set<String> analystIds,
                                                         final Set<String> queueIds) {
-        return itemLabelActivityContainer.runCrossPartitionQuery(
+        List<SqlParameter> parameters = timeRangeParameters(startDateTime, endDateTime);
+        parameters.add(new SqlParameter("@aggregation", aggregation.getSeconds()));
+        return itemLabelActivityContainer.streamCrossPartitionQuery("getQueuePerformance", new SqlQuerySpec(
                 String.format(
                         "SELECT VALUE root FROM " +
-                                "(SELECT c.label, c.merchantRuleDecision, count(c.label) AS cnt, c.queueId AS id, FLOOR((c.labeled-%1$s)/%3$s) AS bucket " +
+                                "(SELECT c.label, c.merchantRuleDecision, count(c.label) AS cnt, c.queueId AS id, FLOOR((c.labeled-@start)/@aggregation) AS bucket " +
                                 "FROM c WHERE " +
-                                "(c.labeled BETWEEN %1$s AND %2$s) " +
+                                "(c.labeled BETWEEN @start AND @end) " +
                                 "AND IS_DEFINED(c.queueId) AND NOT IS_NULL(c.queueId) " +
-                                "%4$s " +
-                                "%5$s " +
-                                "group by c.queueId, FLOOR((c.labeled-%1$s)/%3$s), c.label, c.merchantRuleDecision) " +
+                                "%1$s " +
+                                "%2$s " +
+                                "group by c.queueId, FLOOR((c.labeled-@start)/@aggregation), c.label, c.merchantRuleDecision) " +
                                 "AS root",
-                        startDateTime.toEpochSecond(),
-                        endDateTime.toEpochSecond(),
-                        aggregation.getSeconds(),
-                        CollectionUtils.isEmpty(analystIds) ? "" :
-                                String.format("AND c.analystId IN ('%1$s') ", String.join("','", analystIds)),
-                        CollectionUtils.isEmpty(queueIds) ? "" :
-                                String.format("AND c.queueId IN ('%1$s') ", String.join("','", queueIds))))
+                        andInCondition("c.analystId", "@analystIds", analystIds, parameters),
+                        andInCondition("c.queueId", "@queueIds", queueIds, parameters)),
+                parameters))
                 .map(cip -> itemLabelActivityContainer.castCosmosObjectToClassInstance(cip, ItemLabelingBucket.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
@@ -68,45 +70,41 @@ public class ItemLabelActivityRepositoryImpl implements ItemLabelActivityReposit
                                                           @NonNull final Duration aggregation,
                                                           final Set<String> analystIds,
                                                           final Set<String> queueIds) {
-        return itemLabelActivityContainer.runCrossPartitionQuery(
+        List<SqlParameter> parameters = timeRangeParameters(startDateTime, endDateTime);
+        parameters.add(new SqlParameter("@aggregation", aggregation.getSeconds()));
+        return itemLabelActivityContainer.streamCrossPartitionQuery("getAnalystPerformance", new SqlQuerySpec(
                 String.format(
                         "SELECT VALUE root FROM " +
-                                "(SELECT c.label, c.merchantRuleDecision, count(c.label) AS cnt, c.analystId as id, FLOOR((c.labeled-%1$s)/%3$s) AS bucket " +
+                                "(SELECT c.label, c.merchantRuleDecision, count(c.label) AS cnt, c.analystId as id, FLOOR((c.labeled-@start)/@aggregation) AS bucket " +
                                 "FROM c WHERE " +
-                                "(c.labeled BETWEEN %1$s AND %2$s) " +
-                                "%4$s " +
-                                "%5$s " +
-                                "group by c.analystId, FLOOR((c.labeled-%1$s)/%3$s), c.label, c.merchantRuleDecision) " +
+                                "(c.labeled BETWEEN @start AND @end) " +
+                                "%1$s " +
+                                "%2$s " +
+                                "group by c.analystId, FLOOR((c.labeled-@start)/@aggregation), c.label, c.merchantRuleDecision) " +
                                 "AS root",
-                        startDateTime.toEpochSecond(),
-                        endDateTime.toEpochSecond(),
-                        aggregation.getSeconds(),
-                        CollectionUtils.isEmpty(analystIds) ? "" :
-                                String.format("AND c.analystId IN ('%1$s') ", String.join("','", analystIds)),
-                        CollectionUtils.isEmpty(queueIds) ? "" :
-                                String.format("AND c.queueId IN ('%1$s') ", String.join("','", queueIds))))
+                        andInCondition("c.analystId", "@analystIds", analystIds, parameters),
+                        andInCondition("c.queueId", "@queueIds", queueIds, parameters)),
+                parameters))
                 .map(cip -> itemLabelActivityContainer.castCosmosObjectToClassInstance(cip, ItemLabelingBucket.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
                 .collect(Collectors.toList());
     }
-    
+
     @Override
     public List<AnalystDetails> getAnalystDetails(@NonNull final OffsetDateTime startDateTime,
                                                   @NonNull final OffsetDateTime endDateTime,
                                                   final Set<String> analystIds) {
+        List<SqlParameter> parameters = timeRangeParameters(startDateTime, endDateTime);
         String query = String.format(
                         "SELECT c.label, c.merchantRuleDecision, c.id, c.analystId " +
                         "FROM c WHERE " +
-                        "(c.labeled BETWEEN %1$s AND %2$s) " +
-                        " %3$s " +
+                        "(c.labeled BETWEEN @start AND @end) " +
+                        " %1$s " +
                         "AND IS_DEFINED(c.queueId) AND NOT IS_NULL(c.queueId) ",
-
-                startDateTime.toEpochSecond(),
-                endDateTime.toEpochSecond(),
-                CollectionUtils.isEmpty(analystIds) ? "" :
-                        String.format("AND c.analystId IN ('%1$s') ", String.join("','", analystIds)));
-        return itemLabelActivityContainer.runCrossPartitionQuery(query)
+                andInCondition("c.analystId", "@analystIds", analystIds, parameters));
+        return itemLabelActivityContainer.streamCrossPartitionQuery(
+                "getAnalystDetails", new SqlQuerySpec(query, parameters))
                 .map(cip -> itemLabelActivityContainer.castCosmosObjectToClassInstance(cip, AnalystDetails.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
@@ -118,23 +116,21 @@ public class ItemLabelActivityRepositoryImpl implements ItemLabelActivityReposit
                                                         @NonNull final OffsetDateTime endDateTime,
                                                         final Set<String> analystIds,
                                                         final Set<String> queueIds) {
-        return itemLabelActivityContainer.runCrossPartitionQuery(
+        List<SqlParameter> parameters = timeRangeParameters(startDateTime, endDateTime);
+        return itemLabelActivityContainer.streamCrossPartitionQuery("getTotalPerformance", new SqlQuerySpec(
                 String.format(
                         "SELECT VALUE root FROM " +
                                 "(SELECT c.label, c.merchantRuleDecision, count(c.label) AS cnt " +
                                 "FROM c WHERE " +
-                                "(c.labeled BETWEEN %1$s AND %2$s) " +
+                                "(c.labeled BETWEEN @start AND @end) " +
                                 "AND IS_DEFINED(c.queueId) AND NOT IS_NULL(c.queueId) " +
-                                "%3$s " +
-                                "%4$s " +
+                                "%1$s " +
+                                "%2$s " +
                                 "group by c.label, c.merchantRuleDecision) " +
                                 "AS root",
-                        startDateTime.toEpochSecond(),
-                        endDateTime.toEpochSecond(),
-                        CollectionUtils.isEmpty(analystIds) ? "" :
-                                String.format("AND c.analystId IN ('%1$s') ", String.join("','", analystIds)),
-                        CollectionUtils.isEmpty(queueIds) ? "" :
-                                String.format("AND c.queueId IN ('%1$s') ", String.join("','", queueIds))))
+                        andInCondition("c.analystId", "@analystIds", analystIds, parameters),
+                        andInCondition("c.queueId", "@queueIds", queueIds, parameters)),
+                parameters))
                 .map(cip -> itemLabelActivityContainer.castCosmosObjectToClassInstance(cip, ItemLabelingBucket.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
@@ -145,20 +141,19 @@ public class ItemLabelActivityRepositoryImpl implements ItemLabelActivityReposit
     public List<ItemLabelingBucket> getBatchPerformance(@NonNull final OffsetDateTime startDateTime,
                                                         @NonNull final OffsetDateTime endDateTime,
                                                         final Set<String> analystIds) {
-        return itemLabelActivityContainer.runCrossPartitionQuery(
+        List<SqlParameter> parameters = timeRangeParameters(startDateTime, endDateTime);
+        return itemLabelActivityContainer.streamCrossPartitionQuery("getBatchPerformance", new SqlQuerySpec(
                 String.format(
                         "SELECT VALUE root FROM " +
                                 "(SELECT c.label, c.merchantRuleDecision, count(c.label) AS cnt " +
                                 "FROM c WHERE " +
-                                "(c.labeled BETWEEN %1$s AND %2$s) " +
+                                "(c.labeled BETWEEN @start AND @end) " +
                                 "AND (NOT IS_DEFINED(c.queueId) OR IS_NULL(c.queueId)) " +
-                                "%3$s " +
+                                "%1$s " +
                                 "group by c.label, c.merchantRuleDecision) " +
                                 "AS root",
-                        startDateTime.toEpochSecond(),
-                        endDateTime.toEpochSecond(),
-                        CollectionUtils.isEmpty(analystIds) ? "" :
-                                String.format("AND c.analystId IN ('%1$s') ", String.join("','", analystIds))))
+                        andInCondition("c.analystId", "@analystIds", analystIds, parameters)),
+                parameters))
                 .map(cip -> itemLabelActivityContainer.castCosmosObjectToClassInstance(cip, ItemLabelingBucket.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
@@ -170,23 +165,21 @@ public class ItemLabelActivityRepositoryImpl implements ItemLabelActivityReposit
                                                  @NonNull final OffsetDateTime endDateTime,
                                                  final Set<String> analystIds,
                                                  final Set<String> queueIds) {
-        return itemLabelActivityContainer.runCrossPartitionQuery(
+        List<SqlParameter> parameters = timeRangeParameters(startDateTime, endDateTime);
+        return itemLabelActivityContainer.streamCrossPartitionQuery("getSpentTime", new SqlQuerySpec(
                 String.format(
                         "SELECT VALUE root FROM " +
                                 "(SELECT c.label, sum(c.decisionApplyingDuration) AS totalDuration, count(c.labeled) AS cnt " +
                                 "FROM c WHERE " +
-                                "(c.labeled BETWEEN %1$s AND %2$s) " +
+                                "(c.labeled BETWEEN @start AND @end) " +
                                 "AND IS_DEFINED(c.queueId) AND NOT IS_NULL(c.queueId) " +
-                                "%3$s " +
-                                "%4$s " +
+                                "%1$s " +
+                                "%2$s " +
                                 "group by c.label) " +
                                 "AS root",
-                        startDateTime.toEpochSecond(),
-                        endDateTime.toEpochSecond(),
-                        CollectionUtils.isEmpty(analystIds) ? "" :
-                                String.format("AND c.analystId IN ('%1$s') ", String.join("','", analystIds)),
-                        CollectionUtils.isEmpty(queueIds) ? "" :
-                                String.format("AND c.queueId IN ('%1$s') ", String.join("','", queueIds))))
+                        andInCondition("c.analystId", "@analystIds", analystIds, parameters),
+                        andInCondition("c.queueId", "@queueIds", queueIds, parameters)),
+                parameters))
                 .map(cip -> itemLabelActivityContainer.castCosmosObjectToClassInstance(cip, LabelingTimeBucket.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
@@ -200,41 +193,47 @@ public class ItemLabelActivityRepositoryImpl implements ItemLabelActivityReposit
             int bucketSize,
             Set<String> analystIds,
             Set<String> queueIds) {
-        return itemLabelActivityContainer.runCrossPartitionQuery(
+        List<SqlParameter> parameters = timeRangeParameters(startDateTime, endDateTime);
+        parameters.add(new SqlParameter("@bucketSize", bucketSize));
+        return itemLabelActivityContainer.streamCrossPartitionQuery("getRiskScoreDistribution", new SqlQuerySpec(
                 String.format(
                         "SELECT VALUE root FROM ( "
                                 + "SELECT "
-                                + "    temp.risk_score_bucket * %1$s as lowerBound, "
+                                + "    temp.risk_score_bucket * @bucketSize as lowerBound, "
                                 + "    temp.label, "
                                 + "    Count(1) as count "
                                 + "FROM ("
                                 + "SELECT "
-                                + "    FLOOR(c.riskScore/%1$s) as risk_score_bucket, "
+                                + "    FLOOR(c.riskScore/@bucketSize) as risk_score_bucket, "
                                 + "    c.label "
                                 + "FROM c "
                                 + "WHERE "
-                                + "    (c.labeled BETWEEN %2$s AND %3$s)"
+                                + "    (c.labeled BETWEEN @start AND @end)"
                                 + "    AND IS_DEFINED(c.riskScore) "
                                 + "    AND NOT IS_NULL(c.riskScore) "
                                 + "    AND IS_DEFINED(c.queueId) AND NOT IS_NULL(c.queueId) "
-                                + "    %4$s "
-                                + "    %5$s "
-                                + "    %6$s "
+                                + "    %1$s "
+                                + "    %2$s "
+                                + "    %3$s "
                                 + ") AS temp "
                                 + "GROUP BY temp.risk_score_bucket, temp.label "
                                 + ") AS root",
-                        bucketSize,
-                        startDateTime.toEpochSecond(),
-                        endDateTime.toEpochSecond(),
-                        CollectionUtils.isEmpty(analystIds) ? "" :
-                                String.format("AND c.analystId IN ('%1$s') ", String.join("','", analystIds)),
-                        CollectionUtils.isEmpty(queueIds) ? "" :
-                                String.format("AND c.queueId IN ('%1$s') ", String.join("','", queueIds)),
-                        String.format("AND c.label IN ('%1$s') ", labelsThatFormResolutionAsString)
-                )
+                        andInCondition("c.analystId", "@analystIds", analystIds, parameters),
+                        andInCondition("c.queueId", "@queueIds", queueIds, parameters),
+                        andInCondition("c.label", "@labels", labelsThatFormResolution, parameters)
+                ),
+                parameters)
         )
                 .map(cip -> itemLabelActivityContainer.castCosmosObjectToClassInstance(cip, LabelBucket.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get);
     }
+
+    private List<SqlParameter> timeRangeParameters(final OffsetDateTime startDateTime,
+                                                   final OffsetDateTime endDateTime) {
+        List<SqlParameter> parameters = new ArrayList<>();
+        parameters.add(new SqlParameter("@start", startDateTime.toEpochSecond()));
+        parameters.add(new SqlParameter("@end", endDateTime.toEpochSecond()));
+        return parameters;
+    }
 }
@@ -28,7 +28,8 @@ public class ItemLockActivityRepositoryImpl implements ItemLockActivityRepositor
                                              @NonNull final OffsetDateTime endDateTime,
                                              final Set<String> analystIds,
                                              final Set<String> queueIds) {
-        return itemLockActivityContainer.runCrossPartitionQuery(
+        return itemLockActivityContainer.streamCrossPartitionQuery(
+                "getSpentTime",
                 String.format(
                         "SELECT VALUE root FROM " +
                                 "(SELECT c.actionType, sum(c.released-c.locked) AS totalDuration, count(c.released) AS cnt " +
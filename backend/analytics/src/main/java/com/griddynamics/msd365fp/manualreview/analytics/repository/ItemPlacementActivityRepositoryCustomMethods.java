@@ -4,10 +4,13 @@
 package com.griddynamics.msd365fp.manualreview.analytics.repository;
 
 import com.griddynamics.msd365fp.manualreview.analytics.model.ItemPlacementBucket;
+import com.griddynamics.msd365fp.manualreview.analytics.model.persistence.ItemPlacementActivityEntity;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
 import org.springframework.lang.NonNull;
 
 import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -17,4 +20,7 @@ public interface ItemPlacementActivityRepositoryCustomMethods {
             @NonNull final OffsetDateTime endDateTime,
             @NonNull final Duration aggregation,
             final Set<String> queueIds);
+
+    List<BulkWriteResult<ItemPlacementActivityEntity>> bulkSave(
+            @NonNull final Collection<ItemPlacementActivityEntity> entities);
 }
@@ -4,6 +4,8 @@
 package com.griddynamics.msd365fp.manualreview.analytics.repository;
 
 import com.griddynamics.msd365fp.manualreview.analytics.model.ItemPlacementBucket;
+import com.griddynamics.msd365fp.manualreview.analytics.model.persistence.ItemPlacementActivityEntity;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +14,7 @@ import org.springframework.util.CollectionUtils;
 
 import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -28,7 +31,8 @@ public class ItemPlacementActivityRepositoryImpl implements ItemPlacementActivit
                                                          @NonNull final OffsetDateTime endDateTime,
                                                          @NonNull final Duration aggregation,
                                                          final Set<String> queueIds) {
-        return itemPlacementActivityContainer.runCrossPartitionQuery(
+        return itemPlacementActivityContainer.streamCrossPartitionQuery(
+                "getPlacementMetrics",
                 String.format(
                         "SELECT VALUE root FROM " +
                                 "(SELECT c.type, count(c.type) AS cnt, c.queueId AS id, FLOOR((c.actioned-%1$s)/%3$s) AS bucket " +
@@ -47,4 +51,10 @@ public class ItemPlacementActivityRepositoryImpl implements ItemPlacementActivit
                 .map(Optional::get)
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public List<BulkWriteResult<ItemPlacementActivityEntity>> bulkSave(
+            @NonNull final Collection<ItemPlacementActivityEntity> entities) {
+        return itemPlacementActivityContainer.upsertAll("bulkSave", entities);
+    }
 }
@@ -28,7 +28,8 @@ public class QueueSizeCalculationActivityRepositoryImpl implements QueueSizeCalc
                                                    @NonNull final OffsetDateTime endDateTime,
                                                    @NonNull final Duration aggregation,
                                                    final Set<String> queueIds) {
-        return queueSizeCalculationActivityContainer.runCrossPartitionQuery(
+        return queueSizeCalculationActivityContainer.streamCrossPartitionQuery(
+                "getSizeHistory",
                 String.format(
                         "SELECT VALUE root FROM " +
                                 "(SELECT f.queueId as id, c[\"size\"], f.bucket " +
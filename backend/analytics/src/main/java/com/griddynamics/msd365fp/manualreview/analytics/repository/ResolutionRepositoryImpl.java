@@ -27,6 +27,7 @@ public class ResolutionRepositoryImpl implements ResolutionRepositoryCustomMetho
             final String continuationToken,
             int size) {
         ExtendedCosmosContainer.Page res = resolutionContainer.runCrossPartitionPageableQuery(
+                "getResolutionIdsForRetry",
                 String.format("SELECT r.id FROM r " +
                                 "WHERE (IS_NULL(r.sentSuccessful) OR NOT r.sentSuccessful)" +
                                 "AND (IS_NULL(r.retryCount) OR r.retryCount <= %s)" +
@@ -51,6 +52,7 @@ public class ResolutionRepositoryImpl implements ResolutionRepositoryCustomMetho
             final String continuationToken,
             int size) {
         ExtendedCosmosContainer.Page res = resolutionContainer.runCrossPartitionPageableQuery(
+                "getResolutionsByLastUpdateDuration",
                 "SELECT r FROM r " +
                         "WHERE r.label.labeled BETWEEN " + startDateTime.toEpochSecond() +
                         " AND " + endDateTime.toEpochSecond(),
@@ -11,6 +11,7 @@ import com.griddynamics.msd365fp.manualreview.analytics.model.dto.PurchaseStatus
 import com.griddynamics.msd365fp.manualreview.analytics.model.dto.ResolutionDTO;
 import com.griddynamics.msd365fp.manualreview.analytics.model.persistence.Resolution;
 import com.griddynamics.msd365fp.manualreview.analytics.repository.ResolutionRepository;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.PageProcessingUtility;
 import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
 import com.griddynamics.msd365fp.manualreview.model.exception.BusyException;
@@ -48,6 +49,8 @@ public class ResolutionService {
 
     @Setter(onMethod = @__({@Autowired}))
     private ResolutionService thisService;
+    @Setter(onMethod = @__({@Autowired, @Qualifier("resolutionContainer")}))
+    private ExtendedCosmosContainer resolutionContainer;
 
     @Value("${azure.cosmos.default-ttl}")
     private Duration defaultTtl;
@@ -82,7 +85,9 @@ public class ResolutionService {
                     } catch (Exception e) {
                         log.warn("Attempt to send [{}] resolution ended with exception: {}", id, e.getMessage());
                     }
-                }));
+                }),
+                0,
+                resolutionContainer.getRequestUnitBudget());
         log.info("Finish sending resolutions ready for retry.");
         return true;
     }
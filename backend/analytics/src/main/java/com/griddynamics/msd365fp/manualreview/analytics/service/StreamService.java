@@ -6,6 +6,7 @@ package com.griddynamics.msd365fp.manualreview.analytics.service;
 import com.griddynamics.msd365fp.manualreview.analytics.config.properties.ApplicationProperties;
 import com.griddynamics.msd365fp.manualreview.analytics.model.persistence.*;
 import com.griddynamics.msd365fp.manualreview.analytics.repository.*;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
 import com.griddynamics.msd365fp.manualreview.ehub.durable.model.DurableEventHubProcessorClientRegistry;
 import com.griddynamics.msd365fp.manualreview.ehub.durable.model.HealthCheckProcessor;
 import com.griddynamics.msd365fp.manualreview.model.event.internal.*;
@@ -168,74 +169,94 @@ public class StreamService implements HealthCheckProcessor {
             log.error("ItemAssignment event is configured incorrectly. Event doesn't have itemId. [{}]", event);
             return;
         }
-        saveItemAddedToQueueActivities(event);
-        saveItemDeletedFromQueueActivities(event);
+        List<ItemPlacementActivityEntity> activities = new LinkedList<>();
+        activities.addAll(buildItemAddedToQueueActivities(event));
+        activities.addAll(buildItemDeletedFromQueueActivities(event));
+        saveItemPlacementActivities(activities);
     }
 
     /**
-     * Save activity entities for item that was added to a queues.
+     * Save all placement activities of an assignment event in a single bulk operation.
+     * Activities are identified by the event, so the whole event can be safely
+     * reprocessed if some of them haven't been saved.
      */
-    private void saveItemAddedToQueueActivities(ItemAssignmentEvent event) {
+    private void saveItemPlacementActivities(List<ItemPlacementActivityEntity> activities) {
+        if (activities.isEmpty()) {
+            return;
+        }
+        List<BulkWriteResult<ItemPlacementActivityEntity>> results =
+                itemPlacementActivityRepository.bulkSave(activities);
+        long failed = 0;
+        for (BulkWriteResult<ItemPlacementActivityEntity> result : results) {
+            ItemPlacementActivityEntity activityEntity = result.getDocument();
+            if (result.isSuccessful()) {
+                log.info("[{}] assignment activity entity for the item [{}] in queue [{}] has been saved",
+                        activityEntity.getType(), activityEntity.getId(), activityEntity.getQueueId());
+            } else {
+                failed++;
+                log.error("[{}] assignment activity entity for the item [{}] in queue [{}] hasn't been saved: [{}]",
+                        activityEntity.getType(), activityEntity.getId(), activityEntity.getQueueId(),
+                        result.getStatusCode(), result.getException());
+            }
+        }
+        if (failed > 0) {
+            throw new CosmosAccessException(
+                    String.format("[%d] of [%d] assignment activities haven't been saved", failed, results.size()));
+        }
+    }
+
+    /**
+     * Build activity entities for item that was added to a queues.
+     */
+    private List<ItemPlacementActivityEntity> buildItemAddedToQueueActivities(ItemAssignmentEvent event) {
+        List<ItemPlacementActivityEntity> activities = new LinkedList<>();
         if (CollectionUtils.isEmpty(event.getOldQueueIds())) {
-            ItemPlacementActivityEntity activityEntity = ItemPlacementActivityEntity.builder()
+            activities.add(ItemPlacementActivityEntity.builder()
                     .id(event.getId() + "-" + ItemPlacementType.ADDED + "-" + event.getActioned().toString())
                     .actioned(event.getActioned())
                     .type(ItemPlacementType.ADDED)
                     .itemId(event.getId())
                     .queueId(OVERALL_PLACEMENT_ID)
                     .ttl(defaultTtl.toSeconds())
-                    .build();
-            itemPlacementActivityRepository.save(activityEntity);
-            log.info("[{}] overall assignment activity entity for the item [{}] has been saved",
-                    activityEntity.getType(), activityEntity.getId());
+                    .build());
         }
         SetUtils.difference(event.getNewQueueIds(), event.getOldQueueIds())
-                .forEach(queueId -> {
-                    ItemPlacementActivityEntity activityEntity = ItemPlacementActivityEntity.builder()
-                            .id(event.getId() + "-" + queueId + "-" + event.getActioned().toString())
-                            .actioned(event.getActioned())
-                            .type(ItemPlacementType.ADDED)
-                            .itemId(event.getId())
-                            .queueId(queueId)
-                            .ttl(defaultTtl.toSeconds())
-                            .build();
-                    itemPlacementActivityRepository.save(activityEntity);
-                    log.info("[{}] assignment activity entity for the item [{}] in queue [{}] has been saved",
-                            activityEntity.getType(), activityEntity.getId(), queueId);
-                });
+                .forEach(queueId -> activities.add(ItemPlacementActivityEntity.builder()
+                        .id(event.getId() + "-" + queueId + "-" + event.getActioned().toString())
+                        .actioned(event.getActioned())
+                        .type(ItemPlacementType.ADDED)
+                        .itemId(event.getId())
+                        .queueId(queueId)
+                        .ttl(defaultTtl.toSeconds())
+                        .build()));
+        return activities;
     }
 
     /**
-     * Save activity entities for item that was deleted from a queue.
+     * Build activity entities for item that was deleted from a queue.
      */
-    private void saveItemDeletedFromQueueActivities(ItemAssignmentEvent event) {
+    private List<ItemPlacementActivityEntity> buildItemDeletedFromQueueActivities(ItemAssignmentEvent event) {
+        List<ItemPlacementActivityEntity> activities = new LinkedList<>();
         if (CollectionUtils.isEmpty(event.getNewQueueIds())) {
-            ItemPlacementActivityEntity activityEntity = ItemPlacementActivityEntity.builder()
+            activities.add(ItemPlacementActivityEntity.builder()
                     .id(event.getId() + "-" + ItemPlacementType.RELEASED + "-" + event.getActioned().toString())
                     .actioned(event.getActioned())
                     .type(ItemPlacementType.RELEASED)
                     .itemId(event.getId())
                     .queueId(OVERALL_PLACEMENT_ID)
                     .ttl(defaultTtl.toSeconds())
-                    .build();
-            itemPlacementActivityRepository.save(activityEntity);
-            log.info("[{}] overall assignment activity entity for the item [{}] has been saved",
-                    activityEntity.getType(), activityEntity.getId());
+                    .build());
         }
         SetUtils.difference(event.getOldQueueIds(), event.getNewQueueIds())
-                .forEach(queueId -> {
-                    ItemPlacementActivityEntity activityEntity = ItemPlacementActivityEntity.builder()
-                            .id(event.getId() + "-" + queueId + "-" + event.getActioned().toString())
-                            .actioned(event.getActioned())
-                            .type(ItemPlacementType.RELEASED)
-                            .itemId(event.getId())
-                            .queueId(queueId)
-                            .ttl(defaultTtl.toSeconds())
-                            .build();
-                    itemPlacementActivityRepository.save(activityEntity);
-                    log.info("[{}] assignment activity entity for the item [{}] in queue [{}] has been saved",
-                            activityEntity.getType(), activityEntity.getId(), queueId);
-                });
+                .forEach(queueId -> activities.add(ItemPlacementActivityEntity.builder()
+                        .id(event.getId() + "-" + queueId + "-" + event.getActioned().toString())
+                        .actioned(event.getActioned())
+                        .type(ItemPlacementType.RELEASED)
+                        .itemId(event.getId())
+                        .queueId(queueId)
+                        .ttl(defaultTtl.toSeconds())
+                        .build()));
+        return activities;
     }
 
     public void processItemLabelEvent(ItemLabelEvent event) {
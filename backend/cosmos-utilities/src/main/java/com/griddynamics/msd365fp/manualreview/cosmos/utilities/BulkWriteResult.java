@@ -0,0 +1,41 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.lang.Nullable;
+
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.PRECONDITION_FAILED_STATUS_CODE;
+
+/**
+ * Result of a single document write in a bulk operation.
+ *
+ * @param <T> type of the document
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BulkWriteResult<T> {
+    private final T document;
+    private final int statusCode;
+    @Nullable
+    private final String etag;
+    private final double requestCharge;
+    @Nullable
+    private final Exception exception;
+
+    public boolean isSuccessful() {
+        return exception == null && statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * @return true if the document has been modified by another process
+     * since it was read
+     */
+    public boolean isPreconditionFailed() {
+        return statusCode == PRECONDITION_FAILED_STATUS_CODE;
+    }
+}
@@ -0,0 +1,33 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import java.util.Map;
+
+/**
+ * Delivers changes of a container to a {@link ChangeFeedHandler}.
+ * <p>
+ * The change feed is split into leases: ranges of partitions which are
+ * distributed among all running consumers with the same name. Each lease
+ * has its own checkpoint stored in the lease container, so consumers
+ * continue from where they stopped after restarts.
+ *
+ * @see ExtendedCosmosContainer#changeFeedConsumer(ChangeFeedSettings, ExtendedCosmosContainer, Class, ChangeFeedHandler)
+ */
+public interface ChangeFeedConsumer {
+
+    /**
+     * Acquires leases and starts delivering changes in background.
+     */
+    void start();
+
+    void stop();
+
+    boolean isStarted();
+
+    /**
+     * @return numbers of changes which haven't been handled yet, per lease
+     */
+    Map<String, Integer> getEstimatedLag();
+}
@@ -0,0 +1,21 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import java.util.List;
+
+/**
+ * Receives batches of changed documents from a {@link ChangeFeedConsumer}.
+ * <p>
+ * The checkpoint is moved forward only after the handler returns, so the
+ * batch is delivered again if the handler fails. Each batch contains the
+ * latest versions of documents from a single lease and handlers of
+ * different leases may be called concurrently. Deletions aren't reported.
+ *
+ * @param <T> type of the documents
+ */
+@FunctionalInterface
+public interface ChangeFeedHandler<T> {
+    void handle(List<T> changes) throws Exception;
+}
@@ -0,0 +1,67 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import com.azure.cosmos.models.ChangeFeedProcessorOptions;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Settings of a {@link ChangeFeedConsumer}.
+ */
+@Getter
+@Builder
+@ToString
+public class ChangeFeedSettings {
+
+    /**
+     * Identifies the consumer in the lease container. Consumers with
+     * the same name share the leases and checkpoints, consumers with
+     * different names receive all changes independently.
+     */
+    @NonNull
+    private final String name;
+    /**
+     * Identifies the application instance which owns leases.
+     */
+    @NonNull
+    private final String hostName;
+    /**
+     * Used only if there is no checkpoint yet. By default, only changes
+     * made after the first start are delivered.
+     */
+    private final boolean startFromBeginning;
+    /**
+     * Used only if there is no checkpoint yet and the consumer doesn't
+     * start from the beginning.
+     */
+    @Nullable
+    private final Instant startTime;
+    @Builder.Default
+    private final int maxItemCount = 100;
+    /**
+     * Delay between requests when there are no new changes.
+     */
+    @Builder.Default
+    private final Duration pollDelay = ChangeFeedProcessorOptions.DEFAULT_FEED_POLL_DELAY;
+    @Builder.Default
+    private final Duration leaseRenewInterval = ChangeFeedProcessorOptions.DEFAULT_RENEW_INTERVAL;
+    @Builder.Default
+    private final Duration leaseAcquireInterval = ChangeFeedProcessorOptions.DEFAULT_ACQUIRE_INTERVAL;
+    @Builder.Default
+    private final Duration leaseExpirationInterval = ChangeFeedProcessorOptions.DEFAULT_EXPIRATION_INTERVAL;
+
+    /**
+     * @return prefix of lease documents which separates consumers with different names
+     */
+    public String getLeasePrefix() {
+        return name + ".";
+    }
+}
@@ -5,10 +5,24 @@ package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
 
 import lombok.experimental.UtilityClass;
 
+import java.time.Duration;
+
 @SuppressWarnings("RedundantModifiersUtilityClassLombok")
 @UtilityClass
 public class Constants {
 
     public static final int DEFAULT_COSMOS_TIMEOUT_SEC = 30;
     public static final int NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE = 25;
+    public static final int DEFAULT_STREAMING_PREFETCH_PAGES = 2;
+    public static final int TOO_MANY_REQUESTS_STATUS_CODE = 429;
+    public static final int PRECONDITION_FAILED_STATUS_CODE = 412;
+    public static final int OK_STATUS_CODE = 200;
+    public static final int CREATED_STATUS_CODE = 201;
+    public static final int BAD_REQUEST_STATUS_CODE = 400;
+    public static final int NOT_FOUND_STATUS_CODE = 404;
+    public static final int CONFLICT_STATUS_CODE = 409;
+    public static final int DEFAULT_IN_MEMORY_PAGE_SIZE = 100;
+    public static final int DEFAULT_COSMOS_BULK_TIMEOUT_SEC = 120;
+    public static final Duration PAGE_RETRY_BASE_DELAY = Duration.ofMillis(50);
+    public static final Duration PAGE_RETRY_MAX_DELAY = Duration.ofSeconds(5);
 }
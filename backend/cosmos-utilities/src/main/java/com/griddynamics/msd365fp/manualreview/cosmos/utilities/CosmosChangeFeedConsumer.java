@@ -0,0 +1,100 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import com.azure.cosmos.ChangeFeedProcessor;
+import com.azure.cosmos.ChangeFeedProcessorBuilder;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.models.ChangeFeedProcessorOptions;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.DEFAULT_COSMOS_TIMEOUT_SEC;
+
+/**
+ * {@link ChangeFeedConsumer} based on the change feed processor of
+ * the Cosmos DB SDK which manages leases and checkpoints.
+ */
+@Slf4j
+class CosmosChangeFeedConsumer<T> implements ChangeFeedConsumer {
+
+    private final ChangeFeedProcessor processor;
+    private final String name;
+
+    CosmosChangeFeedConsumer(final ExtendedCosmosContainer feedContainer,
+                             final CosmosAsyncContainer container,
+                             final CosmosAsyncContainer leaseContainer,
+                             final ChangeFeedSettings settings,
+                             final Class<T> type,
+                             final ChangeFeedHandler<T> handler) {
+        this.name = settings.getName();
+        ChangeFeedProcessorOptions options = new ChangeFeedProcessorOptions()
+                .setLeasePrefix(settings.getLeasePrefix())
+                .setStartFromBeginning(settings.isStartFromBeginning())
+                .setMaxItemCount(settings.getMaxItemCount())
+                .setFeedPollDelay(settings.getPollDelay())
+                .setLeaseRenewInterval(settings.getLeaseRenewInterval())
+                .setLeaseAcquireInterval(settings.getLeaseAcquireInterval())
+                .setLeaseExpirationInterval(settings.getLeaseExpirationInterval());
+        if (settings.getStartTime() != null) {
+            options.setStartTime(settings.getStartTime());
+        }
+        this.processor = new ChangeFeedProcessorBuilder()
+                .hostName(settings.getHostName())
+                .feedContainer(container)
+                .leaseContainer(leaseContainer)
+                .options(options)
+                .handleChanges(changes -> handle(feedContainer, type, handler, changes))
+                .buildChangeFeedProcessor();
+    }
+
+    @Override
+    public void start() {
+        log.info("Starting change feed consumer [{}].", name);
+        processor.start().block(Duration.ofSeconds(DEFAULT_COSMOS_TIMEOUT_SEC));
+    }
+
+    @Override
+    public void stop() {
+        log.info("Stopping change feed consumer [{}].", name);
+        processor.stop().block(Duration.ofSeconds(DEFAULT_COSMOS_TIMEOUT_SEC));
+    }
+
+    @Override
+    public boolean isStarted() {
+        return processor.isStarted();
+    }
+
+    @Override
+    public Map<String, Integer> getEstimatedLag() {
+        return processor.getEstimatedLag().block(Duration.ofSeconds(DEFAULT_COSMOS_TIMEOUT_SEC));
+    }
+
+    /**
+     * Exceptions are rethrown to the processor which doesn't move
+     * the checkpoint and delivers the batch again.
+     */
+    private void handle(final ExtendedCosmosContainer feedContainer,
+                        final Class<T> type,
+                        final ChangeFeedHandler<T> handler,
+                        final List<JsonNode> changes) {
+        List<T> documents = changes.stream()
+                .map(change -> feedContainer.castCosmosObjectToClassInstance(change, type))
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+        log.debug("Change feed consumer [{}] received [{}] changes.", name, documents.size());
+        try {
+            handler.handle(documents);
+        } catch (Exception e) {
+            log.warn("Change feed consumer [{}] failed to handle changes.", name, e);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.spring.data.cosmos.core.ResponseDiagnostics;
+import com.azure.spring.data.cosmos.core.ResponseDiagnosticsProcessor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reports request charge, page count, item count and latency of Cosmos DB
+ * queries tagged by the container and the logical query name.
+ * <p>
+ * The logical query name is passed to {@link ExtendedCosmosContainer}
+ * by the caller, usually it's the name of the repository method.
+ * Queries which are called without a name are reported as {@value UNKNOWN_QUERY}.
+ * Queries which take longer than the slow query threshold are logged
+ * with their text and diagnostics of the slowest page.
+ * <p>
+ * Operations of Spring Data repositories are reported as well when the
+ * instance is registered as a {@link ResponseDiagnosticsProcessor}.
+ * Spring Data doesn't provide the container and the caller of an operation,
+ * so these operations are reported without tags.
+ */
+@Slf4j
+public class CosmosQueryMetrics implements ResponseDiagnosticsProcessor {
+
+    public static final String CONTAINER_TAG = "container";
+    public static final String QUERY_TAG = "query";
+    public static final String UNKNOWN_QUERY = "unknown";
+    public static final String REQUEST_UNITS = "request-units";
+
+    private final MeterRegistry meterRegistry;
+    @Nullable
+    private final Duration slowQueryThreshold;
+    private final Map<String, QueryMeters> queryMeters = new ConcurrentHashMap<>();
+    private final Map<String, WriteMeters> writeMeters = new ConcurrentHashMap<>();
+    private final Timer repositoryTimer;
+    private final DistributionSummary repositoryRequestCharge;
+
+    /**
+     * @param meterRegistry      a registry for the meters
+     * @param slowQueryThreshold the minimal duration of a query to be logged,
+     *                           slow queries are not logged if it's null
+     */
+    public CosmosQueryMetrics(final MeterRegistry meterRegistry, @Nullable final Duration slowQueryThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.repositoryTimer = meterRegistry.timer("cosmos.repository.latency");
+        this.repositoryRequestCharge = DistributionSummary.builder("cosmos.repository.request-charge")
+                .baseUnit(REQUEST_UNITS)
+                .register(meterRegistry);
+    }
+
+    public static CosmosQueryMetrics disabled() {
+        return new CosmosQueryMetrics(new CompositeMeterRegistry(), null);
+    }
+
+    public Execution start(final String container, final String queryName, final SqlQuerySpec querySpec) {
+        return new Execution(
+                queryMeters.computeIfAbsent(container + "/" + queryName, key -> new QueryMeters(container, queryName)),
+                querySpec);
+    }
+
+    public void recordBulk(final String container,
+                           final String operationName,
+                           final int documents,
+                           final double requestCharge,
+                           final Duration duration) {
+        recordWrite("bulk", container, operationName, documents, requestCharge, duration);
+    }
+
+    public void recordPatch(final String container,
+                            final String operationName,
+                            final double requestCharge,
+                            final Duration duration) {
+        recordWrite("patch", container, operationName, 1, requestCharge, duration);
+    }
+
+    private void recordWrite(final String kind,
+                             final String container,
+                             final String operationName,
+                             final int documents,
+                             final double requestCharge,
+                             final Duration duration) {
+        WriteMeters meters = writeMeters.computeIfAbsent(
+                kind + "/" + container + "/" + operationName, key -> new WriteMeters(kind, container, operationName));
+        meters.latency.record(duration);
+        meters.requestCharge.record(requestCharge);
+        meters.documents.record(documents);
+        if (isSlow(duration)) {
+            log.warn("Slow {} operation [{}] in container [{}] took [{}] and consumed [{}] RU for [{}] documents.",
+                    kind, operationName, container, duration, requestCharge, documents);
+        }
+    }
+
+    @Override
+    public void processResponseDiagnostics(@Nullable final ResponseDiagnostics responseDiagnostics) {
+        if (responseDiagnostics == null) {
+            return;
+        }
+        CosmosDiagnostics diagnostics = responseDiagnostics.getCosmosDiagnostics();
+        if (diagnostics != null && diagnostics.getDuration() != null) {
+            repositoryTimer.record(diagnostics.getDuration());
+            if (isSlow(diagnostics.getDuration())) {
+                log.warn("Slow repository operation took [{}]. Diagnostics: {}", diagnostics.getDuration(), diagnostics);
+            }
+        }
+        if (responseDiagnostics.getCosmosResponseStatistics() != null) {
+            repositoryRequestCharge.record(responseDiagnostics.getCosmosResponseStatistics().getRequestCharge());
+        }
+    }
+
+    private boolean isSlow(final Duration duration) {
+        return slowQueryThreshold != null && duration.compareTo(slowQueryThreshold) > 0;
+    }
+
+    private static Duration durationOf(final CosmosDiagnostics diagnostics) {
+        return diagnostics.getDuration() == null ? Duration.ZERO : diagnostics.getDuration();
+    }
+
+    private class QueryMeters {
+        private final String container;
+        private final String queryName;
+        private final Timer latency;
+        private final DistributionSummary requestCharge;
+        private final DistributionSummary pages;
+        private final DistributionSummary items;
+
+        private QueryMeters(final String container, final String queryName) {
+            Tags tags = Tags.of(CONTAINER_TAG, container, QUERY_TAG, queryName);
+            this.container = container;
+            this.queryName = queryName;
+            this.latency = meterRegistry.timer("cosmos.query.latency", tags);
+            this.requestCharge = DistributionSummary.builder("cosmos.query.request-charge")
+                    .baseUnit(REQUEST_UNITS)
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.pages = meterRegistry.summary("cosmos.query.pages", tags);
+            this.items = meterRegistry.summary("cosmos.query.items", tags);
+        }
+    }
+
+    private class WriteMeters {
+        private final Timer latency;
+        private final DistributionSummary requestCharge;
+        private final DistributionSummary documents;
+
+        private WriteMeters(final String kind, final String container, final String operationName) {
+            Tags tags = Tags.of(CONTAINER_TAG, container, QUERY_TAG, operationName);
+            this.latency = meterRegistry.timer("cosmos." + kind + ".latency", tags);
+            this.requestCharge = DistributionSummary.builder("cosmos." + kind + ".request-charge")
+                    .baseUnit(REQUEST_UNITS)
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.documents = meterRegistry.summary("cosmos." + kind + ".documents", tags);
+        }
+    }
+
+    /**
+     * Collects statistics of a single query execution.
+     * Should be used by a single subscriber.
+     */
+    public class Execution {
+        private final QueryMeters meters;
+        private final SqlQuerySpec querySpec;
+        private final long startedAt = System.nanoTime();
+        private int pageCount;
+        private long itemCount;
+        private double requestCharge;
+        private CosmosDiagnostics slowestPage;
+
+        private Execution(final QueryMeters meters, final SqlQuerySpec querySpec) {
+            this.meters = meters;
+            this.querySpec = querySpec;
+        }
+
+        public void page(final FeedResponse<?> page) {
+            pageCount++;
+            itemCount += page.getResults().size();
+            requestCharge += page.getRequestCharge();
+            CosmosDiagnostics diagnostics = page.getCosmosDiagnostics();
+            if (diagnostics != null &&
+                    (slowestPage == null || durationOf(diagnostics).compareTo(durationOf(slowestPage)) > 0)) {
+                slowestPage = diagnostics;
+            }
+        }
+
+        public void finish() {
+            long elapsed = System.nanoTime() - startedAt;
+            meters.latency.record(elapsed, TimeUnit.NANOSECONDS);
+            meters.requestCharge.record(requestCharge);
+            meters.pages.record(pageCount);
+            meters.items.record(itemCount);
+            if (isSlow(Duration.ofNanos(elapsed))) {
+                log.warn("Slow query [{}] in container [{}] took [{}], consumed [{}] RU for [{}] pages " +
+                                "with [{}] items. Query: [{}] with parameters {}. Diagnostics of the slowest page: {}",
+                        meters.queryName, meters.container, Duration.ofNanos(elapsed), requestCharge, pageCount,
+                        itemCount, querySpec.getQueryText(),
+                        querySpec.getParameters().stream()
+                                .map(SqlParameter::getName)
+                                .collect(Collectors.toList()),
+                        slowestPage);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Partial update of a document. Only the specified paths are sent to
+ * Cosmos DB instead of the whole document.
+ * <p>
+ * Paths are JSON pointers to document fields, e.g. {@code /lock/ownerId}.
+ * Values are serialized by the same mapper as whole documents,
+ * see {@link ExtendedCosmosContainer#patch(Object, DocumentPatch)}.
+ */
+@NoArgsConstructor(staticName = "create")
+public class DocumentPatch {
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * Sets the field value, the field is created if it doesn't exist.
+     */
+    public DocumentPatch set(final String path, final Object value) {
+        operations.add(new Operation(OperationType.SET, path, value));
+        return this;
+    }
+
+    /**
+     * Adds the value to an array (use {@code -} as the last path
+     * segment to append) or creates the field if it doesn't exist.
+     */
+    public DocumentPatch add(final String path, final Object value) {
+        operations.add(new Operation(OperationType.ADD, path, value));
+        return this;
+    }
+
+    public DocumentPatch remove(final String path) {
+        operations.add(new Operation(OperationType.REMOVE, path, null));
+        return this;
+    }
+
+    public DocumentPatch increment(final String path, final long value) {
+        operations.add(new Operation(OperationType.INCREMENT, path, value));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public enum OperationType {
+        SET, ADD, REMOVE, INCREMENT
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Operation {
+        private final OperationType type;
+        private final String path;
+        private final Object value;
+    }
+}
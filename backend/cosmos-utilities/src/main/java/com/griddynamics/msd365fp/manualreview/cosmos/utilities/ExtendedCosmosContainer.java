@@ -7,41 +7,88 @@ import com.azure.cosmos.*;
 import com.azure.cosmos.models.*;
 import com.azure.cosmos.util.CosmosPagedFlux;
 import com.azure.cosmos.util.CosmosPagedIterable;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.azure.spring.data.cosmos.exception.CosmosAccessException;
+import com.azure.spring.data.cosmos.repository.support.CosmosEntityInformation;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.PropertyAccessorFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.DEFAULT_COSMOS_BULK_TIMEOUT_SEC;
 import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.DEFAULT_COSMOS_TIMEOUT_SEC;
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.DEFAULT_STREAMING_PREFETCH_PAGES;
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.TOO_MANY_REQUESTS_STATUS_CODE;
 
 @RequiredArgsConstructor
 @Slf4j
 public class ExtendedCosmosContainer {
 
     private final CosmosAsyncContainer  container;
+    @Getter(AccessLevel.PROTECTED)
     private final ObjectMapper jsonMapper;
+    /**
+     * Collects request charges of queries executed through the container.
+     */
+    @Getter
+    private final RequestUnitBudget requestUnitBudget;
+    private final CosmosQueryMetrics queryMetrics;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public ExtendedCosmosContainer(final CosmosAsyncContainer container, final ObjectMapper jsonMapper) {
+        this(container, jsonMapper, RequestUnitBudget.unlimited(), CosmosQueryMetrics.disabled());
+    }
+
+    /**
+     * Constructor for implementations which don't use a Cosmos DB container
+     * and override all methods which access it.
+     */
+    protected ExtendedCosmosContainer(final ObjectMapper jsonMapper,
+                                      final RequestUnitBudget requestUnitBudget,
+                                      final CosmosQueryMetrics queryMetrics) {
+        this(null, jsonMapper, requestUnitBudget, queryMetrics);
+    }
 
 
     public Stream<JsonNode> runCrossPartitionQuery(final String query) {
+        return runCrossPartitionQuery(CosmosQueryMetrics.UNKNOWN_QUERY, query);
+    }
+
+    /**
+     * @param queryName the logical name of the query which the query is reported by
+     * @param query     the query to execute
+     */
+    public Stream<JsonNode> runCrossPartitionQuery(final String queryName, final String query) {
         log.debug("Executing cross partition query: [{}]", query);
         final CosmosQueryRequestOptions feedOptions = new CosmosQueryRequestOptions();
 
         CosmosPagedFlux<JsonNode> feedResponseFlux =
                 container.queryItems(query, feedOptions, JsonNode.class);
-        return feedResponseFlux.byPage()
+        return instrument(queryName, new SqlQuerySpec(query), feedResponseFlux.byPage())
                 .subscribeOn(Schedulers.parallel())
                 .map(FeedResponse::getResults)
                 .collect(Collectors.toList())
@@ -52,24 +99,130 @@ public class ExtendedCosmosContainer {
 
     }
 
+    /**
+     * Executes the query lazily. Pages are requested from Cosmos DB
+     * only when the consumer reaches them, at most
+     * {@link Constants#DEFAULT_STREAMING_PREFETCH_PAGES} pages are
+     * buffered ahead of the consumer.
+     * <p>
+     * The returned stream should be closed (e.g. with try-with-resources)
+     * if it isn't consumed entirely, otherwise the underlying query
+     * won't be cancelled.
+     *
+     * @param query the query to execute
+     * @return a lazy stream of the query results
+     */
+    public Stream<JsonNode> streamCrossPartitionQuery(final String query) {
+        return streamCrossPartitionQuery(query, DEFAULT_STREAMING_PREFETCH_PAGES);
+    }
+
+    public Stream<JsonNode> streamCrossPartitionQuery(final String query, final int prefetchPages) {
+        return streamCrossPartitionQuery(new SqlQuerySpec(query), prefetchPages);
+    }
+
+    public Stream<JsonNode> streamCrossPartitionQuery(final String queryName, final String query) {
+        return streamCrossPartitionQuery(queryName, new SqlQuerySpec(query));
+    }
+
+    public Stream<JsonNode> streamCrossPartitionQuery(final SqlQuerySpec querySpec) {
+        return streamCrossPartitionQuery(CosmosQueryMetrics.UNKNOWN_QUERY, querySpec);
+    }
+
+    public Stream<JsonNode> streamCrossPartitionQuery(final SqlQuerySpec querySpec, final int prefetchPages) {
+        return streamCrossPartitionQuery(CosmosQueryMetrics.UNKNOWN_QUERY, querySpec, prefetchPages);
+    }
+
+    public Stream<JsonNode> streamCrossPartitionQuery(final String queryName, final SqlQuerySpec querySpec) {
+        return streamCrossPartitionQuery(queryName, querySpec, DEFAULT_STREAMING_PREFETCH_PAGES);
+    }
+
+    public Stream<JsonNode> streamCrossPartitionQuery(final String queryName,
+                                                      final SqlQuerySpec querySpec,
+                                                      final int prefetchPages) {
+        return crossPartitionQueryPages(queryName, querySpec)
+                .toStream(prefetchPages)
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Provides results of the query as a cold page publisher. Nothing is
+     * requested from Cosmos DB until subscription, subsequent pages are
+     * requested in accordance with the subscriber demand and the query
+     * is cancelled together with the subscription.
+     *
+     * @param query the query to execute
+     * @return a publisher of result pages
+     */
+    public Flux<List<JsonNode>> crossPartitionQueryPages(final String query) {
+        return crossPartitionQueryPages(new SqlQuerySpec(query));
+    }
+
+    public Flux<List<JsonNode>> crossPartitionQueryPages(final SqlQuerySpec querySpec) {
+        return crossPartitionQueryPages(CosmosQueryMetrics.UNKNOWN_QUERY, querySpec);
+    }
+
+    public Flux<List<JsonNode>> crossPartitionQueryPages(final String queryName, final SqlQuerySpec querySpec) {
+        if (log.isDebugEnabled()) {
+            log.debug("Executing streaming cross partition query: [{}] with parameters {}",
+                    querySpec.getQueryText(), describeParameters(querySpec));
+        }
+        final CosmosQueryRequestOptions feedOptions = new CosmosQueryRequestOptions();
+
+        CosmosPagedFlux<JsonNode> feedResponseFlux =
+                container.queryItems(querySpec, feedOptions, JsonNode.class);
+        return instrument(queryName, querySpec, feedResponseFlux.byPage())
+                .map(FeedResponse::getResults);
+    }
+
     public Page runCrossPartitionPageableQuery(final String query,
                                                final int size,
                                                final String continuationToken) {
-        log.debug("Executing pageable query with size [{}] and continuation token [{}]: [{}]",
-                size, continuationToken, query);
+        return runCrossPartitionPageableQuery(new SqlQuerySpec(query), size, continuationToken);
+    }
+
+    public Page runCrossPartitionPageableQuery(final String queryName,
+                                               final String query,
+                                               final int size,
+                                               final String continuationToken) {
+        return runCrossPartitionPageableQuery(queryName, new SqlQuerySpec(query), size, continuationToken);
+    }
+
+    /**
+     * Executes a parameterized query. The query text stays the same for
+     * any parameter values.
+     * <p>
+     * Note that the SDK caches query plans only for queries scoped to a single
+     * partition, see {@link #partitionQueryPages(String, SqlQuerySpec, String)}. Cross
+     * partition queries request the plan from the gateway on each call and
+     * the SDK has no public way to supply a plan cached by the client.
+     */
+    public Page runCrossPartitionPageableQuery(final SqlQuerySpec querySpec,
+                                               final int size,
+                                               final String continuationToken) {
+        return runCrossPartitionPageableQuery(CosmosQueryMetrics.UNKNOWN_QUERY, querySpec, size, continuationToken);
+    }
+
+    public Page runCrossPartitionPageableQuery(final String queryName,
+                                               final SqlQuerySpec querySpec,
+                                               final int size,
+                                               final String continuationToken) {
+        if (log.isDebugEnabled()) {
+            log.debug("Executing pageable query with size [{}] and continuation token [{}]: [{}] with parameters {}",
+                    size, continuationToken, querySpec.getQueryText(), describeParameters(querySpec));
+        }
         final CosmosQueryRequestOptions feedOptions = new CosmosQueryRequestOptions();
         feedOptions.setMaxBufferedItemCount(size);
 
         Flux<FeedResponse<JsonNode>> res= null;
         CosmosPagedFlux<JsonNode> feedResponseFlux =
-                container.queryItems(query, feedOptions, JsonNode.class);
+                container.queryItems(querySpec, feedOptions, JsonNode.class);
         if (continuationToken != null) {
             res = feedResponseFlux.byPage(continuationToken, size);
         }
         else{
             res = feedResponseFlux.byPage(size);
         }
-        var result = res.blockFirst(Duration.ofSeconds(DEFAULT_COSMOS_TIMEOUT_SEC));;
+        var result = instrument(queryName, querySpec, res).blockFirst(Duration.ofSeconds(DEFAULT_COSMOS_TIMEOUT_SEC));
         var rr = new Page(
                 Objects.requireNonNull(result).getResults().stream(),
                 result.getResponseHeaders().get("x-ms-continuation"));
@@ -80,11 +233,15 @@ public class ExtendedCosmosContainer {
 
 
     public Stream<JsonNode> runPartitionQuery(final String query, final String partitionId) {
+        return runPartitionQuery(CosmosQueryMetrics.UNKNOWN_QUERY, query, partitionId);
+    }
+
+    public Stream<JsonNode> runPartitionQuery(final String queryName, final String query, final String partitionId) {
         final CosmosQueryRequestOptions feedOptions = new CosmosQueryRequestOptions();
         feedOptions.setPartitionKey(new PartitionKey(partitionId));
         CosmosPagedFlux<JsonNode>  feedResponseFlux =
                 container.queryItems(query, feedOptions, JsonNode.class);
-        return feedResponseFlux.byPage()
+        return instrument(queryName, new SqlQuerySpec(query), feedResponseFlux.byPage())
                 .subscribeOn(Schedulers.parallel())
                 .map(FeedResponse::getResults)
                 .collect(Collectors.toList())
@@ -95,16 +252,412 @@ public class ExtendedCosmosContainer {
     }
 
 
+    /**
+     * Partition-scoped version of {@link #streamCrossPartitionQuery(String)}.
+     *
+     * @param query       the query to execute
+     * @param partitionId the partition key value
+     * @return a lazy stream of the query results
+     */
+    public Stream<JsonNode> streamPartitionQuery(final String query, final String partitionId) {
+        return partitionQueryPages(query, partitionId)
+                .toStream(DEFAULT_STREAMING_PREFETCH_PAGES)
+                .flatMap(List::stream);
+    }
+
+    public Stream<JsonNode> streamPartitionQuery(final SqlQuerySpec querySpec, final String partitionId) {
+        return streamPartitionQuery(CosmosQueryMetrics.UNKNOWN_QUERY, querySpec, partitionId);
+    }
+
+    public Stream<JsonNode> streamPartitionQuery(final String queryName,
+                                                 final SqlQuerySpec querySpec,
+                                                 final String partitionId) {
+        return partitionQueryPages(queryName, querySpec, partitionId)
+                .toStream(DEFAULT_STREAMING_PREFETCH_PAGES)
+                .flatMap(List::stream);
+    }
+
+    public Flux<List<JsonNode>> partitionQueryPages(final String query, final String partitionId) {
+        return partitionQueryPages(new SqlQuerySpec(query), partitionId);
+    }
+
+    public Flux<List<JsonNode>> partitionQueryPages(final SqlQuerySpec querySpec, final String partitionId) {
+        return partitionQueryPages(CosmosQueryMetrics.UNKNOWN_QUERY, querySpec, partitionId);
+    }
+
+    /**
+     * Partition-scoped version of {@link #crossPartitionQueryPages(SqlQuerySpec)}.
+     * The SDK caches plans of such queries by the query text unless they
+     * contain aggregates, DISTINCT, GROUP BY, TOP, OFFSET/LIMIT or ORDER BY,
+     * so parameterized queries reuse a single plan.
+     *
+     * @param queryName   the logical name of the query which the query is reported by
+     * @param querySpec   the query to execute
+     * @param partitionId the partition key value
+     * @return a publisher of result pages
+     */
+    public Flux<List<JsonNode>> partitionQueryPages(final String queryName,
+                                                    final SqlQuerySpec querySpec,
+                                                    final String partitionId) {
+        if (log.isDebugEnabled()) {
+            log.debug("Executing streaming query in partition [{}]: [{}] with parameters {}",
+                    partitionId, querySpec.getQueryText(), describeParameters(querySpec));
+        }
+        final CosmosQueryRequestOptions feedOptions = new CosmosQueryRequestOptions();
+        feedOptions.setPartitionKey(new PartitionKey(partitionId));
+        CosmosPagedFlux<JsonNode> feedResponseFlux =
+                container.queryItems(querySpec, feedOptions, JsonNode.class);
+        return instrument(queryName, querySpec, feedResponseFlux.byPage())
+                .map(FeedResponse::getResults);
+    }
+
+    /**
+     * Upserts entities with bulk requests. Entities are described by
+     * Spring Data annotations in the same way as for repositories: if
+     * an entity is versioned and has a version then it's written only
+     * if it hasn't been modified since it was read. Versions of
+     * successfully written entities are updated.
+     * <p>
+     * There is a result for each entity even if the bulk is interrupted
+     * by a failure or the timeout: entities which haven't got a response
+     * have the interruption as the exception of their results.
+     *
+     * @param entities entities to write
+     * @return results in the order of the entities
+     */
+    public <T> List<BulkWriteResult<T>> upsertAll(final Collection<T> entities) {
+        return upsertAll(CosmosQueryMetrics.UNKNOWN_QUERY, entities);
+    }
+
+    public <T> List<BulkWriteResult<T>> upsertAll(final String operationName, final Collection<T> entities) {
+        return executeBulk(operationName, entities, CosmosItemOperationType.UPSERT, (document, information, id, partitionKey, index) -> {
+            CosmosBulkItemRequestOptions options = new CosmosBulkItemRequestOptions();
+            options.setIfMatchETag(versionOf(document, information));
+            return CosmosBulkOperations.getUpsertItemOperation(
+                    toDocumentBody(document, information, id), partitionKey, options, index);
+        });
+    }
+
+    /**
+     * Replaces existing entities with bulk requests.
+     *
+     * @param entities entities to write
+     * @return results in the order of the entities
+     * @see #upsertAll(Collection)
+     */
+    public <T> List<BulkWriteResult<T>> replaceAll(final Collection<T> entities) {
+        return replaceAll(CosmosQueryMetrics.UNKNOWN_QUERY, entities);
+    }
+
+    public <T> List<BulkWriteResult<T>> replaceAll(final String operationName, final Collection<T> entities) {
+        return executeBulk(operationName, entities, CosmosItemOperationType.REPLACE, (document, information, id, partitionKey, index) -> {
+            CosmosBulkItemRequestOptions options = new CosmosBulkItemRequestOptions();
+            options.setIfMatchETag(versionOf(document, information));
+            return CosmosBulkOperations.getReplaceItemOperation(
+                    id, toDocumentBody(document, information, id), partitionKey, options, index);
+        });
+    }
+
+    /**
+     * Applies partial updates to entities with bulk requests. Each patch
+     * should describe the changes which have been already made to the
+     * corresponding in-memory entity, so the entity stays consistent with
+     * the stored document after its version is updated.
+     *
+     * @param entities entities to patch
+     * @param patches  provides a patch for an entity
+     * @return results in the order of the entities
+     * @see #patch(Object, DocumentPatch)
+     */
+    public <T> List<BulkWriteResult<T>> patchAll(final Collection<T> entities,
+                                                 final Function<T, DocumentPatch> patches) {
+        return patchAll(CosmosQueryMetrics.UNKNOWN_QUERY, entities, patches);
+    }
+
+    public <T> List<BulkWriteResult<T>> patchAll(final String operationName,
+                                                 final Collection<T> entities,
+                                                 final Function<T, DocumentPatch> patches) {
+        return executeBulk(operationName, entities, CosmosItemOperationType.PATCH, (document, information, id, partitionKey, index) -> {
+            CosmosBulkPatchItemRequestOptions options = new CosmosBulkPatchItemRequestOptions();
+            options.setIfMatchETag(versionOf(document, information));
+            options.setContentResponseOnWriteEnabled(false);
+            return CosmosBulkOperations.getPatchItemOperation(
+                    id, partitionKey, toPatchOperations(patches.apply(document)), options, index);
+        });
+    }
+
+    /**
+     * Applies a partial update to the entity. Only the patched fields are
+     * sent to Cosmos DB, the document isn't returned back.
+     * <p>
+     * The patch is conditional in the same way as repository writes: if the
+     * entity is versioned and has a version then it's applied only if the
+     * document hasn't been modified since it was read. The version of the
+     * entity is updated afterwards.
+     *
+     * @param entity the entity which already contains the patched values
+     * @param patch  the changes to apply
+     * @return the same entity
+     * @throws CosmosAccessException if the document has been modified by
+     *                               another process or can't be patched
+     */
+    public <T> T patch(final T entity, final DocumentPatch patch) {
+        return patch(CosmosQueryMetrics.UNKNOWN_QUERY, entity, patch);
+    }
+
+    public <T> T patch(final String operationName, final T entity, final DocumentPatch patch) {
+        CosmosEntityInformation<T, Object> information = informationOf(entity);
+        String id = String.valueOf(information.getId(entity));
+        CosmosPatchItemRequestOptions options = new CosmosPatchItemRequestOptions();
+        options.setIfMatchETag(versionOf(entity, information));
+        options.setContentResponseOnWriteEnabled(false);
+        long startedAt = System.nanoTime();
+        CosmosItemResponse<JsonNode> response;
+        try {
+            response = container
+                    .patchItem(id, partitionKeyOf(entity, information), toPatchOperations(patch), options, JsonNode.class)
+                    .block(Duration.ofSeconds(DEFAULT_COSMOS_TIMEOUT_SEC));
+        } catch (CosmosException e) {
+            if (e.getStatusCode() == TOO_MANY_REQUESTS_STATUS_CODE) {
+                requestUnitBudget.throttle(e.getRetryAfterDuration());
+            }
+            throw new CosmosAccessException(String.format("Document [%s] can't be patched", id), e);
+        }
+        Objects.requireNonNull(response);
+        requestUnitBudget.consume(response.getRequestCharge());
+        queryMetrics.recordPatch(container.getId(), operationName, response.getRequestCharge(),
+                Duration.ofNanos(System.nanoTime() - startedAt));
+        if (information.isVersioned()) {
+            setVersion(entity, information, response.getETag());
+        }
+        return entity;
+    }
+
+    /**
+     * Creates a consumer of changes in this container. The consumer
+     * should be started explicitly and stopped on shutdown.
+     *
+     * @param settings       the consumer name, the host name and timings
+     * @param leaseContainer the container where leases and checkpoints are
+     *                       stored, it should be partitioned by {@code /id}
+     * @param type           class of the documents in this container
+     * @param handler        receives changed documents
+     * @throws IllegalArgumentException if this container or the lease container
+     *                                  isn't backed by Cosmos DB
+     */
+    public <T> ChangeFeedConsumer changeFeedConsumer(final ChangeFeedSettings settings,
+                                                    final ExtendedCosmosContainer leaseContainer,
+                                                    final Class<T> type,
+                                                    final ChangeFeedHandler<T> handler) {
+        if (container == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Container of type [%s] doesn't provide a change feed", getClass().getSimpleName()));
+        }
+        if (leaseContainer.container == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Lease container of Cosmos DB container [%s] should be backed by Cosmos DB as well, but it's [%s]",
+                    container.getId(), leaseContainer.getClass().getSimpleName()));
+        }
+        return new CosmosChangeFeedConsumer<>(this, container, leaseContainer.container, settings, type, handler);
+    }
+
+    private <T> List<BulkWriteResult<T>> executeBulk(final String operationName,
+                                                     final Collection<T> entities,
+                                                     final CosmosItemOperationType operationType,
+                                                     final BulkOperationFactory<T> operationFactory) {
+        if (entities.isEmpty()) {
+            return List.of();
+        }
+        List<T> documents = new ArrayList<>(entities);
+        List<CosmosEntityInformation<T, Object>> informations = new ArrayList<>(documents.size());
+        List<CosmosItemOperation> operations = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            T document = documents.get(i);
+            CosmosEntityInformation<T, Object> information = informationOf(document);
+            informations.add(information);
+            operations.add(operationFactory.create(
+                    document,
+                    information,
+                    String.valueOf(information.getId(document)),
+                    partitionKeyOf(document, information),
+                    i));
+        }
+
+        @SuppressWarnings("unchecked")
+        BulkWriteResult<T>[] results = new BulkWriteResult[documents.size()];
+        Duration timeout = Duration.ofSeconds(DEFAULT_COSMOS_BULK_TIMEOUT_SEC);
+        AtomicReference<Exception> interruption = new AtomicReference<>(
+                new TimeoutException(String.format("Bulk operation hasn't finished in [%s]", timeout)));
+        long startedAt = System.nanoTime();
+        boolean finished = container.executeBulkOperations(Flux.fromIterable(operations))
+                .doOnNext(operationResponse -> {
+                    int index = operationResponse.getOperation().<Integer>getContext();
+                    T document = documents.get(index);
+                    CosmosBulkItemResponse response = operationResponse.getResponse();
+                    if (response == null) {
+                        results[index] = new BulkWriteResult<>(document, 0, null, 0, operationResponse.getException());
+                        return;
+                    }
+                    requestUnitBudget.consume(response.getRequestCharge());
+                    results[index] = new BulkWriteResult<>(
+                            document,
+                            response.getStatusCode(),
+                            response.getETag(),
+                            response.getRequestCharge(),
+                            operationResponse.getException());
+                    CosmosEntityInformation<T, Object> information = informations.get(index);
+                    if (results[index].isSuccessful() && information.isVersioned()) {
+                        setVersion(document, information, response.getETag());
+                    }
+                })
+                // responses which have been received are returned even if the operation is interrupted
+                .then(Mono.just(true))
+                .take(timeout)
+                .onErrorResume(e -> {
+                    interruption.set(e instanceof Exception ? (Exception) e : new IllegalStateException(e));
+                    return Mono.just(false);
+                })
+                .defaultIfEmpty(false)
+                .block();
+        if (!finished) {
+            log.warn("Bulk [{}] of [{}] documents in container [{}] has been interrupted: {}",
+                    operationType, documents.size(), container.getId(), interruption.get().getMessage());
+        }
+
+        List<BulkWriteResult<T>> resultList = new ArrayList<>(documents.size());
+        double requestCharge = 0;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new BulkWriteResult<>(documents.get(i), 0, null, 0, finished
+                        ? new IllegalStateException("Bulk operation hasn't returned a response for the document")
+                        : interruption.get());
+            }
+            requestCharge += results[i].getRequestCharge();
+            resultList.add(results[i]);
+        }
+        queryMetrics.recordBulk(container.getId(), operationName, documents.size(), requestCharge,
+                Duration.ofNanos(System.nanoTime() - startedAt));
+        log.debug("Bulk [{}] of [{}] documents in container [{}] has consumed [{}] RU.",
+                operationType, documents.size(), container.getId(), requestCharge);
+        return resultList;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <T> CosmosEntityInformation<T, Object> informationOf(final T entity) {
+        return (CosmosEntityInformation<T, Object>) CosmosEntityInformation.getInstance(entity.getClass());
+    }
+
+    protected static <T> PartitionKey partitionKeyOf(final T entity, final CosmosEntityInformation<T, Object> information) {
+        Object partitionKeyValue = information.getPartitionKeyFieldValue(entity);
+        return partitionKeyValue == null ? PartitionKey.NONE : new PartitionKey(partitionKeyValue);
+    }
+
+    protected static <T> String versionOf(final T entity, final CosmosEntityInformation<T, Object> information) {
+        return information.isVersioned() ? information.getVersionFieldValue(entity) : null;
+    }
+
+    protected static <T> void setVersion(final T entity,
+                                       final CosmosEntityInformation<T, Object> information,
+                                       final String version) {
+        PropertyAccessorFactory.forDirectFieldAccess(entity)
+                .setPropertyValue(information.getVersionFieldName(), version);
+    }
+
+    protected <T> ObjectNode toDocumentBody(final T entity,
+                                            final CosmosEntityInformation<T, Object> information,
+                                            final String id) {
+        ObjectNode body = jsonMapper.valueToTree(entity);
+        if (!"id".equals(information.getIdFieldName())) {
+            body.remove(information.getIdFieldName());
+            body.put("id", id);
+        }
+        return body;
+    }
+
+    /**
+     * Values are converted to JSON trees by the container mapper, so they
+     * are stored in the same format as fields of whole documents.
+     */
+    private CosmosPatchOperations toPatchOperations(final DocumentPatch patch) {
+        CosmosPatchOperations operations = CosmosPatchOperations.create();
+        for (DocumentPatch.Operation operation : patch.getOperations()) {
+            switch (operation.getType()) {
+                case SET:
+                    operations.set(operation.getPath(), jsonMapper.valueToTree(operation.getValue()));
+                    break;
+                case ADD:
+                    operations.add(operation.getPath(), jsonMapper.valueToTree(operation.getValue()));
+                    break;
+                case REMOVE:
+                    operations.remove(operation.getPath());
+                    break;
+                case INCREMENT:
+                    operations.increment(operation.getPath(), (long) operation.getValue());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported patch operation: " + operation.getType());
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Converts query results to class instances. Tree objects are
+     * decoded directly without being serialized back to a string.
+     * Readers are created once per class and reused afterwards.
+     */
     public <T> Optional<T> castCosmosObjectToClassInstance(final Object object, final Class<T> klass) {
         T res = null;
         try {
-            res = jsonMapper.readValue(object.toString(), klass);
-        } catch (JsonProcessingException e) {
+            ObjectReader reader = readers.computeIfAbsent(klass, jsonMapper::readerFor);
+            if (object instanceof JsonNode) {
+                res = reader.readValue((JsonNode) object);
+            } else {
+                res = reader.readValue(object.toString());
+            }
+        } catch (IOException e) {
             log.error("Object can not be parsed for CosmosDB: [{}]", object, e);
         }
         return Optional.ofNullable(res);
     }
 
+    /**
+     * Takes request charges of the query into account and reports them
+     * together with other query statistics under the logical query name.
+     */
+    private <T> Flux<FeedResponse<T>> instrument(final String queryName,
+                                                 final SqlQuerySpec querySpec,
+                                                 final Flux<FeedResponse<T>> pages) {
+        return Flux.defer(() -> {
+            CosmosQueryMetrics.Execution execution = queryMetrics.start(container.getId(), queryName, querySpec);
+            return pages
+                    .doOnNext(page -> {
+                        requestUnitBudget.consume(page.getRequestCharge());
+                        execution.page(page);
+                    })
+                    .doOnError(CosmosException.class, e -> {
+                        if (e.getStatusCode() == TOO_MANY_REQUESTS_STATUS_CODE) {
+                            requestUnitBudget.throttle(e.getRetryAfterDuration());
+                        }
+                    })
+                    .doFinally(signal -> execution.finish());
+        });
+    }
+
+    private String describeParameters(final SqlQuerySpec querySpec) {
+        return querySpec.getParameters().stream()
+                .map(parameter -> parameter.getName() + "=" + parameter.getValue(Object.class))
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    @FunctionalInterface
+    private interface BulkOperationFactory<T> {
+        CosmosItemOperation create(T document,
+                                   CosmosEntityInformation<T, Object> information,
+                                   String id,
+                                   PartitionKey partitionKey,
+                                   int index);
+    }
 
     @AllArgsConstructor
     @NoArgsConstructor
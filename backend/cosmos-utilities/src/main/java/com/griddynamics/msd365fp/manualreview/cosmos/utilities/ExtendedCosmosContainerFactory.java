@@ -0,0 +1,14 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+/**
+ * Creates containers by name, so the application configuration doesn't
+ * depend on the backend of the containers: Cosmos DB or in-memory.
+ */
+@FunctionalInterface
+public interface ExtendedCosmosContainerFactory {
+
+    ExtendedCosmosContainer create(String containerName);
+}
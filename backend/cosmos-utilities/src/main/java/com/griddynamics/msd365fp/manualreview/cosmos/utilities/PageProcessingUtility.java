@@ -3,55 +3,149 @@
 
 package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
 
+import com.azure.core.http.policy.ExponentialBackoff;
+import com.azure.cosmos.CosmosException;
 import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
 import com.griddynamics.msd365fp.manualreview.model.exception.BusyException;
 import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE;
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.*;
 
+/**
+ * Helps to process paged Cosmos DB queries.
+ * <p>
+ * Empty pages are normal for cross-partition queries, so the next page
+ * is requested right away. Throttled (429) requests are retried after the
+ * larger of the retry-after interval suggested by Cosmos DB and an exponential
+ * jittered backoff. The storage is considered overloaded and
+ * {@link BusyException} is thrown only if the
+ * {@link Constants#NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE} attempts in a row
+ * are unsuccessful.
+ * <p>
+ * Methods which accept {@link RequestUnitBudget} are intended for background
+ * processing: each page is requested only when the budget allows it.
+ */
+@Slf4j
 @UtilityClass
 public class PageProcessingUtility {
 
     private final String STORAGE_IS_OVERLOADED = "Storage is overloaded";
+    private final ExponentialBackoff BACKOFF = new ExponentialBackoff(
+            NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE, PAGE_RETRY_BASE_DELAY, PAGE_RETRY_MAX_DELAY);
 
     public <T, E extends Exception> void executeForAllPages(final CosmosQueryFunction<String, PageableCollection<T>, E> query,
                                                             final Consumer<PageableCollection<T>> action) throws E, BusyException {
-        String continuation = null;
-        int wastedAttempts = 0;
-        do {
-            PageableCollection<T> batch = query.run(continuation);
-            if (batch.getSize() == 0) {
-                wastedAttempts++;
-                if (wastedAttempts > NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE) {
-                    throw new BusyException(STORAGE_IS_OVERLOADED);
+        executeForAllPages(query, action, 0);
+    }
+
+    public <T, E extends Exception> void executeForAllPages(final CosmosQueryFunction<String, PageableCollection<T>, E> query,
+                                                            final Consumer<PageableCollection<T>> action,
+                                                            final int prefetchDepth) throws E, BusyException {
+        executeForAllPages(query, action, prefetchDepth, RequestUnitBudget.unlimited());
+    }
+
+    /**
+     * Executes the action for each not empty page of the query.
+     * If {@code prefetchDepth} is positive then pages are requested
+     * in background and up to {@code prefetchDepth} pages are buffered
+     * while the current one is processed by the action, so storage
+     * round-trips overlap with the processing.
+     *
+     * @param query         a function to request a page by a continuation token
+     * @param action        an action for each not empty page
+     * @param prefetchDepth the maximum number of pages which are fetched in advance,
+     *                      the sequential processing is used if it's not positive
+     * @param budget        the request unit budget of the queried container
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> void executeForAllPages(final CosmosQueryFunction<String, PageableCollection<T>, E> query,
+                                                            final Consumer<PageableCollection<T>> action,
+                                                            final int prefetchDepth,
+                                                            final RequestUnitBudget budget) throws E, BusyException {
+        if (prefetchDepth <= 0) {
+            String continuation = null;
+            do {
+                PageableCollection<T> batch = getNotEmptyPage(continuation, query, budget);
+                if (batch.getSize() > 0) {
+                    action.accept(batch);
                 }
-            } else {
-                wastedAttempts = 0;
-                action.accept(batch);
-            }
-            continuation = batch.getContinuationToken();
-        } while (continuation != null);
+                continuation = batch.getContinuationToken();
+            } while (continuation != null);
+            return;
+        }
+        Flux<PageableCollection<T>> pages = Flux.<PageableCollection<T>, PageCursor>generate(
+                PageCursor::new,
+                (cursor, sink) -> {
+                    if (cursor.finished) {
+                        sink.complete();
+                        return cursor;
+                    }
+                    try {
+                        PageableCollection<T> batch = getNotEmptyPage(cursor.continuation, query, budget);
+                        cursor.continuation = batch.getContinuationToken();
+                        cursor.finished = cursor.continuation == null;
+                        if (batch.getSize() > 0) {
+                            sink.next(batch);
+                        } else {
+                            sink.complete();
+                        }
+                    } catch (Exception e) {
+                        sink.error(e);
+                    }
+                    return cursor;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
 
+        try (Stream<PageableCollection<T>> stream = pages.toStream(prefetchDepth)) {
+            Iterator<PageableCollection<T>> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+            }
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            if (cause instanceof BusyException) {
+                throw (BusyException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (E) cause;
+        }
     }
 
     public <T, E extends Exception> PageableCollection<T> getNotEmptyPage(final String continuationToken,
                                                                           final CosmosQueryFunction<String, PageableCollection<T>, E> query) throws E, BusyException {
+        return getNotEmptyPage(continuationToken, query, RequestUnitBudget.unlimited());
+    }
+
+    public <T, E extends Exception> PageableCollection<T> getNotEmptyPage(final String continuationToken,
+                                                                          final CosmosQueryFunction<String, PageableCollection<T>, E> query,
+                                                                          final RequestUnitBudget budget) throws E, BusyException {
         String continuation = continuationToken;
         int wastedAttempts = 0;
         PageableCollection<T> batch;
         do {
-            batch = query.run(continuation);
+            batch = requestPage(continuation, query, budget);
+            continuation = batch.getContinuationToken();
             if (batch.getSize() == 0) {
                 wastedAttempts++;
                 if (wastedAttempts > NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE) {
                     throw new BusyException(STORAGE_IS_OVERLOADED);
                 }
             }
-            continuation = batch.getContinuationToken();
         } while (continuation != null && batch.getSize() == 0);
         return batch;
 
@@ -60,17 +154,10 @@ public class PageProcessingUtility {
     public <T, E extends Exception> Collection<T> getAllPages(
             final CosmosQueryFunction<String, PageableCollection<T>, E> query) throws E, BusyException {
         String continuation = null;
-        int wastedAttempts = 0;
         Collection<T> all = new LinkedList<>();
         PageableCollection<T> batch;
         do {
-            batch = query.run(continuation);
-            if (batch.getSize() == 0) {
-                wastedAttempts++;
-                if (wastedAttempts > NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE) {
-                    throw new BusyException(STORAGE_IS_OVERLOADED);
-                }
-            }
+            batch = getNotEmptyPage(continuation, query);
             all.addAll(batch);
             continuation = batch.getContinuationToken();
         } while (continuation != null);
@@ -78,6 +165,60 @@ public class PageProcessingUtility {
 
     }
 
+    private <T, E extends Exception> PageableCollection<T> requestPage(final String continuation,
+                                                                       final CosmosQueryFunction<String, PageableCollection<T>, E> query,
+                                                                       final RequestUnitBudget budget) throws E, BusyException {
+        int throttledAttempts = 0;
+        while (true) {
+            pause(budget.getWaitTime());
+            try {
+                return query.run(continuation);
+            } catch (RuntimeException e) {
+                Optional<Duration> retryAfter = getRetryAfter(e);
+                if (retryAfter.isEmpty()) {
+                    throw e;
+                }
+                throttledAttempts++;
+                if (throttledAttempts > NUMBER_OF_ATTEMPTS_TO_GET_NOT_EMPTY_PAGE) {
+                    throw new BusyException(STORAGE_IS_OVERLOADED);
+                }
+                Duration backoff = BACKOFF.calculateRetryDelay(throttledAttempts - 1);
+                log.debug("Page request has been throttled, it will be retried in [{}].", backoff);
+                budget.throttle(retryAfter.get().compareTo(backoff) > 0 ? retryAfter.get() : backoff);
+            }
+        }
+    }
+
+    private Optional<Duration> getRetryAfter(final Throwable exception) {
+        for (Throwable e = exception; e != null; e = e.getCause()) {
+            if (e instanceof CosmosException && ((CosmosException) e).getStatusCode() == TOO_MANY_REQUESTS_STATUS_CODE) {
+                Duration retryAfter = ((CosmosException) e).getRetryAfterDuration();
+                return Optional.of(retryAfter == null ? Duration.ZERO : retryAfter);
+            }
+            if (e.getCause() == e) {
+                break;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void pause(final Duration duration) throws BusyException {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis(), duration.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException(STORAGE_IS_OVERLOADED);
+        }
+    }
+
+    private static class PageCursor {
+        private String continuation;
+        private boolean finished;
+    }
+
     @FunctionalInterface
     public interface CosmosQueryFunction<T, R, E extends Exception> {
         R run(T t) throws E;
@@ -0,0 +1,37 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import com.azure.cosmos.models.SqlParameter;
+import lombok.experimental.UtilityClass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@UtilityClass
+public class QueryParameterUtility {
+
+    /**
+     * Builds an "AND field IN (values)" condition which refers to
+     * the values through a single array parameter, so the query text
+     * doesn't depend on the number of values.
+     *
+     * @param field      the document field, e.g. {@code c.queueId}
+     * @param name       the parameter name, e.g. {@code @queueIds}
+     * @param values     the allowed values, the condition is omitted if empty
+     * @param parameters the query parameters to add the new parameter to
+     * @return the condition or an empty string
+     */
+    public String andInCondition(final String field,
+                                 final String name,
+                                 final Collection<String> values,
+                                 final List<SqlParameter> parameters) {
+        if (values == null || values.isEmpty()) {
+            return "";
+        }
+        parameters.add(new SqlParameter(name, new ArrayList<>(values)));
+        return String.format("AND ARRAY_CONTAINS(%s, %s) ", name, field);
+    }
+}
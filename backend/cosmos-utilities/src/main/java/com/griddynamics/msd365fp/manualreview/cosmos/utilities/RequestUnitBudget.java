@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities;
+
+import java.time.Duration;
+
+/**
+ * Token bucket of request units (RU) for a container.
+ * <p>
+ * Request charges reported by Cosmos DB are taken from the bucket which is
+ * refilled with the configured rate up to the configured capacity.
+ * The bucket may go below zero, so charges are never rejected. Instead,
+ * background processing waits for {@link #getWaitTime()} before the next
+ * request while interactive requests are never delayed. Thus interactive
+ * requests keep their share of the provisioned throughput when background
+ * tasks are busy.
+ * <p>
+ * Throttling responses (429) stop all budget-aware callers for the
+ * retry-after interval, even if the budget is unlimited.
+ */
+public class RequestUnitBudget {
+
+    private final double unitsPerSecond;
+    private final double capacity;
+
+    private double available;
+    private long refilledAt;
+    private long throttledUntil;
+
+    /**
+     * @param unitsPerSecond refill rate, the budget is unlimited if it's not positive
+     * @param capacity       the maximum number of units which can be accumulated
+     */
+    public RequestUnitBudget(final double unitsPerSecond, final double capacity) {
+        this.unitsPerSecond = unitsPerSecond;
+        this.capacity = Math.max(capacity, unitsPerSecond);
+        this.available = this.capacity;
+        this.refilledAt = System.nanoTime();
+        this.throttledUntil = refilledAt;
+    }
+
+    public static RequestUnitBudget unlimited() {
+        return new RequestUnitBudget(0, 0);
+    }
+
+    public boolean isLimited() {
+        return unitsPerSecond > 0;
+    }
+
+    public synchronized void consume(final double requestCharge) {
+        if (isLimited()) {
+            refill();
+            available -= requestCharge;
+        }
+    }
+
+    /**
+     * Takes a throttling response into account: nothing should be
+     * requested by background processing during the retry-after interval.
+     *
+     * @param retryAfter the interval suggested by Cosmos DB
+     */
+    public synchronized void throttle(final Duration retryAfter) {
+        long now = System.nanoTime();
+        throttledUntil = Math.max(throttledUntil, now + retryAfter.toNanos());
+        if (isLimited()) {
+            refill();
+            available = Math.min(available, 0);
+        }
+    }
+
+    /**
+     * @return time which background processing should wait
+     * before the next request to the container
+     */
+    public synchronized Duration getWaitTime() {
+        long now = System.nanoTime();
+        long waitNanos = Math.max(throttledUntil - now, 0);
+        if (isLimited()) {
+            refill();
+            if (available < 0) {
+                waitNanos = Math.max(waitNanos, (long) (-available / unitsPerSecond * 1e9));
+            }
+        }
+        return Duration.ofNanos(waitNanos);
+    }
+
+    public synchronized double getAvailable() {
+        if (!isLimited()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - refilledAt) / 1e9 * unitsPerSecond);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,208 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedConsumer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedHandler;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedSettings;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ChangeFeedConsumer} of an in-memory container.
+ * <p>
+ * The container has a single lease which is stored in the lease container
+ * in the same way as by the Cosmos DB change feed processor: the lease is
+ * owned by a single host, it expires if the owner doesn't renew it, and
+ * the checkpoint is the sequence number of the last handled change.
+ */
+@Slf4j
+class InMemoryChangeFeedConsumer<T> implements ChangeFeedConsumer {
+
+    private static final String LEASE_TOKEN = "0";
+    private static final String OWNER_PROPERTY = "Owner";
+    private static final String CONTINUATION_TOKEN_PROPERTY = "ContinuationToken";
+    private static final String RENEWED_PROPERTY = "timestamp";
+
+    private final ExtendedCosmosContainer feedContainer;
+    private final InMemoryCosmosCollection collection;
+    private final InMemoryCosmosCollection leases;
+    private final ChangeFeedSettings settings;
+    private final Class<T> type;
+    private final ChangeFeedHandler<T> handler;
+    private final String leaseId;
+
+    private ScheduledExecutorService executor;
+
+    InMemoryChangeFeedConsumer(final ExtendedCosmosContainer feedContainer,
+                               final InMemoryCosmosCollection collection,
+                               final InMemoryCosmosCollection leases,
+                               final ChangeFeedSettings settings,
+                               final Class<T> type,
+                               final ChangeFeedHandler<T> handler) {
+        this.feedContainer = feedContainer;
+        this.collection = collection;
+        this.leases = leases;
+        this.settings = settings;
+        this.type = type;
+        this.handler = handler;
+        this.leaseId = settings.getLeasePrefix() + collection.getName() + ".." + LEASE_TOKEN;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        log.info("Starting change feed consumer [{}].", settings.getName());
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-" + settings.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, 0,
+                settings.getPollDelay().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        log.info("Stopping change feed consumer [{}].", settings.getName());
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(settings.getLeaseRenewInterval().toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        releaseLease();
+    }
+
+    @Override
+    public synchronized boolean isStarted() {
+        return executor != null;
+    }
+
+    @Override
+    public Map<String, Integer> getEstimatedLag() {
+        long checkpoint = leases.read(leaseId, new PartitionKey(leaseId))
+                .map(this::checkpointOf)
+                .orElseGet(this::initialCheckpoint);
+        int lag = collection.changes(checkpoint, collection.getStableSequenceNumber(), Integer.MAX_VALUE).size();
+        return Map.of(LEASE_TOKEN, lag);
+    }
+
+    /**
+     * Handles all available changes if the lease can be acquired.
+     * A failed batch is handled again on the next poll.
+     */
+    private void poll() {
+        try {
+            Optional<ObjectNode> lease = acquireLease();
+            if (lease.isEmpty()) {
+                return;
+            }
+            long checkpoint = checkpointOf(lease.get());
+            long until = collection.getStableSequenceNumber();
+            List<ObjectNode> changes;
+            do {
+                changes = collection.changes(checkpoint, until, settings.getMaxItemCount());
+                if (changes.isEmpty()) {
+                    break;
+                }
+                List<T> documents = changes.stream()
+                        .map(change -> feedContainer.castCosmosObjectToClassInstance(change, type))
+                        .flatMap(Optional::stream)
+                        .collect(Collectors.toList());
+                handler.handle(documents);
+                checkpoint = changes.get(changes.size() - 1)
+                        .get(InMemoryCosmosCollection.SEQUENCE_NUMBER_PROPERTY).asLong();
+                saveLease(checkpoint);
+            } while (changes.size() == settings.getMaxItemCount());
+        } catch (Exception e) {
+            log.warn("Change feed consumer [{}] failed to handle changes.", settings.getName(), e);
+        }
+    }
+
+    private Optional<ObjectNode> acquireLease() {
+        Optional<ObjectNode> lease = leases.read(leaseId, new PartitionKey(leaseId));
+        if (lease.isPresent() && lease.get().hasNonNull(OWNER_PROPERTY)
+                && !settings.getHostName().equals(lease.get().get(OWNER_PROPERTY).asText())) {
+            Instant expiration = Instant.ofEpochMilli(lease.get().path(RENEWED_PROPERTY).asLong())
+                    .plus(settings.getLeaseExpirationInterval());
+            if (Instant.now().isBefore(expiration)) {
+                return Optional.empty();
+            }
+            log.info("Change feed consumer [{}] takes over an expired lease from [{}].",
+                    settings.getName(), lease.get().path(OWNER_PROPERTY).asText());
+        }
+        long checkpoint = lease.map(this::checkpointOf).orElseGet(this::initialCheckpoint);
+        try {
+            return Optional.of(leases.upsert(leaseOf(checkpoint), new PartitionKey(leaseId),
+                    lease.map(l -> l.path(InMemoryCosmosCollection.ETAG_PROPERTY).asText()).orElse(null)));
+        } catch (InMemoryCosmosException e) {
+            // another host has acquired the lease at the same time
+            return Optional.empty();
+        }
+    }
+
+    private void saveLease(final long checkpoint) {
+        leases.upsert(leaseOf(checkpoint), new PartitionKey(leaseId), null);
+    }
+
+    private void releaseLease() {
+        leases.read(leaseId, new PartitionKey(leaseId))
+                .filter(lease -> settings.getHostName().equals(lease.path(OWNER_PROPERTY).asText()))
+                .ifPresent(lease -> {
+                    lease.putNull(OWNER_PROPERTY);
+                    try {
+                        leases.upsert(lease, new PartitionKey(leaseId),
+                                lease.path(InMemoryCosmosCollection.ETAG_PROPERTY).asText());
+                    } catch (InMemoryCosmosException e) {
+                        log.debug("Lease [{}] has been taken over by another host.", leaseId);
+                    }
+                });
+    }
+
+    private ObjectNode leaseOf(final long checkpoint) {
+        ObjectNode lease = JsonNodeFactory.instance.objectNode();
+        lease.put(InMemoryCosmosCollection.ID_PROPERTY, leaseId);
+        lease.put(OWNER_PROPERTY, settings.getHostName());
+        lease.put(CONTINUATION_TOKEN_PROPERTY, String.valueOf(checkpoint));
+        lease.put(RENEWED_PROPERTY, System.currentTimeMillis());
+        return lease;
+    }
+
+    private long checkpointOf(final JsonNode lease) {
+        return Long.parseLong(lease.path(CONTINUATION_TOKEN_PROPERTY).asText());
+    }
+
+    private long initialCheckpoint() {
+        if (settings.isStartFromBeginning()) {
+            return 0;
+        }
+        if (settings.getStartTime() != null) {
+            return collection.getSequenceNumberAt(settings.getStartTime());
+        }
+        return collection.getStableSequenceNumber();
+    }
+}
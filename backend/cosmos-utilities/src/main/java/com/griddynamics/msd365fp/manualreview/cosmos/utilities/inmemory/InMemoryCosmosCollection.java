@@ -0,0 +1,335 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.CONFLICT_STATUS_CODE;
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.NOT_FOUND_STATUS_CODE;
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.PRECONDITION_FAILED_STATUS_CODE;
+
+/**
+ * Documents of a single in-memory container.
+ * <p>
+ * Documents are identified by the partition key and the id. Every write
+ * assigns new {@code _etag}, {@code _ts} and {@code _lsn} system properties,
+ * conditional writes compare the etag in the same way as Cosmos DB. Documents
+ * with a positive {@code ttl} disappear when it expires.
+ * <p>
+ * The sequence number ({@code _lsn}) grows with every write, so the latest
+ * versions of changed documents can be read in the order of changes, see
+ * {@link #changes(long, long, int)}.
+ * <p>
+ * Stored documents are never modified in place: a write replaces the
+ * whole document, so queries work with consistent snapshots without locks.
+ * Returned documents are copies which may be modified by the caller.
+ */
+public class InMemoryCosmosCollection {
+
+    public static final String ID_PROPERTY = "id";
+    public static final String ETAG_PROPERTY = "_etag";
+    public static final String TIMESTAMP_PROPERTY = "_ts";
+    public static final String TTL_PROPERTY = "ttl";
+    public static final String SEQUENCE_NUMBER_PROPERTY = "_lsn";
+
+    private static final int MAX_CACHED_QUERIES = 1000;
+    private static final Map<String, SqlQuery> QUERIES = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String name;
+    private final ObjectMapper jsonMapper;
+    private final Map<DocumentKey, ObjectNode> documents = new ConcurrentHashMap<>();
+    /**
+     * Sequence numbers of writes in progress. Documents with these numbers
+     * may appear later than documents with greater numbers.
+     */
+    private final NavigableSet<Long> pendingSequenceNumbers = new TreeSet<>();
+    private long sequenceNumber;
+
+    InMemoryCosmosCollection(final String name, final ObjectMapper jsonMapper) {
+        this.name = name;
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * Executes the query over the whole container or a single partition.
+     * Parsed queries are cached by their text, so parameterized queries
+     * are parsed once.
+     *
+     * @param querySpec    the query and its parameters
+     * @param partitionKey the partition to query or null for a cross partition query
+     * @return copies of the results
+     */
+    public List<JsonNode> query(final SqlQuerySpec querySpec, @Nullable final PartitionKey partitionKey) {
+        if (QUERIES.size() > MAX_CACHED_QUERIES) {
+            QUERIES.clear();
+        }
+        SqlQuery query = QUERIES.computeIfAbsent(querySpec.getQueryText(), SqlParser::parse);
+        Map<String, JsonNode> parameters = new HashMap<>();
+        for (SqlParameter parameter : querySpec.getParameters()) {
+            parameters.put(parameter.getName(), jsonMapper.valueToTree(parameter.getValue(Object.class)));
+        }
+        return query.execute(Scope.root(liveDocuments(partitionKey), parameters)).stream()
+                .<JsonNode>map(JsonNode::deepCopy)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param partitionKey the partition to read or null to read all documents
+     * @return copies of the documents
+     */
+    public List<ObjectNode> readAll(@Nullable final PartitionKey partitionKey) {
+        return liveDocuments(partitionKey).stream()
+                .map(ObjectNode::deepCopy)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param partitionKey the partition of the document or null to look
+     *                     for the document in all partitions
+     */
+    public Optional<ObjectNode> read(final String id, @Nullable final PartitionKey partitionKey) {
+        return find(id, partitionKey).map(entry -> entry.getValue().deepCopy());
+    }
+
+    public long count() {
+        return liveDocuments(null).size();
+    }
+
+    /**
+     * Reads the latest versions of documents changed after the specified
+     * sequence number, in the order of changes.
+     *
+     * @param after the sequence number of the last handled change
+     * @param until the last sequence number to read, which should be not
+     *              greater than {@link #getStableSequenceNumber()}
+     * @param limit the maximum number of documents
+     * @return copies of the documents
+     */
+    public List<ObjectNode> changes(final long after, final long until, final int limit) {
+        return liveDocuments(null).stream()
+                .filter(document -> {
+                    long lsn = sequenceNumberOf(document);
+                    return lsn > after && lsn <= until;
+                })
+                .sorted(Comparator.comparingLong(InMemoryCosmosCollection::sequenceNumberOf))
+                .limit(limit)
+                .map(ObjectNode::deepCopy)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the sequence number up to which all writes are complete,
+     * so no more documents with lower numbers can appear
+     */
+    public synchronized long getStableSequenceNumber() {
+        return pendingSequenceNumbers.isEmpty() ? sequenceNumber : pendingSequenceNumbers.first() - 1;
+    }
+
+    /**
+     * @return the sequence number before the first change made at the
+     * specified time or later
+     */
+    public long getSequenceNumberAt(final Instant time) {
+        long stable = getStableSequenceNumber();
+        return liveDocuments(null).stream()
+                .filter(document -> document.path(TIMESTAMP_PROPERTY).asLong() >= time.getEpochSecond())
+                .mapToLong(InMemoryCosmosCollection::sequenceNumberOf)
+                .filter(lsn -> lsn <= stable)
+                .min()
+                .orElse(stable + 1) - 1;
+    }
+
+    public ObjectNode create(final ObjectNode document, final PartitionKey partitionKey) {
+        return write(keyOf(document, partitionKey), (key, current) -> {
+            if (current != null && !isExpired(current)) {
+                throw new InMemoryCosmosException(CONFLICT_STATUS_CODE,
+                        String.format("Document [%s] already exists in container [%s]", key.id, name));
+            }
+            return document;
+        });
+    }
+
+    /**
+     * Creates or replaces the document. The etag is checked only if
+     * the document exists, otherwise it's created.
+     */
+    public ObjectNode upsert(final ObjectNode document,
+                             final PartitionKey partitionKey,
+                             @Nullable final String ifMatchEtag) {
+        return write(keyOf(document, partitionKey), (key, current) -> {
+            if (current != null && !isExpired(current)) {
+                checkEtag(key, current, ifMatchEtag);
+            }
+            return document;
+        });
+    }
+
+    public ObjectNode replace(final ObjectNode document,
+                              final PartitionKey partitionKey,
+                              @Nullable final String ifMatchEtag) {
+        return update(keyOf(document, partitionKey), ifMatchEtag, current -> document);
+    }
+
+    /**
+     * Atomically changes the stored document.
+     *
+     * @param change receives a copy of the current document and returns the new one
+     */
+    public ObjectNode update(final String id,
+                             final PartitionKey partitionKey,
+                             @Nullable final String ifMatchEtag,
+                             final UnaryOperator<ObjectNode> change) {
+        return update(new DocumentKey(partitionKey, id), ifMatchEtag, change);
+    }
+
+    public void delete(final String id, @Nullable final PartitionKey partitionKey, @Nullable final String ifMatchEtag) {
+        Map.Entry<DocumentKey, ObjectNode> entry = find(id, partitionKey)
+                .orElseThrow(() -> notFound(id));
+        documents.compute(entry.getKey(), (k, current) -> {
+            if (current == null || isExpired(current)) {
+                throw notFound(id);
+            }
+            checkEtag(k, current, ifMatchEtag);
+            return null;
+        });
+    }
+
+    public void deleteAll() {
+        documents.clear();
+    }
+
+    private ObjectNode update(final DocumentKey key,
+                              @Nullable final String ifMatchEtag,
+                              final UnaryOperator<ObjectNode> change) {
+        return write(key, (k, current) -> {
+            if (current == null || isExpired(current)) {
+                throw notFound(k.id);
+            }
+            checkEtag(k, current, ifMatchEtag);
+            return change.apply(current.deepCopy());
+        });
+    }
+
+    /**
+     * Atomically replaces the document with the result of the function
+     * and assigns system properties to the new version.
+     */
+    private ObjectNode write(final DocumentKey key,
+                             final BiFunction<DocumentKey, ObjectNode, ObjectNode> function) {
+        long lsn;
+        synchronized (this) {
+            lsn = ++sequenceNumber;
+            pendingSequenceNumbers.add(lsn);
+        }
+        try {
+            return documents.compute(key, (k, current) -> withSystemProperties(function.apply(k, current), lsn))
+                    .deepCopy();
+        } finally {
+            synchronized (this) {
+                pendingSequenceNumbers.remove(lsn);
+            }
+        }
+    }
+
+    private Optional<Map.Entry<DocumentKey, ObjectNode>> find(final String id, @Nullable final PartitionKey partitionKey) {
+        if (partitionKey != null) {
+            DocumentKey key = new DocumentKey(partitionKey, id);
+            ObjectNode document = documents.get(key);
+            return document == null || isExpired(document) ? Optional.empty() : Optional.of(Map.entry(key, document));
+        }
+        return documents.entrySet().stream()
+                .filter(entry -> entry.getKey().id.equals(id))
+                .filter(entry -> !isExpired(entry.getValue()))
+                .findFirst();
+    }
+
+    private List<ObjectNode> liveDocuments(@Nullable final PartitionKey partitionKey) {
+        List<ObjectNode> result = new ArrayList<>();
+        documents.forEach((key, document) -> {
+            if ((partitionKey == null || key.partitionKey.equals(partitionKey.toString())) && !isExpired(document)) {
+                result.add(document);
+            }
+        });
+        return result;
+    }
+
+    private void checkEtag(final DocumentKey key, final ObjectNode current, @Nullable final String ifMatchEtag) {
+        if (ifMatchEtag != null && !ifMatchEtag.equals(current.path(ETAG_PROPERTY).asText(null))) {
+            throw new InMemoryCosmosException(PRECONDITION_FAILED_STATUS_CODE,
+                    String.format("Document [%s] in container [%s] has been modified", key.id, name));
+        }
+    }
+
+    private InMemoryCosmosException notFound(final String id) {
+        return new InMemoryCosmosException(NOT_FOUND_STATUS_CODE,
+                String.format("Document [%s] doesn't exist in container [%s]", id, name));
+    }
+
+    private static DocumentKey keyOf(final ObjectNode document, final PartitionKey partitionKey) {
+        JsonNode id = document.get(ID_PROPERTY);
+        if (id == null || !id.isTextual()) {
+            throw new IllegalArgumentException("Document should have a string id");
+        }
+        return new DocumentKey(partitionKey, id.textValue());
+    }
+
+    private static ObjectNode withSystemProperties(final ObjectNode document, final long lsn) {
+        ObjectNode stored = document.deepCopy();
+        stored.put(ETAG_PROPERTY, "\"" + UUID.randomUUID() + "\"");
+        stored.put(TIMESTAMP_PROPERTY, Instant.now().getEpochSecond());
+        stored.put(SEQUENCE_NUMBER_PROPERTY, lsn);
+        return stored;
+    }
+
+    private static long sequenceNumberOf(final ObjectNode document) {
+        return document.path(SEQUENCE_NUMBER_PROPERTY).asLong();
+    }
+
+    private static boolean isExpired(final ObjectNode document) {
+        JsonNode ttl = document.get(TTL_PROPERTY);
+        if (ttl == null || !ttl.isNumber() || ttl.longValue() <= 0) {
+            return false;
+        }
+        return document.path(TIMESTAMP_PROPERTY).asLong() + ttl.longValue() < Instant.now().getEpochSecond();
+    }
+
+    /**
+     * {@link PartitionKey} doesn't implement {@code hashCode}, so the key
+     * keeps its JSON representation instead.
+     */
+    @EqualsAndHashCode
+    private static class DocumentKey {
+        private final String partitionKey;
+        private final String id;
+
+        private DocumentKey(final PartitionKey partitionKey, final String id) {
+            this.partitionKey = partitionKey.toString();
+            this.id = id;
+        }
+    }
+}
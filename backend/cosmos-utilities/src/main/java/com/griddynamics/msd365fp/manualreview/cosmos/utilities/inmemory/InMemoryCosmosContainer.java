@@ -0,0 +1,275 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.spring.data.cosmos.exception.CosmosAccessException;
+import com.azure.spring.data.cosmos.repository.support.CosmosEntityInformation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedConsumer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedHandler;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedSettings;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.CosmosQueryMetrics;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.RequestUnitBudget;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.BAD_REQUEST_STATUS_CODE;
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.DEFAULT_IN_MEMORY_PAGE_SIZE;
+import static com.griddynamics.msd365fp.manualreview.cosmos.utilities.Constants.OK_STATUS_CODE;
+
+/**
+ * {@link ExtendedCosmosContainer} which keeps documents in memory
+ * instead of Cosmos DB. It's intended for local runs and benchmarks
+ * of the services without a Cosmos DB account or the emulator.
+ * <p>
+ * Queries are executed by an interpreter of the Cosmos DB SQL subset
+ * used by the application, see {@link SqlParser}. Continuation tokens
+ * are offsets in the query results. Writes have the same etag semantics
+ * as Cosmos DB, so optimistic locking and its retries work as usual.
+ * Request charges are always zero, so the request unit budget
+ * never slows down background processing.
+ */
+@Slf4j
+public class InMemoryCosmosContainer extends ExtendedCosmosContainer {
+
+    private final InMemoryCosmosCollection collection;
+
+    public InMemoryCosmosContainer(final InMemoryCosmosCollection collection, final ObjectMapper jsonMapper) {
+        super(jsonMapper, RequestUnitBudget.unlimited(), CosmosQueryMetrics.disabled());
+        this.collection = collection;
+    }
+
+    @Override
+    public Stream<JsonNode> runCrossPartitionQuery(final String queryName, final String query) {
+        return collection.query(new SqlQuerySpec(query), null).stream();
+    }
+
+    @Override
+    public Flux<List<JsonNode>> crossPartitionQueryPages(final String queryName, final SqlQuerySpec querySpec) {
+        return Flux.defer(() -> Flux.fromIterable(pagesOf(collection.query(querySpec, null))));
+    }
+
+    @Override
+    public Page runCrossPartitionPageableQuery(final String queryName,
+                                               final SqlQuerySpec querySpec,
+                                               final int size,
+                                               final String continuationToken) {
+        List<JsonNode> results = collection.query(querySpec, null);
+        int offset = continuationToken == null ? 0 : Integer.parseInt(continuationToken);
+        int end = Math.min(results.size(), offset + size);
+        if (offset >= end) {
+            return new Page(Stream.empty(), null);
+        }
+        return new Page(
+                new ArrayList<>(results.subList(offset, end)).stream(),
+                end < results.size() ? String.valueOf(end) : null);
+    }
+
+    @Override
+    public Stream<JsonNode> runPartitionQuery(final String queryName, final String query, final String partitionId) {
+        return collection.query(new SqlQuerySpec(query), new PartitionKey(partitionId)).stream();
+    }
+
+    @Override
+    public Flux<List<JsonNode>> partitionQueryPages(final String queryName,
+                                                    final SqlQuerySpec querySpec,
+                                                    final String partitionId) {
+        return Flux.defer(() -> Flux.fromIterable(pagesOf(collection.query(querySpec, new PartitionKey(partitionId)))));
+    }
+
+    @Override
+    public <T> List<BulkWriteResult<T>> upsertAll(final String operationName, final Collection<T> entities) {
+        return writeAll(entities, (entity, information, id) ->
+                collection.upsert(toDocumentBody(entity, information, id),
+                        partitionKeyOf(entity, information),
+                        versionOf(entity, information)));
+    }
+
+    @Override
+    public <T> List<BulkWriteResult<T>> replaceAll(final String operationName, final Collection<T> entities) {
+        return writeAll(entities, (entity, information, id) ->
+                collection.replace(toDocumentBody(entity, information, id),
+                        partitionKeyOf(entity, information),
+                        versionOf(entity, information)));
+    }
+
+    @Override
+    public <T> List<BulkWriteResult<T>> patchAll(final String operationName,
+                                                 final Collection<T> entities,
+                                                 final Function<T, DocumentPatch> patches) {
+        return writeAll(entities, (entity, information, id) ->
+                collection.update(id,
+                        partitionKeyOf(entity, information),
+                        versionOf(entity, information),
+                        patcher(patches.apply(entity))));
+    }
+
+    @Override
+    public <T> T patch(final String operationName, final T entity, final DocumentPatch patch) {
+        CosmosEntityInformation<T, Object> information = informationOf(entity);
+        String id = String.valueOf(information.getId(entity));
+        ObjectNode document;
+        try {
+            document = collection.update(id, partitionKeyOf(entity, information), versionOf(entity, information),
+                    patcher(patch));
+        } catch (InMemoryCosmosException e) {
+            throw new CosmosAccessException(String.format("Document [%s] can't be patched", id), e);
+        }
+        if (information.isVersioned()) {
+            setVersion(entity, information, document.get(InMemoryCosmosCollection.ETAG_PROPERTY).textValue());
+        }
+        return entity;
+    }
+
+    /**
+     * Creates a consumer which polls the collection for changes.
+     * The lease container should be in-memory as well.
+     */
+    @Override
+    public <T> ChangeFeedConsumer changeFeedConsumer(final ChangeFeedSettings settings,
+                                                    final ExtendedCosmosContainer leaseContainer,
+                                                    final Class<T> type,
+                                                    final ChangeFeedHandler<T> handler) {
+        if (!(leaseContainer instanceof InMemoryCosmosContainer)) {
+            throw new IllegalArgumentException("Lease container of an in-memory container should be in-memory as well");
+        }
+        return new InMemoryChangeFeedConsumer<>(this, collection,
+                ((InMemoryCosmosContainer) leaseContainer).collection, settings, type, handler);
+    }
+
+    private <T> List<BulkWriteResult<T>> writeAll(final Collection<T> entities, final DocumentWrite<T> write) {
+        List<BulkWriteResult<T>> results = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            CosmosEntityInformation<T, Object> information = informationOf(entity);
+            try {
+                ObjectNode document = write.apply(entity, information, String.valueOf(information.getId(entity)));
+                String etag = document.get(InMemoryCosmosCollection.ETAG_PROPERTY).textValue();
+                if (information.isVersioned()) {
+                    setVersion(entity, information, etag);
+                }
+                results.add(new BulkWriteResult<>(entity, OK_STATUS_CODE, etag, 0, null));
+            } catch (InMemoryCosmosException e) {
+                results.add(new BulkWriteResult<>(entity, e.getStatusCode(), null, 0, e));
+            }
+        }
+        log.debug("In-memory bulk write of [{}] documents in container [{}].", entities.size(), collection.getName());
+        return results;
+    }
+
+    private static List<List<JsonNode>> pagesOf(final List<JsonNode> results) {
+        List<List<JsonNode>> pages = new ArrayList<>();
+        for (int start = 0; start < results.size(); start += DEFAULT_IN_MEMORY_PAGE_SIZE) {
+            pages.add(results.subList(start, Math.min(results.size(), start + DEFAULT_IN_MEMORY_PAGE_SIZE)));
+        }
+        return pages;
+    }
+
+    /**
+     * Applies patch operations to a document in the same way as Cosmos DB:
+     * the parent of the target path should exist, {@code add} inserts into
+     * arrays and {@code increment} creates absent fields.
+     */
+    private UnaryOperator<ObjectNode> patcher(final DocumentPatch patch) {
+        return document -> {
+            for (DocumentPatch.Operation operation : patch.getOperations()) {
+                applyOperation(document, operation);
+            }
+            return document;
+        };
+    }
+
+    private void applyOperation(final ObjectNode document, final DocumentPatch.Operation operation) {
+        String path = operation.getPath();
+        int separator = path.lastIndexOf('/');
+        if (!path.startsWith("/") || separator == path.length() - 1) {
+            throw badPatch(path);
+        }
+        JsonNode parent = separator == 0 ? document : document.at(path.substring(0, separator));
+        String field = path.substring(separator + 1).replace("~1", "/").replace("~0", "~");
+        JsonNode value = operation.getValue() == null ? null : getJsonMapper().valueToTree(operation.getValue());
+        if (parent.isObject()) {
+            ObjectNode object = (ObjectNode) parent;
+            switch (operation.getType()) {
+                case SET:
+                case ADD:
+                    object.set(field, value);
+                    break;
+                case REMOVE:
+                    if (object.remove(field) == null) {
+                        throw badPatch(path);
+                    }
+                    break;
+                case INCREMENT:
+                    JsonNode current = object.get(field);
+                    if (current != null && !current.isIntegralNumber()) {
+                        throw badPatch(path);
+                    }
+                    object.set(field, LongNode.valueOf((current == null ? 0 : current.longValue())
+                            + (long) operation.getValue()));
+                    break;
+                default:
+                    throw badPatch(path);
+            }
+        } else if (parent.isArray()) {
+            ArrayNode array = (ArrayNode) parent;
+            int index = "-".equals(field) ? array.size() : parseIndex(field, path);
+            switch (operation.getType()) {
+                case ADD:
+                    array.insert(index, value);
+                    break;
+                case SET:
+                    if (index < array.size()) {
+                        array.set(index, value);
+                    } else {
+                        array.add(value);
+                    }
+                    break;
+                case REMOVE:
+                    if (index >= array.size()) {
+                        throw badPatch(path);
+                    }
+                    array.remove(index);
+                    break;
+                default:
+                    throw badPatch(path);
+            }
+        } else {
+            throw badPatch(path);
+        }
+    }
+
+    private static int parseIndex(final String field, final String path) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw badPatch(path);
+        }
+    }
+
+    private static InMemoryCosmosException badPatch(final String path) {
+        return new InMemoryCosmosException(BAD_REQUEST_STATUS_CODE,
+                String.format("Patch operation can't be applied to path [%s]", path));
+    }
+
+    @FunctionalInterface
+    private interface DocumentWrite<T> {
+        ObjectNode apply(T entity, CosmosEntityInformation<T, Object> information, String id);
+    }
+}
@@ -0,0 +1,21 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import lombok.Getter;
+
+/**
+ * Failure of an in-memory container operation with the status code
+ * which Cosmos DB returns in the same situation.
+ */
+@Getter
+public class InMemoryCosmosException extends RuntimeException {
+
+    private final int statusCode;
+
+    public InMemoryCosmosException(final int statusCode, final String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+}
@@ -0,0 +1,35 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory replacement of a Cosmos DB database for local runs and
+ * benchmarks. Containers are created on first access. Both
+ * {@link InMemoryCosmosContainer} and {@link InMemoryCosmosTemplate}
+ * should use the same store, so custom queries and Spring Data
+ * repositories see the same documents.
+ */
+@RequiredArgsConstructor
+public class InMemoryCosmosStore {
+
+    /**
+     * Converts query parameters to JSON.
+     */
+    private final ObjectMapper jsonMapper;
+    private final Map<String, InMemoryCosmosCollection> collections = new ConcurrentHashMap<>();
+
+    public InMemoryCosmosCollection getCollection(final String containerName) {
+        return collections.computeIfAbsent(containerName, name -> new InMemoryCosmosCollection(name, jsonMapper));
+    }
+
+    public void deleteCollection(final String containerName) {
+        collections.remove(containerName);
+    }
+}
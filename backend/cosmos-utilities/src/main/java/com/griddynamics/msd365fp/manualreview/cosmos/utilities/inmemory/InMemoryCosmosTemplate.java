@@ -0,0 +1,362 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.azure.cosmos.models.CosmosContainerProperties;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.spring.data.cosmos.core.CosmosOperations;
+import com.azure.spring.data.cosmos.core.convert.MappingCosmosConverter;
+import com.azure.spring.data.cosmos.core.convert.ObjectMapperFactory;
+import com.azure.spring.data.cosmos.core.generator.CountQueryGenerator;
+import com.azure.spring.data.cosmos.core.generator.FindQuerySpecGenerator;
+import com.azure.spring.data.cosmos.core.generator.NativeQueryGenerator;
+import com.azure.spring.data.cosmos.core.mapping.CosmosMappingContext;
+import com.azure.spring.data.cosmos.core.query.CosmosQuery;
+import com.azure.spring.data.cosmos.core.query.Criteria;
+import com.azure.spring.data.cosmos.core.query.CriteriaType;
+import com.azure.spring.data.cosmos.exception.CosmosAccessException;
+import com.azure.spring.data.cosmos.repository.support.CosmosEntityInformation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * {@link CosmosOperations} over an {@link InMemoryCosmosStore}, i.e. the
+ * in-memory backend of Spring Data repositories.
+ * <p>
+ * Queries are generated by the same Spring Data generators as for
+ * Cosmos DB and executed by the in-memory interpreter. Entities are
+ * converted by {@link MappingCosmosConverter}, so versions and ids are
+ * mapped in the same way as by the Cosmos DB template. Failures are
+ * reported as {@link CosmosAccessException}.
+ */
+@Slf4j
+public class InMemoryCosmosTemplate implements CosmosOperations {
+
+    private final InMemoryCosmosStore store;
+    private final MappingCosmosConverter converter;
+    private final Map<String, CosmosContainerProperties> containerProperties = new ConcurrentHashMap<>();
+
+    public InMemoryCosmosTemplate(final InMemoryCosmosStore store) {
+        this(store, new MappingCosmosConverter(new CosmosMappingContext(), ObjectMapperFactory.getObjectMapper()));
+    }
+
+    public InMemoryCosmosTemplate(final InMemoryCosmosStore store, final MappingCosmosConverter converter) {
+        this.store = store;
+        this.converter = converter;
+    }
+
+    @Override
+    public String getContainerName(final Class<?> domainType) {
+        return CosmosEntityInformation.getInstance(domainType).getContainerName();
+    }
+
+    @Override
+    public CosmosContainerProperties createContainerIfNotExists(final CosmosEntityInformation<?, ?> information) {
+        store.getCollection(information.getContainerName());
+        return containerProperties.computeIfAbsent(information.getContainerName(),
+                name -> new CosmosContainerProperties(name, information.getPartitionKeyPath()));
+    }
+
+    @Override
+    public CosmosContainerProperties getContainerProperties(final String containerName) {
+        return containerProperties.get(containerName);
+    }
+
+    @Override
+    public CosmosContainerProperties replaceContainerProperties(final String containerName,
+                                                                final CosmosContainerProperties properties) {
+        containerProperties.put(containerName, properties);
+        return properties;
+    }
+
+    @Override
+    public <T> Iterable<T> findAll(final Class<T> domainType) {
+        return findAll(getContainerName(domainType), domainType);
+    }
+
+    @Override
+    public <T> Iterable<T> findAll(final String containerName, final Class<T> domainType) {
+        return toDomainObjects(domainType, store.getCollection(containerName).readAll(null));
+    }
+
+    @Override
+    public <T> Iterable<T> findAll(final PartitionKey partitionKey, final Class<T> domainType) {
+        return toDomainObjects(domainType, store.getCollection(getContainerName(domainType)).readAll(partitionKey));
+    }
+
+    @Override
+    public <T> T findById(final Object id, final Class<T> domainType) {
+        return findById(getContainerName(domainType), id, domainType);
+    }
+
+    @Override
+    public <T> T findById(final String containerName, final Object id, final Class<T> domainType) {
+        return store.getCollection(containerName).read(String.valueOf(id), null)
+                .map(document -> toDomainObject(domainType, document))
+                .orElse(null);
+    }
+
+    @Override
+    public <T> T findById(final Object id, final Class<T> domainType, final PartitionKey partitionKey) {
+        return store.getCollection(getContainerName(domainType)).read(String.valueOf(id), partitionKey)
+                .map(document -> toDomainObject(domainType, document))
+                .orElse(null);
+    }
+
+    @Override
+    public <T> T insert(final T objectToSave, @Nullable final PartitionKey partitionKey) {
+        return insert(getContainerName(objectToSave.getClass()), objectToSave, partitionKey);
+    }
+
+    @Override
+    public <T> T insert(final String containerName, final T objectToSave, @Nullable final PartitionKey partitionKey) {
+        ObjectNode document = (ObjectNode) converter.writeJsonNode(objectToSave);
+        ObjectNode created = execute(() -> store.getCollection(containerName)
+                .create(document, partitionKeyOf(objectToSave, partitionKey)));
+        return toDomainObject(domainTypeOf(objectToSave), created);
+    }
+
+    @Override
+    public <T> T insert(final String containerName, final T objectToSave) {
+        return insert(containerName, objectToSave, null);
+    }
+
+    @Override
+    public <T> void upsert(final T object) {
+        upsert(getContainerName(object.getClass()), object);
+    }
+
+    @Override
+    public <T> void upsert(final String containerName, final T object) {
+        upsertAndReturnEntity(containerName, object);
+    }
+
+    @Override
+    public <T> T upsertAndReturnEntity(final String containerName, final T object) {
+        ObjectNode document = (ObjectNode) converter.writeJsonNode(object);
+        ObjectNode upserted = execute(() -> store.getCollection(containerName)
+                .upsert(document, partitionKeyOf(object, null), etagOf(object, document)));
+        return toDomainObject(domainTypeOf(object), upserted);
+    }
+
+    @Override
+    public void deleteById(final String containerName, final Object id, @Nullable final PartitionKey partitionKey) {
+        execute(() -> {
+            store.getCollection(containerName).delete(String.valueOf(id), partitionKey, null);
+            return null;
+        });
+    }
+
+    @Override
+    public <T> void deleteEntity(final String containerName, final T entity) {
+        ObjectNode document = (ObjectNode) converter.writeJsonNode(entity);
+        execute(() -> {
+            store.getCollection(containerName).delete(
+                    document.get(InMemoryCosmosCollection.ID_PROPERTY).asText(),
+                    partitionKeyOf(entity, null),
+                    etagOf(entity, document));
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll(final String containerName, final Class<?> domainType) {
+        store.getCollection(containerName).deleteAll();
+    }
+
+    @Override
+    public void deleteContainer(final String containerName) {
+        store.deleteCollection(containerName);
+        containerProperties.remove(containerName);
+    }
+
+    @Override
+    public <T> Iterable<T> delete(final CosmosQuery query, final Class<T> domainType, final String containerName) {
+        List<T> deleted = find(query, domainType, containerName);
+        deleted.forEach(entity -> deleteEntity(containerName, entity));
+        return deleted;
+    }
+
+    @Override
+    public <T> List<T> find(final CosmosQuery query, final Class<T> domainType, final String containerName) {
+        return runQuery(containerName, new FindQuerySpecGenerator().generateCosmos(query), domainType);
+    }
+
+    @Override
+    public <T, ID> Iterable<T> findByIds(final Iterable<ID> ids, final Class<T> domainType, final String containerName) {
+        List<T> result = new ArrayList<>();
+        for (ID id : ids) {
+            Optional.ofNullable(findById(containerName, id, domainType)).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public <T> Boolean exists(final CosmosQuery query, final Class<T> domainType, final String containerName) {
+        return count(query, containerName) > 0;
+    }
+
+    @Override
+    public <T> Page<T> findAll(final Pageable pageable, final Class<T> domainType, final String containerName) {
+        return paginationQuery(new CosmosQuery(Criteria.getInstance(CriteriaType.ALL)).with(pageable),
+                domainType, containerName);
+    }
+
+    /**
+     * Pages are selected by offsets, so any page of the query can be
+     * requested without a continuation token.
+     */
+    @Override
+    public <T> Page<T> paginationQuery(final CosmosQuery query, final Class<T> domainType, final String containerName) {
+        Pageable pageable = query.getPageable();
+        List<T> all = find(query, domainType, containerName);
+        return new PageImpl<>(pageOf(all, pageable), pageable, all.size());
+    }
+
+    @Override
+    public <T> Slice<T> sliceQuery(final CosmosQuery query, final Class<T> domainType, final String containerName) {
+        Pageable pageable = query.getPageable();
+        List<T> all = find(query, domainType, containerName);
+        return new SliceImpl<>(pageOf(all, pageable), pageable, hasNext(all, pageable));
+    }
+
+    @Override
+    public <T> Slice<T> runSliceQuery(final SqlQuerySpec querySpec,
+                                      final Pageable pageable,
+                                      final Class<?> domainType,
+                                      final Class<T> returnType) {
+        List<T> all = runQuery(querySpec, pageable.getSort(), domainType, returnType);
+        return new SliceImpl<>(pageOf(all, pageable), pageable, hasNext(all, pageable));
+    }
+
+    @Override
+    public long count(final String containerName) {
+        return store.getCollection(containerName).count();
+    }
+
+    @Override
+    public <T> long count(final CosmosQuery query, final String containerName) {
+        return count(containerName, new CountQueryGenerator().generateCosmos(query));
+    }
+
+    @Override
+    public <T> long count(final SqlQuerySpec querySpec, final String containerName) {
+        return count(containerName, NativeQueryGenerator.getInstance().generateCountQuery(querySpec));
+    }
+
+    @Override
+    public MappingCosmosConverter getConverter() {
+        return converter;
+    }
+
+    @Override
+    public <T> List<T> runQuery(final SqlQuerySpec querySpec, final Class<?> domainType, final Class<T> returnType) {
+        return runQuery(getContainerName(domainType), querySpec, returnType);
+    }
+
+    @Override
+    public <T> List<T> runQuery(final SqlQuerySpec querySpec,
+                                final Sort sort,
+                                final Class<?> domainType,
+                                final Class<T> returnType) {
+        return runQuery(NativeQueryGenerator.getInstance().generateSortedQuery(querySpec, sort), domainType, returnType);
+    }
+
+    @Override
+    public <T> Page<T> runPaginationQuery(final SqlQuerySpec querySpec,
+                                          final Pageable pageable,
+                                          final Class<?> domainType,
+                                          final Class<T> returnType) {
+        List<T> all = runQuery(querySpec, pageable.getSort(), domainType, returnType);
+        return new PageImpl<>(pageOf(all, pageable), pageable, all.size());
+    }
+
+    private <T> List<T> runQuery(final String containerName, final SqlQuerySpec querySpec, final Class<T> returnType) {
+        List<JsonNode> results = execute(() -> store.getCollection(containerName).query(querySpec, null));
+        return toDomainObjects(returnType, results);
+    }
+
+    private long count(final String containerName, final SqlQuerySpec countQuery) {
+        List<JsonNode> results = execute(() -> store.getCollection(containerName).query(countQuery, null));
+        return results.isEmpty() ? 0 : results.get(0).asLong();
+    }
+
+    private static <T> List<T> pageOf(final List<T> all, final Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return all;
+        }
+        int start = (int) Math.min(all.size(), pageable.getOffset());
+        return all.subList(start, Math.min(all.size(), start + pageable.getPageSize()));
+    }
+
+    private static boolean hasNext(final List<?> all, final Pageable pageable) {
+        return pageable.isPaged() && pageable.getOffset() + pageable.getPageSize() < all.size();
+    }
+
+    private <T> List<T> toDomainObjects(final Class<T> domainType, final List<? extends JsonNode> documents) {
+        return documents.stream()
+                .map(document -> toDomainObject(domainType, document))
+                .collect(Collectors.toList());
+    }
+
+    private <T> T toDomainObject(final Class<T> domainType, final JsonNode document) {
+        return converter.read(domainType, document);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> domainTypeOf(final T entity) {
+        return (Class<T>) entity.getClass();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> PartitionKey partitionKeyOf(final T entity, @Nullable final PartitionKey partitionKey) {
+        if (partitionKey != null) {
+            return partitionKey;
+        }
+        CosmosEntityInformation<T, Object> information =
+                (CosmosEntityInformation<T, Object>) CosmosEntityInformation.getInstance(entity.getClass());
+        Object partitionKeyValue = information.getPartitionKeyFieldValue(entity);
+        return partitionKeyValue == null ? PartitionKey.NONE : new PartitionKey(partitionKeyValue);
+    }
+
+    /**
+     * The converter writes the version of an entity as {@code _etag},
+     * writes of versioned entities are conditional.
+     */
+    @Nullable
+    private static <T> String etagOf(final T entity, final ObjectNode document) {
+        if (!CosmosEntityInformation.getInstance(entity.getClass()).isVersioned()) {
+            return null;
+        }
+        JsonNode etag = document.get(InMemoryCosmosCollection.ETAG_PROPERTY);
+        return etag == null || etag.isNull() ? null : etag.asText();
+    }
+
+    private static <R> R execute(final Supplier<R> operation) {
+        try {
+            return operation.get();
+        } catch (InMemoryCosmosException e) {
+            log.debug("In-memory operation has failed with status [{}].", e.getStatusCode());
+            throw new CosmosAccessException(Objects.requireNonNull(e.getMessage()), e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import lombok.experimental.UtilityClass;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cosmos DB semantics of JSON values. Java {@code null} stands
+ * for the undefined value, i.e. an absent property.
+ */
+@UtilityClass
+class JsonValues {
+
+    private static final double MAX_EXACT_LONG = 9007199254740992d;
+
+    /**
+     * Order of ORDER BY and MIN/MAX: undefined, null, booleans, numbers,
+     * strings, arrays and objects. Arrays and objects of the same type
+     * are considered equal.
+     */
+    static final Comparator<JsonNode> ORDER = (left, right) -> {
+        int byType = Integer.compare(typeRank(left), typeRank(right));
+        if (byType != 0) {
+            return byType;
+        }
+        Integer byValue = compare(left, right);
+        return byValue == null ? 0 : byValue;
+    };
+
+    static boolean isTrue(final JsonNode value) {
+        return value != null && value.isBoolean() && value.booleanValue();
+    }
+
+    static JsonNode bool(final Boolean value) {
+        return value == null ? null : BooleanNode.valueOf(value);
+    }
+
+    static JsonNode number(final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return null;
+        }
+        if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_LONG) {
+            return LongNode.valueOf((long) value);
+        }
+        return DoubleNode.valueOf(value);
+    }
+
+    /**
+     * @return the result of comparison of primitive values of the same type
+     * or null (undefined) if the values can't be compared
+     */
+    static Integer compare(final JsonNode left, final JsonNode right) {
+        if (left == null || right == null || typeRank(left) != typeRank(right)) {
+            return null;
+        }
+        if (left.isNull()) {
+            return 0;
+        }
+        if (left.isBoolean()) {
+            return Boolean.compare(left.booleanValue(), right.booleanValue());
+        }
+        if (left.isNumber()) {
+            return left.decimalValue().compareTo(right.decimalValue());
+        }
+        if (left.isTextual()) {
+            return left.textValue().compareTo(right.textValue());
+        }
+        return null;
+    }
+
+    /**
+     * @return true if values are equal, false if they aren't and
+     * null (undefined) if either is undefined or they have different types
+     */
+    static Boolean equal(final JsonNode left, final JsonNode right) {
+        if (left == null || right == null || typeRank(left) != typeRank(right)) {
+            return null;
+        }
+        return deepEquals(left, right);
+    }
+
+    static boolean deepEquals(final JsonNode left, final JsonNode right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (typeRank(left) != typeRank(right)) {
+            return false;
+        }
+        if (left.isArray()) {
+            if (left.size() != right.size()) {
+                return false;
+            }
+            for (int i = 0; i < left.size(); i++) {
+                if (!deepEquals(left.get(i), right.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (left.isObject()) {
+            if (left.size() != right.size()) {
+                return false;
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = left.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!deepEquals(field.getValue(), right.get(field.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        Integer comparison = compare(left, right);
+        return comparison != null && comparison == 0;
+    }
+
+    /**
+     * @return a key which is equal for equal lists of values,
+     * used for grouping and DISTINCT
+     */
+    static String key(final List<JsonNode> values) {
+        StringBuilder key = new StringBuilder();
+        for (JsonNode value : values) {
+            key.append(key(value)).append('\u0000');
+        }
+        return key.toString();
+    }
+
+    static String key(final JsonNode value) {
+        if (value == null) {
+            return "\u0001";
+        }
+        if (value.isNumber()) {
+            return value.decimalValue().stripTrailingZeros().toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static int typeRank(final JsonNode value) {
+        if (value == null || value.isMissingNode()) {
+            return 0;
+        }
+        if (value.isNull()) {
+            return 1;
+        }
+        if (value.isBoolean()) {
+            return 2;
+        }
+        if (value.isNumber()) {
+            return 3;
+        }
+        if (value.isTextual()) {
+            return 4;
+        }
+        if (value.isArray()) {
+            return 5;
+        }
+        return 6;
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Variables which are visible for an expression: aliases of FROM and
+ * JOIN sources of the current row and of all enclosing queries.
+ * A scope binds a single alias and refers to the enclosing one.
+ */
+class Scope {
+
+    private final Scope parent;
+    private final String alias;
+    private final JsonNode value;
+    private final Context context;
+    /**
+     * Rows of the current group, aggregates are calculated over them.
+     */
+    private final List<Scope> group;
+
+    private Scope(final Scope parent,
+                  final String alias,
+                  final JsonNode value,
+                  final Context context,
+                  final List<Scope> group) {
+        this.parent = parent;
+        this.alias = alias;
+        this.value = value;
+        this.context = context;
+        this.group = group;
+    }
+
+    static Scope root(final Collection<ObjectNode> documents, final Map<String, JsonNode> parameters) {
+        return new Scope(null, null, null, new Context(documents, parameters), null);
+    }
+
+    Scope bind(final String name, final JsonNode boundValue) {
+        return new Scope(this, name, boundValue, context, null);
+    }
+
+    Scope withGroup(final List<Scope> rows) {
+        return new Scope(this, null, null, context, rows);
+    }
+
+    boolean isBound(final String name) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (name.equals(scope.alias)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    JsonNode resolve(final String name) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (name.equals(scope.alias)) {
+                return scope.value;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Identifier [%s] could not be resolved", name));
+    }
+
+    List<Scope> getGroup() {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (scope.group != null) {
+                return scope.group;
+            }
+        }
+        throw new IllegalArgumentException("Aggregate functions are allowed only in SELECT clause");
+    }
+
+    Collection<ObjectNode> getDocuments() {
+        return context.documents;
+    }
+
+    JsonNode getParameter(final String name) {
+        if (!context.parameters.containsKey(name)) {
+            throw new IllegalArgumentException(String.format("Parameter [%s] is not defined", name));
+        }
+        return context.parameters.get(name);
+    }
+
+    private static class Context {
+        private final Collection<ObjectNode> documents;
+        private final Map<String, JsonNode> parameters;
+
+        private Context(final Collection<ObjectNode> documents, final Map<String, JsonNode> parameters) {
+            this.documents = documents;
+            this.parameters = parameters;
+        }
+    }
+}
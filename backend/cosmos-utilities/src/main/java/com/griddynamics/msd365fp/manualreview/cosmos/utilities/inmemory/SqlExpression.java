@@ -0,0 +1,370 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node of a parsed expression. Evaluation returns {@code null}
+ * if the result is undefined.
+ */
+interface SqlExpression {
+
+    JsonNode evaluate(Scope scope);
+
+    @AllArgsConstructor
+    class Literal implements SqlExpression {
+        private final JsonNode value;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            return value;
+        }
+    }
+
+    @AllArgsConstructor
+    class Parameter implements SqlExpression {
+        private final String name;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            return scope.getParameter(name);
+        }
+    }
+
+    @AllArgsConstructor
+    class Identifier implements SqlExpression {
+        final String name;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            return scope.resolve(name);
+        }
+    }
+
+    @AllArgsConstructor
+    class Property implements SqlExpression {
+        final SqlExpression target;
+        final String name;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode object = target.evaluate(scope);
+            return object != null && object.isObject() ? object.get(name) : null;
+        }
+    }
+
+    @AllArgsConstructor
+    class Index implements SqlExpression {
+        private final SqlExpression target;
+        private final SqlExpression index;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode value = target.evaluate(scope);
+            JsonNode key = index.evaluate(scope);
+            if (value == null || key == null) {
+                return null;
+            }
+            if (value.isObject() && key.isTextual()) {
+                return value.get(key.textValue());
+            }
+            if (value.isArray() && key.isIntegralNumber()) {
+                return value.get(key.intValue());
+            }
+            return null;
+        }
+    }
+
+    @AllArgsConstructor
+    class Not implements SqlExpression {
+        private final SqlExpression operand;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode value = operand.evaluate(scope);
+            return value != null && value.isBoolean() ? BooleanNode.valueOf(!value.booleanValue()) : null;
+        }
+    }
+
+    @AllArgsConstructor
+    class Negate implements SqlExpression {
+        private final SqlExpression operand;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode value = operand.evaluate(scope);
+            return value != null && value.isNumber() ? JsonValues.number(-value.doubleValue()) : null;
+        }
+    }
+
+    /**
+     * Three-valued AND and OR: a non-boolean operand is undefined.
+     */
+    @AllArgsConstructor
+    class Logical implements SqlExpression {
+        private final boolean conjunction;
+        private final SqlExpression left;
+        private final SqlExpression right;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            Boolean leftValue = toBoolean(left.evaluate(scope));
+            if (leftValue != null && leftValue != conjunction) {
+                return BooleanNode.valueOf(leftValue);
+            }
+            Boolean rightValue = toBoolean(right.evaluate(scope));
+            if (rightValue != null && rightValue != conjunction) {
+                return BooleanNode.valueOf(rightValue);
+            }
+            return leftValue == null || rightValue == null ? null : BooleanNode.valueOf(conjunction);
+        }
+
+        private static Boolean toBoolean(final JsonNode value) {
+            return value != null && value.isBoolean() ? value.booleanValue() : null;
+        }
+    }
+
+    @AllArgsConstructor
+    class Comparison implements SqlExpression {
+        private final String operator;
+        private final SqlExpression left;
+        private final SqlExpression right;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode leftValue = left.evaluate(scope);
+            JsonNode rightValue = right.evaluate(scope);
+            switch (operator) {
+                case "=":
+                    return JsonValues.bool(JsonValues.equal(leftValue, rightValue));
+                case "!=":
+                case "<>":
+                    Boolean equal = JsonValues.equal(leftValue, rightValue);
+                    return equal == null ? null : BooleanNode.valueOf(!equal);
+                default:
+                    Integer comparison = JsonValues.compare(leftValue, rightValue);
+                    return comparison == null ? null : BooleanNode.valueOf(matches(comparison));
+            }
+        }
+
+        private boolean matches(final int comparison) {
+            switch (operator) {
+                case "<":
+                    return comparison < 0;
+                case "<=":
+                    return comparison <= 0;
+                case ">":
+                    return comparison > 0;
+                case ">=":
+                    return comparison >= 0;
+                default:
+                    throw new IllegalArgumentException("Unsupported comparison operator: " + operator);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    class Arithmetic implements SqlExpression {
+        private final String operator;
+        private final SqlExpression left;
+        private final SqlExpression right;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode leftValue = left.evaluate(scope);
+            JsonNode rightValue = right.evaluate(scope);
+            if ("||".equals(operator)) {
+                return leftValue != null && leftValue.isTextual() && rightValue != null && rightValue.isTextual()
+                        ? TextNode.valueOf(leftValue.textValue() + rightValue.textValue())
+                        : null;
+            }
+            if (leftValue == null || rightValue == null || !leftValue.isNumber() || !rightValue.isNumber()) {
+                return null;
+            }
+            double a = leftValue.doubleValue();
+            double b = rightValue.doubleValue();
+            switch (operator) {
+                case "+":
+                    return JsonValues.number(a + b);
+                case "-":
+                    return JsonValues.number(a - b);
+                case "*":
+                    return JsonValues.number(a * b);
+                case "/":
+                    return JsonValues.number(a / b);
+                case "%":
+                    return JsonValues.number(a % b);
+                default:
+                    throw new IllegalArgumentException("Unsupported arithmetic operator: " + operator);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    class Coalesce implements SqlExpression {
+        private final SqlExpression left;
+        private final SqlExpression right;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode value = left.evaluate(scope);
+            return value != null ? value : right.evaluate(scope);
+        }
+    }
+
+    @AllArgsConstructor
+    class Conditional implements SqlExpression {
+        private final SqlExpression condition;
+        private final SqlExpression whenTrue;
+        private final SqlExpression whenFalse;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            return JsonValues.isTrue(condition.evaluate(scope)) ? whenTrue.evaluate(scope) : whenFalse.evaluate(scope);
+        }
+    }
+
+    @AllArgsConstructor
+    class Between implements SqlExpression {
+        private final SqlExpression value;
+        private final SqlExpression low;
+        private final SqlExpression high;
+        private final boolean negated;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode checked = value.evaluate(scope);
+            Integer fromLow = JsonValues.compare(checked, low.evaluate(scope));
+            Integer toHigh = JsonValues.compare(checked, high.evaluate(scope));
+            if (fromLow == null || toHigh == null) {
+                return null;
+            }
+            return BooleanNode.valueOf(negated ^ (fromLow >= 0 && toHigh <= 0));
+        }
+    }
+
+    @AllArgsConstructor
+    class In implements SqlExpression {
+        private final SqlExpression value;
+        private final List<SqlExpression> candidates;
+        private final boolean negated;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            JsonNode checked = value.evaluate(scope);
+            if (checked == null) {
+                return null;
+            }
+            for (SqlExpression candidate : candidates) {
+                if (JsonValues.deepEquals(checked, candidate.evaluate(scope))) {
+                    return BooleanNode.valueOf(!negated);
+                }
+            }
+            return BooleanNode.valueOf(negated);
+        }
+    }
+
+    @AllArgsConstructor
+    class FunctionCall implements SqlExpression {
+        private final String name;
+        private final List<SqlExpression> arguments;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            List<JsonNode> values = new ArrayList<>(arguments.size());
+            for (SqlExpression argument : arguments) {
+                values.add(argument.evaluate(scope));
+            }
+            return SqlFunctions.call(name, values);
+        }
+    }
+
+    @AllArgsConstructor
+    class Aggregate implements SqlExpression {
+        private final String function;
+        private final SqlExpression argument;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            List<JsonNode> values = new ArrayList<>();
+            for (Scope row : scope.getGroup()) {
+                JsonNode value = argument.evaluate(row);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            return SqlFunctions.aggregate(function, values);
+        }
+    }
+
+    @AllArgsConstructor
+    class Subquery implements SqlExpression {
+        private final SubqueryType type;
+        private final SqlQuery query;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            List<JsonNode> results = query.execute(scope);
+            switch (type) {
+                case EXISTS:
+                    return BooleanNode.valueOf(!results.isEmpty());
+                case ARRAY:
+                    ArrayNode array = JsonNodeFactory.instance.arrayNode();
+                    results.forEach(array::add);
+                    return array;
+                default:
+                    return results.isEmpty() ? null : results.get(0);
+            }
+        }
+    }
+
+    enum SubqueryType {
+        EXISTS, ARRAY, SCALAR
+    }
+
+    @AllArgsConstructor
+    class ArrayConstructor implements SqlExpression {
+        private final List<SqlExpression> elements;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            ArrayNode array = JsonNodeFactory.instance.arrayNode();
+            for (SqlExpression element : elements) {
+                JsonNode value = element.evaluate(scope);
+                if (value != null) {
+                    array.add(value);
+                }
+            }
+            return array;
+        }
+    }
+
+    @AllArgsConstructor
+    class ObjectConstructor implements SqlExpression {
+        private final List<String> names;
+        private final List<SqlExpression> values;
+
+        @Override
+        public JsonNode evaluate(final Scope scope) {
+            ObjectNode object = JsonNodeFactory.instance.objectNode();
+            for (int i = 0; i < names.size(); i++) {
+                JsonNode value = values.get(i).evaluate(scope);
+                if (value != null) {
+                    object.set(names.get(i), value);
+                }
+            }
+            return object;
+        }
+    }
+}
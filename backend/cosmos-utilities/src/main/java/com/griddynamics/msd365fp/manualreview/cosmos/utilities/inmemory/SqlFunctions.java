@@ -0,0 +1,211 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import lombok.experimental.UtilityClass;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleUnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Built-in functions of Cosmos DB SQL which are used by the application
+ * and the {@code isMatchRegexp} user-defined function. Function names
+ * are case-insensitive, UDF names start with {@code udf.}.
+ */
+@UtilityClass
+class SqlFunctions {
+
+    private static final Set<String> AGGREGATES = Set.of("count", "sum", "avg", "min", "max");
+    private static final int MAX_CACHED_PATTERNS = 1000;
+    private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+
+    static boolean isAggregate(final String name) {
+        return AGGREGATES.contains(name.toLowerCase(Locale.ROOT));
+    }
+
+    @SuppressWarnings("java:S1479")
+    static JsonNode call(final String name, final List<JsonNode> args) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "is_defined":
+                return BooleanNode.valueOf(arg(args, 0) != null);
+            case "is_null":
+                return BooleanNode.valueOf(arg(args, 0) != null && arg(args, 0).isNull());
+            case "is_bool":
+                return BooleanNode.valueOf(arg(args, 0) != null && arg(args, 0).isBoolean());
+            case "is_number":
+                return BooleanNode.valueOf(arg(args, 0) != null && arg(args, 0).isNumber());
+            case "is_string":
+                return BooleanNode.valueOf(arg(args, 0) != null && arg(args, 0).isTextual());
+            case "is_array":
+                return BooleanNode.valueOf(arg(args, 0) != null && arg(args, 0).isArray());
+            case "is_object":
+                return BooleanNode.valueOf(arg(args, 0) != null && arg(args, 0).isObject());
+            case "is_primitive":
+                return BooleanNode.valueOf(arg(args, 0) != null && arg(args, 0).isValueNode());
+            case "array_contains":
+                return arrayContains(arg(args, 0), arg(args, 1), JsonValues.isTrue(arg(args, 2)));
+            case "array_length":
+                return arg(args, 0) != null && arg(args, 0).isArray() ? LongNode.valueOf(arg(args, 0).size()) : null;
+            case "contains":
+                return stringPredicate(args, (text, part) -> text.contains(part));
+            case "startswith":
+                return stringPredicate(args, (text, part) -> text.startsWith(part));
+            case "endswith":
+                return stringPredicate(args, (text, part) -> text.endsWith(part));
+            case "index_of":
+                return isText(arg(args, 0)) && isText(arg(args, 1))
+                        ? LongNode.valueOf(arg(args, 0).textValue().indexOf(arg(args, 1).textValue()))
+                        : null;
+            case "lower":
+                return isText(arg(args, 0)) ? TextNode.valueOf(arg(args, 0).textValue().toLowerCase(Locale.ROOT)) : null;
+            case "upper":
+                return isText(arg(args, 0)) ? TextNode.valueOf(arg(args, 0).textValue().toUpperCase(Locale.ROOT)) : null;
+            case "length":
+                return isText(arg(args, 0)) ? LongNode.valueOf(arg(args, 0).textValue().length()) : null;
+            case "concat":
+                return concat(args);
+            case "tostring":
+                return toText(arg(args, 0));
+            case "regexmatch":
+            case "udf.ismatchregexp":
+                return isText(arg(args, 0)) && isText(arg(args, 1))
+                        ? BooleanNode.valueOf(pattern(arg(args, 1).textValue())
+                        .matcher(arg(args, 0).textValue())
+                        .find())
+                        : null;
+            case "floor":
+                return math(args, Math::floor);
+            case "ceiling":
+                return math(args, Math::ceil);
+            case "round":
+                return math(args, value -> (double) Math.round(value));
+            case "abs":
+                return math(args, Math::abs);
+            default:
+                throw new IllegalArgumentException(String.format("Function [%s] is not supported", name));
+        }
+    }
+
+    static JsonNode aggregate(final String name, final List<JsonNode> values) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "count":
+                return LongNode.valueOf(values.size());
+            case "sum":
+            case "avg":
+                double sum = 0;
+                for (JsonNode value : values) {
+                    if (!value.isNumber()) {
+                        return null;
+                    }
+                    sum += value.doubleValue();
+                }
+                if ("sum".equalsIgnoreCase(name)) {
+                    return JsonValues.number(sum);
+                }
+                return values.isEmpty() ? null : JsonValues.number(sum / values.size());
+            case "min":
+                return values.stream().min(JsonValues.ORDER).orElse(null);
+            case "max":
+                return values.stream().max(JsonValues.ORDER).orElse(null);
+            default:
+                throw new IllegalArgumentException(String.format("Aggregate [%s] is not supported", name));
+        }
+    }
+
+    private static JsonNode arg(final List<JsonNode> args, final int index) {
+        return index < args.size() ? args.get(index) : null;
+    }
+
+    private static boolean isText(final JsonNode value) {
+        return value != null && value.isTextual();
+    }
+
+    /**
+     * @param partial whether an object in the array should match only
+     *                the fields specified in the value
+     */
+    private static JsonNode arrayContains(final JsonNode array, final JsonNode value, final boolean partial) {
+        if (array == null || !array.isArray() || value == null) {
+            return null;
+        }
+        for (JsonNode element : array) {
+            if (partial && element.isObject() && value.isObject()
+                    ? containsFields(element, value)
+                    : JsonValues.deepEquals(element, value)) {
+                return BooleanNode.TRUE;
+            }
+        }
+        return BooleanNode.FALSE;
+    }
+
+    private static boolean containsFields(final JsonNode object, final JsonNode fields) {
+        Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> field = iterator.next();
+            if (!JsonValues.deepEquals(object.get(field.getKey()), field.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static JsonNode stringPredicate(final List<JsonNode> args, final StringPredicate predicate) {
+        JsonNode text = arg(args, 0);
+        JsonNode part = arg(args, 1);
+        if (!isText(text) || !isText(part)) {
+            return null;
+        }
+        if (JsonValues.isTrue(arg(args, 2))) {
+            return BooleanNode.valueOf(predicate.test(
+                    text.textValue().toLowerCase(Locale.ROOT),
+                    part.textValue().toLowerCase(Locale.ROOT)));
+        }
+        return BooleanNode.valueOf(predicate.test(text.textValue(), part.textValue()));
+    }
+
+    private static JsonNode concat(final List<JsonNode> args) {
+        StringBuilder result = new StringBuilder();
+        for (JsonNode value : args) {
+            if (!isText(value)) {
+                return null;
+            }
+            result.append(value.textValue());
+        }
+        return TextNode.valueOf(result.toString());
+    }
+
+    private static JsonNode toText(final JsonNode value) {
+        if (value == null) {
+            return null;
+        }
+        return TextNode.valueOf(value.isTextual() ? value.textValue() : value.toString());
+    }
+
+    private static JsonNode math(final List<JsonNode> args, final DoubleUnaryOperator function) {
+        JsonNode value = arg(args, 0);
+        return value != null && value.isNumber() ? JsonValues.number(function.applyAsDouble(value.doubleValue())) : null;
+    }
+
+    private static Pattern pattern(final String regex) {
+        if (PATTERNS.size() > MAX_CACHED_PATTERNS) {
+            PATTERNS.clear();
+        }
+        return PATTERNS.computeIfAbsent(regex, Pattern::compile);
+    }
+
+    @FunctionalInterface
+    private interface StringPredicate {
+        boolean test(String text, String part);
+    }
+}
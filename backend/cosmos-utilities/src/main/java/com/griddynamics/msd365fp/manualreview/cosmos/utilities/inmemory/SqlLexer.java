@@ -0,0 +1,188 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a Cosmos DB SQL query into tokens.
+ */
+class SqlLexer {
+
+    private static final String[] TWO_CHAR_SYMBOLS = {"!=", "<>", "<=", ">=", "||", "??"};
+    private static final String ONE_CHAR_SYMBOLS = "()[]{},.*/%+-=<>!?:";
+
+    private final String text;
+    private int position;
+
+    private SqlLexer(final String text) {
+        this.text = text;
+    }
+
+    static List<Token> tokenize(final String text) {
+        return new SqlLexer(text).tokenize();
+    }
+
+    private List<Token> tokenize() {
+        List<Token> tokens = new ArrayList<>();
+        while (true) {
+            skipWhitespace();
+            if (position >= text.length()) {
+                tokens.add(new Token(TokenType.END, "", position));
+                return tokens;
+            }
+            tokens.add(nextToken());
+        }
+    }
+
+    private Token nextToken() {
+        int start = position;
+        char c = text.charAt(position);
+        if (c == '\'' || c == '"') {
+            return new Token(TokenType.STRING, readString(c), start);
+        }
+        if (Character.isDigit(c)) {
+            return new Token(TokenType.NUMBER, readNumber(), start);
+        }
+        if (c == '@') {
+            position++;
+            return new Token(TokenType.PARAMETER, "@" + readIdentifier(), start);
+        }
+        if (isIdentifierStart(c)) {
+            return new Token(TokenType.IDENTIFIER, readIdentifier(), start);
+        }
+        for (String symbol : TWO_CHAR_SYMBOLS) {
+            if (text.startsWith(symbol, position)) {
+                position += symbol.length();
+                return new Token(TokenType.SYMBOL, symbol, start);
+            }
+        }
+        if (ONE_CHAR_SYMBOLS.indexOf(c) >= 0) {
+            position++;
+            return new Token(TokenType.SYMBOL, String.valueOf(c), start);
+        }
+        throw new IllegalArgumentException(
+                String.format("Unexpected character [%s] at position [%d] of query [%s]", c, position, text));
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length()) {
+            if (Character.isWhitespace(text.charAt(position))) {
+                position++;
+            } else if (text.startsWith("--", position)) {
+                while (position < text.length() && text.charAt(position) != '\n') {
+                    position++;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private String readString(final char quote) {
+        StringBuilder value = new StringBuilder();
+        position++;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == quote) {
+                return value.toString();
+            }
+            if (c == '\\' && position < text.length()) {
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string literal in query: " + text);
+    }
+
+    private String readNumber() {
+        int start = position;
+        while (position < text.length() && Character.isDigit(text.charAt(position))) {
+            position++;
+        }
+        if (position + 1 < text.length() && text.charAt(position) == '.'
+                && Character.isDigit(text.charAt(position + 1))) {
+            position++;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+        }
+        if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            position++;
+            if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                position++;
+            }
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+        }
+        return text.substring(start, position);
+    }
+
+    private String readIdentifier() {
+        int start = position;
+        while (position < text.length() && isIdentifierPart(text.charAt(position))) {
+            position++;
+        }
+        return text.substring(start, position);
+    }
+
+    private static boolean isIdentifierStart(final char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isIdentifierPart(final char c) {
+        return isIdentifierStart(c) || Character.isDigit(c);
+    }
+
+    enum TokenType {
+        IDENTIFIER, PARAMETER, NUMBER, STRING, SYMBOL, END
+    }
+
+    @AllArgsConstructor
+    static class Token {
+        final TokenType type;
+        final String text;
+        final int position;
+
+        boolean is(final TokenType expectedType, final String expectedText) {
+            return type == expectedType && text.equalsIgnoreCase(expectedText);
+        }
+
+        boolean isKeyword(final String keyword) {
+            return is(TokenType.IDENTIFIER, keyword);
+        }
+
+        boolean isSymbol(final String symbol) {
+            return is(TokenType.SYMBOL, symbol);
+        }
+    }
+}
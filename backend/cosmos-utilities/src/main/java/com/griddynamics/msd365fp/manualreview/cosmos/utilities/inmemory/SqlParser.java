@@ -0,0 +1,475 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.SqlLexer.Token;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.SqlLexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Recursive descent parser of the Cosmos DB SQL subset used by the
+ * application: SELECT [DISTINCT] [TOP] with VALUE, * or projections,
+ * FROM a container, an array or a subquery, JOIN over arrays and
+ * subqueries, WHERE, GROUP BY, ORDER BY and OFFSET LIMIT.
+ */
+class SqlParser {
+
+    private static final Set<String> RESERVED_WORDS = Set.of(
+            "select", "distinct", "top", "value", "from", "join", "in", "where", "group", "order", "by",
+            "asc", "desc", "offset", "limit", "as", "and", "or", "not", "between", "exists", "array",
+            "true", "false", "null", "undefined", "like");
+    private static final Set<String> COMPARISON_OPERATORS = Set.of("=", "!=", "<>", "<", "<=", ">", ">=");
+
+    private final String text;
+    private final List<Token> tokens;
+    private int position;
+    /**
+     * Number of aggregates found in the SELECT clause of the query being parsed.
+     */
+    private int aggregates;
+
+    private SqlParser(final String text) {
+        this.text = text;
+        this.tokens = SqlLexer.tokenize(text);
+    }
+
+    static SqlQuery parse(final String text) {
+        SqlParser parser = new SqlParser(text);
+        SqlQuery query = parser.parseQuery();
+        parser.expect(TokenType.END, "");
+        return query;
+    }
+
+    private SqlQuery parseQuery() {
+        int enclosingAggregates = aggregates;
+        aggregates = 0;
+        SqlQuery query = new SqlQuery();
+        expectKeyword("select");
+        if (acceptKeyword("distinct")) {
+            query.distinct = true;
+        }
+        if (acceptKeyword("top")) {
+            query.top = parsePrimary();
+        }
+        parseSelectList(query);
+        query.aggregated = aggregates > 0;
+
+        if (acceptKeyword("from")) {
+            query.from = parseSource(true);
+            while (acceptKeyword("join")) {
+                query.joins.add(parseSource(false));
+            }
+        }
+        if (acceptKeyword("where")) {
+            query.where = parseExpression();
+        }
+        if (acceptKeyword("group")) {
+            expectKeyword("by");
+            do {
+                query.groupBy.add(parseExpression());
+            } while (acceptSymbol(","));
+        }
+        if (acceptKeyword("order")) {
+            expectKeyword("by");
+            do {
+                SqlExpression expression = parseExpression();
+                boolean descending = acceptKeyword("desc");
+                if (!descending) {
+                    acceptKeyword("asc");
+                }
+                query.orderBy.add(new SqlQuery.OrderItem(expression, descending));
+            } while (acceptSymbol(","));
+        }
+        if (acceptKeyword("offset")) {
+            query.offset = parseAdditive();
+            expectKeyword("limit");
+            query.limit = parseAdditive();
+        }
+        aggregates = enclosingAggregates;
+        return query;
+    }
+
+    private void parseSelectList(final SqlQuery query) {
+        if (acceptSymbol("*")) {
+            query.selectAll = true;
+            return;
+        }
+        if (acceptKeyword("value")) {
+            query.selectValue = true;
+            query.selectItems.add(new SqlQuery.SelectItem(parseExpression(), null));
+            return;
+        }
+        int unnamed = 0;
+        do {
+            SqlExpression expression = parseExpression();
+            String name = parseAlias();
+            if (name == null) {
+                if (expression instanceof SqlExpression.Property) {
+                    name = ((SqlExpression.Property) expression).name;
+                } else if (expression instanceof SqlExpression.Identifier) {
+                    name = ((SqlExpression.Identifier) expression).name;
+                } else {
+                    name = "$" + (++unnamed);
+                }
+            }
+            query.selectItems.add(new SqlQuery.SelectItem(expression, name));
+        } while (acceptSymbol(","));
+    }
+
+    private SqlQuery.Source parseSource(final boolean root) {
+        if (acceptSymbol("(")) {
+            SqlQuery subquery = parseQuery();
+            expectSymbol(")");
+            String alias = parseAlias();
+            if (alias == null) {
+                throw error("Subquery in FROM or JOIN clause requires an alias");
+            }
+            return new SqlQuery.Source(SqlQuery.SourceType.SUBQUERY, alias, null, null, subquery);
+        }
+        String name = expectIdentifier();
+        if (acceptKeyword("in")) {
+            SqlExpression array = parseAdditive();
+            return new SqlQuery.Source(SqlQuery.SourceType.ARRAY, name, array, rootIdentifier(array), null);
+        }
+        if (!root) {
+            throw error("JOIN clause supports only iteration over arrays and subqueries");
+        }
+        String alias = parseAlias();
+        return new SqlQuery.Source(SqlQuery.SourceType.CONTAINER, alias == null ? name : alias, null, null, null);
+    }
+
+    private String parseAlias() {
+        if (acceptKeyword("as")) {
+            return expectIdentifier();
+        }
+        Token token = peek();
+        if (token.type == TokenType.IDENTIFIER && !isReserved(token)) {
+            position++;
+            return token.text;
+        }
+        return null;
+    }
+
+    private SqlExpression parseExpression() {
+        SqlExpression condition = parseCoalesce();
+        if (acceptSymbol("?")) {
+            SqlExpression whenTrue = parseExpression();
+            expectSymbol(":");
+            SqlExpression whenFalse = parseExpression();
+            return new SqlExpression.Conditional(condition, whenTrue, whenFalse);
+        }
+        return condition;
+    }
+
+    private SqlExpression parseCoalesce() {
+        SqlExpression expression = parseOr();
+        while (acceptSymbol("??")) {
+            expression = new SqlExpression.Coalesce(expression, parseOr());
+        }
+        return expression;
+    }
+
+    private SqlExpression parseOr() {
+        SqlExpression expression = parseAnd();
+        while (acceptKeyword("or")) {
+            expression = new SqlExpression.Logical(false, expression, parseAnd());
+        }
+        return expression;
+    }
+
+    private SqlExpression parseAnd() {
+        SqlExpression expression = parseNot();
+        while (acceptKeyword("and")) {
+            expression = new SqlExpression.Logical(true, expression, parseNot());
+        }
+        return expression;
+    }
+
+    private SqlExpression parseNot() {
+        if (acceptKeyword("not")) {
+            return new SqlExpression.Not(parseNot());
+        }
+        return parsePredicate();
+    }
+
+    private SqlExpression parsePredicate() {
+        SqlExpression expression = parseAdditive();
+        while (true) {
+            Token token = peek();
+            boolean negated = token.isKeyword("not")
+                    && (peek(1).isKeyword("between") || peek(1).isKeyword("in"));
+            if (negated) {
+                position++;
+            }
+            if (acceptKeyword("between")) {
+                SqlExpression low = parseAdditive();
+                expectKeyword("and");
+                SqlExpression high = parseAdditive();
+                expression = new SqlExpression.Between(expression, low, high, negated);
+            } else if (acceptKeyword("in")) {
+                expectSymbol("(");
+                List<SqlExpression> candidates = new ArrayList<>();
+                if (!acceptSymbol(")")) {
+                    do {
+                        candidates.add(parseExpression());
+                    } while (acceptSymbol(","));
+                    expectSymbol(")");
+                }
+                expression = new SqlExpression.In(expression, candidates, negated);
+            } else if (token.type == TokenType.SYMBOL && COMPARISON_OPERATORS.contains(token.text)) {
+                position++;
+                expression = new SqlExpression.Comparison(token.text, expression, parseAdditive());
+            } else {
+                return expression;
+            }
+        }
+    }
+
+    private SqlExpression parseAdditive() {
+        SqlExpression expression = parseMultiplicative();
+        while (true) {
+            Token token = peek();
+            if (token.isSymbol("+") || token.isSymbol("-") || token.isSymbol("||")) {
+                position++;
+                expression = new SqlExpression.Arithmetic(token.text, expression, parseMultiplicative());
+            } else {
+                return expression;
+            }
+        }
+    }
+
+    private SqlExpression parseMultiplicative() {
+        SqlExpression expression = parseUnary();
+        while (true) {
+            Token token = peek();
+            if (token.isSymbol("*") || token.isSymbol("/") || token.isSymbol("%")) {
+                position++;
+                expression = new SqlExpression.Arithmetic(token.text, expression, parseUnary());
+            } else {
+                return expression;
+            }
+        }
+    }
+
+    private SqlExpression parseUnary() {
+        if (acceptSymbol("!")) {
+            return new SqlExpression.Not(parseUnary());
+        }
+        if (acceptSymbol("-")) {
+            return new SqlExpression.Negate(parseUnary());
+        }
+        if (acceptSymbol("+")) {
+            return parseUnary();
+        }
+        return parsePostfix();
+    }
+
+    private SqlExpression parsePostfix() {
+        SqlExpression expression = parsePrimary();
+        while (true) {
+            if (acceptSymbol(".")) {
+                expression = new SqlExpression.Property(expression, expectIdentifier());
+            } else if (acceptSymbol("[")) {
+                SqlExpression index = parseExpression();
+                expectSymbol("]");
+                expression = new SqlExpression.Index(expression, index);
+            } else {
+                return expression;
+            }
+        }
+    }
+
+    private SqlExpression parsePrimary() {
+        Token token = next();
+        switch (token.type) {
+            case NUMBER:
+                return new SqlExpression.Literal(token.text.matches("\\d+")
+                        ? LongNode.valueOf(Long.parseLong(token.text))
+                        : DoubleNode.valueOf(Double.parseDouble(token.text)));
+            case STRING:
+                return new SqlExpression.Literal(TextNode.valueOf(token.text));
+            case PARAMETER:
+                return new SqlExpression.Parameter(token.text);
+            case SYMBOL:
+                return parseSymbolPrimary(token);
+            case IDENTIFIER:
+                return parseIdentifierPrimary(token);
+            default:
+                throw error("Unexpected end of query");
+        }
+    }
+
+    private SqlExpression parseSymbolPrimary(final Token token) {
+        if (token.isSymbol("(")) {
+            if (peek().isKeyword("select")) {
+                SqlQuery subquery = parseQuery();
+                expectSymbol(")");
+                return new SqlExpression.Subquery(SqlExpression.SubqueryType.SCALAR, subquery);
+            }
+            SqlExpression expression = parseExpression();
+            expectSymbol(")");
+            return expression;
+        }
+        if (token.isSymbol("[")) {
+            List<SqlExpression> elements = new ArrayList<>();
+            if (!acceptSymbol("]")) {
+                do {
+                    elements.add(parseExpression());
+                } while (acceptSymbol(","));
+                expectSymbol("]");
+            }
+            return new SqlExpression.ArrayConstructor(elements);
+        }
+        if (token.isSymbol("{")) {
+            List<String> names = new ArrayList<>();
+            List<SqlExpression> values = new ArrayList<>();
+            if (!acceptSymbol("}")) {
+                do {
+                    Token name = next();
+                    if (name.type != TokenType.IDENTIFIER && name.type != TokenType.STRING) {
+                        throw error("Property name expected");
+                    }
+                    names.add(name.text);
+                    expectSymbol(":");
+                    values.add(parseExpression());
+                } while (acceptSymbol(","));
+                expectSymbol("}");
+            }
+            return new SqlExpression.ObjectConstructor(names, values);
+        }
+        throw error("Unexpected symbol " + token.text);
+    }
+
+    private SqlExpression parseIdentifierPrimary(final Token token) {
+        String lowerName = token.text.toLowerCase(Locale.ROOT);
+        switch (lowerName) {
+            case "true":
+                return new SqlExpression.Literal(BooleanNode.TRUE);
+            case "false":
+                return new SqlExpression.Literal(BooleanNode.FALSE);
+            case "null":
+                return new SqlExpression.Literal(NullNode.getInstance());
+            case "undefined":
+                return new SqlExpression.Literal(null);
+            case "exists":
+            case "array":
+                expectSymbol("(");
+                SqlQuery subquery = parseQuery();
+                expectSymbol(")");
+                return new SqlExpression.Subquery(
+                        "exists".equals(lowerName) ? SqlExpression.SubqueryType.EXISTS : SqlExpression.SubqueryType.ARRAY,
+                        subquery);
+            default:
+                break;
+        }
+        String functionName = token.text;
+        if ("udf".equals(lowerName) && peek().isSymbol(".") && peek(2).isSymbol("(")) {
+            position++;
+            functionName = "udf." + expectIdentifier();
+        }
+        if (!acceptSymbol("(")) {
+            return new SqlExpression.Identifier(token.text);
+        }
+        List<SqlExpression> arguments = new ArrayList<>();
+        if (!acceptSymbol(")")) {
+            do {
+                arguments.add(parseExpression());
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+        }
+        if (SqlFunctions.isAggregate(functionName)) {
+            if (arguments.size() != 1) {
+                throw error("Aggregate function requires a single argument");
+            }
+            aggregates++;
+            return new SqlExpression.Aggregate(functionName, arguments.get(0));
+        }
+        return new SqlExpression.FunctionCall(functionName, arguments);
+    }
+
+    /**
+     * @return the identifier which the path expression starts with
+     * or null if the expression is not a path
+     */
+    private static String rootIdentifier(final SqlExpression expression) {
+        SqlExpression current = expression;
+        while (current instanceof SqlExpression.Property) {
+            current = ((SqlExpression.Property) current).target;
+        }
+        return current instanceof SqlExpression.Identifier ? ((SqlExpression.Identifier) current).name : null;
+    }
+
+    private static boolean isReserved(final Token token) {
+        return RESERVED_WORDS.contains(token.text.toLowerCase(Locale.ROOT));
+    }
+
+    private Token peek() {
+        return peek(0);
+    }
+
+    private Token peek(final int offset) {
+        return tokens.get(Math.min(position + offset, tokens.size() - 1));
+    }
+
+    private Token next() {
+        Token token = peek();
+        if (token.type != TokenType.END) {
+            position++;
+        }
+        return token;
+    }
+
+    private boolean acceptKeyword(final String keyword) {
+        if (peek().isKeyword(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptSymbol(final String symbol) {
+        if (peek().isSymbol(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectKeyword(final String keyword) {
+        expect(TokenType.IDENTIFIER, keyword);
+    }
+
+    private void expectSymbol(final String symbol) {
+        expect(TokenType.SYMBOL, symbol);
+    }
+
+    private void expect(final TokenType type, final String expected) {
+        if (!peek().is(type, expected)) {
+            throw error(String.format("[%s] expected", type == TokenType.END ? "end of query" : expected));
+        }
+        position++;
+    }
+
+    private String expectIdentifier() {
+        Token token = next();
+        if (token.type != TokenType.IDENTIFIER) {
+            throw error("Identifier expected");
+        }
+        return token.text;
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(String.format("%s at position [%d] of query [%s]",
+                message, peek().position, text));
+    }
+}
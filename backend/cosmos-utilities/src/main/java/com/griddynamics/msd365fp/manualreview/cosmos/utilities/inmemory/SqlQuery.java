@@ -0,0 +1,239 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Parsed SELECT query. Clauses are applied in the same order as by
+ * Cosmos DB: FROM and JOIN, WHERE, GROUP BY or ORDER BY, projection,
+ * DISTINCT and finally OFFSET LIMIT or TOP.
+ */
+class SqlQuery {
+
+    boolean distinct;
+    SqlExpression top;
+    boolean selectValue;
+    boolean selectAll;
+    boolean aggregated;
+    final List<SelectItem> selectItems = new ArrayList<>();
+    Source from;
+    final List<Source> joins = new ArrayList<>();
+    SqlExpression where;
+    final List<SqlExpression> groupBy = new ArrayList<>();
+    final List<OrderItem> orderBy = new ArrayList<>();
+    SqlExpression offset;
+    SqlExpression limit;
+
+    /**
+     * @param parent the scope of the enclosing query or the root scope
+     * @return results of the query
+     */
+    List<JsonNode> execute(final Scope parent) {
+        List<Scope> rows = sourceRows(parent);
+        if (where != null) {
+            rows = rows.stream()
+                    .filter(row -> JsonValues.isTrue(where.evaluate(row)))
+                    .collect(Collectors.toList());
+        }
+
+        List<JsonNode> results = new ArrayList<>();
+        if (aggregated || !groupBy.isEmpty()) {
+            for (List<Scope> group : group(rows).values()) {
+                Scope groupScope = (group.isEmpty() ? parent : group.get(0)).withGroup(group);
+                addProjection(results, groupScope);
+            }
+        } else {
+            for (Scope row : orderBy.isEmpty() ? rows : sort(rows)) {
+                addProjection(results, row);
+            }
+        }
+
+        if (distinct) {
+            Set<String> keys = new HashSet<>();
+            results.removeIf(result -> !keys.add(JsonValues.key(result)));
+        }
+        return slice(results, parent);
+    }
+
+    private List<Scope> sourceRows(final Scope parent) {
+        if (from == null) {
+            return List.of(parent);
+        }
+        List<Scope> rows = from.rows(parent, true);
+        for (Source join : joins) {
+            List<Scope> joined = new ArrayList<>();
+            for (Scope row : rows) {
+                joined.addAll(join.rows(row, false));
+            }
+            rows = joined;
+        }
+        return rows;
+    }
+
+    private Map<String, List<Scope>> group(final List<Scope> rows) {
+        Map<String, List<Scope>> groups = new LinkedHashMap<>();
+        if (groupBy.isEmpty()) {
+            groups.put("", rows);
+            return groups;
+        }
+        for (Scope row : rows) {
+            List<JsonNode> key = new ArrayList<>(groupBy.size());
+            for (SqlExpression expression : groupBy) {
+                key.add(expression.evaluate(row));
+            }
+            groups.computeIfAbsent(JsonValues.key(key), k -> new ArrayList<>()).add(row);
+        }
+        return groups;
+    }
+
+    private List<Scope> sort(final List<Scope> rows) {
+        List<SortableRow> sortable = new ArrayList<>(rows.size());
+        for (Scope row : rows) {
+            List<JsonNode> keys = new ArrayList<>(orderBy.size());
+            for (OrderItem item : orderBy) {
+                keys.add(item.expression.evaluate(row));
+            }
+            sortable.add(new SortableRow(row, keys));
+        }
+        Comparator<SortableRow> comparator = (left, right) -> {
+            for (int i = 0; i < orderBy.size(); i++) {
+                int comparison = JsonValues.ORDER.compare(left.keys.get(i), right.keys.get(i));
+                if (comparison != 0) {
+                    return orderBy.get(i).descending ? -comparison : comparison;
+                }
+            }
+            return 0;
+        };
+        sortable.sort(comparator);
+        return sortable.stream().map(row -> row.scope).collect(Collectors.toList());
+    }
+
+    private void addProjection(final List<JsonNode> results, final Scope row) {
+        if (selectAll) {
+            results.add(row.resolve(from.alias));
+            return;
+        }
+        if (selectValue) {
+            JsonNode value = selectItems.get(0).expression.evaluate(row);
+            if (value != null) {
+                results.add(value);
+            }
+            return;
+        }
+        ObjectNode object = JsonNodeFactory.instance.objectNode();
+        for (SelectItem item : selectItems) {
+            JsonNode value = item.expression.evaluate(row);
+            if (value != null) {
+                object.set(item.name, value);
+            }
+        }
+        results.add(object);
+    }
+
+    private List<JsonNode> slice(final List<JsonNode> results, final Scope parent) {
+        int skip = offset == null ? 0 : toCount(offset, parent);
+        int count = results.size();
+        if (limit != null) {
+            count = toCount(limit, parent);
+        } else if (top != null) {
+            count = toCount(top, parent);
+        }
+        if (skip >= results.size()) {
+            return List.of();
+        }
+        return results.subList(skip, (int) Math.min(results.size(), (long) skip + count));
+    }
+
+    private static int toCount(final SqlExpression expression, final Scope scope) {
+        JsonNode value = expression.evaluate(scope);
+        if (value == null || !value.isIntegralNumber() || value.intValue() < 0) {
+            throw new IllegalArgumentException("OFFSET, LIMIT and TOP require non-negative integer values");
+        }
+        return value.intValue();
+    }
+
+    @AllArgsConstructor
+    static class SelectItem {
+        final SqlExpression expression;
+        final String name;
+    }
+
+    @AllArgsConstructor
+    static class OrderItem {
+        final SqlExpression expression;
+        final boolean descending;
+    }
+
+    @AllArgsConstructor
+    private static class SortableRow {
+        private final Scope scope;
+        private final List<JsonNode> keys;
+    }
+
+    enum SourceType {
+        CONTAINER, ARRAY, SUBQUERY
+    }
+
+    /**
+     * Source of FROM or JOIN clause: documents of the container,
+     * elements of an array ({@code x IN expression}) or results of
+     * a subquery. Array iteration in FROM clause may refer to the
+     * container, e.g. {@code FROM t IN c.tags}.
+     */
+    @AllArgsConstructor
+    static class Source {
+        final SourceType type;
+        final String alias;
+        final SqlExpression expression;
+        final String containerAlias;
+        final SqlQuery subquery;
+
+        List<Scope> rows(final Scope scope, final boolean root) {
+            List<Scope> rows = new ArrayList<>();
+            switch (type) {
+                case CONTAINER:
+                    for (ObjectNode document : scope.getDocuments()) {
+                        rows.add(scope.bind(alias, document));
+                    }
+                    break;
+                case ARRAY:
+                    if (root && containerAlias != null && !scope.isBound(containerAlias)) {
+                        for (ObjectNode document : scope.getDocuments()) {
+                            addElements(rows, scope.bind(containerAlias, document));
+                        }
+                    } else {
+                        addElements(rows, scope);
+                    }
+                    break;
+                default:
+                    for (JsonNode result : subquery.execute(scope)) {
+                        rows.add(scope.bind(alias, result));
+                    }
+            }
+            return rows;
+        }
+
+        private void addElements(final List<Scope> rows, final Scope scope) {
+            JsonNode array = expression.evaluate(scope);
+            if (array != null && array.isArray()) {
+                for (JsonNode element : array) {
+                    rows.add(scope.bind(alias, element));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.model.ItemLabel;
+import com.griddynamics.msd365fp.manualreview.model.Label;
+import com.griddynamics.msd365fp.manualreview.model.dfp.MainPurchase;
+import com.griddynamics.msd365fp.manualreview.model.dfp.PreviousPurchase;
+import com.griddynamics.msd365fp.manualreview.model.dfp.Product;
+import com.griddynamics.msd365fp.manualreview.model.dfp.User;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding of Cosmos DB query results through an intermediate
+ * string with the direct tree decoding used by
+ * {@link ExtendedCosmosContainer#castCosmosObjectToClassInstance(Object, Class)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CosmosObjectDecodingBenchmark {
+
+    private static final String[] BASIC_ITEM_INFO_FIELDS = {
+            "id", "imported", "enriched", "active", "label", "queueIds", "lock", "escalation", "hold"};
+
+    @Param({"0", "20"})
+    private int historySize;
+
+    private ObjectMapper jsonMapper;
+    private ExtendedCosmosContainer container;
+    private JsonNode item;
+    private JsonNode basicItemInfo;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        container = new ExtendedCosmosContainer(null, jsonMapper);
+        item = jsonMapper.valueToTree(sampleItem(historySize));
+        ObjectNode projection = jsonMapper.createObjectNode();
+        for (String field : BASIC_ITEM_INFO_FIELDS) {
+            projection.set(field, item.get(field));
+        }
+        basicItemInfo = projection;
+    }
+
+    @Benchmark
+    public Item itemThroughString() throws IOException {
+        return jsonMapper.readValue(item.toString(), Item.class);
+    }
+
+    @Benchmark
+    public Optional<Item> itemThroughTree() {
+        return container.castCosmosObjectToClassInstance(item, Item.class);
+    }
+
+    @Benchmark
+    public Item basicItemInfoThroughString() throws IOException {
+        return jsonMapper.readValue(basicItemInfo.toString(), Item.class);
+    }
+
+    @Benchmark
+    public Optional<Item> basicItemInfoThroughTree() {
+        return container.castCosmosObjectToClassInstance(basicItemInfo, Item.class);
+    }
+
+    private static Item sampleItem(int historySize) {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        User user = new User();
+        user.setUserId("user-1");
+        user.setEmail("user@example.com");
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setCountry("US");
+        user.setCreationDate(now.minusYears(1));
+
+        Product product = new Product();
+        product.setProductId("product-1");
+        product.setProductName("Sample product");
+        product.setSku("sku-1");
+        product.setSalesPrice(BigDecimal.TEN);
+        product.setQuantity(BigDecimal.ONE);
+
+        List<PreviousPurchase> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            PreviousPurchase previousPurchase = new PreviousPurchase();
+            previousPurchase.setPurchaseId("purchase-" + i);
+            previousPurchase.setOriginalOrderId("order-" + i);
+            previousPurchase.setMerchantLocalDate(now.minusDays(i));
+            previousPurchase.setTotalAmount(BigDecimal.valueOf(i));
+            previousPurchase.setTotalAmountInUSD(BigDecimal.valueOf(i));
+            previousPurchase.setCurrency("USD");
+            previousPurchase.setRiskScore(i % 1000);
+            previousPurchase.setLastMerchantStatus("Approved");
+            previousPurchase.setLastMerchantStatusDate(now.minusDays(i));
+            history.add(previousPurchase);
+        }
+
+        MainPurchase purchase = new MainPurchase();
+        purchase.setPurchaseId("purchase-main");
+        purchase.setOriginalOrderId("order-main");
+        purchase.setMerchantLocalDate(now);
+        purchase.setTotalAmount(BigDecimal.TEN);
+        purchase.setTotalAmountInUSD(BigDecimal.TEN);
+        purchase.setCurrency("USD");
+        purchase.setUser(user);
+        purchase.setProductList(List.of(product));
+        purchase.setPreviousPurchaseList(history);
+
+        return Item.builder()
+                .id("purchase-main")
+                .imported(now)
+                .enriched(now)
+                .updated(now)
+                .active(true)
+                .label(new ItemLabel(Label.GOOD, "analyst-1", "queue-1", "view-1", now))
+                .tags(Set.of("tag-1", "tag-2"))
+                .queueIds(Set.of("queue-1", "queue-2"))
+                .purchase(purchase)
+                .build();
+    }
+}
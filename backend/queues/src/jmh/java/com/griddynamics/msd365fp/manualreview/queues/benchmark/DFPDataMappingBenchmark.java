@@ -0,0 +1,209 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.benchmark;
+
+import com.griddynamics.msd365fp.manualreview.model.dfp.*;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.*;
+import com.griddynamics.msd365fp.manualreview.queues.config.DFPModelMapperConfig;
+import com.griddynamics.msd365fp.manualreview.queues.util.DFPDataMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping of the data of a purchase traversal by the
+ * {@code dfpModelMapper} with {@link DFPDataMapper}. Run it with
+ * {@code -prof gc} to compare allocations as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DFPDataMappingBenchmark {
+
+    private ModelMapper modelMapper;
+    private PurchaseNodeData purchaseNode;
+    private UserNodeData userNode;
+    private DeviceContextNodeData deviceContextNode;
+    private PaymentInstrumentNodeData paymentInstrumentNode;
+    private AddressNodeData addressNode;
+    private BankEventNodeData bankEventNode;
+    private ProductNodeData productNode;
+    private PurchaseUserEdgeData userEdge;
+    private PurchaseDeviceContextEdgeData deviceContextEdge;
+    private PurchasePaymentInstrumentEdgeData paymentInstrumentEdge;
+    private PurchaseAddressEdgeData addressEdge;
+    private PurchaseProductEdgeData productEdge;
+    private PurchaseStatusEdgeData statusEdge;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new DFPModelMapperConfig().dfpModelMapper();
+        OffsetDateTime now = OffsetDateTime.now();
+
+        purchaseNode = new PurchaseNodeData();
+        purchaseNode.setPurchaseId("purchase-1");
+        purchaseNode.setOriginalOrderId("order-1");
+        purchaseNode.setMerchantLocalDate(now);
+        purchaseNode.setCustomerLocalDate(now);
+        purchaseNode.setTotalAmount(120.5);
+        purchaseNode.setTotalAmountInUSD(120.5);
+        purchaseNode.setCurrency("USD");
+        purchaseNode.setRiskScore(350);
+        purchaseNode.setReasonCodes("CODE1,CODE2");
+        purchaseNode.setMerchantRuleDecision("Approve");
+        purchaseNode.setAdditionalParam("CustomData.EmailConfirmed", "true");
+
+        userNode = new UserNodeData();
+        userNode.setUserId("user-1");
+        userNode.setEmail("user@example.com");
+        userNode.setFirstName("John");
+        userNode.setLastName("Doe");
+        userNode.setCountry("US");
+        userNode.setCreationDate(now.minusYears(1));
+        userNode.setTotalSpend(1000.0);
+        userNode.setTotalTransactions(10.0);
+        userNode.setIsEmailValidated(true);
+
+        deviceContextNode = new DeviceContextNodeData();
+        deviceContextNode.setDeviceContextId("device-1");
+        deviceContextNode.setUserAgent("Mozilla/5.0");
+        deviceContextNode.setIpCountry("US");
+        deviceContextNode.setIpLatitude(47.6);
+        deviceContextNode.setIpLongitude(-122.3);
+
+        paymentInstrumentNode = new PaymentInstrumentNodeData();
+        paymentInstrumentNode.setPaymentInstrumentId("pi-1");
+        paymentInstrumentNode.setType("CreditCard");
+        paymentInstrumentNode.setCardType("Visa");
+        paymentInstrumentNode.setBin("411111");
+        paymentInstrumentNode.setLastFourDigits("1111");
+        paymentInstrumentNode.setCreationDate(now.minusMonths(6));
+
+        addressNode = new AddressNodeData();
+        addressNode.setAddressId("address-1");
+        addressNode.setStreet1("1 Main St");
+        addressNode.setCity("Seattle");
+        addressNode.setState("WA");
+        addressNode.setZipCode("98101");
+        addressNode.setCountry("US");
+
+        bankEventNode = new BankEventNodeData();
+        bankEventNode.setBankEventId("bank-event-1");
+        bankEventNode.setType("Auth");
+        bankEventNode.setStatus("Approved");
+        bankEventNode.setBankEventTimestamp(now);
+
+        productNode = new ProductNodeData();
+        productNode.setProductId("product-1");
+        productNode.setProductName("Sample product");
+        productNode.setSalesPrice(120.5);
+        productNode.setCurrency("USD");
+
+        userEdge = new PurchaseUserEdgeData();
+        userEdge.setPurchaseId("purchase-1");
+        userEdge.setUserId("user-1");
+        userEdge.setMerchantLocalDate(now);
+
+        deviceContextEdge = new PurchaseDeviceContextEdgeData();
+        deviceContextEdge.setPurchaseId("purchase-1");
+        deviceContextEdge.setDeviceContextId("device-1");
+        deviceContextEdge.setIpAddress("10.0.0.1");
+
+        paymentInstrumentEdge = new PurchasePaymentInstrumentEdgeData();
+        paymentInstrumentEdge.setPurchaseId("purchase-1");
+        paymentInstrumentEdge.setPaymentInstrumentId("pi-1");
+        paymentInstrumentEdge.setPurchaseAmount(120.5);
+        paymentInstrumentEdge.setPurchaseAmountInUSD(120.5);
+
+        addressEdge = new PurchaseAddressEdgeData();
+        addressEdge.setPurchaseId("purchase-1");
+        addressEdge.setAddressId("address-1");
+        addressEdge.setType("Shipping");
+        addressEdge.setFirstName("John");
+
+        productEdge = new PurchaseProductEdgeData();
+        productEdge.setPurchaseId("purchase-1");
+        productEdge.setProductId("product-1");
+        productEdge.setQuantity(1.0);
+        productEdge.setPurchasePrice(120.5);
+
+        statusEdge = new PurchaseStatusEdgeData();
+        statusEdge.setPurchaseId("purchase-1");
+        statusEdge.setStatusType("Approved");
+        statusEdge.setStatusDate(now);
+    }
+
+    @Benchmark
+    public void modelMapper(final Blackhole blackhole) {
+        MainPurchase purchase = new MainPurchase();
+        AssesmentResult assesmentResult = new AssesmentResult();
+        User user = new User();
+        DeviceContext deviceContext = new DeviceContext();
+        PaymentInstrument paymentInstrument = new PaymentInstrument();
+        Address address = new Address();
+        BankEvent bankEvent = new BankEvent();
+        Product product = new Product();
+        PurchaseStatus purchaseStatus = new PurchaseStatus();
+
+        modelMapper.map(purchaseNode, purchase);
+        modelMapper.map(purchaseNode, assesmentResult);
+        modelMapper.map(userNode, user);
+        modelMapper.map(userEdge, user);
+        modelMapper.map(deviceContextNode, deviceContext);
+        modelMapper.map(deviceContextEdge, deviceContext);
+        modelMapper.map(paymentInstrumentNode, paymentInstrument);
+        modelMapper.map(paymentInstrumentEdge, paymentInstrument);
+        modelMapper.map(addressNode, address);
+        modelMapper.map(addressEdge, address);
+        modelMapper.map(bankEventNode, bankEvent);
+        modelMapper.map(productNode, product);
+        modelMapper.map(productEdge, product);
+        modelMapper.map(statusEdge, purchaseStatus);
+        PreviousPurchase previousPurchase = modelMapper.map(purchaseNode, PreviousPurchase.class);
+
+        consume(blackhole, purchase, assesmentResult, user, deviceContext, paymentInstrument, address, bankEvent,
+                product, purchaseStatus, previousPurchase);
+    }
+
+    @Benchmark
+    public void dataMapper(final Blackhole blackhole) {
+        MainPurchase purchase = new MainPurchase();
+        AssesmentResult assesmentResult = new AssesmentResult();
+        User user = new User();
+        DeviceContext deviceContext = new DeviceContext();
+        PaymentInstrument paymentInstrument = new PaymentInstrument();
+        Address address = new Address();
+        BankEvent bankEvent = new BankEvent();
+        Product product = new Product();
+        PurchaseStatus purchaseStatus = new PurchaseStatus();
+
+        DFPDataMapper.map(purchaseNode, purchase);
+        DFPDataMapper.map(purchaseNode, assesmentResult);
+        DFPDataMapper.map(userNode, user);
+        DFPDataMapper.map(userEdge, user);
+        DFPDataMapper.map(deviceContextNode, deviceContext);
+        DFPDataMapper.map(deviceContextEdge, deviceContext);
+        DFPDataMapper.map(paymentInstrumentNode, paymentInstrument);
+        DFPDataMapper.map(paymentInstrumentEdge, paymentInstrument);
+        DFPDataMapper.map(addressNode, address);
+        DFPDataMapper.map(addressEdge, address);
+        DFPDataMapper.map(bankEventNode, bankEvent);
+        DFPDataMapper.map(productNode, product);
+        DFPDataMapper.map(productEdge, product);
+        DFPDataMapper.map(statusEdge, purchaseStatus);
+        PreviousPurchase previousPurchase = DFPDataMapper.toPreviousPurchase(purchaseNode);
+
+        consume(blackhole, purchase, assesmentResult, user, deviceContext, paymentInstrument, address, bankEvent,
+                product, purchaseStatus, previousPurchase);
+    }
+
+    private static void consume(final Blackhole blackhole, final Object... results) {
+        for (Object result : results) {
+            blackhole.consume(result);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.ExplorerEntity;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.PurchaseNodeData;
+import com.griddynamics.msd365fp.manualreview.queues.util.ExplorerEntityDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding of a user traversal by the {@link ObjectMapper} with
+ * the full and the purchase history decoding by {@link ExplorerEntityDecoder}.
+ * Run it with {@code -prof gc} to compare allocations as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExplorerEntityDecodingBenchmark {
+
+    private static final int HISTORY_LIMIT = 100;
+
+    @Param({"50", "500", "5000"})
+    private int purchases;
+
+    private ObjectMapper mapper;
+    private ExplorerEntityDecoder traversalDecoder;
+    private ExplorerEntityDecoder userHistoryDecoder;
+    private byte[] traversal;
+
+    @Setup
+    public void setUp() {
+        mapper = new Jackson2ObjectMapperBuilder().build();
+        traversalDecoder = ExplorerEntityDecoder.builder()
+                .mapper(mapper)
+                .build();
+        userHistoryDecoder = ExplorerEntityDecoder.builder()
+                .mapper(mapper)
+                .nodeNames(Set.of(PurchaseNodeData.NODE_NAME))
+                .skipEdges(true)
+                .nodeLimits(Map.of(PurchaseNodeData.NODE_NAME, HISTORY_LIMIT))
+                .nodePriority(Comparator.comparing(
+                        node -> ((PurchaseNodeData) node.getData()).getMerchantLocalDate()))
+                .build();
+
+        OffsetDateTime time = OffsetDateTime.of(2021, 3, 14, 12, 0, 0, 0, ZoneOffset.UTC);
+        StringBuilder nodes = new StringBuilder("{\"nodeIdAttribute\":\"UserId\",\"id\":\"user-1\",\"name\":\"User\"," +
+                "\"data\":{\"UserId\":\"user-1\",\"Email\":\"user@example.com\",\"TotalSpend\":1000.0}}");
+        StringBuilder edges = new StringBuilder();
+        for (int i = 0; i < purchases; i++) {
+            nodes.append(",{\"nodeIdAttribute\":\"PurchaseId\",\"id\":\"purchase-").append(i)
+                    .append("\",\"name\":\"Purchase\",\"data\":{\"PurchaseId\":\"purchase-").append(i)
+                    .append("\",\"OriginalOrderId\":\"order-").append(i)
+                    .append("\",\"MerchantLocalDate\":\"").append(time.minusMinutes(i * 37L % 50000))
+                    .append("\",\"TotalAmount\":120.5,\"TotalAmountInUSD\":120.5,\"Currency\":\"USD\"," +
+                            "\"RiskScore\":350,\"ReasonCodes\":\"CODE1,CODE2\",\"CustomData.Channel\":\"Web\"}}");
+            nodes.append(",{\"nodeIdAttribute\":\"PaymentInstrumentId\",\"id\":\"pi-").append(i)
+                    .append("\",\"name\":\"PaymentInstrument\",\"data\":{\"PaymentInstrumentId\":\"pi-").append(i)
+                    .append("\",\"Type\":\"CreditCard\",\"CardType\":\"Visa\",\"BIN\":\"411111\"}}");
+            if (i > 0) {
+                edges.append(',');
+            }
+            edges.append("{\"sourceNode\":\"purchase-").append(i).append("\",\"destinationNode\":\"user-1\"," +
+                    "\"edgeIdAttributeList\":[\"PurchaseId\",\"UserId\"],\"name\":\"PurchaseUser\"," +
+                    "\"data\":{\"PurchaseId\":\"purchase-").append(i).append("\",\"UserId\":\"user-1\"}}");
+        }
+        traversal = ("{\"nodes\":[" + nodes + "],\"edges\":[" + edges + "]}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ExplorerEntity objectMapper() throws IOException {
+        return mapper.readValue(traversal, ExplorerEntity.class);
+    }
+
+    @Benchmark
+    public ExplorerEntity traversalDecoder() throws IOException {
+        return traversalDecoder.decode(traversal);
+    }
+
+    @Benchmark
+    public ExplorerEntity userHistoryDecoder() throws IOException {
+        return userHistoryDecoder.decode(traversal);
+    }
+}
@@ -0,0 +1,199 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.benchmark;
+
+import com.griddynamics.msd365fp.manualreview.model.dfp.CalculatedFields;
+import com.griddynamics.msd365fp.manualreview.model.dfp.DeviceContext;
+import com.griddynamics.msd365fp.manualreview.model.dfp.PaymentInstrument;
+import com.griddynamics.msd365fp.manualreview.model.dfp.PreviousPurchase;
+import com.griddynamics.msd365fp.manualreview.model.dfp.Velocity;
+import com.griddynamics.msd365fp.manualreview.queues.util.VelocityAggregator;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * Compares the calculation of velocities by filtering previous purchases
+ * for each window and each metric with the single pass of
+ * {@link VelocityAggregator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VelocityAggregationBenchmark {
+
+    private static final String[] STATUSES = {"Approved", "Approved", "Approved", "Rejected", "Failed", "Pending"};
+
+    @Param({"20", "200", "2000"})
+    private int historySize;
+
+    private OffsetDateTime time;
+    private List<PreviousPurchase> history;
+    private Set<String> currentPaymentInstrumentIds;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(historySize);
+        time = OffsetDateTime.now();
+        currentPaymentInstrumentIds = Set.of("pi-0", "pi-1");
+        history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            PreviousPurchase purchase = new PreviousPurchase();
+            purchase.setPurchaseId("purchase-" + i);
+            if (random.nextInt(4) == 0) {
+                purchase.setOriginalOrderId("purchase-" + random.nextInt(i + 1));
+            }
+            // the history spans a month with a denser last week
+            purchase.setMerchantLocalDate(random.nextBoolean()
+                    ? time.minusMinutes(random.nextInt(60 * 24 * 7))
+                    : time.minusMinutes(random.nextInt(60 * 24 * 30)));
+            purchase.setTotalAmountInUSD(BigDecimal.valueOf(random.nextInt(100000), 2));
+            purchase.setLastMerchantStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            PaymentInstrument paymentInstrument = new PaymentInstrument();
+            paymentInstrument.setPaymentInstrumentId("pi-" + random.nextInt(10));
+            purchase.setPaymentInstrumentList(List.of(paymentInstrument));
+            DeviceContext deviceContext = new DeviceContext();
+            deviceContext.setIpCountry("C" + random.nextInt(5));
+            purchase.setDeviceContext(deviceContext);
+            history.add(purchase);
+        }
+    }
+
+    @Benchmark
+    public CalculatedFields streams() {
+        CalculatedFields calculatedFields = new CalculatedFields();
+        calculateWithStreams(calculatedFields);
+        return calculatedFields;
+    }
+
+    @Benchmark
+    public CalculatedFields singlePass() {
+        CalculatedFields calculatedFields = new CalculatedFields();
+        VelocityAggregator.aggregate(history, time, currentPaymentInstrumentIds, calculatedFields);
+        return calculatedFields;
+    }
+
+    /**
+     * The calculation which was used in the item enrichment before
+     * {@link VelocityAggregator}.
+     */
+    private void calculateWithStreams(final CalculatedFields calculatedFields) {
+        Set<PreviousPurchase> lifetime = latestOfOrders(history);
+        Set<PreviousPurchase> week = latestOfOrders(history.stream()
+                .filter(pp -> pp.getMerchantLocalDate().isAfter(time.minusWeeks(1)))
+                .collect(Collectors.toList()));
+        Set<PreviousPurchase> day = latestOfOrders(week.stream()
+                .filter(pp -> pp.getMerchantLocalDate().isAfter(time.minusDays(1)))
+                .collect(Collectors.toList()));
+        Set<PreviousPurchase> hour = latestOfOrders(day.stream()
+                .filter(pp -> pp.getMerchantLocalDate().isAfter(time.minusHours(1)))
+                .collect(Collectors.toList()));
+
+        calculatedFields.setTransactionCount(new Velocity<>(
+                (long) hour.size(), (long) day.size(), (long) week.size(), (long) lifetime.size()));
+        calculatedFields.setTransactionAmount(new Velocity<>(
+                sum(hour), sum(day), sum(week), sum(lifetime)));
+
+        Set<PreviousPurchase> hourRejected = withStatus(hour, "Rejected");
+        Set<PreviousPurchase> dayRejected = withStatus(day, "Rejected");
+        Set<PreviousPurchase> weekRejected = withStatus(week, "Rejected");
+        Set<PreviousPurchase> lifetimeRejected = withStatus(lifetime, "Rejected");
+        calculatedFields.setRejectedTransactionCount(new Velocity<>((long) hourRejected.size(),
+                (long) dayRejected.size(), (long) weekRejected.size(), (long) lifetimeRejected.size()));
+        calculatedFields.setRejectedTransactionAmount(new Velocity<>(
+                sum(hourRejected), sum(dayRejected), sum(weekRejected), sum(lifetimeRejected)));
+
+        Set<PreviousPurchase> hourFailed = withStatus(hour, "Failed");
+        Set<PreviousPurchase> dayFailed = withStatus(day, "Failed");
+        Set<PreviousPurchase> weekFailed = withStatus(week, "Failed");
+        Set<PreviousPurchase> lifetimeFailed = withStatus(lifetime, "Failed");
+        calculatedFields.setFailedTransactionCount(new Velocity<>((long) hourFailed.size(),
+                (long) dayFailed.size(), (long) weekFailed.size(), (long) lifetimeFailed.size()));
+        calculatedFields.setFailedTransactionAmount(new Velocity<>(
+                sum(hourFailed), sum(dayFailed), sum(weekFailed), sum(lifetimeFailed)));
+
+        Set<PreviousPurchase> hourSuccessful = withStatus(hour, "Approved");
+        Set<PreviousPurchase> daySuccessful = withStatus(day, "Approved");
+        Set<PreviousPurchase> weekSuccessful = withStatus(week, "Approved");
+        Set<PreviousPurchase> lifetimeSuccessful = withStatus(lifetime, "Approved");
+        calculatedFields.setSuccessfulTransactionCount(new Velocity<>((long) hourSuccessful.size(),
+                (long) daySuccessful.size(), (long) weekSuccessful.size(), (long) lifetimeSuccessful.size()));
+        calculatedFields.setSuccessfulTransactionAmount(new Velocity<>(
+                sum(hourSuccessful), sum(daySuccessful), sum(weekSuccessful), sum(lifetimeSuccessful)));
+
+        calculatedFields.setUniquePaymentInstrumentCount(new Velocity<>(
+                uniquePaymentInstruments(hour), uniquePaymentInstruments(day),
+                uniquePaymentInstruments(week), uniquePaymentInstruments(lifetime)));
+
+        Set<PreviousPurchase> hourCurrent = withCurrentPaymentInstrument(hour);
+        Set<PreviousPurchase> dayCurrent = withCurrentPaymentInstrument(day);
+        Set<PreviousPurchase> weekCurrent = withCurrentPaymentInstrument(week);
+        Set<PreviousPurchase> lifetimeCurrent = withCurrentPaymentInstrument(lifetime);
+        calculatedFields.setCurrentPaymentInstrumentTransactionCount(new Velocity<>((long) hourCurrent.size(),
+                (long) dayCurrent.size(), (long) weekCurrent.size(), (long) lifetimeCurrent.size()));
+        calculatedFields.setCurrentPaymentInstrumentTransactionAmount(new Velocity<>(
+                sum(hourCurrent), sum(dayCurrent), sum(weekCurrent), sum(lifetimeCurrent)));
+
+        calculatedFields.setUniqueIPCountries(new Velocity<>(
+                uniqueIPCountries(hour), uniqueIPCountries(day),
+                uniqueIPCountries(week), uniqueIPCountries(lifetime)));
+    }
+
+    private static Set<PreviousPurchase> latestOfOrders(final List<PreviousPurchase> purchases) {
+        return purchases.stream()
+                .collect(groupingBy(m -> m.getOriginalOrderId() == null ? m.getPurchaseId() : m.getOriginalOrderId()))
+                .entrySet().stream()
+                .flatMap(m -> m.getValue().stream().max(Comparator.comparing(PreviousPurchase::getMerchantLocalDate)).stream())
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<PreviousPurchase> withStatus(final Set<PreviousPurchase> purchases, final String status) {
+        return purchases.stream()
+                .filter(pp -> status.equalsIgnoreCase(pp.getLastMerchantStatus()))
+                .collect(Collectors.toSet());
+    }
+
+    private Set<PreviousPurchase> withCurrentPaymentInstrument(final Set<PreviousPurchase> purchases) {
+        return purchases.stream()
+                .filter(pp -> pp.getPaymentInstrumentList() != null)
+                .filter(pp -> pp.getPaymentInstrumentList().stream()
+                        .filter(pi -> pi.getPaymentInstrumentId() != null)
+                        .map(PaymentInstrument::getPaymentInstrumentId)
+                        .anyMatch(currentPaymentInstrumentIds::contains))
+                .collect(Collectors.toSet());
+    }
+
+    private static BigDecimal sum(final Set<PreviousPurchase> purchases) {
+        return purchases.stream()
+                .map(p -> Objects.requireNonNullElse(p.getTotalAmountInUSD(), BigDecimal.ZERO))
+                .reduce(BigDecimal::add)
+                .orElse(BigDecimal.ZERO);
+    }
+
+    private static long uniquePaymentInstruments(final Set<PreviousPurchase> purchases) {
+        return purchases.stream()
+                .filter(pp -> pp.getPaymentInstrumentList() != null)
+                .flatMap(pp -> pp.getPaymentInstrumentList().stream())
+                .filter(pi -> pi.getPaymentInstrumentId() != null)
+                .map(PaymentInstrument::getPaymentInstrumentId)
+                .distinct()
+                .count();
+    }
+
+    private static long uniqueIPCountries(final Set<PreviousPurchase> purchases) {
+        return purchases.stream()
+                .filter(pp -> pp.getDeviceContext() != null)
+                .map(PreviousPurchase::getDeviceContext)
+                .filter(dc -> dc.getIpCountry() != null)
+                .map(DeviceContext::getIpCountry)
+                .distinct()
+                .count();
+    }
+}
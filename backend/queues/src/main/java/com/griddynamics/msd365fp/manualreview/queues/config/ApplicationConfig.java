@@ -3,27 +3,44 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.config;
 
-import com.google.common.cache.CacheBuilder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.ExplorerEntity;
 import com.griddynamics.msd365fp.manualreview.queues.config.properties.ApplicationProperties;
 import com.griddynamics.msd365fp.manualreview.queues.config.properties.CacheProperties;
 import com.griddynamics.msd365fp.manualreview.queues.config.properties.CachePropertyEntry;
+import com.griddynamics.msd365fp.manualreview.queues.service.DFPExplorerService;
+import com.griddynamics.msd365fp.manualreview.queues.util.EnrichmentBacklog;
+import com.griddynamics.msd365fp.manualreview.queues.util.EnrichmentMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
-import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCache;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import javax.annotation.Nonnull;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.CACHE_TRAVERSAL_ELEMENT_WEIGHT;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.CACHE_VALUE_WEIGHT;
 import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.DEFAULT_CACHE_INVALIDATION_INTERVAL;
 import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.DEFAULT_CACHE_SIZE;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ENRICHMENT_RETRY_BASE_DELAY;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -46,28 +63,119 @@ public class ApplicationConfig {
         return threadPoolTaskExecutor;
     }
 
+    /**
+     * Work-stealing pool of item enrichment workers. Each item is enriched
+     * by a separate task, so idle workers take items submitted to busy ones.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService itemEnrichmentExecutor(
+            @Value("${mr.tasks.item-enrichment-task.workers}") final int workers) {
+        log.info("Item enrichment executor was set with [{}] workers", workers);
+        return new ForkJoinPool(workers, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("item-enrichment-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    @Bean
+    public EnrichmentMetrics enrichmentMetrics(final MeterRegistry meterRegistry) {
+        return new EnrichmentMetrics(meterRegistry);
+    }
+
+    /**
+     * Items are urgent if they reach the max enrichment delay before
+     * the next run of the enrichment task. Retries are backed off
+     * no longer than the max enrichment delay, so items which are
+     * postponed don't miss it by much.
+     */
+    @Bean
+    public EnrichmentBacklog enrichmentBacklog(
+            @Value("${mr.tasks.item-enrichment-task.delay}") final Duration taskDelay,
+            @Value("${mr.tasks.item-enrichment-task.max-enrichment-delay}") final Duration maxEnrichmentDelay) {
+        return new EnrichmentBacklog(ENRICHMENT_RETRY_BASE_DELAY, maxEnrichmentDelay, taskDelay, maxEnrichmentDelay);
+    }
+
     /**
      * Cache manager configuration bean.
      * This implementation allows to configure
-     * time-to-live for entries per each cache
+     * time-to-live, refresh interval and size in entries
+     * or in estimated bytes of values per each cache
+     * and reports statistics of each cache
      *
-     * @param cacheProperties - a config bean
-     * @return the new CacheManager bean is based on guava cache
+     * @param cacheProperties    - a config bean
+     * @param meterRegistry      - a registry for cache meters
+     * @param dfpExplorerService - a service which refreshes cached traversals
+     * @return the new CacheManager bean is based on Caffeine caches
      */
     @Bean
-    public CacheManager cacheManager(final CacheProperties cacheProperties) {
-        return new ConcurrentMapCacheManager() {
+    public CacheManager cacheManager(final CacheProperties cacheProperties,
+                                     final MeterRegistry meterRegistry,
+                                     final ObjectProvider<DFPExplorerService> dfpExplorerService) {
+        return new CaffeineCacheManager() {
             @Override
             @Nonnull
-            protected Cache createConcurrentMapCache(@Nonnull final String name) {
+            protected Cache<Object, Object> createNativeCaffeineCache(@Nonnull final String name) {
                 CachePropertyEntry config = Objects.requireNonNull(cacheProperties.get(name));
-                CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                long maxSize = Objects.requireNonNullElse(config.getMaxSize(), DEFAULT_CACHE_SIZE);
+                Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder()
                         .expireAfterWrite(Objects.requireNonNullElse(
                                 config.getInvalidationInterval(), DEFAULT_CACHE_INVALIDATION_INTERVAL))
-                        .maximumSize(Objects.requireNonNullElse(
-                                config.getMaxSize(), DEFAULT_CACHE_SIZE));
-                return new ConcurrentMapCache(name,
-                        cacheBuilder.build().asMap(), false);
+                        .recordStats();
+                if (config.getMaxWeight() == null) {
+                    cacheBuilder.maximumSize(maxSize);
+                } else {
+                    cacheBuilder.initialCapacity((int) Math.min(maxSize, Integer.MAX_VALUE))
+                            .maximumWeight(config.getMaxWeight().toBytes())
+                            .weigher((key, value) -> weightOf(value));
+                }
+                Cache<Object, Object> cache;
+                if (config.getRefreshAfter() == null) {
+                    cache = cacheBuilder.build();
+                } else {
+                    cache = cacheBuilder.refreshAfterWrite(config.getRefreshAfter())
+                            .build(traversalRefresher(name, dfpExplorerService));
+                }
+                CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+                return cache;
+            }
+        };
+    }
+
+    /**
+     * Estimates the size of the value in bytes without serializing it.
+     */
+    private static int weightOf(final Object value) {
+        if (value instanceof ExplorerEntity) {
+            ExplorerEntity entity = (ExplorerEntity) value;
+            int elements = (entity.getNodes() == null ? 0 : entity.getNodes().size()) +
+                    (entity.getEdges() == null ? 0 : entity.getEdges().size());
+            return CACHE_VALUE_WEIGHT + elements * CACHE_TRAVERSAL_ELEMENT_WEIGHT;
+        }
+        return CACHE_VALUE_WEIGHT;
+    }
+
+    /**
+     * Traversals are put into caches by {@link DFPExplorerService},
+     * so the loader is only used to refresh them ahead of expiration.
+     */
+    private static CacheLoader<Object, Object> traversalRefresher(
+            final String cacheName,
+            final ObjectProvider<DFPExplorerService> dfpExplorerService) {
+        return new CacheLoader<>() {
+            @Override
+            public Object load(@Nonnull final Object key) {
+                return null;
+            }
+
+            @Override
+            @Nonnull
+            public CompletableFuture<Object> asyncReload(@Nonnull final Object key,
+                                                         @Nonnull final Object oldValue,
+                                                         @Nonnull final Executor executor) {
+                return dfpExplorerService.getObject()
+                        .refresh(cacheName, (String) key, (ExplorerEntity) oldValue)
+                        .thenApply(Object.class::cast);
             }
         };
     }
@@ -22,6 +22,8 @@ public class Constants {
             OffsetDateTime.ofInstant(Instant.ofEpochMilli(0), ZoneId.systemDefault());
     public static final Duration DEFAULT_CACHE_INVALIDATION_INTERVAL = Duration.ZERO;
     public static final long DEFAULT_CACHE_SIZE = 0;
+    public static final int CACHE_VALUE_WEIGHT = 1024;
+    public static final int CACHE_TRAVERSAL_ELEMENT_WEIGHT = 2048;
 
     public static final String DEFAULT_QUEUE_PAGE_SIZE_STR = "20";
     public static final int DEFAULT_QUEUE_PAGE_SIZE = 20;
@@ -40,6 +42,15 @@ public class Constants {
     public static final String SEARCH_QUERIES_CONTAINER_NAME = "SearchQueries";
     public static final String EMAIL_DOMAINS_CONTAINER_NAME = "EmailDomains";
 
+    public static final String IN_MEMORY_DATABASE_PROFILE = "in-memory";
+    public static final String NOT_IN_MEMORY_DATABASE_PROFILE = "!" + IN_MEMORY_DATABASE_PROFILE;
+
+    public static final String ITEM_LOCK_PATH = "/lock";
+    public static final String ITEM_REVIEWERS_PATH = "/reviewers";
+    public static final String ITEM_QUEUE_IDS_PATH = "/queueIds";
+    public static final String ITEM_NEXT_ENRICHMENT_ATTEMPT_PATH = "/nextEnrichmentAttempt";
+    public static final String ITEM_ENRICHMENT_RETRIES_PATH = "/enrichmentRetries";
+
     public static final int DEFAULT_CACHE_CONTROL_SECONDS = 1800;
 
     public static final String ADMIN_MANAGER_ROLE
@@ -55,6 +66,15 @@ public class Constants {
 
     public static final long TASK_RUNNER_RATE_MS = 30000L;
 
+    public static final Duration ENRICHMENT_SCHEDULER_TICK = Duration.ofSeconds(1);
+    public static final int ENRICHMENT_SCHEDULER_WHEEL_SIZE = 512;
+    public static final Duration ENRICHMENT_RETRY_BASE_DELAY = Duration.ofSeconds(5);
+    public static final Duration ENRICHMENT_PAUSE_DELAY = Duration.ofSeconds(30);
+    public static final Duration QUEUE_FILTERS_REFRESH_INTERVAL = Duration.ofMinutes(1);
+    public static final Duration DISK_CACHE_COMPACTION_INTERVAL = Duration.ofMinutes(1);
+    public static final int DISK_CACHE_MAX_PENDING_WRITES = 1024;
+    public static final int DFP_RESPONSE_PREFETCH = 8;
+
     public static final int DIGITS_MAX_VALID_INTEGER = 17;
     public static final int DIGITS_MAX_VALID_FRACTION = 16;
 
@@ -4,14 +4,25 @@
 package com.griddynamics.msd365fp.manualreview.queues.config;
 
 import com.azure.cosmos.*;
+import com.azure.spring.autoconfigure.cosmos.CosmosProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.CosmosQueryMetrics;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainerFactory;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.RequestUnitBudget;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
 
 import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.*;
 
@@ -23,24 +34,71 @@ public class DatabaseConfig {
     @Qualifier("cosmosdbObjectMapper")
     private final ObjectMapper jsonMapper;
 
+    @Value("${azure.cosmos.request-unit-budget.units-per-second}")
+    private double requestUnitsPerSecond;
+    @Value("${azure.cosmos.request-unit-budget.capacity}")
+    private double requestUnitCapacity;
+
+    @Bean
+    public CosmosQueryMetrics cosmosQueryMetrics(MeterRegistry meterRegistry,
+                                                 @Nullable @Value("${azure.cosmos.slow-query-threshold:#{null}}")
+                                                         Duration slowQueryThreshold) {
+        return new CosmosQueryMetrics(meterRegistry, slowQueryThreshold);
+    }
+
+    /**
+     * Registers {@link CosmosQueryMetrics} as a diagnostics processor
+     * of Spring Data repositories before the Cosmos DB configuration is built.
+     */
     @Bean
+    public static BeanPostProcessor cosmosDiagnosticsProcessorRegistrar(
+            ObjectProvider<CosmosQueryMetrics> cosmosQueryMetrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof CosmosProperties) {
+                    ((CosmosProperties) bean).setResponseDiagnosticsProcessor(
+                            diagnostics -> cosmosQueryMetrics.getObject().processResponseDiagnostics(diagnostics));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @Profile(NOT_IN_MEMORY_DATABASE_PROFILE)
     public CosmosAsyncDatabase cosmosDatabase(CosmosAsyncClient cosmosClient,
                                               @Value("${azure.cosmos.database}") String databaseId) {
         return cosmosClient.getDatabase(databaseId);
     }
 
+    /**
+     * Each container has its own budget, so background processing
+     * of one container doesn't slow down processing of the others.
+     */
+    @Bean
+    @Profile(NOT_IN_MEMORY_DATABASE_PROFILE)
+    public ExtendedCosmosContainerFactory cosmosContainerFactory(CosmosAsyncDatabase cosmosDatabase,
+                                                                 CosmosQueryMetrics cosmosQueryMetrics) {
+        return containerName -> new ExtendedCosmosContainer(
+                cosmosDatabase.getContainer(containerName),
+                jsonMapper,
+                new RequestUnitBudget(requestUnitsPerSecond, requestUnitCapacity),
+                cosmosQueryMetrics);
+    }
+
     @Bean
-    public ExtendedCosmosContainer itemsContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(cosmosDatabase.getContainer(ITEMS_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer itemsContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(ITEMS_CONTAINER_NAME);
     }
 
     @Bean
-    public ExtendedCosmosContainer queuesContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(cosmosDatabase.getContainer(QUEUES_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer queuesContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(QUEUES_CONTAINER_NAME);
     }
 
     @Bean
-    public ExtendedCosmosContainer dictionariesContainer(CosmosAsyncDatabase cosmosDatabase) {
-        return new ExtendedCosmosContainer(cosmosDatabase.getContainer(DICTIONARIES_CONTAINER_NAME), jsonMapper);
+    public ExtendedCosmosContainer dictionariesContainer(ExtendedCosmosContainerFactory cosmosContainerFactory) {
+        return cosmosContainerFactory.create(DICTIONARIES_CONTAINER_NAME);
     }
 }
@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.config;
+
+import com.azure.spring.data.cosmos.core.CosmosOperations;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainerFactory;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosStore;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosTemplate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.IN_MEMORY_DATABASE_PROFILE;
+
+/**
+ * Replaces Cosmos DB with in-memory containers for local runs and
+ * benchmarks. Cosmos DB auto-configuration is excluded by the profile
+ * properties, so both custom containers and Spring Data repositories
+ * work with the same in-memory store.
+ */
+@Configuration
+@Profile(IN_MEMORY_DATABASE_PROFILE)
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryDatabaseConfig {
+
+    @Qualifier("cosmosdbObjectMapper")
+    private final ObjectMapper jsonMapper;
+
+    @Bean
+    public InMemoryCosmosStore inMemoryCosmosStore() {
+        log.warn("Cosmos DB is replaced by the in-memory store, all data will be lost on shutdown.");
+        return new InMemoryCosmosStore(jsonMapper);
+    }
+
+    @Bean
+    public ExtendedCosmosContainerFactory cosmosContainerFactory(InMemoryCosmosStore inMemoryCosmosStore) {
+        return containerName -> new InMemoryCosmosContainer(inMemoryCosmosStore.getCollection(containerName), jsonMapper);
+    }
+
+    /**
+     * The name is referred by the repository configuration
+     * instead of the template of the Cosmos DB auto-configuration.
+     */
+    @Bean
+    public CosmosOperations cosmosTemplate(InMemoryCosmosStore inMemoryCosmosStore) {
+        return new InMemoryCosmosTemplate(inMemoryCosmosStore);
+    }
+}
@@ -4,11 +4,14 @@
 package com.griddynamics.msd365fp.manualreview.queues.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.ClientCodecConfigurer;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
@@ -19,13 +22,19 @@ import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
 import java.util.function.Consumer;
 
 @Slf4j
 @Configuration
 public class WebClientConfig {
 
+    @Value("${azure.dfp.connection-pool.connect-timeout}")
+    private Duration dfpConnectTimeout;
+
     @Bean
     public OAuth2AuthorizedClientManager authorizedClientManager(
             ClientRegistrationRepository clientRegistrationRepository,
@@ -45,9 +54,32 @@ public class WebClientConfig {
         return authorizedClientManager;
     }
 
+    /**
+     * Connection pool shared by DFP clients. DFP calls don't hold threads
+     * while waiting for responses, so the number of connections is what
+     * limits concurrent calls. Calls which can't get a connection wait
+     * in the unbounded pending queue up to the acquire timeout.
+     */
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider dfpConnectionProvider(
+            @Value("${azure.dfp.connection-pool.max-connections}") int maxConnections,
+            @Value("${azure.dfp.connection-pool.max-idle-time}") Duration maxIdleTime,
+            @Value("${azure.dfp.connection-pool.pending-acquire-timeout}") Duration pendingAcquireTimeout) {
+        log.info("DFP connection pool was set with parameters: maxConnections=[{}], maxIdleTime=[{}]",
+                maxConnections, maxIdleTime);
+        return ConnectionProvider.builder("dfp")
+                .maxConnections(maxConnections)
+                .maxIdleTime(maxIdleTime)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .pendingAcquireMaxCount(-1)
+                .metrics(true)
+                .build();
+    }
+
     @Bean
     @Primary
-    WebClient azureDFPAPIWebClient(OAuth2AuthorizedClientManager authorizedClientManager, ObjectMapper mapper) {
+    WebClient azureDFPAPIWebClient(OAuth2AuthorizedClientManager authorizedClientManager, ObjectMapper mapper,
+                                   ConnectionProvider dfpConnectionProvider) {
         ServletOAuth2AuthorizedClientExchangeFilterFunction oauth2Client =
                 new ServletOAuth2AuthorizedClientExchangeFilterFunction(authorizedClientManager);
         oauth2Client.setDefaultClientRegistrationId(Constants.CLIENT_REGISTRATION_AZURE_DFP_API);
@@ -55,6 +87,7 @@ public class WebClientConfig {
                         .defaultCodecs()
                         .jackson2JsonEncoder(new Jackson2JsonEncoder(mapper, MediaType.APPLICATION_JSON));
         return WebClient.builder()
+                .clientConnector(dfpClientHttpConnector(dfpConnectionProvider))
                 .filter(logRequestFilter())
                 .apply(oauth2Client.oauth2Configuration())
                 .exchangeStrategies(ExchangeStrategies
@@ -66,7 +99,8 @@ public class WebClientConfig {
     }
 
     @Bean
-    WebClient azureDFPLAAPIWebClient(OAuth2AuthorizedClientManager authorizedClientManager, ObjectMapper mapper) {
+    WebClient azureDFPLAAPIWebClient(OAuth2AuthorizedClientManager authorizedClientManager, ObjectMapper mapper,
+                                     ConnectionProvider dfpConnectionProvider) {
         ServletOAuth2AuthorizedClientExchangeFilterFunction oauth2Client =
                 new ServletOAuth2AuthorizedClientExchangeFilterFunction(authorizedClientManager);
         oauth2Client.setDefaultClientRegistrationId(Constants.CLIENT_REGISTRATION_AZURE_DFP_LA_API);
@@ -74,6 +108,7 @@ public class WebClientConfig {
                 .defaultCodecs()
                 .jackson2JsonEncoder(new Jackson2JsonEncoder(mapper, MediaType.APPLICATION_JSON));
         return WebClient.builder()
+                .clientConnector(dfpClientHttpConnector(dfpConnectionProvider))
                 .filter(logRequestFilter())
                 .apply(oauth2Client.oauth2Configuration())
                 .exchangeStrategies(ExchangeStrategies
@@ -90,6 +125,11 @@ public class WebClientConfig {
                 .build();
     }
 
+    private ReactorClientHttpConnector dfpClientHttpConnector(ConnectionProvider dfpConnectionProvider) {
+        return new ReactorClientHttpConnector(HttpClient.create(dfpConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) dfpConnectTimeout.toMillis()));
+    }
+
     private static ExchangeFilterFunction logRequestFilter() {
         return ExchangeFilterFunction.ofRequestProcessor(clientRequest -> {
             log.info("Calling Azure DFP API via Web Client: {} {}", clientRequest.method(), clientRequest.url());
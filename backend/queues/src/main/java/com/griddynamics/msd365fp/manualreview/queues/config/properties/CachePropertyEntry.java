@@ -6,6 +6,7 @@ package com.griddynamics.msd365fp.manualreview.queues.config.properties;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
@@ -15,4 +16,10 @@ import java.time.Duration;
 public class CachePropertyEntry {
     private final Duration invalidationInterval;
     private final Long maxSize;
+    /**
+     * If it's set, the cache is limited by the estimated size of values
+     * and the max size is used only as the initial capacity.
+     */
+    private final DataSize maxWeight;
+    private final Duration refreshAfter;
 }
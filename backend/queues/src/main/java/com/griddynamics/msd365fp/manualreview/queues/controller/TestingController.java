@@ -47,6 +47,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.annotation.Secured;
@@ -65,10 +66,12 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ADMIN_MANAGER_ROLE;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.NOT_IN_MEMORY_DATABASE_PROFILE;
 import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.SECURITY_SCHEMA_IMPLICIT;
 
 //TODO: temporary for testing
 @RestController
+@Profile(NOT_IN_MEMORY_DATABASE_PROFILE)
 @RequestMapping("/api/testing")
 @Tag(name = "testing", description = "Mocks and utilities")
 @Slf4j
@@ -195,6 +198,7 @@ public class TestingController {
         PageProcessingUtility.executeForAllPages(
                 continuation -> {
                     ExtendedCosmosContainer.Page res = extendedContainer.runCrossPartitionPageableQuery(
+                            "replace",
                             query,
                             20,
                             continuation);
@@ -0,0 +1,306 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.model;
+
+import com.azure.spring.data.cosmos.core.convert.ObjectMapperFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.griddynamics.msd365fp.manualreview.queues.model.ItemQuery.ItemQueryConstructor.IncorrectFilterException;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
+import org.springframework.lang.Nullable;
+import org.springframework.util.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Item filters compiled into a predicate which is evaluated in memory
+ * in the same way as the query built by {@link ItemQuery.ItemQueryConstructor#all}
+ * is evaluated by Cosmos DB.
+ * <p>
+ * The predicate is tested against the document of an item as it's stored
+ * in Cosmos DB, so field paths are resolved in the same way. Values are
+ * compared only with values of the same JSON type and a condition over
+ * a missing field doesn't match. All conditions over fields of the same
+ * array should be met by a single element of the array.
+ */
+public class ItemFilterPredicate implements Predicate<JsonNode> {
+
+    private static final Pattern PATH_SEGMENT = Pattern.compile("\\.?([^.\\[\\]\"]+)|\\[\"([^\"]+)\"]");
+
+    private final List<Condition> conditions = new ArrayList<>();
+    private final Map<String, ArrayConditions> arrayConditions = new TreeMap<>();
+
+    private ItemFilterPredicate() {
+    }
+
+    /**
+     * @throws IncorrectFilterException if a filter can't be compiled
+     */
+    public static ItemFilterPredicate compile(@Nullable final Collection<ItemFilter> itemFilters) {
+        ItemFilterPredicate predicate = new ItemFilterPredicate();
+        if (CollectionUtils.isEmpty(itemFilters)) {
+            return predicate;
+        }
+        for (ItemFilter itemFilter : itemFilters) {
+            String fieldPath = itemFilter.getField().getItemDataField().getPath();
+            int arrayEnd = fieldPath.indexOf("[]");
+            if (arrayEnd < 0) {
+                predicate.conditions.add(condition(itemFilter, path(fieldPath)));
+            } else {
+                String array = fieldPath.substring(0, arrayEnd);
+                predicate.arrayConditions.computeIfAbsent(array, key -> new ArrayConditions(path(key)))
+                        .conditions.add(condition(itemFilter, path(fieldPath.substring(arrayEnd + "[]".length()))));
+            }
+        }
+        return predicate;
+    }
+
+    /**
+     * @return the document of the item as it's stored in Cosmos DB
+     */
+    public static JsonNode document(final Item item) {
+        return ObjectMapperFactory.getObjectMapper().valueToTree(item);
+    }
+
+    public boolean test(final Item item) {
+        return test(document(item));
+    }
+
+    @Override
+    public boolean test(final JsonNode document) {
+        for (Condition condition : conditions) {
+            if (!condition.test(document)) {
+                return false;
+            }
+        }
+        for (ArrayConditions array : arrayConditions.values()) {
+            if (!array.test(document)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("java:S1479")
+    private static Condition condition(final ItemFilter itemFilter, final String[] path) {
+        ItemDataFieldCondition condition = itemFilter.getCondition();
+        List<String> values = itemFilter.getValues();
+        switch (condition) {
+            case IN: {
+                Set<String> candidates = new HashSet<>(values);
+                return new Condition(path, value -> value.isTextual() && candidates.contains(value.textValue()));
+            }
+            case NOT_IN: {
+                Set<String> candidates = new HashSet<>(values);
+                return new Condition(path, value -> !value.isTextual() || !candidates.contains(value.textValue()));
+            }
+            case CONTAINS: {
+                String part = values.get(0);
+                return new Condition(path, value -> value.isTextual() && value.textValue().contains(part));
+            }
+            case IS_TRUE:
+                if (Boolean.parseBoolean(values.get(0))) {
+                    return new Condition(path, value -> value.isBoolean() && value.booleanValue());
+                }
+                return new Condition(path, value -> value.isNull() || value.isBoolean() && !value.booleanValue())
+                        .matchingMissing();
+            case REGEXP: {
+                Pattern pattern = regexp(values.get(0));
+                return new Condition(path, value -> value.isTextual() && pattern.matcher(value.textValue()).find());
+            }
+            case BETWEEN:
+            case NOT_BETWEEN:
+                return numericBetween(path, numericValue(values.get(0)), numericValue(values.get(1)),
+                        condition == ItemDataFieldCondition.NOT_BETWEEN);
+            case BETWEEN_DATE:
+            case NOT_BETWEEN_DATE:
+                return numericBetween(path, dateValue(values.get(0)), dateValue(values.get(1)),
+                        condition == ItemDataFieldCondition.NOT_BETWEEN_DATE);
+            case BETWEEN_ALPH:
+            case NOT_BETWEEN_ALPH: {
+                String low = values.get(0);
+                String high = values.get(1);
+                boolean negated = condition == ItemDataFieldCondition.NOT_BETWEEN_ALPH;
+                return new Condition(path, value -> value.isTextual() &&
+                        negated ^ (value.textValue().compareTo(low) >= 0 && value.textValue().compareTo(high) <= 0));
+            }
+            case EQUAL:
+            case NOT_EQUAL:
+            case GREATER:
+            case LESS:
+            case GREATER_OR_EQUAL:
+            case LESS_OR_EQUAL:
+                return numericComparison(path, condition, numericValue(values.get(0)));
+            case GREATER_DATE:
+            case LESS_DATE:
+            case GREATER_OR_EQUAL_DATE:
+            case LESS_OR_EQUAL_DATE:
+                return numericComparison(path, condition, dateValue(values.get(0)));
+            case EQUAL_ALPH:
+            case NOT_EQUAL_ALPH:
+            case GREATER_ALPH:
+            case LESS_ALPH:
+            case GREATER_OR_EQUAL_ALPH:
+            case LESS_OR_EQUAL_ALPH: {
+                String expected = values.get(0);
+                return new Condition(path, value -> value.isTextual() &&
+                        matches(condition, value.textValue().compareTo(expected)));
+            }
+            default:
+                throw new IncorrectFilterException(
+                        String.format("Could not compile filter due to unexpected FilterCondition: %s", condition));
+        }
+    }
+
+    private static Condition numericBetween(final String[] path,
+                                            final BigDecimal low,
+                                            final BigDecimal high,
+                                            final boolean negated) {
+        return new Condition(path, value -> value.isNumber() &&
+                negated ^ (value.decimalValue().compareTo(low) >= 0 && value.decimalValue().compareTo(high) <= 0));
+    }
+
+    private static Condition numericComparison(final String[] path,
+                                               final ItemDataFieldCondition condition,
+                                               final BigDecimal expected) {
+        return new Condition(path, value -> value.isNumber() &&
+                matches(condition, value.decimalValue().compareTo(expected)));
+    }
+
+    private static boolean matches(final ItemDataFieldCondition condition, final int comparison) {
+        switch (condition) {
+            case EQUAL:
+            case EQUAL_ALPH:
+                return comparison == 0;
+            case NOT_EQUAL:
+            case NOT_EQUAL_ALPH:
+                return comparison != 0;
+            case GREATER:
+            case GREATER_ALPH:
+            case GREATER_DATE:
+                return comparison > 0;
+            case LESS:
+            case LESS_ALPH:
+            case LESS_DATE:
+                return comparison < 0;
+            case GREATER_OR_EQUAL:
+            case GREATER_OR_EQUAL_ALPH:
+            case GREATER_OR_EQUAL_DATE:
+                return comparison >= 0;
+            case LESS_OR_EQUAL:
+            case LESS_OR_EQUAL_ALPH:
+            case LESS_OR_EQUAL_DATE:
+                return comparison <= 0;
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private static String[] path(final String fieldPath) {
+        List<String> segments = new ArrayList<>();
+        Matcher matcher = PATH_SEGMENT.matcher(fieldPath);
+        int end = 0;
+        while (matcher.lookingAt()) {
+            segments.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+            end = matcher.end();
+            matcher.region(end, fieldPath.length());
+        }
+        if (end != fieldPath.length()) {
+            throw new IncorrectFilterException(String.format("Could not compile filter due to field path: %s", fieldPath));
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static BigDecimal numericValue(final String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IncorrectFilterException(
+                    String.format("Could not compile filter due to non-numeric filter value: %s", value));
+        }
+    }
+
+    private static BigDecimal dateValue(final String value) {
+        try {
+            return BigDecimal.valueOf(OffsetDateTime.parse(value).toEpochSecond());
+        } catch (DateTimeParseException e) {
+            throw new IncorrectFilterException(
+                    String.format("Could not compile filter due to non-date filter value: %s", value));
+        }
+    }
+
+    private static Pattern regexp(final String value) {
+        try {
+            return Pattern.compile(value);
+        } catch (PatternSyntaxException e) {
+            throw new IncorrectFilterException(
+                    String.format("Could not compile filter due to incorrect regular expression: %s", value));
+        }
+    }
+
+    @Nullable
+    private static JsonNode resolve(final JsonNode node, final String[] path) {
+        JsonNode current = node;
+        for (String segment : path) {
+            if (current == null || !current.isObject()) {
+                return null;
+            }
+            current = current.get(segment);
+        }
+        return current;
+    }
+
+    /**
+     * A condition over a value of the field. The value is never null,
+     * a missing field is handled by the condition itself.
+     */
+    private static class Condition {
+        private final String[] path;
+        private final Predicate<JsonNode> valuePredicate;
+        private boolean matchingMissing;
+
+        Condition(final String[] path, final Predicate<JsonNode> valuePredicate) {
+            this.path = path;
+            this.valuePredicate = valuePredicate;
+        }
+
+        Condition matchingMissing() {
+            matchingMissing = true;
+            return this;
+        }
+
+        boolean test(final JsonNode node) {
+            JsonNode value = resolve(node, path);
+            return value == null ? matchingMissing : valuePredicate.test(value);
+        }
+    }
+
+    private static class ArrayConditions {
+        private final String[] path;
+        private final List<Condition> conditions = new ArrayList<>();
+
+        ArrayConditions(final String[] path) {
+            this.path = path;
+        }
+
+        boolean test(final JsonNode document) {
+            JsonNode array = resolve(document, path);
+            if (array == null || !array.isArray()) {
+                return false;
+            }
+            for (JsonNode element : array) {
+                if (conditions.stream().allMatch(condition -> condition.test(element))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
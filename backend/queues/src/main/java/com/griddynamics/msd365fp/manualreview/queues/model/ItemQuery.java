@@ -3,6 +3,8 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.model;
 
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.google.common.base.Joiner;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
 import com.griddynamics.msd365fp.manualreview.model.Label;
@@ -18,6 +20,7 @@ import org.springframework.lang.Nullable;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -41,6 +44,7 @@ public class ItemQuery {
         private final List<String> queryParts = new ArrayList<>();
         private final Map<String, List<String>> joinParts = new TreeMap<>();
         private String orderPart = "";
+        private final List<SqlParameter> parameters = new ArrayList<>();
 
         ItemQueryConstructor alias(String alias) {
             this.alias = alias;
@@ -63,18 +67,18 @@ public class ItemQuery {
 
         public ItemQueryConstructor id(String id) {
             queryParts.add(String.format(
-                    "%s.id='%s'",
+                    "%s.id=%s",
                     alias,
-                    id)
+                    parameter(id))
             );
             return this;
         }
 
         public ItemQueryConstructor queueId(String queueId) {
             String condition = String.format(
-                    "ARRAY_CONTAINS(%s.queueIds, \"%s\")",
+                    "ARRAY_CONTAINS(%s.queueIds, %s)",
                     alias,
-                    queueId
+                    parameter(queueId)
             );
             queryParts.add(condition);
             return this;
@@ -123,26 +127,26 @@ public class ItemQuery {
             switch (itemFilter.getCondition()) {
                 case IN:
                     condition = String.format(
-                            "%s%s IN ('%s')",
+                            "ARRAY_CONTAINS(%s, %s%s)",
+                            parameter(itemFilter.getValues()),
                             decomposition.getLocalAlias(),
-                            decomposition.getPath(),
-                            Joiner.on("', '").join(itemFilter.getValues())
+                            decomposition.getPath()
                     );
                     break;
                 case NOT_IN:
                     condition = String.format(
-                            "%s%s NOT IN ('%s')",
+                            "(IS_DEFINED(%2$s%3$s) AND NOT ARRAY_CONTAINS(%1$s, %2$s%3$s))",
+                            parameter(itemFilter.getValues()),
                             decomposition.getLocalAlias(),
-                            decomposition.getPath(),
-                            Joiner.on("', '").join(itemFilter.getValues())
+                            decomposition.getPath()
                     );
                     break;
                 case CONTAINS:
                     condition = String.format(
-                            "CONTAINS(%s%s, '%s')",
+                            "CONTAINS(%s%s, %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            itemFilter.getValues().get(0)
+                            parameter(itemFilter.getValues().get(0))
                     );
                     break;
                 case IS_TRUE:
@@ -155,10 +159,10 @@ public class ItemQuery {
                     break;
                 case REGEXP:
                     condition = String.format(
-                            "udf.isMatchRegexp(%s%s, \"%s\")",
+                            "udf.isMatchRegexp(%s%s, %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            itemFilter.getValues().get(0)
+                            parameter(itemFilter.getValues().get(0))
                     );
                     break;
                 case BETWEEN:
@@ -166,8 +170,8 @@ public class ItemQuery {
                             "(%s%s BETWEEN %s AND %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            itemFilter.getValues().get(0),
-                            itemFilter.getValues().get(1)
+                            parameter(numericValue(itemFilter.getValues().get(0))),
+                            parameter(numericValue(itemFilter.getValues().get(1)))
                     );
                     break;
                 case NOT_BETWEEN:
@@ -175,26 +179,26 @@ public class ItemQuery {
                             "(%s%s NOT BETWEEN %s AND %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            itemFilter.getValues().get(0),
-                            itemFilter.getValues().get(1)
+                            parameter(numericValue(itemFilter.getValues().get(0))),
+                            parameter(numericValue(itemFilter.getValues().get(1)))
                     );
                     break;
                 case BETWEEN_ALPH:
                     condition = String.format(
-                            "(%s%s BETWEEN '%s' AND '%s')",
+                            "(%s%s BETWEEN %s AND %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            itemFilter.getValues().get(0),
-                            itemFilter.getValues().get(1)
+                            parameter(itemFilter.getValues().get(0)),
+                            parameter(itemFilter.getValues().get(1))
                     );
                     break;
                 case NOT_BETWEEN_ALPH:
                     condition = String.format(
-                            "(%s%s NOT BETWEEN '%s' AND '%s')",
+                            "(%s%s NOT BETWEEN %s AND %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            itemFilter.getValues().get(0),
-                            itemFilter.getValues().get(1)
+                            parameter(itemFilter.getValues().get(0)),
+                            parameter(itemFilter.getValues().get(1))
                     );
                     break;
                 case BETWEEN_DATE:
@@ -202,8 +206,8 @@ public class ItemQuery {
                             "(%s%s BETWEEN %s AND %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            OffsetDateTime.parse(itemFilter.getValues().get(0)).toEpochSecond(),
-                            OffsetDateTime.parse(itemFilter.getValues().get(1)).toEpochSecond()
+                            parameter(OffsetDateTime.parse(itemFilter.getValues().get(0)).toEpochSecond()),
+                            parameter(OffsetDateTime.parse(itemFilter.getValues().get(1)).toEpochSecond())
                     );
                     break;
                 case NOT_BETWEEN_DATE:
@@ -211,8 +215,8 @@ public class ItemQuery {
                             "(%s%s NOT BETWEEN %s AND %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
-                            OffsetDateTime.parse(itemFilter.getValues().get(0)).toEpochSecond(),
-                            OffsetDateTime.parse(itemFilter.getValues().get(1)).toEpochSecond()
+                            parameter(OffsetDateTime.parse(itemFilter.getValues().get(0)).toEpochSecond()),
+                            parameter(OffsetDateTime.parse(itemFilter.getValues().get(1)).toEpochSecond())
                     );
                     break;
                 case EQUAL:
@@ -226,7 +230,7 @@ public class ItemQuery {
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
                             getSignByComparisonCondition(itemFilter.getCondition()),
-                            itemFilter.getValues().get(0));
+                            parameter(numericValue(itemFilter.getValues().get(0))));
                     break;
                 case EQUAL_ALPH:
                 case NOT_EQUAL_ALPH:
@@ -235,11 +239,11 @@ public class ItemQuery {
                 case GREATER_OR_EQUAL_ALPH:
                 case LESS_OR_EQUAL_ALPH:
                     condition = String.format(
-                            "(%s%s %s '%s')",
+                            "(%s%s %s %s)",
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
                             getSignByComparisonCondition(itemFilter.getCondition()),
-                            itemFilter.getValues().get(0));
+                            parameter(itemFilter.getValues().get(0)));
                     break;
                 case GREATER_DATE:
                 case LESS_DATE:
@@ -250,7 +254,7 @@ public class ItemQuery {
                             decomposition.getLocalAlias(),
                             decomposition.getPath(),
                             getSignByComparisonCondition(itemFilter.getCondition()),
-                            OffsetDateTime.parse(itemFilter.getValues().get(0)).toEpochSecond());
+                            parameter(OffsetDateTime.parse(itemFilter.getValues().get(0)).toEpochSecond()));
                     break;
                 default:
                     throw new IncorrectFilterException(
@@ -268,6 +272,21 @@ public class ItemQuery {
             return this;
         }
 
+        private String parameter(Object value) {
+            String name = "@p" + parameters.size();
+            parameters.add(new SqlParameter(name, value));
+            return name;
+        }
+
+        private BigDecimal numericValue(String value) {
+            try {
+                return new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                throw new IncorrectFilterException(
+                        String.format("Could not build query due to non-numeric filter value: %s", value));
+            }
+        }
+
         private String getSignByComparisonCondition(final ItemDataFieldCondition condition) {
             switch (condition) {
                 case EQUAL:
@@ -321,7 +340,7 @@ public class ItemQuery {
                 queryParts.add(String.format(
                         "%s.imported<%s",
                         alias,
-                        time.toEpochSecond()));
+                        parameter(time.toEpochSecond())));
             } else {
                 queryParts.add("true");
             }
@@ -330,25 +349,25 @@ public class ItemQuery {
 
         public ItemQueryConstructor lockedInQueue(String queue) {
             queryParts.add(String.format(
-                    "%s.lock.queueId='%s'",
+                    "%s.lock.queueId=%s",
                     alias,
-                    queue));
+                    parameter(queue)));
             return this;
         }
 
         public ItemQueryConstructor escalatedInQueue(String queue) {
             queryParts.add(String.format(
-                    "%s.escalation.queueId='%s'",
+                    "%s.escalation.queueId=%s",
                     alias,
-                    queue));
+                    parameter(queue)));
             return this;
         }
 
         public ItemQueryConstructor heldInQueue(String queue) {
             queryParts.add(String.format(
-                    "%s.hold.queueId='%s'",
+                    "%s.hold.queueId=%s",
                     alias,
-                    queue));
+                    parameter(queue)));
             return this;
         }
 
@@ -357,7 +376,7 @@ public class ItemQuery {
                 queryParts.add(String.format(
                         "%s.lock.locked<%s",
                         alias,
-                        time.toEpochSecond()));
+                        parameter(time.toEpochSecond())));
             } else {
                 queryParts.add("true");
             }
@@ -369,7 +388,7 @@ public class ItemQuery {
                 queryParts.add(String.format(
                         "%s._ts>=%s",
                         alias,
-                        time.toEpochSecond())
+                        parameter(time.toEpochSecond()))
                 );
             } else {
                 queryParts.add("true");
@@ -389,7 +408,7 @@ public class ItemQuery {
                 queryParts.add(String.format(
                         "%s.enriched>=%s",
                         alias,
-                        time.toEpochSecond())
+                        parameter(time.toEpochSecond()))
                 );
             } else {
                 queryParts.add("true");
@@ -507,6 +526,22 @@ public class ItemQuery {
                     Joiner.on(" ").join(queryParts));
         }
 
+        public List<SqlParameter> getParameters() {
+            return Collections.unmodifiableList(parameters);
+        }
+
+        public SqlQuerySpec constructSelectSpec() {
+            return new SqlQuerySpec(constructSelect(), parameters);
+        }
+
+        public SqlQuerySpec constructCountSpec() {
+            return new SqlQuerySpec(constructCount(), parameters);
+        }
+
+        public SqlQuerySpec constructSampleSpec(ItemDataField field) {
+            return new SqlQuerySpec(constructSample(field), parameters);
+        }
+
         private String getJoinClause() {
             return CollectionUtils.isEmpty(joinParts) ? "" :
                     joinParts.entrySet().stream()
@@ -528,15 +563,16 @@ public class ItemQuery {
                             orderPart);
         }
 
-        public ItemSelectQueryExecutor constructSelectExecutor(ExtendedCosmosContainer itemsContainer) {
+        public ItemSelectQueryExecutor constructSelectExecutor(String queryName,
+                                                               ExtendedCosmosContainer itemsContainer) {
             return (size, continuationToken) -> {
-                String query = constructSelect();
+                SqlQuerySpec query = constructSelectSpec();
                 ExtendedCosmosContainer.Page res;
                 try {
                     res = itemsContainer.runCrossPartitionPageableQuery(
-                            query, size, continuationToken);
+                            queryName, query, size, continuationToken);
                 } catch (Exception e) {
-                    log.error("Constructed query execution ended with error. Query: [{}]", query);
+                    log.error("Constructed query execution ended with error. Query: [{}]", query.getQueryText());
                     throw e;
                 }
                 List<Item> queriedItems = res.getContent()
@@ -547,15 +583,16 @@ public class ItemQuery {
             };
         }
 
-        public ItemCountQueryExecutor constructCountExecutor(ExtendedCosmosContainer itemsContainer) {
+        public ItemCountQueryExecutor constructCountExecutor(String queryName,
+                                                             ExtendedCosmosContainer itemsContainer) {
             return () -> {
-                String query = constructCount();
+                SqlQuerySpec query = constructCountSpec();
                 ExtendedCosmosContainer.Page res;
                 try {
-                    res = itemsContainer.runCrossPartitionPageableQuery(query,
+                    res = itemsContainer.runCrossPartitionPageableQuery(queryName, query,
                             TOP_ELEMENT_IN_CONTAINER_PAGE_SIZE, TOP_ELEMENT_IN_CONTAINER_CONTINUATION);
                 } catch (Exception e) {
-                    log.error("Constructed query execution ended with error. Query: [{}]", query);
+                    log.error("Constructed query execution ended with error. Query: [{}]", query.getQueryText());
                     throw e;
                 }
                 Optional<Integer> optionalCount = res.getContent()
@@ -566,15 +603,17 @@ public class ItemQuery {
         }
 
 
-        public FilterSampleQueryExecutor constructSampleExecutor(ExtendedCosmosContainer itemsContainer, ItemDataField field) {
+        public FilterSampleQueryExecutor constructSampleExecutor(String queryName,
+                                                                 ExtendedCosmosContainer itemsContainer,
+                                                                 ItemDataField field) {
             return () -> {
-                String query = constructSample(field);
+                SqlQuerySpec query = constructSampleSpec(field);
                 try {
-                    return itemsContainer.runCrossPartitionQuery(query)
+                    return itemsContainer.streamCrossPartitionQuery(queryName, query)
                             .map(cip -> cip.get("val").asText())
                             .collect(Collectors.toSet());
                 } catch (Exception e) {
-                    log.error("Constructed query execution ended with error. Query: [{}]", query);
+                    log.error("Constructed query execution ended with error. Query: [{}]", query.getQueryText());
                     throw e;
                 }
             };
@@ -594,10 +633,10 @@ public class ItemQuery {
             }
 
             queryParts.add(String.format(
-                    "%s.%s IN ('%s')",
+                    "ARRAY_CONTAINS(%s, %s.%s)",
+                    parameter(new ArrayList<>(collection)),
                     alias,
-                    itemDataField.getPath(),
-                    String.join("','", collection))
+                    itemDataField.getPath())
             );
             return this;
         }
@@ -621,10 +660,10 @@ public class ItemQuery {
             FieldDecomposition decomposition = decomposeField(field);
 
             String condition = String.format(
-                    "%s%s IN ('%s')",
+                    "ARRAY_CONTAINS(%s, %s%s)",
+                    parameter(new ArrayList<>(collection)),
                     decomposition.getLocalAlias(),
-                    decomposition.getPath(),
-                    String.join("','", collection));
+                    decomposition.getPath());
 
             List<String> parts = joinParts.computeIfAbsent(decomposition.getArray(), key -> new LinkedList<>());
             if (!parts.isEmpty()) {
@@ -642,20 +681,20 @@ public class ItemQuery {
                 return this;
             }
 
+            String queueIdsParameter = parameter(new ArrayList<>(collection));
             String labelQueueQuery = String.format(
-                    "%s.%s IN ('%s')",
+                    "ARRAY_CONTAINS(%s, %s.%s)",
+                    queueIdsParameter,
                     alias,
-                    ItemDataField.LABEL_QUEUE_ID.getPath(),
-                    String.join("','", collection));
+                    ItemDataField.LABEL_QUEUE_ID.getPath());
 
-            String queuesQuery = collection.stream()
-                    .map(queueId ->
-                            String.format(
-                                    "ARRAY_CONTAINS(%s.%s, '%s')",
-                                    alias,
-                                    decomposeField(ItemDataField.QUEUE_IDS).getArray(),
-                                    queueId))
-                    .collect(Collectors.joining(" OR "));
+            String queueIdsArray = decomposeField(ItemDataField.QUEUE_IDS).getArray();
+            String queuesQuery = String.format(
+                    "EXISTS(SELECT VALUE %1$s FROM %1$s IN %2$s.%3$s WHERE ARRAY_CONTAINS(%4$s, %1$s))",
+                    getJoinClauseAliasName(queueIdsArray),
+                    alias,
+                    queueIdsArray,
+                    queueIdsParameter);
 
             String residualQueueQuery = "false";
             if (residual) {
@@ -36,6 +36,8 @@ public class Item implements BasicItemInfo, Serializable {
     private OffsetDateTime imported;
     private OffsetDateTime enriched;
     private int enrichmentAttempts;
+    private OffsetDateTime nextEnrichmentAttempt;
+    private int enrichmentRetries;
     private boolean enrichmentFailed;
     private String enrichmentFailReason;
     @JsonProperty(value = "_ts")
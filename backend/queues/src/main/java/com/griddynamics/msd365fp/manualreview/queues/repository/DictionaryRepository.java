@@ -9,7 +9,7 @@ import com.azure.spring.data.cosmos.repository.CosmosRepository;
 
 import java.util.List;
 
-public interface DictionaryRepository extends CosmosRepository<DictionaryEntity, String> {
+public interface DictionaryRepository extends CosmosRepository<DictionaryEntity, String>, DictionaryRepositoryCustomMethods {
 
     List<DictionaryEntity> findAllByType(DictionaryType type);
 
@@ -0,0 +1,16 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.repository;
+
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.DictionaryEntity;
+import org.springframework.lang.NonNull;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DictionaryRepositoryCustomMethods {
+
+    List<BulkWriteResult<DictionaryEntity>> bulkSave(@NonNull final Collection<DictionaryEntity> entities);
+}
@@ -3,6 +3,8 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.repository;
 
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
 import com.griddynamics.msd365fp.manualreview.model.Label;
 import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
 import com.griddynamics.msd365fp.manualreview.queues.model.*;
@@ -14,9 +16,11 @@ import org.springframework.lang.Nullable;
 
 import java.time.OffsetDateTime;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 public interface ItemRepositoryCustomMethods {
@@ -58,12 +62,23 @@ public interface ItemRepositoryCustomMethods {
             final int size,
             final String continuationToken);
 
-    PageableCollection<String> findUnenrichedItemIds(
+    /**
+     * @return items which haven't been enriched yet in order of import
+     * with only IDs, import times and the retry state
+     */
+    PageableCollection<Item> findUnenrichedItems(
             final int size,
             final String continuationToken);
 
-    PageableCollection<String> findUnenrichedItemIds(
+    /**
+     * @param nextAttemptUpperBoundary items whose next enrichment attempt
+     *                                 is scheduled after it are skipped
+     * @return items which haven't been enriched yet in order of import
+     * with only IDs, import times and the retry state
+     */
+    PageableCollection<Item> findUnenrichedItems(
             final OffsetDateTime importedUpperBoundary,
+            final OffsetDateTime nextAttemptUpperBoundary,
             final int size,
             final String continuationToken);
 
@@ -148,4 +163,33 @@ public interface ItemRepositoryCustomMethods {
             @NonNull final Set<String> ids,
             final int size,
             @Nullable final String continuationToken);
+
+    /**
+     * Saves items with bulk requests. Items which have been modified
+     * by another process since they were read are not saved.
+     *
+     * @param items items to save
+     * @return results of saving in the order of the items
+     */
+    List<BulkWriteResult<Item>> bulkSave(@NonNull final Collection<Item> items);
+
+    /**
+     * Writes only the patched fields of the item. The patch is applied
+     * only if the item hasn't been modified since it was read.
+     *
+     * @param item  the item which already contains the patched values
+     * @param patch changes of the item
+     * @return the item with the updated version
+     */
+    Item patch(@NonNull final Item item, @NonNull final DocumentPatch patch);
+
+    /**
+     * Bulk version of {@link #patch(Item, DocumentPatch)}.
+     *
+     * @param items   items which already contain the patched values
+     * @param patches provides changes of an item
+     * @return results of patching in the order of the items
+     */
+    List<BulkWriteResult<Item>> bulkPatch(@NonNull final Collection<Item> items,
+                                          @NonNull final Function<Item, DocumentPatch> patches);
 }
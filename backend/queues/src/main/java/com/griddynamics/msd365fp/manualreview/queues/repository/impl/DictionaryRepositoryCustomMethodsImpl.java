@@ -0,0 +1,27 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.repository.impl;
+
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.DictionaryEntity;
+import com.griddynamics.msd365fp.manualreview.queues.repository.DictionaryRepositoryCustomMethods;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.lang.NonNull;
+
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class DictionaryRepositoryCustomMethodsImpl implements DictionaryRepositoryCustomMethods {
+
+    @Qualifier("dictionariesContainer")
+    private final ExtendedCosmosContainer dictionariesContainer;
+
+    @Override
+    public List<BulkWriteResult<DictionaryEntity>> bulkSave(@NonNull final Collection<DictionaryEntity> entities) {
+        return dictionariesContainer.upsertAll("bulkSave", entities);
+    }
+}
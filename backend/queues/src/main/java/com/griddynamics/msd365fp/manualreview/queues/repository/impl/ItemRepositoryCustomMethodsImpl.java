@@ -3,7 +3,11 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.repository.impl;
 
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
 import com.griddynamics.msd365fp.manualreview.model.Label;
 import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
@@ -21,6 +25,7 @@ import org.springframework.util.StringUtils;
 
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -37,6 +42,15 @@ import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.TOP
 @RequiredArgsConstructor
 public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMethods {
 
+    private static final String UNENRICHED_ITEM_SELECT = "SELECT i.id, i.imported, " +
+            "i.enrichmentAttempts, i.nextEnrichmentAttempt, i.enrichmentRetries FROM i WHERE ";
+    private static final String UNENRICHED_ITEM_CONDITION = "IS_NULL(i.enriched) " +
+            "AND (" +
+            "   NOT IS_DEFINED(i.enrichmentFailed) " +
+            "   OR IS_NULL(i.enrichmentFailed) " +
+            "   OR NOT i.enrichmentFailed " +
+            ") ";
+
     @Qualifier("itemsContainer")
     private final ExtendedCosmosContainer itemsContainer;
 
@@ -44,15 +58,15 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
     public Map<String, Integer> countQueueViewSizes(@NonNull final Set<String> queueIds,
                                                     @NonNull final QueueViewType viewType) {
         Map<String, Integer> result = new HashMap<>();
-        itemsContainer.runCrossPartitionQuery(
+        itemsContainer.streamCrossPartitionQuery("countQueueViewSizes", new SqlQuerySpec(
                 String.format("SELECT VALUE root FROM (" +
                                 "SELECT qid, count(1) As cnt FROM i " +
-                                "JOIN (SELECT VALUE queueId FROM queueId IN i.queueIds WHERE queueId IN ('%s')) qid " +
+                                "JOIN (SELECT VALUE queueId FROM queueId IN i.queueIds WHERE ARRAY_CONTAINS(@queueIds, queueId)) qid " +
                                 "WHERE %s " +
                                 "GROUP BY qid) " +
                                 "AS root",
-                        String.join("','", queueIds),
-                        viewType.getQueryCondition()))
+                        viewType.getQueryCondition()),
+                new SqlParameter("@queueIds", new ArrayList<>(queueIds))))
                 .forEach(cip ->
                         result.compute(cip.get("qid").asText(), (key, val) -> {
                             int cnt = cip.get("cnt").asInt();
@@ -69,7 +83,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .queueIdsAreEmpty()
                 .and()
                 .customQueryCondition(viewType.getQueryCondition())
-                .constructCountExecutor(itemsContainer)
+                .constructCountExecutor("countResidualQueueViewSize", itemsContainer)
                 .execute();
     }
 
@@ -89,7 +103,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .and().held(held)
                 .and().customQueryCondition(viewType.getQueryCondition())
                 .order(order)
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("findActiveItemsByQueueIdsEmpty", itemsContainer)
                 .execute(size, continuationToken);
     }
 
@@ -99,7 +113,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
             @Nullable final String continuationToken) {
         return ItemQuery.constructor("i")
                 .hasEvents()
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("findUnreportedItems", itemsContainer)
                 .execute(size, continuationToken);
     }
 
@@ -107,7 +121,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
     public int countActiveItems() {
         return ItemQuery.constructor("i")
                 .active(true)
-                .constructCountExecutor(itemsContainer)
+                .constructCountExecutor("countActiveItems", itemsContainer)
                 .execute();
     }
 
@@ -116,7 +130,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
         return ItemQuery.constructor("i")
                 .active(true)
                 .and().queueIdsAreEmpty()
-                .constructCountExecutor(itemsContainer)
+                .constructCountExecutor("countActiveItemsByQueueIdsEmpty", itemsContainer)
                 .execute();
     }
 
@@ -131,7 +145,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .or().heldInQueue(queueId)
                 .or().escalatedInQueue(queueId)
                 .and().active(true)
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("findActiveItemsRelatedToQueue", itemsContainer)
                 .execute(size, continuationToken);
     }
 
@@ -151,7 +165,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .and().held(held)
                 .and().customQueryCondition(viewType.getQueryCondition())
                 .order(order)
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("findActiveItemsByQueueView", itemsContainer)
                 .execute(size, continuationToken);
     }
 
@@ -160,6 +174,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
             final int size,
             final String continuationToken) {
         ExtendedCosmosContainer.Page res = itemsContainer.runCrossPartitionPageableQuery(
+                "findActiveItemIds",
                 "SELECT i.id FROM i WHERE i.active ORDER BY i._ts",
                 size,
                 continuationToken);
@@ -172,30 +187,42 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
     }
 
     @Override
-    public PageableCollection<String> findUnenrichedItemIds(
+    public PageableCollection<Item> findUnenrichedItems(
             final int size,
             final String continuationToken) {
-        return findUnenrichedItemIds(OffsetDateTime.now(), size, continuationToken);
+        return findUnenrichedItems(
+                new SqlQuerySpec(UNENRICHED_ITEM_SELECT + UNENRICHED_ITEM_CONDITION + "ORDER BY i.imported"),
+                size,
+                continuationToken);
     }
 
     @Override
-    public PageableCollection<String> findUnenrichedItemIds(
+    public PageableCollection<Item> findUnenrichedItems(
             final OffsetDateTime importedUpperBoundary,
+            final OffsetDateTime nextAttemptUpperBoundary,
             final int size,
             final String continuationToken) {
-        ExtendedCosmosContainer.Page res = itemsContainer.runCrossPartitionPageableQuery(
-                String.format("SELECT i.id FROM i WHERE IS_NULL(i.enriched) " +
-                                "AND (" +
-                                "   NOT IS_DEFINED(i.enrichmentFailed) " +
-                                "   OR IS_NULL(i.enrichmentFailed) " +
-                                "   OR NOT i.enrichmentFailed " +
-                                ") AND i.imported <= %s " +
-                                "ORDER BY i._ts",
-                        importedUpperBoundary.toEpochSecond()),
+        return findUnenrichedItems(
+                new SqlQuerySpec(UNENRICHED_ITEM_SELECT + UNENRICHED_ITEM_CONDITION +
+                        "AND i.imported <= @importedUpperBoundary " +
+                        "AND (NOT IS_DEFINED(i.nextEnrichmentAttempt) " +
+                        "   OR IS_NULL(i.nextEnrichmentAttempt) " +
+                        "   OR i.nextEnrichmentAttempt <= @nextAttemptUpperBoundary) " +
+                        "ORDER BY i.imported",
+                        new SqlParameter("@importedUpperBoundary", importedUpperBoundary.toEpochSecond()),
+                        new SqlParameter("@nextAttemptUpperBoundary", nextAttemptUpperBoundary.toEpochSecond())),
                 size,
                 continuationToken);
-        List<String> queriedItems = res.getContent()
-                .map(cip -> Optional.ofNullable((String) cip.get("id").asText()))
+    }
+
+    private PageableCollection<Item> findUnenrichedItems(
+            final SqlQuerySpec query,
+            final int size,
+            final String continuationToken) {
+        ExtendedCosmosContainer.Page res = itemsContainer.runCrossPartitionPageableQuery(
+                "findUnenrichedItems", query, size, continuationToken);
+        List<Item> queriedItems = res.getContent()
+                .map(cip -> itemsContainer.castCosmosObjectToClassInstance(cip, Item.class))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
                 .collect(Collectors.toList());
@@ -208,11 +235,12 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
             final int size,
             @Nullable final String continuationToken) {
         ExtendedCosmosContainer.Page res = itemsContainer.runCrossPartitionPageableQuery(
-                "SELECT i.id, i.imported, i.enriched, i.active, " +
+                "findEnrichedItemInfoByIds",
+                new SqlQuerySpec("SELECT i.id, i.imported, i.enriched, i.active, " +
                         "i.label, i.queueIds, i.lock, i.escalation, i.hold " +
                         "FROM i WHERE IS_DEFINED(i.enriched) AND NOT IS_NULL(i.enriched) " +
-                        "AND i.id IN ('" +
-                        String.join("','", ids) + "')",
+                        "AND ARRAY_CONTAINS(@ids, i.id)",
+                        new SqlParameter("@ids", new ArrayList<>(ids))),
                 size,
                 continuationToken);
         List<BasicItemInfo> queriedItems = res.getContent()
@@ -229,10 +257,11 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
             final int size,
             @Nullable final String continuationToken) {
         ExtendedCosmosContainer.Page res = itemsContainer.runCrossPartitionPageableQuery(
-                "SELECT i " +
+                "findEnrichedItemsByIds",
+                new SqlQuerySpec("SELECT i " +
                         "FROM i WHERE IS_DEFINED(i.enriched) AND NOT IS_NULL(i.enriched) " +
-                        "AND i.id IN ('" +
-                        String.join("','", ids) + "')",
+                        "AND ARRAY_CONTAINS(@ids, i.id)",
+                        new SqlParameter("@ids", new ArrayList<>(ids))),
                 size,
                 continuationToken);
         List<Item> queriedItems = res.getContent()
@@ -263,7 +292,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
         }
 
         return constructor
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("findItemById", itemsContainer)
                 .execute(TOP_ELEMENT_IN_CONTAINER_PAGE_SIZE, TOP_ELEMENT_IN_CONTAINER_CONTINUATION)
                 .stream().findFirst();
     }
@@ -274,16 +303,20 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
             @Nullable final String queueViewId,
             @NonNull final Integer size,
             @Nullable final String continuationToken) {
+        List<SqlParameter> parameters = new ArrayList<>();
+        if (ownerId != null) parameters.add(new SqlParameter("@ownerId", ownerId));
+        if (queueViewId != null) parameters.add(new SqlParameter("@queueViewId", queueViewId));
         String query = String.format("SELECT i FROM i " +
                         "WHERE i.active=true " +
                         "AND NOT IS_NULL(i.lock.ownerId) " +
                         "AND %s " +
                         "AND %s " +
                         "ORDER BY i._ts ASC",
-                ownerId == null ? "true" : String.format("i.lock.ownerId='%s'", ownerId),
-                queueViewId == null ? "true" : String.format("i.lock.queueViewId='%s'", queueViewId));
-        ExtendedCosmosContainer.Page res =
-                itemsContainer.runCrossPartitionPageableQuery(query, size, continuationToken);
+                ownerId == null ? "true" : "i.lock.ownerId=@ownerId",
+                queueViewId == null ? "true" : "i.lock.queueViewId=@queueViewId");
+        ExtendedCosmosContainer.Page res = itemsContainer.runCrossPartitionPageableQuery(
+                "findLockedItems",
+                new SqlQuerySpec(query, parameters), size, continuationToken);
         List<Item> lockedItems = res.getContent()
                 .map(cip -> itemsContainer.castCosmosObjectToClassInstance(cip.get("i"), Item.class))
                 .flatMap(Optional::stream)
@@ -308,7 +341,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .and().notEscalation()
                 .and().updatedAfter(enrichedSince)
                 .and().includeLocked(includeLocked)
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("findUnassignedItemsByItemFilters", itemsContainer)
                 .execute(size, continuationToken);
     }
 
@@ -317,7 +350,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
         return ItemQuery.constructor("i")
                 .active(true)
                 .and().updatedAfter(time)
-                .constructCountExecutor(itemsContainer)
+                .constructCountExecutor("countActiveItemsUpdatedAfter", itemsContainer)
                 .execute();
     }
 
@@ -326,7 +359,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
         return ItemQuery.constructor("i")
                 .all(itemFilters)
                 .and().active(true)
-                .constructCountExecutor(itemsContainer)
+                .constructCountExecutor("countActiveItemsByItemFilters", itemsContainer)
                 .execute();
     }
 
@@ -337,18 +370,19 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
         return ItemQuery.constructor("i")
                 .filterFieldIsDefined(field)
                 .and().enrichedAfter(enrichedAfter)
-                .constructSampleExecutor(itemsContainer, field.getItemDataField())
+                .constructSampleExecutor("findFilterSamples", itemsContainer, field.getItemDataField())
                 .execute();
     }
 
 
     @Override
     public Map<String, Long> countLockedItemsPerQueues(Collection<String> queueIds) {
-        String query = "SELECT VALUE root FROM \n" +
+        SqlQuerySpec query = new SqlQuerySpec("SELECT VALUE root FROM \n" +
                 "(SELECT COUNT(1) as count, i.lock.queueId FROM i \n" +
-                "WHERE i.lock.queueId IN ('" + String.join("','", queueIds) + "') " +
-                "GROUP BY i.lock.queueId) as root";
-        Stream<JsonNode> res = itemsContainer.runCrossPartitionQuery(query);
+                "WHERE ARRAY_CONTAINS(@queueIds, i.lock.queueId) " +
+                "GROUP BY i.lock.queueId) as root",
+                new SqlParameter("@queueIds", new ArrayList<>(queueIds)));
+        Stream<JsonNode> res = itemsContainer.streamCrossPartitionQuery("countLockedItemsPerQueues", query);
         return res
                 .map(cip -> Collections.singletonMap(cip.get("queueId").asText(), cip.get("count").asLong()))
                 .flatMap(m -> m.entrySet().stream())
@@ -363,7 +397,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .active(true)
                 .and().importedBefore(importedBefore)
                 .and().queueId(queueId)
-                .constructCountExecutor(itemsContainer)
+                .constructCountExecutor("countItemsImportedBeforeByQueue", itemsContainer)
                 .execute();
     }
 
@@ -375,7 +409,7 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .active(true)
                 .and().lockedBefore(lockedBefore)
                 .and().lockedInQueue(queueId)
-                .constructCountExecutor(itemsContainer)
+                .constructCountExecutor("countItemsLockedBeforeByQueue", itemsContainer)
                 .execute();
     }
 
@@ -400,14 +434,15 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .and().active(true)
                 .and().queueId(queueId)
                 .and().customQueryCondition(viewType.getQueryCondition())
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("findUrgentItems", itemsContainer)
                 .execute(size, continuationToken);
     }
 
     @Override
     public Stream<Bucket> getRiskScoreDistribution(final int bucketSize,
                                                    final String queueId) {
-        return itemsContainer.runCrossPartitionQuery(
+        return itemsContainer.streamCrossPartitionQuery(
+                "getRiskScoreDistribution",
                 String.format(
                         "SELECT VALUE root FROM ( "
                                 + "SELECT "
@@ -468,8 +503,24 @@ public class ItemRepositoryCustomMethodsImpl implements ItemRepositoryCustomMeth
                 .and().inField(ItemDataField.LABEL_AUTHOR_ID, labelAuthorIds)
                 //ORDER BY
                 .order(new Sort.Order(sortingOrder, sortingField.getPath()))
-                .constructSelectExecutor(itemsContainer)
+                .constructSelectExecutor("searchForItems", itemsContainer)
                 .execute(size, continuationToken);
     }
 
+    @Override
+    public List<BulkWriteResult<Item>> bulkSave(@NonNull final Collection<Item> items) {
+        return itemsContainer.upsertAll("bulkSave", items);
+    }
+
+    @Override
+    public Item patch(@NonNull final Item item, @NonNull final DocumentPatch patch) {
+        return itemsContainer.patch("patch", item, patch);
+    }
+
+    @Override
+    public List<BulkWriteResult<Item>> bulkPatch(@NonNull final Collection<Item> items,
+                                                 @NonNull final Function<Item, DocumentPatch> patches) {
+        return itemsContainer.patchAll("bulkPatch", items, patches);
+    }
+
 }
@@ -3,6 +3,7 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.repository.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
 import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
 import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Queue;
@@ -15,6 +16,7 @@ import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Custom queries implementation.
@@ -42,7 +44,7 @@ public class QueueRepositoryCustomMethodsImpl implements QueueRepositoryCustomMe
                 active == null ? "true" : String.format("q.active=%s", active),
                 residual == null ? "true" : String.format("q.residual=%s", residual));
         ExtendedCosmosContainer.Page res =
-                queuesContainer.runCrossPartitionPageableQuery(query, pageSize, continuationToken);
+                queuesContainer.runCrossPartitionPageableQuery("getQueueList", query, pageSize, continuationToken);
         List<Queue> queues = res.getContent()
                 .map(cip -> queuesContainer.castCosmosObjectToClassInstance(cip.get("q"), Queue.class))
                 .flatMap(Optional::stream)
@@ -52,14 +54,17 @@ public class QueueRepositoryCustomMethodsImpl implements QueueRepositoryCustomMe
 
     @Override
     public Optional<Queue> getActiveQueueByIdOrViewId(@NonNull final String id) {
-        return queuesContainer.runCrossPartitionQuery(
+        try (Stream<JsonNode> res = queuesContainer.streamCrossPartitionQuery(
+                "getActiveQueueByIdOrViewId",
                 String.format("SELECT q FROM q " +
                         "JOIN view IN q.views " +
                         "WHERE q.active=true " +
-                        "AND (view.viewId='%1$s' OR q.id='%1$s')", id))
-                .map(cip -> queuesContainer.castCosmosObjectToClassInstance(cip.get("q"), Queue.class))
-                .flatMap(Optional::stream)
-                .findFirst();
+                        "AND (view.viewId='%1$s' OR q.id='%1$s')", id))) {
+            return res
+                    .map(cip -> queuesContainer.castCosmosObjectToClassInstance(cip.get("q"), Queue.class))
+                    .flatMap(Optional::stream)
+                    .findFirst();
+        }
     }
 
     @Override
@@ -68,6 +73,7 @@ public class QueueRepositoryCustomMethodsImpl implements QueueRepositoryCustomMe
             final int pageSize,
             final String continuationToken) {
         ExtendedCosmosContainer.Page res = queuesContainer.runCrossPartitionPageableQuery(
+                "findQueuesCreatedOrDeletedAfter",
                 "SELECT q FROM q WHERE " +
                         " q.created >= " + dateTime.toEpochSecond() +
                         " OR q.deleted >= " + dateTime.toEpochSecond(),
@@ -3,93 +3,595 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.griddynamics.msd365fp.manualreview.model.dfp.raw.*;
+import com.griddynamics.msd365fp.manualreview.queues.util.AdaptiveConcurrencyLimiter;
+import com.griddynamics.msd365fp.manualreview.queues.util.DataBufferInputStream;
+import com.griddynamics.msd365fp.manualreview.queues.util.ExplorerEntityDecoder;
+import com.griddynamics.msd365fp.manualreview.queues.util.MappedDiskCache;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.DFP_RESPONSE_PREFETCH;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.DISK_CACHE_COMPACTION_INTERVAL;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.DISK_CACHE_MAX_PENDING_WRITES;
 
 /**
  * Service has methods for enriching all types of {@link ExplorerEntity}s.
  * It uses DFP client which call DFP Explorer API to retrieve purchases,
  * payment instruments, users by {@link Node#getId()}.
+ * <p>
+ * Each exploration has a non-blocking variant which returns {@link Mono}
+ * and a blocking one for callers which need the result immediately.
+ * <p>
+ * Traversals are cached, and concurrent cache misses for the same node
+ * share a single outstanding request to DFP. Hits and misses are reported
+ * by the cache manager, the number of coalesced calls and the latency
+ * of requests are reported per traversal type.
+ * <p>
+ * Responses are decoded by {@link ExplorerEntityDecoder}s while they're
+ * received, so the purchase history of a user can be explored without
+ * buffering the whole response or materialising the nodes and edges
+ * which aren't needed for it.
+ * <p>
+ * Requests to DFP are limited by an {@link AdaptiveConcurrencyLimiter}
+ * which shrinks the number of concurrent requests when DFP slows down,
+ * and by the {@code dfp} circuit breaker which stops the requests
+ * when DFP fails.
+ * <p>
+ * If {@code azure.dfp.disk-cache.enabled} is set, traversals are also
+ * kept in a {@link MappedDiskCache}, so the instance starts with warm
+ * caches after a restart. Traversals are written and the disk cache is
+ * compacted by a dedicated thread, so responses of DFP aren't held up
+ * by the disk.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DFPExplorerService {
 
+    public static final String TRAVERSAL_TAG = "traversal";
+    public static final String USER_EMAIL_LIST_CACHE = "user-email-list";
+    public static final String TRAVERSAL_PURCHASE_CACHE = "traversal-purchase";
+    public static final String TRAVERSAL_PI_CACHE = "traversal-pi";
+    public static final String TRAVERSAL_USER_CACHE = "traversal-user";
+    public static final String TRAVERSAL_USER_HISTORY_CACHE = "traversal-user-history";
+    public static final String DFP_CIRCUIT_BREAKER = "dfp";
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper mapper;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final Map<String, Mono<ExplorerEntity>> inFlightExplorations = new ConcurrentHashMap<>();
+
     @Setter(onMethod = @__({@Autowired, @Qualifier("azureDFPAPIWebClient")}))
     private WebClient dfpClient;
+    @Setter(onMethod = @__({@Autowired}))
+    private CacheManager cacheManager;
     @Value("${azure.dfp.graph-explorer-url}")
     private String dfpExplorerUrl;
+    @Value("${azure.dfp.graph-explorer-timeout}")
+    private Duration dfpExplorerTimeout;
     @Value("${azure.dfp.user-email-list-url}")
     private String userEmailListUrl;
+    @Value("${azure.dfp.user-email-list-timeout}")
+    private Duration userEmailListTimeout;
+    @Value("${azure.dfp.user-history-limit}")
+    private int userHistoryLimit;
+    @Value("${azure.dfp.concurrency-limit.initial-limit}")
+    private int initialConcurrencyLimit;
+    @Value("${azure.dfp.concurrency-limit.min-limit}")
+    private int minConcurrencyLimit;
+    @Value("${azure.dfp.concurrency-limit.max-limit}")
+    private int maxConcurrencyLimit;
+    @Value("${azure.dfp.concurrency-limit.max-pending}")
+    private int maxPendingRequests;
+    @Value("${azure.dfp.disk-cache.enabled}")
+    private boolean diskCacheEnabled;
+    @Value("${azure.dfp.disk-cache.directory}")
+    private String diskCacheDirectory;
+    @Value("${azure.dfp.disk-cache.ttl}")
+    private Duration diskCacheTtl;
+    @Value("${azure.dfp.disk-cache.segment-size}")
+    private DataSize diskCacheSegmentSize;
+    @Value("${azure.dfp.disk-cache.max-size}")
+    private DataSize diskCacheMaxSize;
+
+    private ExplorerEntityDecoder traversalDecoder;
+    private ExplorerEntityDecoder userHistoryDecoder;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private CircuitBreaker circuitBreaker;
+    private MappedDiskCache diskCache;
+    private ScheduledThreadPoolExecutor diskCacheWriter;
+
+    @PostConstruct
+    public void initialize() {
+        traversalDecoder = ExplorerEntityDecoder.builder()
+                .mapper(mapper)
+                .build();
+        userHistoryDecoder = ExplorerEntityDecoder.builder()
+                .mapper(mapper)
+                .nodeNames(Set.of(PurchaseNodeData.NODE_NAME))
+                .skipEdges(true)
+                .nodeLimits(Map.of(PurchaseNodeData.NODE_NAME, userHistoryLimit))
+                .nodePriority(Comparator.comparing(
+                        node -> node.getData() == null
+                                ? null
+                                : ((PurchaseNodeData) node.getData()).getMerchantLocalDate(),
+                        Comparator.nullsFirst(Comparator.<OffsetDateTime>naturalOrder())))
+                .build();
+        concurrencyLimiter = new AdaptiveConcurrencyLimiter(DFP_CIRCUIT_BREAKER,
+                initialConcurrencyLimit,
+                minConcurrencyLimit,
+                maxConcurrencyLimit,
+                maxPendingRequests,
+                System::nanoTime);
+        circuitBreaker = circuitBreakerRegistry.circuitBreaker(DFP_CIRCUIT_BREAKER);
+        Gauge.builder("dfp.limiter.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("The current limit of concurrent requests to DFP")
+                .register(meterRegistry);
+        Gauge.builder("dfp.limiter.in-flight", concurrencyLimiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("The number of requests to DFP in progress")
+                .register(meterRegistry);
+        Gauge.builder("dfp.limiter.pending", concurrencyLimiter, AdaptiveConcurrencyLimiter::getPending)
+                .description("The number of requests to DFP waiting for the limit")
+                .register(meterRegistry);
+        FunctionCounter.builder("dfp.limiter.rejected", concurrencyLimiter, AdaptiveConcurrencyLimiter::getRejected)
+                .description("The number of requests to DFP rejected due to the limit")
+                .register(meterRegistry);
+        if (diskCacheEnabled) {
+            openDiskCache();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (diskCacheWriter != null) {
+            diskCacheWriter.shutdown();
+            try {
+                if (!diskCacheWriter.awaitTermination(1, TimeUnit.SECONDS)) {
+                    log.warn("Pending writes to the disk cache of traversals are dropped.");
+                    diskCacheWriter.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                diskCacheWriter.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (diskCache != null) {
+            try {
+                diskCache.close();
+            } catch (IOException e) {
+                log.warn("Disk cache of traversals hasn't been closed properly: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The disk cache is optional, so the service works without it
+     * if the cache can't be opened.
+     */
+    private void openDiskCache() {
+        try {
+            diskCache = MappedDiskCache.open(Path.of(diskCacheDirectory),
+                    diskCacheSegmentSize.toBytes(),
+                    diskCacheMaxSize.toBytes(),
+                    System::currentTimeMillis);
+        } catch (IOException | RuntimeException e) {
+            log.error("Disk cache of traversals can't be opened in [{}], traversals are cached only in memory.",
+                    diskCacheDirectory, e);
+            return;
+        }
+        diskCacheWriter = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "dfp-disk-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        diskCacheWriter.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        diskCacheWriter.scheduleWithFixedDelay(this::compactDiskCache,
+                DISK_CACHE_COMPACTION_INTERVAL.toMillis(),
+                DISK_CACHE_COMPACTION_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS);
+        Gauge.builder("dfp.disk-cache.size", diskCache, MappedDiskCache::size)
+                .description("The number of traversals in the disk cache")
+                .register(meterRegistry);
+        Gauge.builder("dfp.disk-cache.disk-size", diskCache, MappedDiskCache::diskSize)
+                .description("The size of segment files of the disk cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false if DFP requests are stopped by the circuit breaker
+     */
+    public boolean isAvailable() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    /**
+     * Checks whether the failure is caused by unavailability of DFP rather
+     * than by the explored data, i.e. the request hasn't been permitted
+     * or DFP has been failing since the circuit breaker isn't closed.
+     */
+    public boolean isUnavailabilityCause(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallNotPermittedException ||
+                    cause instanceof AdaptiveConcurrencyLimiter.LimitExceededException) {
+                return true;
+            }
+        }
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return state == CircuitBreaker.State.OPEN ||
+                state == CircuitBreaker.State.FORCED_OPEN ||
+                state == CircuitBreaker.State.HALF_OPEN;
+    }
 
-    @Cacheable(value = "user-email-list")
     public UserEmailListEntity exploreUserEmailList(final String email) {
-        UserEmailListEntityRequest request = new UserEmailListEntityRequest(email);
-        log.info("Start User.Email list retrieving for [{}].", email);
-        UserEmailListEntity result = dfpClient
-                .post()
-                .uri(userEmailListUrl)
-                .body(Mono.just(request), UserEmailListEntityRequest.class)
-                .retrieve()
-                .bodyToMono(UserEmailListEntity.class)
-                .block();
-        log.info("User.Email list for [{}] has been retrieved successfully: [{}].", email,
-                result != null ? result.getCommon() : "null");
-        return result;
-    }
-
-    @Cacheable(value = "traversal-purchase", unless = "#result.isEmpty()")
+        return exploreUserEmailListAsync(email).block();
+    }
+
+    public Mono<UserEmailListEntity> exploreUserEmailListAsync(final String email) {
+        return Mono.defer(() -> {
+            Cache cache = Objects.requireNonNull(cacheManager.getCache(USER_EMAIL_LIST_CACHE));
+            UserEmailListEntity cached = cache.get(email, UserEmailListEntity.class);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            UserEmailListEntityRequest request = new UserEmailListEntityRequest(email);
+            log.info("Start User.Email list retrieving for [{}].", email);
+            return limited(userEmailListTimeout, dfpClient
+                    .post()
+                    .uri(userEmailListUrl)
+                    .body(Mono.just(request), UserEmailListEntityRequest.class)
+                    .retrieve()
+                    .bodyToMono(UserEmailListEntity.class)
+                    .timeout(userEmailListTimeout))
+                    .doOnNext(result -> {
+                        log.info("User.Email list for [{}] has been retrieved successfully: [{}].", email,
+                                result.getCommon());
+                        cache.put(email, result);
+                    });
+        });
+    }
+
     public ExplorerEntity explorePurchase(final String id) {
-        ExplorerEntityRequest request = ExplorerEntityRequest.builder()
-                .attribute("PurchaseId")
-                .nodeType("Purchase")
-                .value(id)
-                .build();
-        return explore(request);
+        return explorePurchaseAsync(id).block();
+    }
+
+    public Mono<ExplorerEntity> explorePurchaseAsync(final String id) {
+        return explore(TRAVERSAL_PURCHASE_CACHE, id);
     }
 
-    @Cacheable(value = "traversal-pi", unless = "#result.isEmpty()")
     public ExplorerEntity explorePaymentInstrument(final String id) {
-        ExplorerEntityRequest request = ExplorerEntityRequest.builder()
-                .attribute("PaymentInstrumentId")
-                .nodeType("PaymentInstrument")
-                .value(id)
-                .build();
-        return explore(request);
+        return explorePaymentInstrumentAsync(id).block();
+    }
+
+    public Mono<ExplorerEntity> explorePaymentInstrumentAsync(final String id) {
+        return explore(TRAVERSAL_PI_CACHE, id);
     }
 
-    @Cacheable(value = "traversal-user", unless = "#result.isEmpty()")
     public ExplorerEntity exploreUser(final String id) {
-        ExplorerEntityRequest request = ExplorerEntityRequest.builder()
-                .attribute("UserId")
-                .nodeType("User")
-                .value(id)
-                .build();
-        return explore(request);
-    }
-
-    private ExplorerEntity explore(final ExplorerEntityRequest request) {
-        log.info("Start exploration of [{}] [{}]", request.getAttribute(), request.getValue());
-        ExplorerEntity result = dfpClient
-                .post()
-                .uri(dfpExplorerUrl)
-                .body(Mono.just(request), ExplorerEntityRequest.class)
-                .retrieve()
-                .bodyToMono(ExplorerEntity.class)
-                .block();
-        log.info("Exploration of [{}] [{}] has finished successfully", request.getAttribute(), request.getValue());
-        result.setRequestAttributeName(request.getAttribute());
-        result.setRequestAttributeValue(request.getValue());
-        return result;
+        return exploreUserAsync(id).block();
+    }
+
+    public Mono<ExplorerEntity> exploreUserAsync(final String id) {
+        return explore(TRAVERSAL_USER_CACHE, id);
+    }
+
+    /**
+     * Explores the purchase history of the user. Only purchase nodes
+     * of the traversal are decoded, and only the latest of them
+     * if there are more than {@code azure.dfp.user-history-limit}.
+     */
+    public Mono<ExplorerEntity> exploreUserHistoryAsync(final String id) {
+        return explore(TRAVERSAL_USER_HISTORY_CACHE, id);
+    }
+
+    /**
+     * Reloads a cached traversal which is due to refresh. The previous
+     * traversal is kept if DFP returns an empty one.
+     *
+     * @param cacheName the name of one of the traversal caches
+     */
+    public CompletableFuture<ExplorerEntity> refresh(final String cacheName,
+                                                     final String id,
+                                                     final ExplorerEntity previous) {
+        ExplorerEntityRequest request = traversalRequest(cacheName, id);
+        log.debug("Exploration of [{}] [{}] is refreshed ahead of expiration", request.getAttribute(), id);
+        Cache cache = Objects.requireNonNull(cacheManager.getCache(cacheName));
+        return exploreAndCache(cache, request, traversalDecoder(cacheName))
+                .map(result -> result.isEmpty() ? previous : result)
+                .toFuture();
+    }
+
+    /**
+     * Takes a non-empty exploration from the cache, or joins an exploration
+     * of the same node if it's in progress, or requests DFP otherwise.
+     * Cached explorations which are due to refresh are returned as they are
+     * and reloaded by the cache in the background.
+     */
+    private Mono<ExplorerEntity> explore(final String cacheName, final String id) {
+        return Mono.defer(() -> {
+            ExplorerEntityRequest request = traversalRequest(cacheName, id);
+            Cache cache = Objects.requireNonNull(cacheManager.getCache(cacheName));
+            ExplorerEntity cached = cached(cache, id);
+            if (cached == null) {
+                cached = readFromDiskCache(cache, request);
+            }
+            if (cached == null) {
+                return exploreAndCache(cache, request, traversalDecoder(cacheName));
+            }
+            return Mono.just(cached);
+        });
+    }
+
+    /**
+     * Reads the cache without loading the value. Caffeine caches which are
+     * loaded only to be refreshed would count every miss as a failed load.
+     */
+    @SuppressWarnings("unchecked")
+    private static ExplorerEntity cached(final Cache cache, final String id) {
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache) {
+            return (ExplorerEntity) ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache())
+                    .getIfPresent(id);
+        }
+        return cache.get(id, ExplorerEntity.class);
+    }
+
+    private ExplorerEntityRequest traversalRequest(final String cacheName, final String id) {
+        ExplorerEntityRequest.ExplorerEntityRequestBuilder request = ExplorerEntityRequest.builder().value(id);
+        switch (cacheName) {
+            case TRAVERSAL_PURCHASE_CACHE:
+                return request.attribute("PurchaseId").nodeType("Purchase").build();
+            case TRAVERSAL_PI_CACHE:
+                return request.attribute("PaymentInstrumentId").nodeType("PaymentInstrument").build();
+            case TRAVERSAL_USER_CACHE:
+            case TRAVERSAL_USER_HISTORY_CACHE:
+                return request.attribute("UserId").nodeType("User").build();
+            default:
+                throw new IllegalArgumentException(String.format("[%s] isn't a traversal cache", cacheName));
+        }
+    }
+
+    private ExplorerEntityDecoder traversalDecoder(final String cacheName) {
+        return TRAVERSAL_USER_HISTORY_CACHE.equals(cacheName) ? userHistoryDecoder : traversalDecoder;
+    }
+
+    private Mono<ExplorerEntity> exploreAndCache(final Cache cache,
+                                                 final ExplorerEntityRequest request,
+                                                 final ExplorerEntityDecoder decoder) {
+        AtomicBoolean requested = new AtomicBoolean();
+        String key = cache.getName() + ":" + request.getValue();
+        Mono<ExplorerEntity> exploration = inFlightExplorations.computeIfAbsent(key, k -> {
+            requested.set(true);
+            return request(request, decoder)
+                    .doOnNext(result -> {
+                        if (!result.isEmpty()) {
+                            cache.put(request.getValue(), result);
+                            writeToDiskCache(key, result);
+                        }
+                    })
+                    .doFinally(signal -> inFlightExplorations.remove(k))
+                    .cache();
+        });
+        if (!requested.get()) {
+            log.debug("Exploration of [{}] [{}] is joined to the one in progress",
+                    request.getAttribute(), request.getValue());
+            meterRegistry.counter("dfp.explorer.coalesced", traversalTags(request)).increment();
+        }
+        return exploration;
+    }
+
+    /**
+     * Moves the traversal from the disk cache to the memory one.
+     * Traversals which can't be read are treated as missing.
+     */
+    private ExplorerEntity readFromDiskCache(final Cache cache, final ExplorerEntityRequest request) {
+        if (diskCache == null) {
+            return null;
+        }
+        byte[] stored = diskCache.get(cache.getName() + ":" + request.getValue());
+        meterRegistry.counter("dfp.disk-cache.requests", traversalTags(request)
+                .and("result", stored == null ? "miss" : "hit")).increment();
+        if (stored == null) {
+            return null;
+        }
+        try {
+            ExplorerEntity result = mapper.readValue(stored, ExplorerEntity.class);
+            cache.put(request.getValue(), result);
+            return result;
+        } catch (IOException e) {
+            log.warn("Exploration of [{}] [{}] can't be read from the disk cache: {}",
+                    request.getAttribute(), request.getValue(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Queues the traversal to be written by the disk cache writer. Traversals
+     * are dropped rather than queued without a limit if the disk is too slow.
+     */
+    private void writeToDiskCache(final String key, final ExplorerEntity result) {
+        if (diskCache == null) {
+            return;
+        }
+        if (diskCacheWriter.getQueue().size() >= DISK_CACHE_MAX_PENDING_WRITES) {
+            log.debug("Exploration [{}] isn't written to the disk cache as too many writes are pending", key);
+            meterRegistry.counter("dfp.disk-cache.dropped-writes").increment();
+            return;
+        }
+        try {
+            diskCacheWriter.execute(() -> {
+                try {
+                    diskCache.put(key, mapper.writeValueAsBytes(result), diskCacheTtl);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Exploration [{}] can't be written to the disk cache: {}", key, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Exploration [{}] isn't written to the disk cache as it's closed", key);
+        }
+    }
+
+    private void compactDiskCache() {
+        try {
+            diskCache.compact();
+        } catch (RuntimeException e) {
+            log.warn("Disk cache of traversals hasn't been compacted: {}", e.getMessage());
+        }
+    }
+
+    private Mono<ExplorerEntity> request(final ExplorerEntityRequest request, final ExplorerEntityDecoder decoder) {
+        Timer latency = meterRegistry.timer("dfp.explorer.latency", traversalTags(request));
+        return Mono.defer(() -> {
+            log.info("Start exploration of [{}] [{}]", request.getAttribute(), request.getValue());
+            return limited(dfpExplorerTimeout, Mono.defer(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                Flux<DataBuffer> body = dfpClient
+                        .post()
+                        .uri(dfpExplorerUrl)
+                        .body(Mono.just(request), ExplorerEntityRequest.class)
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class)
+                        .timeout(dfpExplorerTimeout);
+                return Mono.fromCallable(() -> decode(decoder, body))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .timeout(dfpExplorerTimeout)
+                        .doFinally(signal -> sample.stop(latency));
+            }));
+        }).map(result -> {
+            log.info("Exploration of [{}] [{}] has finished successfully", request.getAttribute(), request.getValue());
+            result.setRequestAttributeName(request.getAttribute());
+            result.setRequestAttributeValue(request.getValue());
+            return result;
+        });
+    }
+
+    /**
+     * Makes the request when it's permitted by the circuit breaker and fits
+     * into the concurrency limit. The request fails without being sent if
+     * the circuit breaker is open or the limit isn't available in time.
+     */
+    private <T> Mono<T> limited(final Duration maxWait, final Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return Mono.error(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+            }
+            AtomicBoolean started = new AtomicBoolean();
+            return concurrencyLimiter.acquire(maxWait)
+                    .flatMap(permit -> {
+                        started.set(true);
+                        long start = System.nanoTime();
+                        return call
+                                .doOnSuccess(result -> {
+                                    permit.onSuccess();
+                                    circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                                })
+                                .doOnError(e -> {
+                                    long duration = System.nanoTime() - start;
+                                    if (isOverload(e)) {
+                                        permit.onDropped();
+                                        circuitBreaker.onError(duration, TimeUnit.NANOSECONDS, e);
+                                    } else {
+                                        permit.onSuccess();
+                                        circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+                                    }
+                                })
+                                .doOnCancel(() -> {
+                                    permit.onIgnore();
+                                    circuitBreaker.releasePermission();
+                                });
+                    })
+                    .doOnError(e -> {
+                        if (!started.get()) {
+                            circuitBreaker.releasePermission();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (!started.get()) {
+                            circuitBreaker.releasePermission();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Client errors except of throttling and responses which can't be
+     * decoded mean that DFP is able to respond, so they aren't considered
+     * as signs of overload.
+     */
+    private static boolean isOverload(final Throwable e) {
+        if (e instanceof DecodingException) {
+            return false;
+        }
+        if (e instanceof WebClientResponseException) {
+            int status = ((WebClientResponseException) e).getRawStatusCode();
+            return status >= 500 || status == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the body while it's received, so the response is never
+     * collected into a single buffer. The decoder blocks while it waits
+     * for the body, so it must not be called on an event loop.
+     */
+    private ExplorerEntity decode(final ExplorerEntityDecoder decoder, final Flux<DataBuffer> body) throws Exception {
+        try (InputStream input = new DataBufferInputStream(body, DFP_RESPONSE_PREFETCH)) {
+            return decoder.decode(input);
+        } catch (IOException e) {
+            throw new DecodingException("Traversal can't be decoded: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            // failures of the response are wrapped by the blocking stream
+            Throwable cause = Exceptions.unwrap(e);
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private Tags traversalTags(final ExplorerEntityRequest request) {
+        return Tags.of(TRAVERSAL_TAG, request.getNodeType());
     }
 }
@@ -83,24 +83,31 @@ public class DictionaryService {
         Map<String, DictionaryEntity> dictEntities = dictRepository.findAllByType(type).stream()
                 .collect(Collectors.toMap(DictionaryEntity::getValue, entity -> entity));
 
-        valuesFromData.stream()
+        List<DictionaryEntity> toSave = valuesFromData.stream()
                 .filter(Objects::nonNull)
                 .filter(value -> dictEntities.get(value) == null || dictEntities.get(value).getConfirmed() == null)
-                .forEach(value -> {
-                    DictionaryEntity toSave = null;
-                    toSave = dictEntities.getOrDefault(value, DictionaryEntity.builder()
+                .map(value -> {
+                    DictionaryEntity entity = dictEntities.getOrDefault(value, DictionaryEntity.builder()
                             .id(String.format("%s:%s", type, IdUtility.encodeRestrictedChars(value)))
                             .type(type)
                             .value(value)
                             .build());
-                    if (toSave.getConfirmed() == null) {
-                        toSave.setConfirmed(OffsetDateTime.now());
-                        toSave.setTtl(-1);
-                        dictRepository.save(toSave);
-                        log.info("Updated dictionary entry for ID [{}]: [{}]", toSave.getId(), value);
-                    }
-                });
+                    entity.setConfirmed(OffsetDateTime.now());
+                    entity.setTtl(-1);
+                    return entity;
+                })
+                .collect(Collectors.toList());
+        if (toSave.isEmpty()) return;
 
+        dictRepository.bulkSave(toSave).forEach(result -> {
+            if (result.isSuccessful()) {
+                log.info("Updated dictionary entry for ID [{}]: [{}]",
+                        result.getDocument().getId(), result.getDocument().getValue());
+            } else {
+                log.warn("Dictionary entry for ID [{}] hasn't been updated: [{}]",
+                        result.getDocument().getId(), result.getStatusCode(), result.getException());
+            }
+        });
     }
 
 }
@@ -1,7 +1,18 @@
 package com.griddynamics.msd365fp.manualreview.queues.service;
 
 import com.griddynamics.msd365fp.manualreview.model.DisposabilityCheckServiceResponse;
+import reactor.core.publisher.Mono;
 
 public interface EmailDomainCheckProvider {
-    DisposabilityCheckServiceResponse check(String emailDomain);
+    default DisposabilityCheckServiceResponse check(String emailDomain) {
+        return checkAsync(emailDomain).block();
+    }
+
+    /**
+     * Checks the domain without blocking. Failures of the check are
+     * reported as a response without the disposability.
+     *
+     * @return the response or an empty publisher if the provider is disabled
+     */
+    Mono<DisposabilityCheckServiceResponse> checkAsync(String emailDomain);
 }
@@ -14,26 +14,50 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+/**
+ * Checks disposability of email domains. Results are looked up in the
+ * near cache, then in the database and only then are requested from
+ * the providers. Providers are called concurrently within the check
+ * timeout and concurrent checks of the same domain are coalesced.
+ * Domains whose disposability can't be determined are kept in
+ * a separate cache with a short time to live, so unavailable providers
+ * aren't called for every item.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmailDomainService {
+    public static final String EMAIL_DOMAIN_CACHE = "email-domain";
+    public static final String EMAIL_DOMAIN_UNKNOWN_CACHE = "email-domain-unknown";
+
     private final KickboxEmailDomainCheckProvider kickboxEmailDomainCheckProvider;
     private final NameApiEmailDomainCheckProvider nameApiEmailDomainCheckProvider;
 
     private final EmailDomainRepository emailDomainRepository;
 
+    private final Map<String, Mono<DisposabilityCheck>> inFlightChecks = new ConcurrentHashMap<>();
+
     @Setter(onMethod = @__({@Autowired}))
     private EmailDomainService thisService;
+    @Setter(onMethod = @__({@Autowired}))
+    private CacheManager cacheManager;
 
     @Value("${mr.email-domain.ttl}")
     private Duration emailDomainTtl;
+    @Value("${mr.email-domain.check-timeout}")
+    private Duration checkTimeout;
 
     @Retry(name = "cosmosOptimisticUpdate")
     public void saveEmailDomain(String emailDomainName, DisposabilityCheck disposabilityCheck) {
@@ -47,24 +71,80 @@ public class EmailDomainService {
     }
 
     public DisposabilityCheck checkDisposability(String emailDomain) {
-        //try to get information from cache
-        Iterator<EmailDomain> emailDomainIterator = emailDomainRepository.findByEmailDomainName(emailDomain)
-                .iterator();
-        if (emailDomainIterator.hasNext()) {
-            return emailDomainIterator.next().getDisposabilityCheck();
+        if (emailDomain == null) {
+            return mergeDisposabilityChecks();
         }
 
-        //call third-party services
-        DisposabilityCheckServiceResponse responseFromKickbox = kickboxEmailDomainCheckProvider.check(emailDomain);
-        DisposabilityCheckServiceResponse responseFromNameApi = nameApiEmailDomainCheckProvider.check(emailDomain);
-        DisposabilityCheck result = mergeDisposabilityChecks(responseFromKickbox, responseFromNameApi);
+        //try to get information from near caches
+        Cache cache = Objects.requireNonNull(cacheManager.getCache(EMAIL_DOMAIN_CACHE));
+        Cache unknownCache = Objects.requireNonNull(cacheManager.getCache(EMAIL_DOMAIN_UNKNOWN_CACHE));
+        DisposabilityCheck cached = cache.get(emailDomain, DisposabilityCheck.class);
+        if (cached == null) {
+            cached = unknownCache.get(emailDomain, DisposabilityCheck.class);
+        }
+        if (cached != null) {
+            return cached;
+        }
 
-        //cache result
-        if (result.getDisposable() != null) {
-            thisService.saveEmailDomain(emailDomain, result);
+        AtomicBoolean requested = new AtomicBoolean(false);
+        Mono<DisposabilityCheck> check = inFlightChecks.computeIfAbsent(emailDomain, domain -> {
+            requested.set(true);
+            return Mono.fromCallable(() -> findDisposabilityCheck(domain))
+                    .flatMap(Mono::justOrEmpty)
+                    .switchIfEmpty(Mono.defer(() -> requestDisposabilityCheck(domain)))
+                    .doOnNext(result -> {
+                        if (result.getDisposable() != null) {
+                            cache.put(domain, result);
+                        } else {
+                            unknownCache.put(domain, result);
+                        }
+                    })
+                    .doFinally(signal -> inFlightChecks.remove(domain))
+                    .cache();
+        });
+        if (!requested.get()) {
+            log.debug("Disposability check of [{}] is joined to the one in progress", emailDomain);
         }
+        return check.block();
+    }
 
-        return result;
+    private Optional<DisposabilityCheck> findDisposabilityCheck(String emailDomain) {
+        return emailDomainRepository.findById(IdUtility.encodeRestrictedChars(emailDomain))
+                .map(EmailDomain::getDisposabilityCheck);
+    }
+
+    private Mono<DisposabilityCheck> requestDisposabilityCheck(String emailDomain) {
+        //call third-party services
+        return Mono.zip(
+                withTimeout(kickboxEmailDomainCheckProvider.checkAsync(emailDomain), emailDomain),
+                withTimeout(nameApiEmailDomainCheckProvider.checkAsync(emailDomain), emailDomain))
+                .map(responses -> mergeDisposabilityChecks(
+                        responses.getT1().orElse(null),
+                        responses.getT2().orElse(null)))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(result -> {
+                    //cache result
+                    if (result.getDisposable() != null) {
+                        thisService.saveEmailDomain(emailDomain, result);
+                    }
+                });
+    }
+
+    /**
+     * Providers are called at the same time, so the timeout of each of them
+     * is the deadline of the whole check.
+     */
+    private Mono<Optional<DisposabilityCheckServiceResponse>> withTimeout(
+            Mono<DisposabilityCheckServiceResponse> response,
+            String emailDomain) {
+        return response
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .timeout(checkTimeout, Mono.fromSupplier(() -> {
+                    log.warn("Disposability of [{}] hasn't been checked by a provider in [{}].",
+                            emailDomain, checkTimeout);
+                    return Optional.empty();
+                }));
     }
 
     private DisposabilityCheck mergeDisposabilityChecks(
@@ -0,0 +1,118 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.service;
+
+import com.griddynamics.msd365fp.manualreview.queues.util.TimingWheel;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ENRICHMENT_PAUSE_DELAY;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ENRICHMENT_SCHEDULER_TICK;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ENRICHMENT_SCHEDULER_WHEEL_SIZE;
+
+/**
+ * Enriches items right after their events are received instead of
+ * waiting for the next run of the enrichment task.
+ * <p>
+ * Each item is enriched after the enrichment delay and, if the enrichment
+ * has been postponed or has failed, again with an exponential backoff
+ * until the max enrichment attempts are spent. While the enrichment is
+ * paused due to unavailability of DFP, items are rescheduled without
+ * spending their attempts. Schedules are kept only in memory of the
+ * instance which has received the event, so items which are left after
+ * restarts or spent attempts are picked up by the item enrichment task.
+ * Retries are backed off and recorded in the item by the
+ * {@link ItemEnrichmentService}, so the enrichment task of another
+ * instance doesn't pick up the item before the retry.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemEnrichmentScheduler {
+
+    private final ItemEnrichmentService itemEnrichmentService;
+
+    @Setter(onMethod = @__({@Autowired, @Qualifier("itemEnrichmentExecutor")}))
+    private ExecutorService enrichmentExecutor;
+    @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.enrichment-delay}")}))
+    private Duration enrichmentDelay;
+    @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.max-enrichment-attempts}")}))
+    private Integer maxEnrichmentAttempts;
+
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+    private TimingWheel<String> timingWheel;
+
+    @PostConstruct
+    public void initialize() {
+        timingWheel = new TimingWheel<>("item-enrichment-scheduler",
+                ENRICHMENT_SCHEDULER_TICK, ENRICHMENT_SCHEDULER_WHEEL_SIZE, this::submit);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timingWheel.stop();
+    }
+
+    public void schedule(final String itemId) {
+        attempts.put(itemId, 0);
+        timingWheel.schedule(itemId, enrichmentDelay);
+    }
+
+    /**
+     * @return true if the item is waiting for enrichment or is being enriched
+     */
+    public boolean isScheduled(final String itemId) {
+        return attempts.containsKey(itemId);
+    }
+
+    public int size() {
+        return attempts.size();
+    }
+
+    private void submit(final String itemId) {
+        try {
+            enrichmentExecutor.execute(() -> enrich(itemId));
+        } catch (RejectedExecutionException e) {
+            log.warn("Scheduled enrichment of item [{}] has been rejected.", itemId);
+            attempts.remove(itemId);
+        }
+    }
+
+    private void enrich(final String itemId) {
+        boolean finished;
+        try {
+            finished = itemEnrichmentService.enrichItem(itemId, false);
+        } catch (Exception e) {
+            // the exception is logged by the enrichment service
+            finished = false;
+        }
+        if (!finished && itemEnrichmentService.isEnrichmentPaused() && attempts.containsKey(itemId)) {
+            timingWheel.schedule(itemId, ENRICHMENT_PAUSE_DELAY);
+            return;
+        }
+        Integer attempt = attempts.computeIfPresent(itemId, (id, a) -> a + 1);
+        if (finished || attempt == null) {
+            attempts.remove(itemId);
+        } else if (attempt >= maxEnrichmentAttempts) {
+            log.info("Item [{}] hasn't been enriched in [{}] scheduled attempts. It's left for the enrichment task.",
+                    itemId, attempt);
+            attempts.remove(itemId);
+        } else {
+            timingWheel.schedule(itemId, itemEnrichmentService.scheduleRetry(itemId, attempt));
+        }
+    }
+}
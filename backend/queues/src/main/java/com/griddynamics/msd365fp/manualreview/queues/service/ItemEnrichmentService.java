@@ -3,6 +3,8 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.service;
 
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.PageProcessingUtility;
 import com.griddynamics.msd365fp.manualreview.model.Decision;
 import com.griddynamics.msd365fp.manualreview.model.DisposabilityCheck;
@@ -12,8 +14,13 @@ import com.griddynamics.msd365fp.manualreview.model.dfp.raw.*;
 import com.griddynamics.msd365fp.manualreview.model.exception.BusyException;
 import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
 import com.griddynamics.msd365fp.manualreview.queues.repository.ItemRepository;
+import com.griddynamics.msd365fp.manualreview.queues.util.DFPDataMapper;
+import com.griddynamics.msd365fp.manualreview.queues.util.EnrichmentBacklog;
+import com.griddynamics.msd365fp.manualreview.queues.util.EnrichmentMetrics;
+import com.griddynamics.msd365fp.manualreview.queues.util.VelocityAggregator;
 import com.azure.spring.data.cosmos.exception.CosmosAccessException;
 import io.github.resilience4j.retry.annotation.Retry;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -23,18 +30,34 @@ import org.gavaghan.geodesy.GeodeticCalculator;
 import org.gavaghan.geodesy.GeodeticCurve;
 import org.gavaghan.geodesy.GlobalCoordinates;
 import org.modelmapper.ModelMapper;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.DEFAULT_ITEM_PAGE_SIZE;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ITEM_ENRICHMENT_RETRIES_PATH;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ITEM_NEXT_ENRICHMENT_ATTEMPT_PATH;
+import static com.griddynamics.msd365fp.manualreview.queues.util.EnrichmentMetrics.Stage.*;
 import static java.util.stream.Collectors.groupingBy;
 
 @Slf4j
@@ -57,13 +80,23 @@ public class ItemEnrichmentService {
     public static final String EMAIL_CONFIRMED_CUSTOM_DATA_KEY = "email_confirmed";
     public static final String EMAIL_DOMAIN_CUSTOM_DATA_KEY = "email_domain";
 
+    public static final String ITEM_ID_MDC_KEY = "itemId";
+
     private final StreamService streamService;
     private final EmailDomainService emailDomainService;
     private final ItemRepository itemRepository;
     private final DFPExplorerService dfpExplorerService;
+    private final EnrichmentMetrics enrichmentMetrics;
+    private final EnrichmentBacklog enrichmentBacklog;
 
     @Setter(onMethod = @__({@Autowired}))
     private ItemEnrichmentService thisService;
+    @Setter(onMethod = @__({@Autowired}))
+    private ItemEnrichmentScheduler itemEnrichmentScheduler;
+    @Setter(onMethod = @__({@Autowired}))
+    private QueueService queueService;
+    @Setter(onMethod = @__({@Autowired, @Qualifier("itemsContainer")}))
+    private ExtendedCosmosContainer itemsContainer;
     @Setter(onMethod = @__({@Autowired, @Qualifier("dfpModelMapper")}))
     private ModelMapper modelMapper;
     @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.enrichment-delay}")}))
@@ -72,55 +105,173 @@ public class ItemEnrichmentService {
     private Duration maxEnrichmentDelay;
     @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.max-enrichment-attempts}")}))
     private Integer maxEnrichmentAttempts;
+    @Setter(onMethod = @__({@Autowired, @Qualifier("itemEnrichmentExecutor")}))
+    private ExecutorService enrichmentExecutor;
+    @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.workers}")}))
+    private int enrichmentWorkers;
+    @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.exploration-timeout}")}))
+    private Duration explorationTimeout;
     @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.history-depth}")}))
     private int historyDepth;
+    @Setter(onMethod = @__({@Value("${mr.tasks.item-enrichment-task.page-prefetch-depth}")}))
+    private int pagePrefetchDepth;
     @Setter(onMethod = @__({@Value("${azure.cosmos.default-ttl}")}))
     private Duration defaultTtl;
 
     private final GeodeticCalculator geoCalc = new GeodeticCalculator();
 
+    /**
+     * Checks that DFP data is mapped by {@link DFPDataMapper} in the same
+     * way as by the {@code dfpModelMapper}.
+     */
+    @PostConstruct
+    public void checkDataMapper() {
+        List<String> mismatches = DFPDataMapper.compareWith(modelMapper);
+        if (!mismatches.isEmpty()) {
+            mismatches.forEach(mismatch -> log.error("DFP data mapping differs from the model mapper: {}", mismatch));
+            throw new IllegalStateException(String.format(
+                    "DFP data mapping differs from the model mapper in [%d] cases", mismatches.size()));
+        }
+    }
 
+    /**
+     * Enriches all items which haven't been enriched yet. Items are read
+     * page by page in order of import, and each page is enriched by the
+     * worker pool in the order planned by the {@link EnrichmentBacklog}.
+     * Unless the enrichment is forced, items whose retry is scheduled later
+     * or which are still handled by the {@link ItemEnrichmentScheduler}
+     * of this instance are skipped.
+     */
     public boolean enrichAllPoorItems(boolean forceEnrichment) throws BusyException {
-        PageProcessingUtility.executeForAllPages(
-                continuationToken -> {
-                    PageableCollection<String> unenrichedItemIds;
-                    if (forceEnrichment) {
-                        unenrichedItemIds = itemRepository.findUnenrichedItemIds(DEFAULT_ITEM_PAGE_SIZE, continuationToken);
-                    } else {
-                        OffsetDateTime importedUpperBoundary = OffsetDateTime.now().minus(enrichmentDelay);
-                        unenrichedItemIds = itemRepository.findUnenrichedItemIds(
-                                importedUpperBoundary, DEFAULT_ITEM_PAGE_SIZE, continuationToken);
-                    }
-                    return unenrichedItemIds;
-                },
-                itemCollection -> {
-                    log.info("Trying to enrich items with IDs: [{}]", itemCollection.getValues());
-                    itemCollection.forEach(item -> thisService.enrichItem(item, forceEnrichment));
-                });
+        if (isEnrichmentPaused()) {
+            log.warn("Enrichment of poor items is skipped as DFP is unavailable.");
+            return true;
+        }
+        EnrichmentRun run = new EnrichmentRun(enrichmentExecutor, enrichmentWorkers * 2);
+        try {
+            PageProcessingUtility.executeForAllPages(
+                    continuationToken -> {
+                        if (isEnrichmentPaused()) {
+                            // the empty last page stops reading
+                            return new PageableCollection<>(List.of(), null);
+                        }
+                        if (forceEnrichment) {
+                            return itemRepository.findUnenrichedItems(DEFAULT_ITEM_PAGE_SIZE, continuationToken);
+                        }
+                        OffsetDateTime now = OffsetDateTime.now();
+                        return itemRepository.findUnenrichedItems(
+                                now.minus(enrichmentDelay), now, DEFAULT_ITEM_PAGE_SIZE, continuationToken);
+                    },
+                    page -> {
+                        run.observe(page.getValues());
+                        for (Item item : enrichmentBacklog.plan(page.getValues(), OffsetDateTime.now())) {
+                            if (forceEnrichment || !itemEnrichmentScheduler.isScheduled(item.getId())) {
+                                run.submit(() -> enrichPlannedItem(item, forceEnrichment));
+                            }
+                        }
+                    },
+                    pagePrefetchDepth,
+                    itemsContainer.getRequestUnitBudget());
+        } finally {
+            run.await();
+        }
+        if (isEnrichmentPaused()) {
+            log.warn("Enrichment of poor items is interrupted as DFP is unavailable.");
+        } else {
+            enrichmentMetrics.updateBacklog(run.getObserved(), run.getOldestImport());
+        }
+        log.info("Enrichment of [{}] items has been attempted.", run.getSubmitted());
+        if (run.getFailed() > 0) {
+            log.warn("Enrichment of [{}] of [{}] items has failed.", run.getFailed(), run.getSubmitted());
+        }
         return true;
     }
 
+    /**
+     * Enriches the item and schedules its retry if the enrichment hasn't
+     * been finished. Retries aren't scheduled for attempts made while DFP
+     * is unavailable.
+     */
+    private void enrichPlannedItem(final Item item, final boolean forceEnrichment) {
+        boolean finished = false;
+        try {
+            finished = thisService.enrichItem(item.getId(), forceEnrichment);
+        } finally {
+            if (!finished && !isEnrichmentPaused()) {
+                scheduleRetry(item.getId(), item.getEnrichmentRetries() + 1);
+            }
+        }
+    }
+
+    /**
+     * Records in the item when it should be enriched next time, so it's
+     * skipped by the enrichment task of any instance till then. Failures
+     * are only logged as the item is retried by the next run anyway.
+     *
+     * @param retry the number of the retry starting from 1
+     * @return the delay before the retry
+     */
+    public Duration scheduleRetry(final String itemId, final int retry) {
+        Duration delay = enrichmentBacklog.backoff(retry);
+        try {
+            itemRepository.patch(Item.builder().id(itemId).build(), DocumentPatch.create()
+                    .set(ITEM_NEXT_ENRICHMENT_ATTEMPT_PATH, OffsetDateTime.now().plus(delay))
+                    .set(ITEM_ENRICHMENT_RETRIES_PATH, retry));
+        } catch (Exception e) {
+            log.warn("Next enrichment attempt of item [{}] can't be recorded: {}", itemId, e.getMessage());
+        }
+        return delay;
+    }
+
+    /**
+     * Checks whether the enrichment should be paused because DFP is
+     * unavailable, so that attempts of items aren't spent on it.
+     */
+    public boolean isEnrichmentPaused() {
+        return !dfpExplorerService.isAvailable();
+    }
+
+    /**
+     * @return false if the enrichment has been postponed and the item
+     * should be enriched later, true otherwise
+     */
     @Retry(name = "cosmosOptimisticUpdate")
-    public void enrichItem(String itemId, boolean forceEnrichment) {
+    public boolean enrichItem(String itemId, boolean forceEnrichment) {
+        EnrichmentMetrics.Trace trace = enrichmentMetrics.trace(itemId);
+        try (MDC.MDCCloseable ignored = MDC.putCloseable(ITEM_ID_MDC_KEY, itemId)) {
+            return enrichItem(itemId, forceEnrichment, trace);
+        } finally {
+            trace.finish();
+        }
+    }
+
+    private boolean enrichItem(String itemId, boolean forceEnrichment, EnrichmentMetrics.Trace trace) {
+        if (isEnrichmentPaused()) {
+            log.info("Item [{}] enrichment is postponed as DFP is unavailable.", itemId);
+            trace.setOutcome(EnrichmentMetrics.Outcome.POSTPONED);
+            return false;
+        }
         log.info("Attempting to enrich item [{}].", itemId);
 
         // 1. Get item from database
-        Optional<Item> itemFromDB = itemRepository.findById(itemId);
+        Optional<Item> itemFromDB = trace.stage(COSMOS_READ, () -> itemRepository.findById(itemId));
         if (itemFromDB.isEmpty()) {
             log.warn("Item [{}] enrichment failed. Item wasn't found in the database.", itemId);
-            return;
+            trace.setOutcome(EnrichmentMetrics.Outcome.SKIPPED);
+            return true;
         }
         Item item = itemFromDB.get();
         if (!forceEnrichment && item.getEnriched() != null) {
             log.warn("Item [{}] has already been enriched and " +
                     "enrichment has been ran without forcing. Enrichment is skipped.", itemId);
-            return;
+            trace.setOutcome(EnrichmentMetrics.Outcome.SKIPPED);
+            return true;
         }
         item.setEnrichmentAttempts(Objects.requireNonNullElse(item.getEnrichmentAttempts(), 0) + 1);
 
         try {
             // 2. Get main purchase data from DFP
-            ExplorerEntity mainEntity = dfpExplorerService.explorePurchase(itemId);
+            ExplorerEntity mainEntity = trace.stage(PURCHASE_TRAVERSAL, () -> dfpExplorerService.explorePurchase(itemId));
 
             // 3. Map main data
             if (mainEntity.getNodes().stream().noneMatch(n -> n.getData() instanceof PurchaseNodeData)) {
@@ -129,59 +280,83 @@ public class ItemEnrichmentService {
                     item.setEnrichmentFailed(true);
                     item.setTtl(defaultTtl.toSeconds());
                     item.setEnrichmentFailReason("There is no purchase information in DFP during maximum delay period");
-                    itemRepository.save(item);
-                } else {
-                    log.info("Item [{}] has not required purchase information in DFP. Enrichment is postponed", itemId);
+                    trace.stage(SAVE, () -> itemRepository.save(item));
+                    return true;
                 }
-                return;
+                log.info("Item [{}] has not required purchase information in DFP. Enrichment is postponed", itemId);
+                trace.setOutcome(EnrichmentMetrics.Outcome.POSTPONED);
+                return false;
             }
             if (mainEntity.getNodes().stream().noneMatch(n -> n.getData() instanceof UserNodeData)) {
                 if (item.getImported().plus(maxEnrichmentDelay).isBefore(OffsetDateTime.now())) {
                     log.warn("Item [{}] doesn't have user info but maximum postponing is spent. Start enriching without user info.", itemId);
                 } else {
                     log.info("Item [{}] doesn't have user info. Enrichment is postponed.", itemId);
-                    return;
+                    trace.setOutcome(EnrichmentMetrics.Outcome.POSTPONED);
+                    return false;
                 }
             }
-            mapMainEntityToItem(item, mainEntity);
+            trace.stage(MAPPING, () -> mapMainEntityToItem(item, mainEntity));
+
+            // 4-6. Explore the rest of data concurrently within the deadline
+            long explorationDeadline = System.nanoTime() + explorationTimeout.toNanos();
+            CompletableFuture<List<ExplorerEntity>> paymentInstrumentEntities =
+                    trace.stage(PAYMENT_INSTRUMENT_TRAVERSAL, explorePaymentInstruments(item.getPurchase())).toFuture();
+            CompletableFuture<ExplorerEntity> userEntity = trace.stage(USER_TRAVERSAL, exploreUser(mainEntity)).toFuture();
 
-            // 4. Get and map billing data for main purchase
-            enrichPurchasePaymentData(item.getPurchase());
+            // 4. Map billing data for main purchase
+            List<ExplorerEntity> paymentInstruments = awaitExploration(itemId, paymentInstrumentEntities, explorationDeadline);
+            trace.stage(MAPPING, () -> mapPIEntitiesToPurchase(item.getPurchase(), paymentInstruments));
 
-            // 5. Get user data from DFP and map to main purchase
-            ExplorerEntity userEntity = getUserEntity(mainEntity);
-            mapPurchaseHistoryToMainPurchase(item.getPurchase(), userEntity);
+            // 5. Map user data to main purchase
+            ExplorerEntity user = awaitExploration(itemId, userEntity, explorationDeadline);
+            List<PurchaseNodeData> previousPurchaseNodes = trace.stage(MAPPING,
+                    () -> mapPurchaseHistoryToMainPurchase(item.getPurchase(), user));
 
             // 6. Get and map data for detailed transaction history
-            item.getPurchase().getPreviousPurchaseList().forEach(previousPurchase -> {
-                mapPreviousPurchaseEntityToPreviousPurchase(
-                        previousPurchase,
-                        dfpExplorerService.explorePurchase(previousPurchase.getPurchaseId()));
-                enrichPurchasePaymentData(previousPurchase);
-            });
+            trace.stage(HISTORY_TRAVERSAL,
+                    () -> enrichPreviousPurchases(item.getPurchase(), previousPurchaseNodes, explorationDeadline));
 
             // 7. Calculate derived fields
-            calculateDerivedFields(item);
+            trace.stage(DERIVED_FIELDS, () -> {
+                calculateDerivedFields(item, trace);
 
-            //remove previous transactions that are too old.
-            removeOldPreviousPurchases(item.getPurchase());
+                //remove previous transactions that are too old.
+                removeOldPreviousPurchases(item.getPurchase());
+            });
 
             // 8. Save item
             boolean itemWasNew = item.getEnriched() == null;
             if (itemWasNew) {
                 item.setActive(true);
+                // assign the item to queues right away rather than wait for the reconciliation task
+                Set<String> queueIds = queueService.findMatchingQueueIds(item);
+                if (!queueIds.isEmpty()) {
+                    queueIds.addAll(item.getQueueIds());
+                    item.setQueueIds(queueIds);
+                }
             }
             item.setEnrichmentFailed(false);
             item.setEnriched(OffsetDateTime.now());
-            itemRepository.save(item);
+            trace.stage(SAVE, () -> itemRepository.save(item));
             if (itemWasNew) {
                 streamService.sendItemAssignmentEvent(item);
             }
             log.info("Item [{}] has been successfully enriched in the database.", item.getId());
+            trace.setOutcome(EnrichmentMetrics.Outcome.SUCCEEDED);
+            return true;
         } catch (CosmosAccessException ignored) {
             // ignored because it will be consumed by retry mechanism
             log.info("Optimistic lock exception during enrichment of [{}].", itemId);
+            trace.setOutcome(EnrichmentMetrics.Outcome.POSTPONED);
+            return false;
         } catch (Exception e) {
+            if (dfpExplorerService.isUnavailabilityCause(e)) {
+                // the attempt isn't spent as DFP is degraded rather than the item is broken
+                log.warn("Item [{}] enrichment is postponed as DFP is unavailable: {}", itemId, e.getMessage());
+                trace.setOutcome(EnrichmentMetrics.Outcome.POSTPONED);
+                return false;
+            }
             // 1. mark item failed if attempt amounts are exhausted
             log.warn("Exception during enrichment of [{}]: {}", itemId, e.getMessage());
             log.warn("Exception during enrichment of [{}].", itemId, e);
@@ -191,7 +366,7 @@ public class ItemEnrichmentService {
                 item.setTtl(defaultTtl.toSeconds());
                 item.setEnrichmentFailReason("Can't be enriched during max attempts");
             }
-            itemRepository.save(item);
+            trace.stage(SAVE, () -> itemRepository.save(item));
             // 2. stop current enrichment process
             throw e;
         }
@@ -225,23 +400,98 @@ public class ItemEnrichmentService {
         mainPurchase.setPreviousPurchaseList(result);
     }
 
-    private ExplorerEntity getUserEntity(final ExplorerEntity mainEntity) {
+    private Mono<ExplorerEntity> exploreUser(final ExplorerEntity mainEntity) {
         return mainEntity.getNodes().stream()
                 .filter(n -> n.getData() instanceof UserNodeData)
-                .map(n -> dfpExplorerService.exploreUser(n.getId()))
-                .findFirst().orElse(ExplorerEntity.EMPTY);
+                .map(n -> dfpExplorerService.exploreUserHistoryAsync(n.getId()).defaultIfEmpty(ExplorerEntity.EMPTY))
+                .findFirst().orElse(Mono.just(ExplorerEntity.EMPTY));
     }
 
-    private void enrichPurchasePaymentData(final Purchase purchase) {
+    private Mono<List<ExplorerEntity>> explorePaymentInstruments(final Purchase purchase) {
         if (purchase.getPaymentInstrumentList() == null || purchase.getPaymentInstrumentList().isEmpty()) {
-            return;
+            return Mono.just(List.of());
         }
-        List<ExplorerEntity> paymentInstrumentEntities = purchase.getPaymentInstrumentList().stream()
+        return Flux.fromIterable(purchase.getPaymentInstrumentList())
                 .map(PaymentInstrument::getPaymentInstrumentId)
-                .map(dfpExplorerService::explorePaymentInstrument)
+                .flatMapSequential(dfpExplorerService::explorePaymentInstrumentAsync)
+                .collectList();
+    }
+
+    /**
+     * Explores previous purchases and their payment instruments concurrently.
+     * Each previous purchase is enriched in a separate instance, so purchases
+     * which haven't been explored before the deadline or whose exploration
+     * has failed are kept as they were received with the user data.
+     *
+     * @param previousPurchaseNodes data of the previous purchases in the same order
+     */
+    private void enrichPreviousPurchases(final MainPurchase mainPurchase,
+                                         final List<PurchaseNodeData> previousPurchaseNodes,
+                                         final long deadline) {
+        List<CompletableFuture<PreviousPurchase>> explorations = previousPurchaseNodes.stream()
+                .map(purchaseNode -> explorePreviousPurchase(purchaseNode).toFuture())
                 .collect(Collectors.toList());
+        try {
+            CompletableFuture.allOf(explorations.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Exploration of previous purchases has been interrupted", e);
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Not all previous purchases of [{}] have been explored.", mainPurchase.getPurchaseId(), e);
+        }
+
+        List<PreviousPurchase> previousPurchases = mainPurchase.getPreviousPurchaseList();
+        int skipped = 0;
+        for (int i = 0; i < explorations.size(); i++) {
+            CompletableFuture<PreviousPurchase> exploration = explorations.get(i);
+            if (exploration.isDone() && !exploration.isCompletedExceptionally() && exploration.join() != null) {
+                previousPurchases.set(i, exploration.join());
+            } else {
+                exploration.cancel(false);
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            log.warn("[{}] of [{}] previous purchases of [{}] haven't been explored in time or have failed. " +
+                            "They are used without details.",
+                    skipped, explorations.size(), mainPurchase.getPurchaseId());
+        }
+    }
+
+    private Mono<PreviousPurchase> explorePreviousPurchase(final PurchaseNodeData purchaseNode) {
+        return dfpExplorerService.explorePurchaseAsync(purchaseNode.getPurchaseId())
+                .flatMap(entity -> {
+                    PreviousPurchase previousPurchase = DFPDataMapper.toPreviousPurchase(purchaseNode);
+                    mapPreviousPurchaseEntityToPreviousPurchase(previousPurchase, entity);
+                    return explorePaymentInstruments(previousPurchase)
+                            .map(paymentInstrumentEntities -> {
+                                mapPIEntitiesToPurchase(previousPurchase, paymentInstrumentEntities);
+                                return previousPurchase;
+                            });
+                });
+    }
 
-        mapPIEntitiesToPurchase(purchase, paymentInstrumentEntities);
+    /**
+     * Waits for a required part of item data. The enrichment attempt
+     * fails if the part can't be explored before the deadline.
+     */
+    private <T> T awaitExploration(final String itemId, final CompletableFuture<T> exploration, final long deadline) {
+        try {
+            return exploration.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Exploration of item [%s] has been interrupted", itemId), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(String.format("Exploration of item [%s] has failed", itemId), e.getCause());
+        } catch (TimeoutException e) {
+            exploration.cancel(false);
+            throw new IllegalStateException(String.format(
+                    "Exploration of item [%s] hasn't finished in [%s]", itemId, explorationTimeout), e);
+        }
     }
 
     private void mapMainEntityToItem(final Item item, final ExplorerEntity entity) {
@@ -261,40 +511,40 @@ public class ItemEnrichmentService {
             switch (node.getName()) {
                 case AddressNodeData.NODE_NAME:
                     checkSingletonDataDuplicate(item.getId(), foundEntities, node.getName());
-                    modelMapper.map(node.getData(), shippingAddress);
+                    DFPDataMapper.map((AddressNodeData) node.getData(), shippingAddress);
                     break;
                 case BankEventNodeData.NODE_NAME:
-                    modelMapper.map(node.getData(), bankEventMap.computeIfAbsent(
+                    DFPDataMapper.map((BankEventNodeData) node.getData(), bankEventMap.computeIfAbsent(
                             node.getId(),
                             key -> new BankEvent()));
                     break;
                 case DeviceContextNodeData.NODE_NAME:
                     checkSingletonDataDuplicate(item.getId(), foundEntities, node.getName());
-                    modelMapper.map(node.getData(), deviceContext);
+                    DFPDataMapper.map((DeviceContextNodeData) node.getData(), deviceContext);
                     break;
                 case PaymentInstrumentNodeData.NODE_NAME:
-                    modelMapper.map(node.getData(), paymentInstrumentMap.computeIfAbsent(
+                    DFPDataMapper.map((PaymentInstrumentNodeData) node.getData(), paymentInstrumentMap.computeIfAbsent(
                             node.getId(),
                             key -> new PaymentInstrument()));
                     break;
                 case ProductNodeData.NODE_NAME:
-                    modelMapper.map(node.getData(), productMap.computeIfAbsent(
+                    DFPDataMapper.map((ProductNodeData) node.getData(), productMap.computeIfAbsent(
                             node.getId(),
                             key -> new Product()));
                     break;
                 case PurchaseNodeData.NODE_NAME:
                     checkSingletonDataDuplicate(item.getId(), foundEntities, node.getName());
-                    modelMapper.map(node.getData(), purchase);
-                    modelMapper.map(node.getData(), assesmentResult);
+                    DFPDataMapper.map((PurchaseNodeData) node.getData(), purchase);
+                    DFPDataMapper.map((PurchaseNodeData) node.getData(), assesmentResult);
                     break;
                 case UserNodeData.NODE_NAME:
                     checkSingletonDataDuplicate(item.getId(), foundEntities, node.getName());
-                    modelMapper.map(node.getData(), user);
+                    DFPDataMapper.map((UserNodeData) node.getData(), user);
                     break;
                 default:
-                    modelMapper.map(node.getData(), additionalInfo.computeIfAbsent(
+                    additionalInfo.computeIfAbsent(
                             node.getName() + node.getId(),
-                            key -> new HashMap<>()));
+                            key -> new HashMap<>());
             }
             foundEntities.add(node.getName());
         });
@@ -305,7 +555,7 @@ public class ItemEnrichmentService {
                 case PurchaseAddressEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseAddressEdgeData.EDGE_REVERSED_NAME:
                     checkSingletonDataDuplicate(item.getId(), foundEntities, edge.getName());
-                    modelMapper.map(edge.getData(), shippingAddress);
+                    DFPDataMapper.map((PurchaseAddressEdgeData) edge.getData(), shippingAddress);
                     if (!SHIPPING_ADDRESS_TYPE.equals(shippingAddress.getType())) {
                         log.warn("DFP gave purchase-address edge without SHIPPING type for item [{}].", item.getId());
                         shippingAddress.setType(SHIPPING_ADDRESS_TYPE);
@@ -313,42 +563,42 @@ public class ItemEnrichmentService {
                     break;
                 case PurchaseBankEventEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseBankEventEdgeData.EDGE_REVERSED_NAME:
-                    modelMapper.map(edge.getData(), bankEventMap.computeIfAbsent(
+                    DFPDataMapper.map((PurchaseBankEventEdgeData) edge.getData(), bankEventMap.computeIfAbsent(
                             ((PurchaseBankEventEdgeData) edge.getData()).getBankEventId(),
                             key -> new BankEvent()));
                     break;
                 case PurchaseDeviceContextEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseDeviceContextEdgeData.EDGE_REVERSED_NAME:
                     checkSingletonDataDuplicate(item.getId(), foundEntities, edge.getName());
-                    modelMapper.map(edge.getData(), deviceContext);
+                    DFPDataMapper.map((PurchaseDeviceContextEdgeData) edge.getData(), deviceContext);
                     break;
                 case PurchasePaymentInstrumentEdgeData.EDGE_DIRECT_NAME:
                 case PurchasePaymentInstrumentEdgeData.EDGE_REVERSED_NAME:
-                    modelMapper.map(edge.getData(), paymentInstrumentMap.computeIfAbsent(
+                    DFPDataMapper.map((PurchasePaymentInstrumentEdgeData) edge.getData(), paymentInstrumentMap.computeIfAbsent(
                             ((PurchasePaymentInstrumentEdgeData) edge.getData()).getPaymentInstrumentId(),
                             key -> new PaymentInstrument()));
                     break;
                 case PurchaseProductEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseProductEdgeData.EDGE_REVERSED_NAME:
-                    modelMapper.map(edge.getData(), productMap.computeIfAbsent(
+                    DFPDataMapper.map((PurchaseProductEdgeData) edge.getData(), productMap.computeIfAbsent(
                             ((PurchaseProductEdgeData) edge.getData()).getProductId(),
                             key -> new Product()));
                     break;
                 case PurchaseStatusEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseStatusEdgeData.EDGE_REVERSED_NAME:
-                    modelMapper.map(edge.getData(), purchaseStatusMap.computeIfAbsent(
+                    DFPDataMapper.map((PurchaseStatusEdgeData) edge.getData(), purchaseStatusMap.computeIfAbsent(
                             edge.getId(),
                             key -> new PurchaseStatus()));
                     break;
                 case PurchaseUserEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseUserEdgeData.EDGE_REVERSED_NAME:
                     checkSingletonDataDuplicate(item.getId(), foundEntities, edge.getName());
-                    modelMapper.map(edge.getData(), user);
+                    DFPDataMapper.map((PurchaseUserEdgeData) edge.getData(), user);
                     break;
                 default:
-                    modelMapper.map(edge.getData(), additionalInfo.computeIfAbsent(
+                    additionalInfo.computeIfAbsent(
                             edge.getName() + edge.getId(),
-                            key -> new HashMap<>()));
+                            key -> new HashMap<>());
             }
             foundEntities.add(edge.getName());
         });
@@ -383,12 +633,12 @@ public class ItemEnrichmentService {
                 switch (node.getName()) {
                     case AddressNodeData.NODE_NAME:
                         AddressNodeData nodeData = ((AddressNodeData) node.getData());
-                        modelMapper.map(node.getData(), billingAddressMap.computeIfAbsent(
+                        DFPDataMapper.map(nodeData, billingAddressMap.computeIfAbsent(
                                 nodeData.getAddressId(),
                                 key -> new Address()));
                         break;
                     case PaymentInstrumentNodeData.NODE_NAME:
-                        modelMapper.map(node.getData(), paymentInstrumentMap.computeIfAbsent(
+                        DFPDataMapper.map((PaymentInstrumentNodeData) node.getData(), paymentInstrumentMap.computeIfAbsent(
                                 node.getId(),
                                 key -> new PaymentInstrument()));
                         break;
@@ -405,7 +655,7 @@ public class ItemEnrichmentService {
                         Address billingAddress = billingAddressMap.computeIfAbsent(
                                 edgeData.getAddressId(),
                                 key -> new Address());
-                        modelMapper.map(edge.getData(), billingAddress);
+                        DFPDataMapper.map(edgeData, billingAddress);
                         paymentInstrumentMap
                                 .computeIfAbsent(
                                         edgeData.getPaymentInstrumentId(),
@@ -424,7 +674,7 @@ public class ItemEnrichmentService {
 
         purchase.getPaymentInstrumentList().stream()
                 .filter(pi -> paymentInstrumentMap.containsKey(pi.getPaymentInstrumentId()))
-                .forEach(pi -> modelMapper.map(paymentInstrumentMap.get(pi.getPaymentInstrumentId()), pi));
+                .forEach(pi -> DFPDataMapper.map(paymentInstrumentMap.get(pi.getPaymentInstrumentId()), pi));
         if (purchase.getAddressList() == null) {
             purchase.setAddressList(new LinkedList<>());
         }
@@ -433,8 +683,11 @@ public class ItemEnrichmentService {
         }
     }
 
-    private void mapPurchaseHistoryToMainPurchase(final MainPurchase mainPurchase, ExplorerEntity userEntity) {
-        mainPurchase.setPreviousPurchaseList(userEntity.getNodes().stream()
+    /**
+     * @return data of the previous purchases in the same order as in the purchase
+     */
+    private List<PurchaseNodeData> mapPurchaseHistoryToMainPurchase(final MainPurchase mainPurchase, ExplorerEntity userEntity) {
+        List<PurchaseNodeData> previousPurchaseNodes = userEntity.getNodes().stream()
                 .filter(n -> n.getData() instanceof PurchaseNodeData)
                 .map(n -> ((PurchaseNodeData) n.getData()))
                 .filter(n -> !mainPurchase.getPurchaseId().equals(n.getPurchaseId()))
@@ -442,8 +695,11 @@ public class ItemEnrichmentService {
                         n.getMerchantLocalDate().isBefore(mainPurchase.getMerchantLocalDate())
                 )
                 .sorted((n1, n2) -> n1.getMerchantLocalDate().isBefore( n2.getMerchantLocalDate())? 1 : -1)
-                .map(n -> modelMapper.map(n, PreviousPurchase.class))
+                .collect(Collectors.toList());
+        mainPurchase.setPreviousPurchaseList(previousPurchaseNodes.stream()
+                .map(DFPDataMapper::toPreviousPurchase)
                 .collect(Collectors.toList()));
+        return previousPurchaseNodes;
     }
 
     private void mapPreviousPurchaseEntityToPreviousPurchase(
@@ -468,25 +724,25 @@ public class ItemEnrichmentService {
             switch (node.getName()) {
                 case AddressNodeData.NODE_NAME:
                     checkSingletonDataDuplicate(entity.getRequestAttributeValue(), foundEntities, node.getName());
-                    modelMapper.map(node.getData(), shippingAddress);
+                    DFPDataMapper.map((AddressNodeData) node.getData(), shippingAddress);
                     break;
                 case BankEventNodeData.NODE_NAME:
-                    modelMapper.map(node.getData(), bankEventMap.computeIfAbsent(
+                    DFPDataMapper.map((BankEventNodeData) node.getData(), bankEventMap.computeIfAbsent(
                             node.getId(),
                             key -> new BankEvent()));
                     break;
                 case DeviceContextNodeData.NODE_NAME:
                     checkSingletonDataDuplicate(entity.getRequestAttributeValue(), foundEntities, node.getName());
-                    modelMapper.map(node.getData(), deviceContext);
+                    DFPDataMapper.map((DeviceContextNodeData) node.getData(), deviceContext);
                     break;
                 case PaymentInstrumentNodeData.NODE_NAME:
-                    modelMapper.map(node.getData(), paymentInstrumentMap.computeIfAbsent(
+                    DFPDataMapper.map((PaymentInstrumentNodeData) node.getData(), paymentInstrumentMap.computeIfAbsent(
                             node.getId(),
                             key -> new PaymentInstrument()));
                     break;
                 case PurchaseNodeData.NODE_NAME:
                     checkSingletonDataDuplicate(entity.getRequestAttributeValue(), foundEntities, node.getName());
-                    modelMapper.map(node.getData(), purchase);
+                    DFPDataMapper.map((PurchaseNodeData) node.getData(), purchase);
                     break;
                 default:
                     break;
@@ -499,28 +755,28 @@ public class ItemEnrichmentService {
                 case PurchaseAddressEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseAddressEdgeData.EDGE_REVERSED_NAME:
                     checkSingletonDataDuplicate(entity.getRequestAttributeValue(), foundEntities, edge.getName());
-                    modelMapper.map(edge.getData(), shippingAddress);
+                    DFPDataMapper.map((PurchaseAddressEdgeData) edge.getData(), shippingAddress);
                     break;
                 case PurchaseBankEventEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseBankEventEdgeData.EDGE_REVERSED_NAME:
-                    modelMapper.map(edge.getData(), bankEventMap.computeIfAbsent(
+                    DFPDataMapper.map((PurchaseBankEventEdgeData) edge.getData(), bankEventMap.computeIfAbsent(
                             ((PurchaseBankEventEdgeData) edge.getData()).getBankEventId(),
                             key -> new BankEvent()));
                     break;
                 case PurchaseDeviceContextEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseDeviceContextEdgeData.EDGE_REVERSED_NAME:
                     checkSingletonDataDuplicate(entity.getRequestAttributeValue(), foundEntities, edge.getName());
-                    modelMapper.map(edge.getData(), deviceContext);
+                    DFPDataMapper.map((PurchaseDeviceContextEdgeData) edge.getData(), deviceContext);
                     break;
                 case PurchasePaymentInstrumentEdgeData.EDGE_DIRECT_NAME:
                 case PurchasePaymentInstrumentEdgeData.EDGE_REVERSED_NAME:
-                    modelMapper.map(edge.getData(), paymentInstrumentMap.computeIfAbsent(
+                    DFPDataMapper.map((PurchasePaymentInstrumentEdgeData) edge.getData(), paymentInstrumentMap.computeIfAbsent(
                             ((PurchasePaymentInstrumentEdgeData) edge.getData()).getPaymentInstrumentId(),
                             key -> new PaymentInstrument()));
                     break;
                 case PurchaseStatusEdgeData.EDGE_DIRECT_NAME:
                 case PurchaseStatusEdgeData.EDGE_REVERSED_NAME:
-                    modelMapper.map(edge.getData(), purchaseStatusMap.computeIfAbsent(
+                    DFPDataMapper.map((PurchaseStatusEdgeData) edge.getData(), purchaseStatusMap.computeIfAbsent(
                             edge.getId(),
                             key -> new PurchaseStatus()));
                     break;
@@ -558,7 +814,7 @@ public class ItemEnrichmentService {
         }
     }
 
-    private void calculateDerivedFields(final Item item) {
+    private void calculateDerivedFields(final Item item, final EnrichmentMetrics.Trace trace) {
         MainPurchase purchase = item.getPurchase();
         CalculatedFields calculatedFields = new CalculatedFields();
 
@@ -659,7 +915,8 @@ public class ItemEnrichmentService {
             }
         }
 
-        DisposabilityCheck disposabilityCheck = emailDomainService.checkDisposability(calculatedFields.getAggregatedEmailDomain());
+        DisposabilityCheck disposabilityCheck = trace.stage(EMAIL_DOMAIN_CHECK,
+                () -> emailDomainService.checkDisposability(calculatedFields.getAggregatedEmailDomain()));
         calculatedFields.setDisposableEmailDomain(disposabilityCheck.getDisposable());
         calculatedFields.setDisposabilityChecks(disposabilityCheck.getDisposabilityResponses());
 
@@ -682,131 +939,6 @@ public class ItemEnrichmentService {
             purchase.setPreviousPurchaseList(new LinkedList<>());
         }
 
-        //We need to group by original order id get the transaction that has max MerchantLocalDate, remove the rest and flat the grouping map
-
-        Set<PreviousPurchase> lifetimePreviousPurchases = purchase.getPreviousPurchaseList().stream()
-                .collect(groupingBy(m -> m.getOriginalOrderId() == null ? m.getPurchaseId() : m.getOriginalOrderId()))
-                .entrySet().stream()
-                .flatMap(m -> m.getValue().stream().max(Comparator.comparing(PreviousPurchase::getMerchantLocalDate)).stream())
-                .collect(Collectors.toSet());
-
-        Set<PreviousPurchase> lastWeekPreviousPurchases = purchase.getPreviousPurchaseList().stream()
-                .filter(pp -> pp.getMerchantLocalDate().isAfter(purchase.getMerchantLocalDate().minusWeeks(1)))
-                .collect(groupingBy(m -> m.getOriginalOrderId() == null ? m.getPurchaseId() : m.getOriginalOrderId()))
-                .entrySet().stream()
-                .flatMap(m -> m.getValue().stream().max(Comparator.comparing(PreviousPurchase::getMerchantLocalDate)).stream())
-                .collect(Collectors.toSet());
-
-        Set<PreviousPurchase> lastDayPreviousPurchases = lastWeekPreviousPurchases.stream()
-                .filter(pp -> pp.getMerchantLocalDate().isAfter(purchase.getMerchantLocalDate().minusDays(1)))
-                .collect(groupingBy(m -> m.getOriginalOrderId() == null ? m.getPurchaseId() : m.getOriginalOrderId()))
-                .entrySet().stream()
-                .flatMap(m -> m.getValue().stream().max(Comparator.comparing(PreviousPurchase::getMerchantLocalDate)).stream())
-                .collect(Collectors.toSet());
-
-        Set<PreviousPurchase> lastHourPreviousPurchases = lastDayPreviousPurchases.stream()
-                .filter(pp -> pp.getMerchantLocalDate().isAfter(purchase.getMerchantLocalDate().minusHours(1)))
-                .collect(groupingBy(m -> m.getOriginalOrderId() == null ? m.getPurchaseId() : m.getOriginalOrderId()))
-                .entrySet().stream()
-                .flatMap(m -> m.getValue().stream().max(Comparator.comparing(PreviousPurchase::getMerchantLocalDate)).stream())
-                .collect(Collectors.toSet());
-
-        calculatedFields.setTransactionCount(new Velocity<>(
-                (long) lastHourPreviousPurchases.size(),
-                (long) lastDayPreviousPurchases.size(),
-                (long) lastWeekPreviousPurchases.size(),
-                (long) lifetimePreviousPurchases.size()));
-
-        calculatedFields.setTransactionAmount(new Velocity<>(
-                getPurchaseSetSumAmount(lastHourPreviousPurchases),
-                getPurchaseSetSumAmount(lastDayPreviousPurchases),
-                getPurchaseSetSumAmount(lastWeekPreviousPurchases),
-                getPurchaseSetSumAmount(lifetimePreviousPurchases)));
-
-
-        Set<PreviousPurchase> lastHourRejectedPreviousPurchases = lastHourPreviousPurchases.stream()
-                .filter(pp -> REJECTED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lastDayRejectedPreviousPurchases = lastDayPreviousPurchases.stream()
-                .filter(pp -> REJECTED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lastWeekRejectedPreviousPurchases = lastWeekPreviousPurchases.stream()
-                .filter(pp -> REJECTED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lifetimeRejectedPreviousPurchases = lifetimePreviousPurchases.stream()
-                .filter(pp -> REJECTED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-
-        calculatedFields.setRejectedTransactionCount(new Velocity<>(
-                (long) lastHourRejectedPreviousPurchases.size(),
-                (long) lastDayRejectedPreviousPurchases.size(),
-                (long) lastWeekRejectedPreviousPurchases.size(),
-                (long) lifetimeRejectedPreviousPurchases.size()));
-
-        calculatedFields.setRejectedTransactionAmount(new Velocity<>(
-                getPurchaseSetSumAmount(lastHourRejectedPreviousPurchases),
-                getPurchaseSetSumAmount(lastDayRejectedPreviousPurchases),
-                getPurchaseSetSumAmount(lastWeekRejectedPreviousPurchases),
-                getPurchaseSetSumAmount(lifetimeRejectedPreviousPurchases)));
-
-
-        Set<PreviousPurchase> lastHourFailedPreviousPurchases = lastHourPreviousPurchases.stream()
-                .filter(pp -> FAILED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lastDayFailedPreviousPurchases = lastDayPreviousPurchases.stream()
-                .filter(pp -> FAILED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lastWeekFailedPreviousPurchases = lastWeekPreviousPurchases.stream()
-                .filter(pp -> FAILED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lifetimeFailedPreviousPurchases = lifetimePreviousPurchases.stream()
-                .filter(pp -> FAILED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-
-        calculatedFields.setFailedTransactionCount(new Velocity<>(
-                (long) lastHourFailedPreviousPurchases.size(),
-                (long) lastDayFailedPreviousPurchases.size(),
-                (long) lastWeekFailedPreviousPurchases.size(),
-                (long) lifetimeFailedPreviousPurchases.size()));
-
-        calculatedFields.setFailedTransactionAmount(new Velocity<>(
-                getPurchaseSetSumAmount(lastHourFailedPreviousPurchases),
-                getPurchaseSetSumAmount(lastDayFailedPreviousPurchases),
-                getPurchaseSetSumAmount(lastWeekFailedPreviousPurchases),
-                getPurchaseSetSumAmount(lifetimeFailedPreviousPurchases)));
-
-
-        Set<PreviousPurchase> lastHourSuccessfulPreviousPurchases = lastHourPreviousPurchases.stream()
-                .filter(pp -> APPROVED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lastDaySuccessfulPreviousPurchases = lastDayPreviousPurchases.stream()
-                .filter(pp -> APPROVED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lastWeekSuccessfulPreviousPurchases = lastWeekPreviousPurchases.stream()
-                .filter(pp -> APPROVED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-        Set<PreviousPurchase> lifetimeSuccessfulPreviousPurchases = lifetimePreviousPurchases.stream()
-                .filter(pp -> APPROVED_TRANSACTION_STATUS.equalsIgnoreCase(pp.getLastMerchantStatus()))
-                .collect(Collectors.toSet());
-
-        calculatedFields.setSuccessfulTransactionCount(new Velocity<>(
-                (long) lastHourSuccessfulPreviousPurchases.size(),
-                (long) lastDaySuccessfulPreviousPurchases.size(),
-                (long) lastWeekSuccessfulPreviousPurchases.size(),
-                (long) lifetimeSuccessfulPreviousPurchases.size()));
-
-        calculatedFields.setSuccessfulTransactionAmount(new Velocity<>(
-                getPurchaseSetSumAmount(lastHourSuccessfulPreviousPurchases),
-                getPurchaseSetSumAmount(lastDaySuccessfulPreviousPurchases),
-                getPurchaseSetSumAmount(lastWeekSuccessfulPreviousPurchases),
-                getPurchaseSetSumAmount(lifetimeSuccessfulPreviousPurchases)));
-
-        calculatedFields.setUniquePaymentInstrumentCount(new Velocity<>(
-                getUniquePaymentInstrumentCount(lastHourPreviousPurchases),
-                getUniquePaymentInstrumentCount(lastDayPreviousPurchases),
-                getUniquePaymentInstrumentCount(lastWeekPreviousPurchases),
-                getUniquePaymentInstrumentCount(lifetimePreviousPurchases)));
-
         if (purchase.getPaymentInstrumentList() == null) {
             purchase.setPaymentInstrumentList(new LinkedList<>());
         }
@@ -815,72 +947,75 @@ public class ItemEnrichmentService {
                 .map(PaymentInstrument::getPaymentInstrumentId)
                 .collect(Collectors.toSet());
 
-        Set<PreviousPurchase> lastHourTransactionWithCurrentPaymentInstrument =
-                filterPreviousPurchasesByPIUsage(lastHourPreviousPurchases, currentPurchasePaymentInstrumentIds);
-        Set<PreviousPurchase> lastDayTransactionWithCurrentPaymentInstrument =
-                filterPreviousPurchasesByPIUsage(lastDayPreviousPurchases, currentPurchasePaymentInstrumentIds);
-        Set<PreviousPurchase> lastWeekTransactionWithCurrentPaymentInstrument =
-                filterPreviousPurchasesByPIUsage(lastWeekPreviousPurchases, currentPurchasePaymentInstrumentIds);
-        Set<PreviousPurchase> lifetimeTransactionWithCurrentPaymentInstrument =
-                filterPreviousPurchasesByPIUsage(lifetimePreviousPurchases, currentPurchasePaymentInstrumentIds);
-
-        calculatedFields.setCurrentPaymentInstrumentTransactionCount(new Velocity<>(
-                (long) lastHourTransactionWithCurrentPaymentInstrument.size(),
-                (long) lastDayTransactionWithCurrentPaymentInstrument.size(),
-                (long) lastWeekTransactionWithCurrentPaymentInstrument.size(),
-                (long) lifetimeTransactionWithCurrentPaymentInstrument.size()));
-
-        calculatedFields.setCurrentPaymentInstrumentTransactionAmount(new Velocity<>(
-                getPurchaseSetSumAmount(lastHourTransactionWithCurrentPaymentInstrument),
-                getPurchaseSetSumAmount(lastDayTransactionWithCurrentPaymentInstrument),
-                getPurchaseSetSumAmount(lastWeekTransactionWithCurrentPaymentInstrument),
-                getPurchaseSetSumAmount(lifetimeTransactionWithCurrentPaymentInstrument)));
-
-        calculatedFields.setUniqueIPCountries(new Velocity<>(
-                countUniqueIPCountriesInPreviousPurchases(lastHourPreviousPurchases),
-                countUniqueIPCountriesInPreviousPurchases(lastDayPreviousPurchases),
-                countUniqueIPCountriesInPreviousPurchases(lastWeekPreviousPurchases),
-                countUniqueIPCountriesInPreviousPurchases(lifetimePreviousPurchases)));
+        VelocityAggregator.aggregate(purchase.getPreviousPurchaseList(), purchase.getMerchantLocalDate(),
+                currentPurchasePaymentInstrumentIds, calculatedFields);
 
         item.getPurchase().setCalculatedFields(calculatedFields);
     }
 
-    private long getUniquePaymentInstrumentCount(final Set<PreviousPurchase> lastHourPreviousPurchases) {
-        return lastHourPreviousPurchases.stream()
-                .filter(pp -> pp.getPaymentInstrumentList() != null)
-                .flatMap(pp -> pp.getPaymentInstrumentList().stream())
-                .filter(pi -> pi.getPaymentInstrumentId() != null)
-                .map(PaymentInstrument::getPaymentInstrumentId)
-                .distinct()
-                .count();
-    }
-
-    private BigDecimal getPurchaseSetSumAmount(Set<? extends Purchase> purchases) {
-        return purchases.stream()
-                .map(p -> Objects.requireNonNullElse(p.getTotalAmountInUSD(), BigDecimal.ZERO))
-                .reduce(BigDecimal::add)
-                .orElse(BigDecimal.ZERO);
-    }
+    /**
+     * Enrichments submitted to the worker pool during a single run.
+     * The number of unfinished enrichments is limited and a page is
+     * submitted only after the previous one, so no more than the prefetched
+     * pages are read ahead of the workers. A failed enrichment doesn't stop
+     * the others. Items read by the run are counted for the backlog metrics,
+     * so they don't need separate queries.
+     */
+    private static class EnrichmentRun {
+        private final ExecutorService executor;
+        private final Semaphore slots;
+        private final Phaser pending = new Phaser(1);
+        private final AtomicInteger failed = new AtomicInteger();
+        @Getter
+        private int submitted;
+        @Getter
+        private long observed;
+        @Getter
+        private OffsetDateTime oldestImport;
+
+        EnrichmentRun(final ExecutorService executor, final int maxUnfinished) {
+            this.executor = executor;
+            this.slots = new Semaphore(maxUnfinished);
+        }
 
-    private Set<PreviousPurchase> filterPreviousPurchasesByPIUsage(Set<PreviousPurchase> purchases, Set<String> piIds) {
-        return purchases.stream()
-                .filter(pp -> pp.getPaymentInstrumentList() != null)
-                .filter(pp -> pp.getPaymentInstrumentList().stream()
-                        .filter(pi -> pi.getPaymentInstrumentId() != null)
-                        .map(PaymentInstrument::getPaymentInstrumentId)
-                        .anyMatch(piIds::contains))
-                .collect(Collectors.toSet());
-    }
+        void submit(final Runnable enrichment) {
+            slots.acquireUninterruptibly();
+            pending.register();
+            submitted++;
+            try {
+                executor.execute(() -> {
+                    try {
+                        enrichment.run();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        slots.release();
+                        pending.arriveAndDeregister();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                slots.release();
+                pending.arriveAndDeregister();
+                throw e;
+            }
+        }
 
-    private long countUniqueIPCountriesInPreviousPurchases(Set<PreviousPurchase> purchases) {
-        return purchases.stream()
-                .filter(pp -> pp.getDeviceContext() != null)
-                .map(PreviousPurchase::getDeviceContext)
-                .filter(dc -> dc.getIpCountry() != null)
-                .map(DeviceContext::getIpCountry)
-                .distinct()
-                .count();
-    }
+        void observe(final Collection<Item> items) {
+            observed += items.size();
+            for (Item item : items) {
+                if (item.getImported() != null &&
+                        (oldestImport == null || item.getImported().isBefore(oldestImport))) {
+                    oldestImport = item.getImported();
+                }
+            }
+        }
 
+        void await() {
+            pending.arriveAndAwaitAdvance();
+        }
 
+        int getFailed() {
+            return failed.get();
+        }
+    }
 }
@@ -3,6 +3,9 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.service;
 
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.IdUtility;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.PageProcessingUtility;
 import com.griddynamics.msd365fp.manualreview.model.ItemLabel;
@@ -33,6 +36,7 @@ import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.lang.NonNull;
@@ -62,8 +66,14 @@ public class ItemService {
 
     @Setter(onMethod = @__({@Autowired}))
     private ItemService thisService;
+    @Setter(onMethod = @__({@Autowired}))
+    private ItemEnrichmentScheduler itemEnrichmentScheduler;
+    @Setter(onMethod = @__({@Autowired, @Qualifier("itemsContainer")}))
+    private ExtendedCosmosContainer itemsContainer;
     @Setter(onMethod = @__({@Value("${mr.items.unlock-timeout}")}))
     private Duration unlockTimeout;
+    @Setter(onMethod = @__({@Value("${mr.items.page-prefetch-depth}")}))
+    private int pagePrefetchDepth;
 
     public void saveEmptyItem(PurchaseEventBatch eventBatch) {
         eventBatch.forEach(event -> {
@@ -82,6 +92,7 @@ public class ItemService {
                 try {
                     itemRepository.save(item);
                     log.info("Item [{}] has been saved to the storage.", itemId);
+                    itemEnrichmentScheduler.schedule(itemId);
                 } catch (CosmosAccessException e) {
                     log.info("Item [{}] has not been saved to the storage because it's already exist.", itemId);
                 } catch (Exception e) {
@@ -106,7 +117,9 @@ public class ItemService {
             Item item = itemIterator.next();
             ItemLock prevLock = SerializationUtils.clone(item.getLock());
             item.unlock();
-            itemRepository.save(item);
+            itemRepository.patch(item, DocumentPatch.create()
+                    .set(ITEM_LOCK_PATH, item.getLock())
+                    .set(ITEM_REVIEWERS_PATH, item.getReviewers()));
             streamService.sendItemLockEvent(item, prevLock, actionType);
             log.info("Item with ID [{}] has been successfully unlocked. Previous lock owner [{}].",
                     item.getId(), prevLock.getOwnerId());
@@ -205,14 +218,24 @@ public class ItemService {
                                 true),
                         itemCollection -> {
                             HashSet<Item> items = new HashSet<>(itemCollection.getValues());
+                            Map<String, Set<String>> oldQueueIds = new HashMap<>();
                             items.forEach(item -> {
-                                HashSet<String> oldQueueIds = new HashSet<>(item.getQueueIds());
+                                oldQueueIds.put(item.getId(), new HashSet<>(item.getQueueIds()));
                                 item.getQueueIds().add(queue.getId());
-                                itemRepository.save(item);
-                                streamService.sendItemAssignmentEvent(item, oldQueueIds);
                             });
-                            updatedItemIds.addAll(items.stream().map(Item::getId).collect(Collectors.toSet()));
-                        });
+                            List<BulkWriteResult<Item>> results = itemRepository.bulkPatch(items,
+                                    item -> DocumentPatch.create().set(ITEM_QUEUE_IDS_PATH, item.getQueueIds()));
+                            results.stream()
+                                    .filter(BulkWriteResult::isSuccessful)
+                                    .map(BulkWriteResult::getDocument)
+                                    .forEach(item -> {
+                                        streamService.sendItemAssignmentEvent(item, oldQueueIds.get(item.getId()));
+                                        updatedItemIds.add(item.getId());
+                                    });
+                            failOnUnsavedItems(results);
+                        },
+                        pagePrefetchDepth,
+                        itemsContainer.getRequestUnitBudget());
             } else if (!queue.isActive()) {
                 log.info("Trying to delete assignments for all items related to [{}] deactivated queue.",
                         queue.getId());
@@ -223,17 +246,15 @@ public class ItemService {
                                 continuation),
                         itemCollection -> {
                             HashSet<Item> items = new HashSet<>(itemCollection.getValues());
+                            Map<String, Item> oldItems = new HashMap<>();
                             items.forEach(item -> {
                                 Item oldItem = SerializationUtils.clone(item);
-                                boolean unassigned = false;
-                                if (item.getQueueIds() != null && item.getQueueIds().contains(queue.getId())) {
+                                oldItems.put(item.getId(), oldItem);
+                                if (item.getQueueIds() != null) {
                                     item.getQueueIds().remove(queue.getId());
-                                    unassigned = true;
                                 }
-                                boolean unlocked = false;
                                 if (item.getLock() != null && queue.getId().equals(item.getLock().getQueueId())) {
                                     item.unlock();
-                                    unlocked = true;
                                 }
                                 if (item.getHold() != null && queue.getId().equals(item.getHold().getQueueId())) {
                                     item.setHold(null);
@@ -253,15 +274,24 @@ public class ItemService {
                                             .userId(oldItem.getEscalation().getReviewerId())
                                             .build());
                                 }
-                                itemRepository.save(item);
-                                if (unassigned) {
-                                    streamService.sendItemAssignmentEvent(item, oldItem.getQueueIds());
-                                }
-                                if (unlocked) {
-                                    streamService.sendItemLockEvent(item, oldItem.getLock(), LockActionType.DELETION_RELEASE);
-                                }
                             });
-                        });
+                            List<BulkWriteResult<Item>> results = itemRepository.bulkSave(items);
+                            results.stream()
+                                    .filter(BulkWriteResult::isSuccessful)
+                                    .map(BulkWriteResult::getDocument)
+                                    .forEach(item -> {
+                                        Item oldItem = oldItems.get(item.getId());
+                                        if (oldItem.getQueueIds() != null && oldItem.getQueueIds().contains(queue.getId())) {
+                                            streamService.sendItemAssignmentEvent(item, oldItem.getQueueIds());
+                                        }
+                                        if (oldItem.getLock() != null && queue.getId().equals(oldItem.getLock().getQueueId())) {
+                                            streamService.sendItemLockEvent(item, oldItem.getLock(), LockActionType.DELETION_RELEASE);
+                                        }
+                                    });
+                            failOnUnsavedItems(results);
+                        },
+                        pagePrefetchDepth,
+                        itemsContainer.getRequestUnitBudget());
             } else {
                 if (queue.isResidual()) {
                     log.info("Queue [{}] will have assignments updated in a separate process.", queue.getId());
@@ -277,6 +307,22 @@ public class ItemService {
         return updatedItemIds;
     }
 
+    /**
+     * Items which haven't been saved in a bulk operation are most likely
+     * modified by another process, so the exception makes the caller
+     * retry the whole processing on fresh data.
+     */
+    private void failOnUnsavedItems(final List<BulkWriteResult<Item>> results) {
+        List<String> unsavedItemIds = results.stream()
+                .filter(result -> !result.isSuccessful())
+                .map(result -> result.getDocument().getId())
+                .collect(Collectors.toList());
+        if (!unsavedItemIds.isEmpty()) {
+            log.warn("Items {} haven't been saved in a bulk operation.", unsavedItemIds);
+            throw new CosmosAccessException(String.format("[%d] items haven't been saved", unsavedItemIds.size()));
+        }
+    }
+
     /**
      * Reconciliation for new Items.
      * 1. Method counts all items were enriched since the specified time {@link OffsetDateTime}.
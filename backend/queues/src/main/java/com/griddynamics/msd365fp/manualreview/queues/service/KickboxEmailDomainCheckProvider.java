@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.time.OffsetDateTime;
 
@@ -24,21 +25,21 @@ public class KickboxEmailDomainCheckProvider implements EmailDomainCheckProvider
     private String openKickboxUrl;
 
     @Override
-    public DisposabilityCheckServiceResponse check(String emailDomain) {
-        OpenKickboxResponse openKickboxResponse = null;
-        try {
-            openKickboxResponse = nonAuthorizingWebClient
-                    .get()
-                    .uri(openKickboxUrl + emailDomain)
-                    .retrieve()
-                    .bodyToMono(OpenKickboxResponse.class)
-                    .block();
-        } catch (RuntimeException e) {
-            log.error("Exception during retrieving disposibility information from KickBox.", e);
-        }
-
-        Boolean disposable = openKickboxResponse != null ? openKickboxResponse.isDisposable() : null;
+    public Mono<DisposabilityCheckServiceResponse> checkAsync(String emailDomain) {
+        return nonAuthorizingWebClient
+                .get()
+                .uri(openKickboxUrl + emailDomain)
+                .retrieve()
+                .bodyToMono(OpenKickboxResponse.class)
+                .map(openKickboxResponse -> response(openKickboxResponse.isDisposable()))
+                .onErrorResume(RuntimeException.class, e -> {
+                    log.error("Exception during retrieving disposibility information from KickBox.", e);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> response(null)));
+    }
 
+    private DisposabilityCheckServiceResponse response(Boolean disposable) {
         return DisposabilityCheckServiceResponse.builder()
                 .disposable(disposable)
                 .resource(openKickboxUrl)
@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import javax.annotation.Nullable;
 import java.time.OffsetDateTime;
@@ -29,24 +30,26 @@ public class NameApiEmailDomainCheckProvider implements EmailDomainCheckProvider
     private String nameApiKey;
 
     @Override
-    public @Nullable DisposabilityCheckServiceResponse check(String emailDomain) {
+    public Mono<DisposabilityCheckServiceResponse> checkAsync(String emailDomain) {
         if (StringUtils.isEmpty(nameApiKey)) {
             log.info("NameApi service Api Key not provided. Skipping this service");
-            return null;
+            return Mono.empty();
         }
 
-        NameApiResponse nameApiResponse = null;
-        try {
-            nameApiResponse = nonAuthorizingWebClient
-                    .get()
-                    .uri(String.format(nameApiUrl, nameApiKey, emailDomain))
-                    .retrieve()
-                    .bodyToMono(NameApiResponse.class)
-                    .block();
-        } catch (RuntimeException e) {
-            log.error("Exception during retrieving disposibility information from NameApi.", e);
-        }
+        return nonAuthorizingWebClient
+                .get()
+                .uri(String.format(nameApiUrl, nameApiKey, emailDomain))
+                .retrieve()
+                .bodyToMono(NameApiResponse.class)
+                .map(this::response)
+                .onErrorResume(RuntimeException.class, e -> {
+                    log.error("Exception during retrieving disposibility information from NameApi.", e);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> response(null)));
+    }
 
+    private DisposabilityCheckServiceResponse response(@Nullable NameApiResponse nameApiResponse) {
         return DisposabilityCheckServiceResponse.builder()
                 .disposable(nameApiResponse != null ? YES.equals(nameApiResponse.getDisposable()) : null)
                 .resource("NameApi")
@@ -3,6 +3,8 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.service;
 
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
 import com.griddynamics.msd365fp.manualreview.cosmos.utilities.PageProcessingUtility;
 import com.griddynamics.msd365fp.manualreview.dfpauth.util.UserPrincipalUtility;
 import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
@@ -13,7 +15,6 @@ import com.griddynamics.msd365fp.manualreview.queues.model.*;
 import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
 import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Queue;
 import com.griddynamics.msd365fp.manualreview.queues.repository.ItemRepository;
-import com.azure.spring.data.cosmos.exception.CosmosAccessException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
@@ -226,24 +227,41 @@ public class PublicItemClient {
         PageProcessingUtility.executeForAllPages(continuationToken ->
                         itemRepository.findEnrichedItemsByIds(ids, DEFAULT_ITEM_PAGE_SIZE, continuationToken),
                 items -> {
+                    Map<String, T> contexts = new HashMap<>();
+                    List<Item> modifiedItems = new LinkedList<>();
                     for (Item item : items) {
                         String check = dataSecurityService.checkPermissionRestrictionForItemUpdateWithoutLock(UserPrincipalUtility.getAuth(), item, queues);
                         if (check != null) {
                             results.put(item.getId(), new BatchUpdateResult(item.getId(), false, check));
                         } else {
                             try {
-                                T context = modifier.apply(item);
-                                item = itemRepository.save(item);
-                                postprocessor.accept(item, context);
+                                contexts.put(item.getId(), modifier.apply(item));
+                                modifiedItems.add(item);
+                            } catch (Exception e) {
+                                logBatchUpdateException(item, e);
+                                results.put(item.getId(), new BatchUpdateResult(item.getId(), false, "Internal exception."));
+                            }
+                        }
+                    }
+                    if (modifiedItems.isEmpty()) {
+                        return;
+                    }
+                    for (BulkWriteResult<Item> result : itemRepository.bulkSave(modifiedItems)) {
+                        Item item = result.getDocument();
+                        if (result.isSuccessful()) {
+                            try {
+                                postprocessor.accept(item, contexts.get(item.getId()));
                                 results.put(item.getId(), new BatchUpdateResult(item.getId(), true, "Successfully updated."));
                                 log.info("Item [{}] has been modified in batch operation.", item.getId());
-                            } catch (CosmosAccessException e) {
-                                results.put(item.getId(), new BatchUpdateResult(item.getId(), false, "Item has been modified by another process."));
                             } catch (Exception e) {
-                                log.warn("Exception during bulk operation for item [{}]: {}", item.getId(), e.getMessage());
-                                log.warn("Exception during bulk operation for item [{}]", item.getId(), e);
+                                logBatchUpdateException(item, e);
                                 results.put(item.getId(), new BatchUpdateResult(item.getId(), false, "Internal exception."));
                             }
+                        } else if (result.isPreconditionFailed()) {
+                            results.put(item.getId(), new BatchUpdateResult(item.getId(), false, "Item has been modified by another process."));
+                        } else {
+                            logBatchUpdateException(item, result.getException());
+                            results.put(item.getId(), new BatchUpdateResult(item.getId(), false, "Internal exception."));
                         }
                     }
                 }
@@ -258,11 +276,18 @@ public class PublicItemClient {
 
     }
 
+    private void logBatchUpdateException(final Item item, @Nullable final Exception e) {
+        log.warn("Exception during bulk operation for item [{}]: {}", item.getId(), e == null ? null : e.getMessage());
+        log.warn("Exception during bulk operation for item [{}]", item.getId(), e);
+    }
+
 
     @PreAuthorize("@dataSecurityService.checkPermissionForItemLock(authentication, #item, #queueView)")
     public void lockItem(@NonNull QueueView queueView, @NonNull Item item) {
         item.lock(queueView.getQueueId(), queueView.getViewId(), UserPrincipalUtility.getUserId());
-        itemRepository.save(item);
+        itemRepository.patch(item, DocumentPatch.create()
+                .set(ITEM_LOCK_PATH, item.getLock())
+                .set(ITEM_REVIEWERS_PATH, item.getReviewers()));
         log.info("Item [{}] has been locked in queue view [{}].", item.getId(), queueView.getViewId());
     }
 
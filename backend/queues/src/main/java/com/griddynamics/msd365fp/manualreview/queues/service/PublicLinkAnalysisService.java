@@ -30,6 +30,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 import java.time.Duration;
 import java.time.OffsetDateTime;
@@ -64,6 +65,8 @@ public class PublicLinkAnalysisService {
     private String dfpLinkAnalysisCountUrl;
     @Value("${azure.dfp.link-analysis-details-url}")
     private String dfpLinkAnalysisDetailsUrl;
+    @Value("${azure.dfp.link-analysis-timeout}")
+    private Duration dfpLinkAnalysisTimeout;
     @Value("${mr.link-analysis.ttl}")
     private Duration ttl;
     @Value("${mr.link-analysis.check-user-restriction}")
@@ -118,15 +121,6 @@ public class PublicLinkAnalysisService {
             dfpRequest.put(LinkAnalysisField.ZIPCODE.getRelatedLAName(), ba.getZipCode());
         }
 
-        // request data from DFP
-        LinkAnalysisCountResponse dfpCountResults = dfpClient
-                .post()
-                .uri(dfpLinkAnalysisCountUrl)
-                .body(Mono.just(dfpRequest), LinkAnalysisRequest.class)
-                .retrieve()
-                .bodyToMono(LinkAnalysisCountResponse.class)
-                .block();
-        if (dfpCountResults == null) throw new EmptySourceException();
         LinkAnalysisRequest dfpFullRequest = new LinkAnalysisRequest();
         dfpFullRequest.putAll(dfpRequest);
         for (LinkAnalysisField field : LinkAnalysisField.values()) {
@@ -135,20 +129,15 @@ public class PublicLinkAnalysisService {
             }
         }
 
-        // request purchase Ids
-        LinkAnalysisFullResponse dfpFullResults;
-        if (!request.getFields().isEmpty()) {
-            dfpFullResults = dfpClient
-                    .post()
-                    .uri(dfpLinkAnalysisFullUrl)
-                    .body(Mono.just(dfpFullRequest), LinkAnalysisRequest.class)
-                    .retrieve()
-                    .bodyToMono(LinkAnalysisFullResponse.class)
-                    .block();
-            if (dfpFullResults == null) throw new EmptySourceException();
-        } else {
-            dfpFullResults = new LinkAnalysisFullResponse();
-        }
+        // request data and purchase Ids from DFP concurrently
+        Mono<LinkAnalysisFullResponse> dfpFullResponse = request.getFields().isEmpty()
+                ? Mono.just(new LinkAnalysisFullResponse())
+                : requestLinkAnalysisFull(dfpFullRequest);
+        Tuple2<LinkAnalysisCountResponse, LinkAnalysisFullResponse> dfpResults =
+                Mono.zip(requestLinkAnalysisCount(dfpRequest), dfpFullResponse).block();
+        if (dfpResults == null) throw new EmptySourceException();
+        LinkAnalysisCountResponse dfpCountResults = dfpResults.getT1();
+        LinkAnalysisFullResponse dfpFullResults = dfpResults.getT2();
 
         // map data to response
         dfpFullResults.entrySet().stream()
@@ -191,6 +180,26 @@ public class PublicLinkAnalysisService {
         return modelMapper.map(linkAnalysis, LinkAnalysisDTO.class);
     }
 
+    public Mono<LinkAnalysisCountResponse> requestLinkAnalysisCount(final LinkAnalysisRequest dfpRequest) {
+        return dfpClient
+                .post()
+                .uri(dfpLinkAnalysisCountUrl)
+                .body(Mono.just(dfpRequest), LinkAnalysisRequest.class)
+                .retrieve()
+                .bodyToMono(LinkAnalysisCountResponse.class)
+                .timeout(dfpLinkAnalysisTimeout);
+    }
+
+    public Mono<LinkAnalysisFullResponse> requestLinkAnalysisFull(final LinkAnalysisRequest dfpRequest) {
+        return dfpClient
+                .post()
+                .uri(dfpLinkAnalysisFullUrl)
+                .body(Mono.just(dfpRequest), LinkAnalysisRequest.class)
+                .retrieve()
+                .bodyToMono(LinkAnalysisFullResponse.class)
+                .timeout(dfpLinkAnalysisTimeout);
+    }
+
     public PageableCollection<LAItemDTO> getMRItems(
             final String id,
             final Integer size,
@@ -257,6 +266,7 @@ public class PublicLinkAnalysisService {
                     .body(Mono.just(new LinkAnalysisDetailsRequest(idsForLocalRequest)), LinkAnalysisDetailsRequest.class)
                     .retrieve()
                     .bodyToMono(LinkAnalysisDetailsResponse.class)
+                    .timeout(dfpLinkAnalysisTimeout)
                     .block();
             if (dfpDetailsResults != null && dfpDetailsResults.getPurchaseDetails() != null) {
                 result.addAll(dfpDetailsResults.getPurchaseDetails().stream()
@@ -8,12 +8,15 @@ import com.griddynamics.msd365fp.manualreview.model.Label;
 import com.griddynamics.msd365fp.manualreview.model.exception.BusyException;
 import com.griddynamics.msd365fp.manualreview.queues.model.QueueViewType;
 import com.griddynamics.msd365fp.manualreview.queues.model.Bucket;
+import com.griddynamics.msd365fp.manualreview.queues.model.ItemFilterPredicate;
 import com.griddynamics.msd365fp.manualreview.queues.model.dto.RiskScoreOverviewDTO;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
 import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Queue;
 import com.griddynamics.msd365fp.manualreview.queues.repository.ItemRepository;
 import com.griddynamics.msd365fp.manualreview.queues.repository.QueueRepository;
 import com.griddynamics.msd365fp.manualreview.queues.util.QueueViewUtility;
 import com.azure.spring.data.cosmos.exception.CosmosAccessException;
+import com.fasterxml.jackson.databind.JsonNode;
 import io.github.resilience4j.retry.annotation.Retry;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -23,8 +26,10 @@ import org.apache.commons.collections4.SetUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -45,6 +50,9 @@ public class QueueService {
     @Setter(onMethod = @__({@Autowired}))
     private QueueService thisService;
 
+    private volatile CompiledQueueFilters compiledQueueFilters;
+    private final ReentrantLock queueFiltersRefresh = new ReentrantLock();
+
     /**
      * The residual queue reconciliation.
      * The method gets list of active residual queues and the list of managers.
@@ -190,4 +198,82 @@ public class QueueService {
                 )
         );
     }
+
+    /**
+     * Finds active queues which filters are matched by the item. Filters are compiled
+     * and kept in memory for a minute, so assignments made with outdated filters are
+     * eventually corrected by the queue assignment reconciliation task.
+     * Outdated filters are refreshed by a single caller while others keep using
+     * the previous ones.
+     *
+     * @param item an enriched item
+     * @return IDs of matched queues or an empty set if queues can't be retrieved
+     */
+    public Set<String> findMatchingQueueIds(final Item item) {
+        CompiledQueueFilters filters;
+        try {
+            filters = getCompiledQueueFilters();
+        } catch (Exception e) {
+            log.warn("Queue filters can't be compiled for item [{}]: {}", item.getId(), e.getMessage());
+            return new HashSet<>();
+        }
+        JsonNode document = ItemFilterPredicate.document(item);
+        return filters.predicates.entrySet().stream()
+                .filter(entry -> entry.getValue().test(document))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private CompiledQueueFilters getCompiledQueueFilters() throws BusyException {
+        CompiledQueueFilters filters = compiledQueueFilters;
+        if (filters != null && !filters.isOutdated()) {
+            return filters;
+        }
+        if (filters == null) {
+            // nothing to fall back to, so wait for the first compilation
+            queueFiltersRefresh.lock();
+        } else if (!queueFiltersRefresh.tryLock()) {
+            return filters;
+        }
+        try {
+            filters = compiledQueueFilters;
+            if (filters == null || filters.isOutdated()) {
+                Collection<Queue> queues = PageProcessingUtility.getAllPages(
+                        continuation -> queueRepository.getQueueList(
+                                true, false, DEFAULT_QUEUE_PAGE_SIZE, continuation));
+                filters = new CompiledQueueFilters(queues);
+                compiledQueueFilters = filters;
+            }
+            return filters;
+        } catch (BusyException | RuntimeException e) {
+            if (filters == null) {
+                throw e;
+            }
+            log.warn("Queue filters can't be refreshed, previous ones are used: {}", e.getMessage());
+            return filters;
+        } finally {
+            queueFiltersRefresh.unlock();
+        }
+    }
+
+    private static class CompiledQueueFilters {
+        private final Instant compiled = Instant.now();
+        private final Map<String, ItemFilterPredicate> predicates = new HashMap<>();
+
+        CompiledQueueFilters(final Collection<Queue> queues) {
+            for (Queue queue : queues) {
+                if (queue.isActive() && !CollectionUtils.isEmpty(queue.getFilters())) {
+                    try {
+                        predicates.put(queue.getId(), ItemFilterPredicate.compile(queue.getFilters()));
+                    } catch (RuntimeException e) {
+                        log.warn("Filters of queue [{}] can't be compiled: {}", queue.getId(), e.getMessage());
+                    }
+                }
+            }
+        }
+
+        private boolean isOutdated() {
+            return compiled.plus(QUEUE_FILTERS_REFRESH_INTERVAL).isBefore(Instant.now());
+        }
+    }
 }
@@ -0,0 +1,253 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of concurrent calls to a remote service and adapts
+ * the limit to the latency of the service in the AIMD manner:
+ * <ul>
+ * <li>the limit grows by one per limit of successful calls while the limit
+ * is used and the latency stays within the tolerance of its long-term
+ * average,</li>
+ * <li>the limit shrinks by the backoff ratio when a call is dropped
+ * (failed due to overload or timed out) or its latency exceeds
+ * the tolerance, at most once per round trip.</li>
+ * </ul>
+ * Callers which don't get a permit wait for it in the order of arrival.
+ * When there are too many of them, new callers are rejected.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    public static final double BACKOFF_RATIO = 0.9;
+    public static final double RTT_TOLERANCE = 2.0;
+    public static final int RTT_WINDOW = 100;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxPending;
+    private final LongSupplier nanoClock;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final LongAdder rejected = new LongAdder();
+    private double limit;
+    private int inFlight;
+    private double averageRtt;
+    private long lastDecrease;
+
+    public AdaptiveConcurrencyLimiter(final String name,
+                                      final int initialLimit,
+                                      final int minLimit,
+                                      final int maxLimit,
+                                      final int maxPending,
+                                      final LongSupplier nanoClock) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit || maxPending < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Incorrect limits of [%s]: initial [%d], min [%d], max [%d], max pending [%d]",
+                    name, initialLimit, minLimit, maxLimit, maxPending));
+        }
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxPending = maxPending;
+        this.nanoClock = nanoClock;
+        this.lastDecrease = nanoClock.getAsLong();
+    }
+
+    /**
+     * Emits a permit as soon as the call fits into the limit. The permit
+     * must be released by one of its methods once the call is finished.
+     * Emits {@link LimitExceededException} if there are too many
+     * callers waiting for permits.
+     */
+    public Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            Permit permit = null;
+            boolean accepted = true;
+            synchronized (this) {
+                if (waiters.isEmpty() && inFlight < getLimit()) {
+                    permit = grant();
+                } else if (waiters.size() < maxPending) {
+                    Waiter waiter = new Waiter(sink);
+                    waiters.addLast(waiter);
+                    sink.onCancel(() -> cancel(waiter));
+                } else {
+                    accepted = false;
+                }
+            }
+            if (permit != null) {
+                sink.success(permit);
+            } else if (!accepted) {
+                rejected.increment();
+                sink.error(new LimitExceededException(String.format(
+                        "Concurrency limit of [%s] is exceeded: [%d] calls are waiting", name, maxPending)));
+            }
+        });
+    }
+
+    /**
+     * Works as {@link #acquire()} but also emits {@link LimitExceededException}
+     * if the permit isn't granted in time.
+     */
+    public Mono<Permit> acquire(final Duration maxWait) {
+        return acquire().timeout(maxWait, Mono.defer(() -> {
+            rejected.increment();
+            return Mono.error(new LimitExceededException(String.format(
+                    "Concurrency limit of [%s] isn't available in [%s]", name, maxWait)));
+        }));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getPending() {
+        return waiters.size();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private Permit grant() {
+        inFlight++;
+        return new Permit(nanoClock.getAsLong(), inFlight);
+    }
+
+    private void cancel(final Waiter waiter) {
+        Permit permit;
+        synchronized (this) {
+            if (waiters.remove(waiter)) {
+                return;
+            }
+            permit = waiter.permit;
+        }
+        // the waiter has been cancelled after the permit was granted but before it was received
+        if (permit != null) {
+            permit.onIgnore();
+        }
+    }
+
+    private void release(final Permit permit, final Outcome outcome) {
+        long now = nanoClock.getAsLong();
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            update(permit, now - permit.acquired, outcome);
+            while (!waiters.isEmpty() && inFlight < getLimit()) {
+                Waiter waiter = waiters.pollFirst();
+                waiter.permit = grant();
+                granted.add(waiter);
+            }
+        }
+        granted.forEach(waiter -> waiter.sink.success(waiter.permit));
+    }
+
+    private void update(final Permit permit, final long rtt, final Outcome outcome) {
+        if (outcome == Outcome.IGNORED) {
+            return;
+        }
+        boolean slow = false;
+        if (outcome == Outcome.SUCCEEDED) {
+            averageRtt = averageRtt == 0 ? rtt : averageRtt + (rtt - averageRtt) / RTT_WINDOW;
+            slow = rtt > averageRtt * RTT_TOLERANCE;
+        }
+        if (outcome == Outcome.DROPPED || slow) {
+            // calls started before the previous decrease have seen the same overload
+            if (permit.acquired - lastDecrease >= 0) {
+                double decreased = Math.max(minLimit, limit * BACKOFF_RATIO);
+                if ((int) decreased < (int) limit) {
+                    log.info("Concurrency limit of [{}] is decreased to [{}]", name, (int) decreased);
+                }
+                limit = decreased;
+                lastDecrease = nanoClock.getAsLong();
+            }
+        } else if (permit.inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private enum Outcome {
+        SUCCEEDED, DROPPED, IGNORED
+    }
+
+    private static class Waiter {
+        private final MonoSink<Permit> sink;
+        private Permit permit;
+
+        Waiter(final MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * A permit for a single call. Only the first release of the permit
+     * is taken into account.
+     */
+    public class Permit {
+        private final long acquired;
+        private final int inFlight;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(final long acquired, final int inFlight) {
+            this.acquired = acquired;
+            this.inFlight = inFlight;
+        }
+
+        /**
+         * Releases the permit of the call which has been finished
+         * successfully, its latency is used to adapt the limit.
+         */
+        public void onSuccess() {
+            releaseWith(Outcome.SUCCEEDED);
+        }
+
+        /**
+         * Releases the permit of the call which has failed due to overload
+         * of the service or has timed out.
+         */
+        public void onDropped() {
+            releaseWith(Outcome.DROPPED);
+        }
+
+        /**
+         * Releases the permit of the call which says nothing about
+         * the load of the service, e.g. the call has been cancelled.
+         */
+        public void onIgnore() {
+            releaseWith(Outcome.IGNORED);
+        }
+
+        private void releaseWith(final Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                release(this, outcome);
+            }
+        }
+    }
+
+    public static class LimitExceededException extends RuntimeException {
+        public LimitExceededException(final String message) {
+            super(message);
+        }
+    }
+}
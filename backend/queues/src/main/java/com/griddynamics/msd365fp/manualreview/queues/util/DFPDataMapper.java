@@ -0,0 +1,426 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.griddynamics.msd365fp.manualreview.model.dfp.*;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.*;
+import org.modelmapper.ModelMapper;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Maps data of DFP graph nodes and edges to the purchase model.
+ * <p>
+ * Each mapping copies the properties with the same names and skips
+ * absent values, so data of several nodes and edges can be merged into
+ * a single object. It's the same as mapping by the {@code dfpModelMapper}
+ * with the strict matching strategy, but without reflection and type map
+ * lookups on each call. {@link #compareWith(ModelMapper)} checks that both
+ * ways give the same results, so a property added to the model can't be
+ * lost silently.
+ */
+public class DFPDataMapper {
+
+    private DFPDataMapper() {
+    }
+
+    public static void map(final AddressNodeData source, final Address target) {
+        copy(source.getAddressId(), target::setAddressId);
+        copy(source.getStreet1(), target::setStreet1);
+        copy(source.getStreet2(), target::setStreet2);
+        copy(source.getStreet3(), target::setStreet3);
+        copy(source.getCity(), target::setCity);
+        copy(source.getState(), target::setState);
+        copy(source.getZipCode(), target::setZipCode);
+        copy(source.getCountry(), target::setCountry);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchaseAddressEdgeData source, final Address target) {
+        copy(source.getAddressId(), target::setAddressId);
+        copy(source.getType(), target::setType);
+        copy(source.getFirstName(), target::setFirstName);
+        copy(source.getLastName(), target::setLastName);
+        copy(source.getPhoneNumber(), target::setPhoneNumber);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PaymentInstrumentAddressEdgeData source, final Address target) {
+        copy(source.getAddressId(), target::setAddressId);
+        copy(source.getType(), target::setType);
+        copy(source.getFirstName(), target::setFirstName);
+        copy(source.getLastName(), target::setLastName);
+        copy(source.getPhoneNumber(), target::setPhoneNumber);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final BankEventNodeData source, final BankEvent target) {
+        copy(source.getBankEventId(), target::setBankEventId);
+        copy(source.getType(), target::setType);
+        copy(source.getBankEventTimestamp(), target::setBankEventTimestamp);
+        copy(source.getStatus(), target::setStatus);
+        copy(source.getBankResponseCode(), target::setBankResponseCode);
+        copy(source.getPaymentProcessor(), target::setPaymentProcessor);
+        copy(source.getMrn(), target::setMrn);
+        copy(source.getMid(), target::setMid);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchaseBankEventEdgeData source, final BankEvent target) {
+        copy(source.getBankEventId(), target::setBankEventId);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final DeviceContextNodeData source, final DeviceContext target) {
+        copy(source.getDeviceContextId(), target::setDeviceContextId);
+        copy(source.getProvider(), target::setProvider);
+        copy(source.getMerchantFuzzyDeviceId(), target::setMerchantFuzzyDeviceId);
+        copy(source.getDeviceContextDC(), target::setDeviceContextDC);
+        copy(source.getUserAgent(), target::setUserAgent);
+        copy(source.getScreenResolution(), target::setScreenResolution);
+        copy(source.getOs(), target::setOs);
+        copy(source.getDeviceType(), target::setDeviceType);
+        copy(source.getBrowserLanguage(), target::setBrowserLanguage);
+        copy(source.getDiscoveredIPAddress(), target::setDiscoveredIPAddress);
+        copy(source.getRoutingType(), target::setRoutingType);
+        copy(source.getConnectionType(), target::setConnectionType);
+        copy(source.getExternalDeviceId(), target::setExternalDeviceId);
+        copy(source.getExternalDeviceType(), target::setExternalDeviceType);
+        copyDecimal(source.getIpLatitude(), target::setIpLatitude);
+        copyDecimal(source.getIpLongitude(), target::setIpLongitude);
+        copy(source.getIpCity(), target::setIpCity);
+        copy(source.getIpCountry(), target::setIpCountry);
+        copy(source.getIpState(), target::setIpState);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchaseDeviceContextEdgeData source, final DeviceContext target) {
+        copy(source.getPurchaseId(), target::setPurchaseId);
+        copy(source.getDeviceContextId(), target::setDeviceContextId);
+        copy(source.getIpAddress(), target::setIpAddress);
+        copy(source.getRoutingType(), target::setRoutingType);
+        copy(source.getConnectionType(), target::setConnectionType);
+        copyDecimal(source.getIpLatitude(), target::setIpLatitude);
+        copyDecimal(source.getIpLongitude(), target::setIpLongitude);
+        copy(source.getIpCity(), target::setIpCity);
+        copy(source.getIpCountry(), target::setIpCountry);
+        copy(source.getIpState(), target::setIpState);
+        copy(source.getMerchantLocalDate(), target::setMerchantLocalDate);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PaymentInstrumentNodeData source, final PaymentInstrument target) {
+        copy(source.getPaymentInstrumentId(), target::setPaymentInstrumentId);
+        copy(source.getMerchantPaymentInstrumentId(), target::setMerchantPaymentInstrumentId);
+        copy(source.getType(), target::setType);
+        copy(source.getCreationDate(), target::setCreationDate);
+        copy(source.getUpdateDate(), target::setUpdateDate);
+        copy(source.getState(), target::setState);
+        copy(source.getCardType(), target::setCardType);
+        copy(source.getHolderName(), target::setHolderName);
+        copy(source.getBin(), target::setBin);
+        copy(source.getExpirationDate(), target::setExpirationDate);
+        copy(source.getLastFourDigits(), target::setLastFourDigits);
+        copy(source.getEmail(), target::setEmail);
+        copy(source.getBillingAgreementId(), target::setBillingAgreementId);
+        copy(source.getPayerId(), target::setPayerId);
+        copy(source.getPayerStatus(), target::setPayerStatus);
+        copy(source.getAddressStatus(), target::setAddressStatus);
+        copy(source.getImei(), target::setImei);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchasePaymentInstrumentEdgeData source, final PaymentInstrument target) {
+        copy(source.getMerchantLocalDate(), target::setMerchantLocalDate);
+        copy(source.getPaymentInstrumentId(), target::setPaymentInstrumentId);
+        copyDecimal(source.getPurchaseAmount(), target::setPurchaseAmount);
+        copyDecimal(source.getPurchaseAmountInUSD(), target::setPurchaseAmountInUSD);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PaymentInstrument source, final PaymentInstrument target) {
+        copy(source.getPaymentInstrumentId(), target::setPaymentInstrumentId);
+        copy(source.getPurchaseAmount(), target::setPurchaseAmount);
+        copy(source.getPurchaseAmountInUSD(), target::setPurchaseAmountInUSD);
+        copy(source.getMerchantPaymentInstrumentId(), target::setMerchantPaymentInstrumentId);
+        copy(source.getType(), target::setType);
+        copy(source.getCreationDate(), target::setCreationDate);
+        copy(source.getUpdateDate(), target::setUpdateDate);
+        copy(source.getState(), target::setState);
+        copy(source.getCardType(), target::setCardType);
+        copy(source.getHolderName(), target::setHolderName);
+        copy(source.getBin(), target::setBin);
+        copy(source.getExpirationDate(), target::setExpirationDate);
+        copy(source.getLastFourDigits(), target::setLastFourDigits);
+        copy(source.getEmail(), target::setEmail);
+        copy(source.getBillingAgreementId(), target::setBillingAgreementId);
+        copy(source.getPayerId(), target::setPayerId);
+        copy(source.getPayerStatus(), target::setPayerStatus);
+        copy(source.getAddressStatus(), target::setAddressStatus);
+        copy(source.getImei(), target::setImei);
+        copy(source.getAddressId(), target::setAddressId);
+        copy(source.getMerchantLocalDate(), target::setMerchantLocalDate);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final ProductNodeData source, final Product target) {
+        copy(source.getProductId(), target::setProductId);
+        copy(source.getProductName(), target::setProductName);
+        copy(source.getType(), target::setType);
+        copy(source.getSku(), target::setSku);
+        copy(source.getCategory(), target::setCategory);
+        copy(source.getMarket(), target::setMarket);
+        copyDecimal(source.getSalesPrice(), target::setSalesPrice);
+        copyDecimal(source.getSalesPriceInUSD(), target::setSalesPriceInUSD);
+        copy(source.getCurrency(), target::setCurrency);
+        copyDecimal(source.getCurrencyConversionFactor(), target::setCurrencyConversionFactor);
+        copyDecimal(source.getCogs(), target::setCogs);
+        copyDecimal(source.getCogsInUSD(), target::setCogsInUSD);
+        copy(source.getIsRecurring(), target::setIsRecurring);
+        copy(source.getIsFree(), target::setIsFree);
+        copy(source.getLanguage(), target::setLanguage);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchaseProductEdgeData source, final Product target) {
+        copy(source.getProductId(), target::setProductId);
+        copyDecimal(source.getPurchasePrice(), target::setPurchasePrice);
+        copyDecimal(source.getPurchasePriceInUSD(), target::setPurchasePriceInUSD);
+        copyDecimal(source.getMargin(), target::setMargin);
+        copyDecimal(source.getMarginInUSD(), target::setMarginInUSD);
+        copyDecimal(source.getQuantity(), target::setQuantity);
+        copy(source.getIsPreorder(), target::setIsPreorder);
+        copy(source.getShippingMethod(), target::setShippingMethod);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchaseStatusEdgeData source, final PurchaseStatus target) {
+        copy(source.getPurchaseId(), target::setPurchaseId);
+        copy(source.getStatusType(), target::setStatusType);
+        copy(source.getStatusDate(), target::setStatusDate);
+        copy(source.getReason(), target::setReason);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchaseNodeData source, final MainPurchase target) {
+        mapPurchase(source, target);
+        if (source.getCustomData() != null) {
+            if (target.getCustomData() == null) {
+                target.setCustomData(new HashMap<>(source.getCustomData()));
+            } else {
+                target.getCustomData().putAll(source.getCustomData());
+            }
+        }
+    }
+
+    public static void map(final PurchaseNodeData source, final PreviousPurchase target) {
+        mapPurchase(source, target);
+        copy(source.getRiskScore(), target::setRiskScore);
+        copy(source.getReasonCodes(), target::setReasonCodes);
+        copy(source.getPolicyApplied(), target::setPolicyApplied);
+    }
+
+    public static PreviousPurchase toPreviousPurchase(final PurchaseNodeData source) {
+        PreviousPurchase previousPurchase = new PreviousPurchase();
+        map(source, previousPurchase);
+        return previousPurchase;
+    }
+
+    public static void map(final PurchaseNodeData source, final AssesmentResult target) {
+        copy(source.getRiskScore(), target::setRiskScore);
+        copy(source.getMerchantRuleDecision(), target::setMerchantRuleDecision);
+        copy(source.getMidFlag(), target::setMidFlag);
+        copy(source.getReasonCodes(), target::setReasonCodes);
+        copy(source.getPolicyApplied(), target::setPolicyApplied);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final UserNodeData source, final User target) {
+        copy(source.getUserId(), target::setUserId);
+        copy(source.getCreationDate(), target::setCreationDate);
+        copy(source.getUpdateDate(), target::setUpdateDate);
+        copy(source.getFirstName(), target::setFirstName);
+        copy(source.getLastName(), target::setLastName);
+        copy(source.getCountry(), target::setCountry);
+        copy(source.getZipCode(), target::setZipCode);
+        copy(source.getTimeZone(), target::setTimeZone);
+        copy(source.getLanguage(), target::setLanguage);
+        copy(source.getPhoneNumber(), target::setPhoneNumber);
+        copy(source.getEmail(), target::setEmail);
+        copy(source.getProfileType(), target::setProfileType);
+        copy(source.getProfileName(), target::setProfileName);
+        copy(source.getDisplayName(), target::setDisplayName);
+        copy(source.getAuthenticationProvider(), target::setAuthenticationProvider);
+        copy(source.getIsEmailValidated(), target::setIsEmailValidated);
+        copy(source.getEmailValidatedDate(), target::setEmailValidatedDate);
+        copy(source.getIsPhoneNumberValidated(), target::setIsPhoneNumberValidated);
+        copy(source.getPhoneNumberValidatedDate(), target::setPhoneNumberValidatedDate);
+        copyDecimal(source.getTotalSpend(), target::setTotalSpend);
+        copyDecimal(source.getTotalTransactions(), target::setTotalTransactions);
+        copyDecimal(source.getTotalRefundAmount(), target::setTotalRefundAmount);
+        copyDecimal(source.getTotalChargebackAmount(), target::setTotalChargebackAmount);
+        copyDecimal(source.getTotalDaysOfUse(), target::setTotalDaysOfUse);
+        copyDecimal(source.getLast30DaysSpend(), target::setLast30DaysSpend);
+        copyDecimal(source.getLast30DaysTransactions(), target::setLast30DaysTransactions);
+        copyDecimal(source.getLast30DaysRefundAmount(), target::setLast30DaysRefundAmount);
+        copyDecimal(source.getLast30DaysChargebackAmount(), target::setLast30DaysChargebackAmount);
+        copyDecimal(source.getLast30DaysOfUse(), target::setLast30DaysOfUse);
+        copyDecimal(source.getMonthlyAverageSpend(), target::setMonthlyAverageSpend);
+        copyDecimal(source.getMonthlyAverageTransactions(), target::setMonthlyAverageTransactions);
+        copyDecimal(source.getMonthlyAverageRefundAmount(), target::setMonthlyAverageRefundAmount);
+        copyDecimal(source.getMonthlyAverageChargebackAmount(), target::setMonthlyAverageChargebackAmount);
+        copy(source.getMeasuresIngestionDateTimeUTC(), target::setMeasuresIngestionDateTimeUTC);
+        copy(source.getMembershipId(), target::setMembershipId);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    public static void map(final PurchaseUserEdgeData source, final User target) {
+        copy(source.getMerchantLocalDate(), target::setMerchantLocalDate);
+        copy(source.getUserId(), target::setUserId);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    private static void mapPurchase(final PurchaseNodeData source, final Purchase target) {
+        copy(source.getPurchaseId(), target::setPurchaseId);
+        copy(source.getAssessmentType(), target::setAssessmentType);
+        copy(source.getOriginalOrderId(), target::setOriginalOrderId);
+        copy(source.getMerchantLocalDate(), target::setMerchantLocalDate);
+        copy(source.getCustomerLocalDate(), target::setCustomerLocalDate);
+        copyDecimal(source.getTotalAmount(), target::setTotalAmount);
+        copyDecimal(source.getTotalAmountInUSD(), target::setTotalAmountInUSD);
+        copyDecimal(source.getSalesTax(), target::setSalesTax);
+        copyDecimal(source.getSalesTaxInUSD(), target::setSalesTaxInUSD);
+        copy(source.getCurrency(), target::setCurrency);
+        copy(source.getShippingMethod(), target::setShippingMethod);
+        copyDecimal(source.getCurrencyConversionFactor(), target::setCurrencyConversionFactor);
+        copy(source.getBankName(), target::setBankName);
+        copy(source.getHashedEvaluationId(), target::setHashedEvaluationId);
+        copy(source.getAdditionalParams(), target::setAdditionalParams);
+    }
+
+    private static <T> void copy(final T value, final Consumer<T> setter) {
+        if (value != null) {
+            setter.accept(value);
+        }
+    }
+
+    /**
+     * Converts the value through its string representation as the model
+     * mapper does, e.g. 0.1 becomes 0.1 rather than its binary expansion.
+     */
+    private static void copyDecimal(final Double value, final Consumer<BigDecimal> setter) {
+        if (value != null) {
+            setter.accept(BigDecimal.valueOf(value));
+        }
+    }
+
+    /**
+     * Maps samples of all supported sources both by this mapper and by the
+     * model mapper, into new objects and into filled ones, with all source
+     * properties present and with a half of them absent.
+     *
+     * @return descriptions of mappings which give different results
+     */
+    public static List<String> compareWith(final ModelMapper modelMapper) {
+        List<String> mismatches = new ArrayList<>();
+        compare(modelMapper, mismatches, AddressNodeData::new, Address::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseAddressEdgeData::new, Address::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PaymentInstrumentAddressEdgeData::new, Address::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, BankEventNodeData::new, BankEvent::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseBankEventEdgeData::new, BankEvent::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, DeviceContextNodeData::new, DeviceContext::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseDeviceContextEdgeData::new, DeviceContext::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PaymentInstrumentNodeData::new, PaymentInstrument::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchasePaymentInstrumentEdgeData::new, PaymentInstrument::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PaymentInstrument::new, PaymentInstrument::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, ProductNodeData::new, Product::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseProductEdgeData::new, Product::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseStatusEdgeData::new, PurchaseStatus::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseNodeData::new, MainPurchase::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseNodeData::new, PreviousPurchase::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseNodeData::new, AssesmentResult::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, UserNodeData::new, User::new, DFPDataMapper::map);
+        compare(modelMapper, mismatches, PurchaseUserEdgeData::new, User::new, DFPDataMapper::map);
+        return mismatches;
+    }
+
+    private static <S, T> void compare(final ModelMapper modelMapper,
+                                       final List<String> mismatches,
+                                       final Supplier<S> sourceFactory,
+                                       final Supplier<T> targetFactory,
+                                       final BiConsumer<S, T> mapper) {
+        for (boolean sparseSource : new boolean[]{false, true}) {
+            for (boolean filledTarget : new boolean[]{false, true}) {
+                S source = sample(sourceFactory, 1, sparseSource);
+                T mapped = filledTarget ? sample(targetFactory, 2, false) : targetFactory.get();
+                T expected = filledTarget ? sample(targetFactory, 2, false) : targetFactory.get();
+                mapper.accept(source, mapped);
+                modelMapper.map(source, expected);
+                if (!expected.equals(mapped)) {
+                    mismatches.add(String.format("%s -> %s (%s source, %s target): expected [%s] but was [%s]",
+                            source.getClass().getSimpleName(), expected.getClass().getSimpleName(),
+                            sparseSource ? "sparse" : "full", filledTarget ? "filled" : "new",
+                            expected, mapped));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an object and sets its scalar and string map properties
+     * to values which are unique for the property and the seed.
+     */
+    private static <T> T sample(final Supplier<T> factory, final int seed, final boolean sparse) {
+        T sample = factory.get();
+        Method[] methods = sample.getClass().getMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::getName));
+        int index = 0;
+        for (Method method : methods) {
+            if (!method.getName().startsWith("set") || method.getParameterCount() != 1) {
+                continue;
+            }
+            index++;
+            Object value = sampleValue(method.getGenericParameterTypes()[0], method.getName(), seed, index);
+            if (value == null || (sparse && index % 2 == 0)) {
+                continue;
+            }
+            try {
+                method.invoke(sample, value);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Sample of " + sample.getClass() + " can't be created", e);
+            }
+        }
+        return sample;
+    }
+
+    private static Object sampleValue(final Type type, final String name, final int seed, final int index) {
+        if (type == String.class) {
+            return name.substring(3) + "-" + seed;
+        } else if (type == Double.class) {
+            return seed * 1000 + index + 0.1;
+        } else if (type == BigDecimal.class) {
+            return BigDecimal.valueOf(seed * 1000 + index, 2);
+        } else if (type == Integer.class) {
+            return seed * 1000 + index;
+        } else if (type == Boolean.class) {
+            return (seed + index) % 2 == 0;
+        } else if (type == OffsetDateTime.class) {
+            return OffsetDateTime.of(2020, 1, seed, 0, 0, 0, 0, ZoneOffset.UTC).plusMinutes(index);
+        } else if (type instanceof ParameterizedType
+                && ((ParameterizedType) type).getRawType() == Map.class
+                && Arrays.stream(((ParameterizedType) type).getActualTypeArguments()).allMatch(String.class::equals)) {
+            return new HashMap<>(Map.of(name.substring(3) + "-" + seed, "value-" + index));
+        }
+        return null;
+    }
+}
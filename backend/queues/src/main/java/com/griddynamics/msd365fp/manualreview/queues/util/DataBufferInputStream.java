@@ -0,0 +1,90 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Blocking stream over buffers of a response body which are requested
+ * while the stream is read, so the body is never collected into a single
+ * buffer and at most {@code prefetch} buffers are held in memory.
+ * <p>
+ * The stream must not be read on a non-blocking thread. Closing the stream
+ * cancels the rest of the body and releases the buffers which have been
+ * received but not read.
+ */
+public class DataBufferInputStream extends InputStream {
+
+    private final Stream<DataBuffer> buffers;
+    private final Iterator<DataBuffer> iterator;
+    private DataBuffer current;
+    private boolean closed;
+
+    public DataBufferInputStream(final Flux<DataBuffer> body, final int prefetch) {
+        this.buffers = body
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .toStream(prefetch);
+        this.iterator = buffers.iterator();
+    }
+
+    @Override
+    public int read() {
+        if (!nextReadable()) {
+            return -1;
+        }
+        return current.read() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextReadable()) {
+            return -1;
+        }
+        int count = Math.min(length, current.readableByteCount());
+        current.read(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.readableByteCount();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        release();
+        buffers.close();
+    }
+
+    private boolean nextReadable() {
+        while (current == null || current.readableByteCount() == 0) {
+            release();
+            if (closed || !iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+        }
+        return true;
+    }
+
+    private void release() {
+        if (current != null) {
+            DataBufferUtils.release(current);
+            current = null;
+        }
+    }
+}
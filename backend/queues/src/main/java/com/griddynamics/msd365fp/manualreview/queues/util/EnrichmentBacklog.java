@@ -0,0 +1,122 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Orders items waiting for enrichment and defines how long items
+ * are backed off after unsuccessful attempts.
+ * <p>
+ * Items which have been postponed or have failed are retried with an
+ * exponential backoff and go after items with fewer retries, so items
+ * which can't be enriched for a long time don't hold fresh ones back.
+ * Items which reach the max enrichment delay soon and haven't failed
+ * are enriched first, by their deadline.
+ * <p>
+ * The retry state is stored with the items rather than kept in memory,
+ * so the same policy is applied by the enrichment scheduler and by the
+ * enrichment task of every instance.
+ */
+public class EnrichmentBacklog {
+
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Duration urgencyWindow;
+    private final Duration maxEnrichmentDelay;
+
+    /**
+     * @param baseDelay          backoff after the first unsuccessful attempt
+     * @param maxDelay           maximum backoff
+     * @param urgencyWindow      how long before the max enrichment delay
+     *                           items are enriched first
+     * @param maxEnrichmentDelay time since import after which items are
+     *                           enriched even without complete data
+     */
+    public EnrichmentBacklog(final Duration baseDelay,
+                             final Duration maxDelay,
+                             final Duration urgencyWindow,
+                             final Duration maxEnrichmentDelay) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.urgencyWindow = urgencyWindow;
+        this.maxEnrichmentDelay = maxEnrichmentDelay;
+    }
+
+    /**
+     * Orders the items in which they should be enriched.
+     *
+     * @param items items waiting for enrichment with their IDs,
+     *              import times, enrichment attempts and retries
+     * @param now   time of the planning
+     * @return items in order of enrichment
+     */
+    public List<Item> plan(final Collection<Item> items, final OffsetDateTime now) {
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Math.max(items.size(), 1));
+        for (Item item : items) {
+            queue.add(candidate(item, now));
+        }
+        List<Item> plan = new ArrayList<>(queue.size());
+        while (!queue.isEmpty()) {
+            plan.add(queue.poll().item);
+        }
+        return plan;
+    }
+
+    /**
+     * @param retry the number of the retry starting from 1
+     * @return the delay before the retry
+     */
+    public Duration backoff(final int retry) {
+        Duration delay = baseDelay.multipliedBy(1L << Math.min(Math.max(retry, 1) - 1, 16));
+        return delay.compareTo(maxDelay) < 0 ? delay : maxDelay;
+    }
+
+    private Candidate candidate(final Item item, final OffsetDateTime now) {
+        // only failed attempts are counted in enrichment attempts, retries count postponements too
+        boolean failed = item.getEnrichmentAttempts() > 0;
+        int retries = Math.max(item.getEnrichmentAttempts(), item.getEnrichmentRetries());
+        OffsetDateTime imported = Objects.requireNonNullElse(item.getImported(), now);
+        OffsetDateTime deadline = imported.plus(maxEnrichmentDelay);
+        boolean urgent = !failed && !deadline.isAfter(now.plus(urgencyWindow));
+        OffsetDateTime eligibleAt = Objects.requireNonNullElse(item.getNextEnrichmentAttempt(), imported);
+        return new Candidate(item, urgent, deadline, retries, eligibleAt);
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        private static final Comparator<Candidate> ORDER = Comparator
+                .<Candidate, Boolean>comparing(candidate -> !candidate.urgent)
+                .thenComparing(candidate -> candidate.urgent ? candidate.deadline : OffsetDateTime.MIN)
+                .thenComparingInt(candidate -> candidate.retries)
+                .thenComparing(candidate -> candidate.eligibleAt)
+                .thenComparing(candidate -> candidate.item.getId());
+
+        private final Item item;
+        private final boolean urgent;
+        private final OffsetDateTime deadline;
+        private final int retries;
+        private final OffsetDateTime eligibleAt;
+
+        Candidate(final Item item,
+                  final boolean urgent,
+                  final OffsetDateTime deadline,
+                  final int retries,
+                  final OffsetDateTime eligibleAt) {
+            this.item = item;
+            this.urgent = urgent;
+            this.deadline = deadline;
+            this.retries = retries;
+            this.eligibleAt = eligibleAt;
+        }
+
+        @Override
+        public int compareTo(final Candidate other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
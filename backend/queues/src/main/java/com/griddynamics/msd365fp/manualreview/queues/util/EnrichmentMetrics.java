@@ -0,0 +1,207 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reports latency of each stage of item enrichment, outcomes of
+ * enrichments and the size and the age of the enrichment backlog.
+ * <p>
+ * Each enrichment is followed by a {@link Trace} which records its
+ * stages and logs their breakdown once the enrichment is finished.
+ */
+@Slf4j
+public class EnrichmentMetrics {
+
+    public static final String STAGE_TAG = "stage";
+    public static final String OUTCOME_TAG = "outcome";
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Outcome, Counter> outcomeCounters = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Timer> durationTimers = new EnumMap<>(Outcome.class);
+    private final AtomicLong backlogSize = new AtomicLong();
+    private final AtomicReference<OffsetDateTime> oldestBacklogImport = new AtomicReference<>();
+
+    public EnrichmentMetrics(final MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("item.enrichment.stage")
+                    .description("Latency of the stage of item enrichment")
+                    .tags(Tags.of(STAGE_TAG, stage.getTag()))
+                    .register(meterRegistry));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            Tags tags = Tags.of(OUTCOME_TAG, outcome.getTag());
+            outcomeCounters.put(outcome, Counter.builder("item.enrichment.outcome")
+                    .description("The number of item enrichments finished with the outcome")
+                    .tags(tags)
+                    .register(meterRegistry));
+            durationTimers.put(outcome, Timer.builder("item.enrichment.duration")
+                    .description("Total latency of item enrichment")
+                    .tags(tags)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("item.enrichment.backlog.size", backlogSize, AtomicLong::get)
+                .description("The number of items due for enrichment at the last run of the enrichment task")
+                .register(meterRegistry);
+        Gauge.builder("item.enrichment.backlog.age", this, EnrichmentMetrics::backlogAgeSeconds)
+                .description("Time since import of the oldest item due for enrichment at the last run")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public Trace trace(final String itemId) {
+        return new Trace(itemId);
+    }
+
+    /**
+     * @param size         the number of items waiting for enrichment
+     * @param oldestImport import time of the oldest of them or null
+     *                     if there are no such items
+     */
+    public void updateBacklog(final long size, final OffsetDateTime oldestImport) {
+        backlogSize.set(size);
+        oldestBacklogImport.set(oldestImport);
+    }
+
+    private double backlogAgeSeconds() {
+        OffsetDateTime oldestImport = oldestBacklogImport.get();
+        if (oldestImport == null) {
+            return 0;
+        }
+        return Math.max(Duration.between(oldestImport, OffsetDateTime.now()).toMillis(), 0) / 1000.0;
+    }
+
+    public enum Stage {
+        COSMOS_READ("cosmos-read"),
+        PURCHASE_TRAVERSAL("purchase-traversal"),
+        PAYMENT_INSTRUMENT_TRAVERSAL("payment-instrument-traversal"),
+        USER_TRAVERSAL("user-traversal"),
+        HISTORY_TRAVERSAL("history-traversal"),
+        MAPPING("mapping"),
+        DERIVED_FIELDS("derived-fields"),
+        EMAIL_DOMAIN_CHECK("email-domain-check"),
+        SAVE("save");
+
+        private final String tag;
+
+        Stage(final String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    public enum Outcome {
+        SUCCEEDED("succeeded"),
+        POSTPONED("postponed"),
+        FAILED("failed"),
+        SKIPPED("skipped");
+
+        private final String tag;
+
+        Outcome(final String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Collects stages of a single item enrichment. Synchronous stages
+     * should be run by the enrichment thread, the time of nested stages
+     * is excluded from the outer one, so stages add up to the total.
+     * Asynchronous stages overlap with the synchronous ones.
+     * The enrichment is considered failed unless another outcome is set.
+     */
+    public class Trace {
+        private final String itemId;
+        private final long startedAt = System.nanoTime();
+        private final Map<Stage, Long> stageNanos = new EnumMap<>(Stage.class);
+        private long nestedNanos;
+        private Outcome outcome = Outcome.FAILED;
+
+        private Trace(final String itemId) {
+            this.itemId = itemId;
+        }
+
+        public <T> T stage(final Stage stage, final Supplier<T> action) {
+            long outerNestedNanos = nestedNanos;
+            nestedNanos = 0;
+            long start = System.nanoTime();
+            try {
+                return action.get();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                record(stage, elapsed - nestedNanos);
+                nestedNanos = outerNestedNanos + elapsed;
+            }
+        }
+
+        public void stage(final Stage stage, final Runnable action) {
+            stage(stage, () -> {
+                action.run();
+                return null;
+            });
+        }
+
+        /**
+         * Records the time from subscription to termination or cancellation
+         * of the asynchronous stage.
+         */
+        public <T> Mono<T> stage(final Stage stage, final Mono<T> action) {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return action
+                        .doOnTerminate(() -> record(stage, System.nanoTime() - start))
+                        .doOnCancel(() -> record(stage, System.nanoTime() - start));
+            });
+        }
+
+        public void setOutcome(final Outcome outcome) {
+            this.outcome = outcome;
+        }
+
+        public void finish() {
+            long elapsed = System.nanoTime() - startedAt;
+            outcomeCounters.get(outcome).increment();
+            durationTimers.get(outcome).record(elapsed, TimeUnit.NANOSECONDS);
+            String stages;
+            synchronized (stageNanos) {
+                stages = stageNanos.entrySet().stream()
+                        .map(entry -> entry.getKey().getTag() + "=" + TimeUnit.NANOSECONDS.toMillis(entry.getValue()))
+                        .collect(Collectors.joining(", ", "{", "}"));
+            }
+            log.info("Enrichment of item [{}] has finished as [{}] in [{}] ms, stages in ms: {}",
+                    itemId, outcome.getTag(), TimeUnit.NANOSECONDS.toMillis(elapsed), stages);
+        }
+
+        private void record(final Stage stage, final long nanos) {
+            stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+            synchronized (stageNanos) {
+                stageNanos.merge(stage, nanos, Long::sum);
+            }
+        }
+    }
+}
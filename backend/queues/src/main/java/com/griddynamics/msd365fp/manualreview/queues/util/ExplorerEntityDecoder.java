@@ -0,0 +1,353 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.Edge;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.ExplorerEntity;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.Node;
+import lombok.Builder;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Decodes traversals of the DFP Explorer API token by token. Data of each
+ * node and edge is read by the reader of the type which {@link Node} and
+ * {@link Edge} declare for its name, so the result is the same as the one
+ * of the {@link ObjectMapper}, but nodes of the names which aren't needed
+ * and edges can be skipped without being materialised.
+ * <p>
+ * The number of decoded nodes can be limited per node name. If there is
+ * a priority of nodes then the nodes with the greatest priority are kept,
+ * otherwise the first ones are kept and the rest are skipped.
+ */
+public class ExplorerEntityDecoder {
+
+    private static final String NODES = "nodes";
+    private static final String EDGES = "edges";
+    private static final String DATA = "data";
+
+    private final Map<String, ObjectReader> nodeDataReaders;
+    private final ObjectReader defaultNodeDataReader;
+    private final Map<String, ObjectReader> edgeDataReaders;
+    private final ObjectReader defaultEdgeDataReader;
+    private final ObjectReader objectReader;
+    private final Set<String> nodeNames;
+    private final boolean skipEdges;
+    private final Map<String, Integer> nodeLimits;
+    private final Comparator<Node> nodePriority;
+
+    /**
+     * @param mapper       a mapper which is used to read data of nodes and edges
+     * @param nodeNames    names of nodes to decode, all nodes are decoded if it's {@code null}
+     * @param skipEdges    whether edges should be skipped
+     * @param nodeLimits   maximum numbers of decoded nodes per node name
+     * @param nodePriority a priority of limited nodes, the first nodes are kept if it's {@code null}
+     */
+    @Builder
+    public ExplorerEntityDecoder(@NonNull final ObjectMapper mapper,
+                                 final Set<String> nodeNames,
+                                 final boolean skipEdges,
+                                 final Map<String, Integer> nodeLimits,
+                                 final Comparator<Node> nodePriority) {
+        this.nodeDataReaders = dataReaders(mapper, Node.class);
+        this.defaultNodeDataReader = defaultDataReader(mapper, Node.class);
+        this.edgeDataReaders = dataReaders(mapper, Edge.class);
+        this.defaultEdgeDataReader = defaultDataReader(mapper, Edge.class);
+        this.objectReader = mapper.readerFor(Object.class);
+        this.nodeNames = nodeNames == null ? null : Set.copyOf(nodeNames);
+        this.skipEdges = skipEdges;
+        this.nodeLimits = nodeLimits == null ? Map.of() : Map.copyOf(nodeLimits);
+        this.nodePriority = nodePriority;
+    }
+
+    public ExplorerEntity decode(final InputStream input) throws IOException {
+        try (JsonParser parser = objectReader.getFactory().createParser(input)) {
+            return decode(parser);
+        }
+    }
+
+    public ExplorerEntity decode(final byte[] input) throws IOException {
+        try (JsonParser parser = objectReader.getFactory().createParser(input)) {
+            return decode(parser);
+        }
+    }
+
+    private ExplorerEntity decode(final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Traversal is expected to be a JSON object but it starts with " +
+                    parser.currentToken());
+        }
+        ExplorerEntity entity = new ExplorerEntity();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "requestAttributeName":
+                    entity.setRequestAttributeName(parser.getValueAsString());
+                    break;
+                case "requestAttributeValue":
+                    entity.setRequestAttributeValue(parser.getValueAsString());
+                    break;
+                case NODES:
+                    entity.setNodes(readNodes(parser));
+                    break;
+                case EDGES:
+                    entity.setEdges(readEdges(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return entity;
+    }
+
+    private List<Node> readNodes(final JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        NodeCollector collector = new NodeCollector();
+        readArray(parser, collector, elementParser -> readNode(elementParser, collector));
+        return collector.toList();
+    }
+
+    private List<Edge> readEdges(final JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<Edge> edges = new ArrayList<>();
+        if (skipEdges) {
+            parser.skipChildren();
+        } else {
+            readArray(parser, edges::add, this::readEdge);
+        }
+        return edges;
+    }
+
+    private <T> void readArray(final JsonParser parser,
+                               final Consumer<T> handler,
+                               final ElementReader<T> reader) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                T element = reader.read(parser);
+                if (element != null) {
+                    handler.accept(element);
+                }
+            } else if (token == JsonToken.VALUE_NULL) {
+                handler.accept(null);
+            } else {
+                throw new IOException("Traversal element is expected to be a JSON object but it is " + token);
+            }
+        }
+    }
+
+    /**
+     * Reads a node or returns {@code null} if the node should be skipped.
+     */
+    private Node readNode(final JsonParser parser, final NodeCollector collector) throws IOException {
+        Node node = new Node();
+        TokenBuffer bufferedData = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "nodeIdAttribute":
+                    node.setNodeIdAttribute(parser.getValueAsString());
+                    break;
+                case "id":
+                    node.setId(parser.getValueAsString());
+                    break;
+                case "name":
+                    node.setName(parser.getValueAsString());
+                    break;
+                case DATA:
+                    if (value == JsonToken.VALUE_NULL) {
+                        break;
+                    }
+                    if (node.getName() == null) {
+                        // the name may follow the data, so the data is kept until the end of the node
+                        bufferedData = TokenBuffer.asCopyOfValue(parser);
+                    } else if (isNeeded(node.getName(), collector)) {
+                        node.setData(nodeDataReader(node.getName()).readValue(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (!isNeeded(node.getName(), collector)) {
+            return null;
+        }
+        if (bufferedData != null) {
+            try (JsonParser dataParser = bufferedData.asParser(parser.getCodec())) {
+                dataParser.nextToken();
+                node.setData(nodeDataReader(node.getName()).readValue(dataParser));
+            }
+        }
+        return node;
+    }
+
+    private Edge readEdge(final JsonParser parser) throws IOException {
+        Edge edge = new Edge();
+        TokenBuffer bufferedData = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "sourceNode":
+                    edge.setSourceNode(parser.getValueAsString());
+                    break;
+                case "sourceNodeIdAttribute":
+                    edge.setSourceNodeIdAttribute(parser.getValueAsString());
+                    break;
+                case "destinationNode":
+                    edge.setDestinationNode(parser.getValueAsString());
+                    break;
+                case "destinationNodeIdAttribute":
+                    edge.setDestinationNodeIdAttribute(parser.getValueAsString());
+                    break;
+                case "edgeIdAttributeList":
+                    edge.setEdgeIdAttributeList(objectReader.readValue(parser));
+                    break;
+                case "id":
+                    edge.setId(parser.getValueAsString());
+                    break;
+                case "name":
+                    edge.setName(parser.getValueAsString());
+                    break;
+                case DATA:
+                    if (value == JsonToken.VALUE_NULL) {
+                        break;
+                    }
+                    if (edge.getName() == null) {
+                        bufferedData = TokenBuffer.asCopyOfValue(parser);
+                    } else {
+                        edge.setData(edgeDataReader(edge.getName()).readValue(parser));
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (bufferedData != null) {
+            try (JsonParser dataParser = bufferedData.asParser(parser.getCodec())) {
+                dataParser.nextToken();
+                edge.setData(edgeDataReader(edge.getName()).readValue(dataParser));
+            }
+        }
+        return edge;
+    }
+
+    private boolean isNeeded(final String name, final NodeCollector collector) {
+        if (name == null) {
+            return nodeNames == null;
+        }
+        return (nodeNames == null || nodeNames.contains(name)) && !collector.isFull(name);
+    }
+
+    private ObjectReader nodeDataReader(final String name) {
+        return name == null ? defaultNodeDataReader : nodeDataReaders.getOrDefault(name, defaultNodeDataReader);
+    }
+
+    private ObjectReader edgeDataReader(final String name) {
+        return name == null ? defaultEdgeDataReader : edgeDataReaders.getOrDefault(name, defaultEdgeDataReader);
+    }
+
+    private static Map<String, ObjectReader> dataReaders(final ObjectMapper mapper, final Class<?> owner) {
+        Map<String, ObjectReader> readers = new HashMap<>();
+        for (JsonSubTypes.Type type : dataField(owner).getAnnotation(JsonSubTypes.class).value()) {
+            readers.put(type.name(), mapper.readerFor(type.value()));
+        }
+        return Map.copyOf(readers);
+    }
+
+    private static ObjectReader defaultDataReader(final ObjectMapper mapper, final Class<?> owner) {
+        return mapper.readerFor(dataField(owner).getAnnotation(JsonTypeInfo.class).defaultImpl());
+    }
+
+    private static java.lang.reflect.Field dataField(final Class<?> owner) {
+        try {
+            return owner.getDeclaredField(DATA);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Types of " + owner.getSimpleName() + " data can't be resolved", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Keeps decoded nodes in the order of the traversal. When the limit of
+     * nodes of some name is reached, the node of this name with the least
+     * priority is evicted for a node with a greater one.
+     */
+    private class NodeCollector implements Consumer<Node> {
+        private final List<Node> nodes = new ArrayList<>();
+        private final BitSet evicted = new BitSet();
+        private final Map<String, PriorityQueue<Integer>> limitedNodes = new HashMap<>();
+
+        @Override
+        public void accept(final Node node) {
+            Integer limit = node == null || node.getName() == null ? null : nodeLimits.get(node.getName());
+            if (limit == null) {
+                nodes.add(node);
+                return;
+            }
+            PriorityQueue<Integer> kept = limitedNodes.computeIfAbsent(node.getName(), name -> nodePriority == null
+                    ? new PriorityQueue<>()
+                    : new PriorityQueue<>(Comparator.comparing(nodes::get, nodePriority)));
+            if (kept.size() < limit) {
+                nodes.add(node);
+                kept.add(nodes.size() - 1);
+            } else if (nodePriority != null && !kept.isEmpty() && nodePriority.compare(node, nodes.get(kept.peek())) > 0) {
+                evicted.set(kept.poll());
+                nodes.add(node);
+                kept.add(nodes.size() - 1);
+            }
+        }
+
+        /**
+         * Checks whether nodes of the name would be skipped anyway because
+         * the limit is reached and there is no priority to evict kept ones.
+         */
+        private boolean isFull(final String name) {
+            Integer limit = nodeLimits.get(name);
+            if (limit == null || nodePriority != null) {
+                return false;
+            }
+            PriorityQueue<Integer> kept = limitedNodes.get(name);
+            return limit <= (kept == null ? 0 : kept.size());
+        }
+
+        private List<Node> toList() {
+            if (evicted.isEmpty()) {
+                return nodes;
+            }
+            List<Node> result = new ArrayList<>(nodes.size() - evicted.cardinality());
+            for (int i = 0; i < nodes.size(); i++) {
+                if (!evicted.get(i)) {
+                    result.add(nodes.get(i));
+                }
+            }
+            return result;
+        }
+    }
+}
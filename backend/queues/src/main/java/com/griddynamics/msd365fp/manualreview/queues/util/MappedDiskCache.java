@@ -0,0 +1,420 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of binary values which is kept in memory-mapped segment files,
+ * so its entries survive restarts of the application.
+ * <p>
+ * Entries are appended to the active segment. A full segment is sealed
+ * and a new one is started. Each record is protected by a checksum,
+ * so records which haven't been written entirely before a crash are
+ * dropped when the cache is opened again. Only keys and locations of
+ * records are kept in the heap.
+ * <p>
+ * When a new segment is started, the oldest segments are dropped if the
+ * cache exceeds its maximum size. Segments are compacted only by
+ * {@link #compact()}, which should be called periodically by the owner:
+ * expired entries are forgotten and sealed segments where less than the
+ * compaction threshold of records are alive are rewritten into the active one.
+ * <p>
+ * The directory is locked by the instance which has opened it.
+ * All operations are serialized by a lock, which is enough for caches
+ * of remote calls.
+ */
+@Slf4j
+public class MappedDiskCache implements Closeable {
+
+    public static final double COMPACTION_THRESHOLD = 0.5;
+
+    private static final String LOCK_FILE = "cache.lock";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d{16})\\.dat");
+    // checksum, key length, value length, expiration time
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final LongSupplier clock;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private boolean compacting;
+
+    private MappedDiskCache(final Path directory,
+                            final int segmentSize,
+                            final int maxSegments,
+                            final LongSupplier clock,
+                            final FileChannel lockChannel,
+                            final FileLock lock) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.clock = clock;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Opens the cache and restores entries which haven't expired yet.
+     *
+     * @param directory   directory of segment files, it's created if it
+     *                    doesn't exist
+     * @param segmentSize size of a segment file in bytes, values which
+     *                    don't fit into a segment aren't cached
+     * @param maxSize     maximum total size of segment files in bytes
+     * @param clock       current time in milliseconds since the epoch
+     * @throws IOException if the directory can't be used or is locked
+     *                     by another instance
+     */
+    public static MappedDiskCache open(final Path directory,
+                                       final long segmentSize,
+                                       final long maxSize,
+                                       final LongSupplier clock) throws IOException {
+        if (segmentSize <= HEADER_SIZE || segmentSize > Integer.MAX_VALUE || maxSize < segmentSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Incorrect sizes of the disk cache in [%s]: segment [%d], max [%d]",
+                    directory, segmentSize, maxSize));
+        }
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException(String.format("Disk cache in [%s] is used by another instance", directory));
+        }
+        MappedDiskCache cache = new MappedDiskCache(directory, (int) segmentSize,
+                (int) Math.max(maxSize / segmentSize, 1), clock, lockChannel, lock);
+        try {
+            cache.restore();
+        } catch (IOException | RuntimeException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * @return the value or null if there is no such entry or it has expired
+     */
+    public synchronized byte[] get(final String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        if (location.expiresAt <= clock.getAsLong()) {
+            index.remove(key);
+            location.segment.liveBytes -= location.size();
+            return null;
+        }
+        ByteBuffer buffer = location.segment.buffer.duplicate();
+        buffer.position(location.offset + HEADER_SIZE + location.keyLength);
+        byte[] value = new byte[location.valueLength];
+        buffer.get(value);
+        return value;
+    }
+
+    /**
+     * Stores the value for the time to live. Values which are bigger
+     * than a segment are ignored.
+     *
+     * @return false if the value hasn't been stored
+     */
+    public synchronized boolean put(final String key, final byte[] value, final Duration timeToLive) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length == 0 || (long) HEADER_SIZE + keyBytes.length + value.length > segmentSize) {
+            return false;
+        }
+        write(key, keyBytes, value, clock.getAsLong() + timeToLive.toMillis());
+        return true;
+    }
+
+    /**
+     * Forgets expired entries, rewrites sparse segments and drops
+     * the oldest segments above the maximum size.
+     */
+    public synchronized void compact() {
+        if (compacting) {
+            return;
+        }
+        compacting = true;
+        try {
+            long now = clock.getAsLong();
+            index.values().removeIf(location -> {
+                if (location.expiresAt <= now) {
+                    location.segment.liveBytes -= location.size();
+                    return true;
+                }
+                return false;
+            });
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment != active &&
+                        (segment.liveBytes == 0 || segment.liveBytes < segment.position * COMPACTION_THRESHOLD)) {
+                    rewrite(segment);
+                }
+            }
+            dropOldestSegments();
+        } finally {
+            compacting = false;
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the total size of segment files in bytes
+     */
+    public synchronized long diskSize() {
+        return segments.values().stream().mapToLong(segment -> segment.buffer.capacity()).sum();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            segments.clear();
+            index.clear();
+            active = null;
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private void restore() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> SEGMENT_FILE.matcher(file.getFileName().toString()).matches())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        long now = clock.getAsLong();
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+                Segment segment = map(Long.parseLong(matcher.group(1)), file, Files.size(file));
+                segments.put(segment.id, segment);
+                scan(segment, now);
+            }
+        }
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (last != null && last.buffer.capacity() == segmentSize && last.position + HEADER_SIZE < segmentSize) {
+            active = last;
+        } else {
+            active = create();
+        }
+        log.info("Disk cache in [{}] has been opened with [{}] entries in [{}] segments",
+                directory, index.size(), segments.size());
+        compact();
+    }
+
+    /**
+     * Reads records of the segment up to the first one which is missing
+     * or corrupted and indexes those which haven't expired.
+     */
+    private void scan(final Segment segment, final long now) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int checksum = buffer.getInt(position);
+            int keyLength = buffer.getInt(position + 4);
+            int valueLength = buffer.getInt(position + 8);
+            long expiresAt = buffer.getLong(position + 12);
+            if (keyLength <= 0 || valueLength < 0 ||
+                    (long) position + HEADER_SIZE + keyLength + valueLength > buffer.capacity()) {
+                break;
+            }
+            int size = HEADER_SIZE + keyLength + valueLength;
+            if (checksum != checksum(buffer, position, size)) {
+                log.warn("Segment [{}] of the disk cache in [{}] is corrupted at [{}], the rest of it is dropped",
+                        segment.path.getFileName(), directory, position);
+                break;
+            }
+            if (expiresAt > now) {
+                byte[] key = new byte[keyLength];
+                buffer.position(position + HEADER_SIZE);
+                buffer.get(key);
+                index(new String(key, StandardCharsets.UTF_8),
+                        new Location(segment, position, keyLength, valueLength, expiresAt));
+            }
+            position += size;
+        }
+        segment.position = position;
+    }
+
+    private void write(final String key, final byte[] keyBytes, final byte[] value, final long expiresAt) {
+        int size = HEADER_SIZE + keyBytes.length + value.length;
+        if (active.position + size > segmentSize) {
+            active = create();
+            if (!compacting) {
+                dropOldestSegments();
+            }
+        }
+        int offset = active.position;
+        ByteBuffer record = active.buffer.duplicate();
+        record.position(offset + 4);
+        record.putInt(keyBytes.length)
+                .putInt(value.length)
+                .putLong(expiresAt)
+                .put(keyBytes)
+                .put(value);
+        active.buffer.putInt(offset, checksum(active.buffer, offset, size));
+        active.position += size;
+        index(key, new Location(active, offset, keyBytes.length, value.length, expiresAt));
+    }
+
+    private void dropOldestSegments() {
+        while (segments.size() > maxSegments && segments.firstEntry().getValue() != active) {
+            Segment oldest = segments.firstEntry().getValue();
+            index.values().removeIf(location -> location.segment == oldest);
+            log.info("Segment [{}] of the disk cache in [{}] is dropped as the cache is full",
+                    oldest.path.getFileName(), directory);
+            delete(oldest);
+        }
+    }
+
+    private void index(final String key, final Location location) {
+        location.segment.liveBytes += location.size();
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.size();
+        }
+    }
+
+    private void rewrite(final Segment segment) {
+        List<Map.Entry<String, Location>> live = index.entrySet().stream()
+                .filter(entry -> entry.getValue().segment == segment)
+                .collect(Collectors.toList());
+        for (Map.Entry<String, Location> entry : live) {
+            Location location = entry.getValue();
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(location.offset + HEADER_SIZE);
+            byte[] key = new byte[location.keyLength];
+            byte[] value = new byte[location.valueLength];
+            buffer.get(key).get(value);
+            write(entry.getKey(), key, value, location.expiresAt);
+        }
+        log.debug("Segment [{}] of the disk cache in [{}] is compacted with [{}] live entries",
+                segment.path.getFileName(), directory, live.size());
+        delete(segment);
+    }
+
+    private Segment create() {
+        long id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        Path file = directory.resolve(String.format("segment-%016d.dat", id));
+        try {
+            Segment segment = map(id, file, segmentSize);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Segment [%s] can't be created", file), e);
+        }
+    }
+
+    private void delete(final Segment segment) {
+        segments.remove(segment.id);
+        try {
+            // the mapping is released by the garbage collector, the file is removed anyway
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Segment [{}] of the disk cache can't be deleted: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private static Segment map(final long id, final Path file, final long size) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int checksum(final ByteBuffer buffer, final int offset, final int size) {
+        ByteBuffer record = buffer.duplicate();
+        record.limit(offset + size).position(offset + 4);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private long liveBytes;
+
+        Segment(final long id, final Path path, final FileChannel channel, final MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private static class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int keyLength;
+        private final int valueLength;
+        private final long expiresAt;
+
+        Location(final Segment segment,
+                 final int offset,
+                 final int keyLength,
+                 final int valueLength,
+                 final long expiresAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.expiresAt = expiresAt;
+        }
+
+        int size() {
+            return HEADER_SIZE + keyLength + valueLength;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel which calls the handler for keys when their delays expire.
+ * <p>
+ * Keys are placed into buckets by their expiration tick, so scheduling
+ * takes constant time regardless of the number of pending keys. Delays
+ * longer than a revolution of the wheel are kept in the same bucket for
+ * several revolutions. Expiration is accurate to a tick.
+ * <p>
+ * A key is scheduled at most once: scheduling it again replaces the
+ * previous expiration. The handler is called on the wheel thread, so it
+ * should hand the work over to another executor.
+ *
+ * @param <T> type of the keys
+ */
+@Slf4j
+public class TimingWheel<T> {
+
+    private final long tickNanos;
+    private final List<List<Timeout<T>>> buckets;
+    private final Map<T, Timeout<T>> timeouts = new ConcurrentHashMap<>();
+    private final Consumer<T> handler;
+    private final ScheduledExecutorService ticker;
+
+    private long currentTick;
+
+    /**
+     * @param name      name of the wheel thread
+     * @param tick      duration of a tick
+     * @param wheelSize number of buckets
+     * @param handler   receives keys which have expired
+     */
+    public TimingWheel(final String name, final Duration tick, final int wheelSize, final Consumer<T> handler) {
+        this.tickNanos = tick.toNanos();
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.handler = handler;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void schedule(final T key, final Duration delay) {
+        long ticks = Math.max(1, (delay.toNanos() + tickNanos - 1) / tickNanos);
+        synchronized (this) {
+            Timeout<T> timeout = new Timeout<>(key, currentTick + ticks);
+            timeouts.put(key, timeout);
+            buckets.get((int) (timeout.expirationTick % buckets.size())).add(timeout);
+        }
+    }
+
+    /**
+     * @return true if the key has been scheduled and hasn't expired yet
+     */
+    public boolean isScheduled(final T key) {
+        return timeouts.containsKey(key);
+    }
+
+    public void cancel(final T key) {
+        timeouts.remove(key);
+    }
+
+    public int size() {
+        return timeouts.size();
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            Iterator<Timeout<T>> iterator = buckets.get((int) (currentTick % buckets.size())).iterator();
+            while (iterator.hasNext()) {
+                Timeout<T> timeout = iterator.next();
+                if (timeouts.get(timeout.key) != timeout) {
+                    // cancelled or replaced by a later schedule
+                    iterator.remove();
+                } else if (timeout.expirationTick <= currentTick) {
+                    iterator.remove();
+                    timeouts.remove(timeout.key, timeout);
+                    expired.add(timeout.key);
+                }
+            }
+        }
+        for (T key : expired) {
+            try {
+                handler.accept(key);
+            } catch (Exception e) {
+                log.error("Expiration of [{}] can't be handled.", key, e);
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Timeout<T> {
+        private final T key;
+        private final long expirationTick;
+    }
+}
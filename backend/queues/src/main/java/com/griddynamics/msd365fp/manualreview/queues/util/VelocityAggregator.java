@@ -0,0 +1,206 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.griddynamics.msd365fp.manualreview.model.dfp.CalculatedFields;
+import com.griddynamics.msd365fp.manualreview.model.dfp.PaymentInstrument;
+import com.griddynamics.msd365fp.manualreview.model.dfp.PreviousPurchase;
+import com.griddynamics.msd365fp.manualreview.model.dfp.Velocity;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static com.griddynamics.msd365fp.manualreview.queues.service.ItemEnrichmentService.APPROVED_TRANSACTION_STATUS;
+import static com.griddynamics.msd365fp.manualreview.queues.service.ItemEnrichmentService.FAILED_TRANSACTION_STATUS;
+import static com.griddynamics.msd365fp.manualreview.queues.service.ItemEnrichmentService.REJECTED_TRANSACTION_STATUS;
+
+/**
+ * Calculates hour, day, week and lifetime velocities of previous purchases.
+ * <p>
+ * Purchases are grouped by the original order, and only the latest
+ * purchase of each order is counted. Orders are sorted once into the
+ * window which they belong to first, and since windows are nested, all
+ * counts, sums and distinct counts are accumulated in a single pass and
+ * summed up from the hour window to the lifetime one.
+ */
+public class VelocityAggregator {
+
+    private static final int HOUR = 0;
+    private static final int DAY = 1;
+    private static final int WEEK = 2;
+    private static final int LIFETIME = 3;
+    private static final int WINDOWS = 4;
+
+    private static final int ALL = 0;
+    private static final int REJECTED = 1;
+    private static final int FAILED = 2;
+    private static final int SUCCESSFUL = 3;
+    private static final int CURRENT_PAYMENT_INSTRUMENT = 4;
+    private static final int SELECTIONS = 5;
+
+    private final long[][] counts = new long[SELECTIONS][WINDOWS];
+    private final BigDecimal[][] amounts = new BigDecimal[SELECTIONS][WINDOWS];
+    private final long[] uniquePaymentInstruments = new long[WINDOWS];
+    private final long[] uniqueIPCountries = new long[WINDOWS];
+
+    private VelocityAggregator() {
+    }
+
+    /**
+     * Calculates velocities of previous purchases relatively to the time
+     * of the current purchase and puts them into the calculated fields.
+     *
+     * @param previousPurchases            previous purchases of the user
+     * @param time                         time of the current purchase
+     * @param currentPaymentInstrumentIds  payment instruments of the current purchase
+     * @param calculatedFields             fields to fill
+     */
+    public static void aggregate(final Collection<PreviousPurchase> previousPurchases,
+                                 final OffsetDateTime time,
+                                 final Set<String> currentPaymentInstrumentIds,
+                                 final CalculatedFields calculatedFields) {
+        VelocityAggregator aggregator = new VelocityAggregator();
+        aggregator.accumulate(latestPurchasesOfOrders(previousPurchases), time, currentPaymentInstrumentIds);
+        aggregator.fill(calculatedFields);
+    }
+
+    private static Collection<PreviousPurchase> latestPurchasesOfOrders(final Collection<PreviousPurchase> purchases) {
+        Map<String, PreviousPurchase> latest = new HashMap<>(purchases.size() * 2);
+        for (PreviousPurchase purchase : purchases) {
+            String order = purchase.getOriginalOrderId() == null ? purchase.getPurchaseId() : purchase.getOriginalOrderId();
+            latest.merge(order, purchase, (current, candidate) ->
+                    candidate.getMerchantLocalDate().compareTo(current.getMerchantLocalDate()) > 0 ? candidate : current);
+        }
+        return latest.values();
+    }
+
+    private void accumulate(final Collection<PreviousPurchase> purchases,
+                            final OffsetDateTime time,
+                            final Set<String> currentPaymentInstrumentIds) {
+        OffsetDateTime hourAgo = time.minusHours(1);
+        OffsetDateTime dayAgo = time.minusDays(1);
+        OffsetDateTime weekAgo = time.minusWeeks(1);
+
+        int size = purchases.size();
+        PreviousPurchase[] sorted = new PreviousPurchase[size];
+        byte[] windows = new byte[size];
+        int[] windowStarts = new int[WINDOWS + 1];
+        int i = 0;
+        for (PreviousPurchase purchase : purchases) {
+            OffsetDateTime date = purchase.getMerchantLocalDate();
+            int window;
+            if (!date.isAfter(weekAgo)) {
+                window = LIFETIME;
+            } else if (!date.isAfter(dayAgo)) {
+                window = WEEK;
+            } else if (!date.isAfter(hourAgo)) {
+                window = DAY;
+            } else {
+                window = HOUR;
+            }
+            windows[i++] = (byte) window;
+            windowStarts[window + 1]++;
+        }
+        for (int w = 1; w <= WINDOWS; w++) {
+            windowStarts[w] += windowStarts[w - 1];
+        }
+        int[] positions = Arrays.copyOf(windowStarts, WINDOWS);
+        i = 0;
+        for (PreviousPurchase purchase : purchases) {
+            sorted[positions[windows[i++]]++] = purchase;
+        }
+
+        Set<String> paymentInstruments = new HashSet<>();
+        Set<String> ipCountries = new HashSet<>();
+        for (int window = HOUR; window < WINDOWS; window++) {
+            for (int p = windowStarts[window]; p < windowStarts[window + 1]; p++) {
+                PreviousPurchase purchase = sorted[p];
+                BigDecimal amount = Objects.requireNonNullElse(purchase.getTotalAmountInUSD(), BigDecimal.ZERO);
+                add(ALL, window, amount);
+                String status = purchase.getLastMerchantStatus();
+                if (REJECTED_TRANSACTION_STATUS.equalsIgnoreCase(status)) {
+                    add(REJECTED, window, amount);
+                } else if (FAILED_TRANSACTION_STATUS.equalsIgnoreCase(status)) {
+                    add(FAILED, window, amount);
+                } else if (APPROVED_TRANSACTION_STATUS.equalsIgnoreCase(status)) {
+                    add(SUCCESSFUL, window, amount);
+                }
+                if (purchase.getPaymentInstrumentList() != null) {
+                    boolean current = false;
+                    for (PaymentInstrument paymentInstrument : purchase.getPaymentInstrumentList()) {
+                        String id = paymentInstrument.getPaymentInstrumentId();
+                        if (id != null) {
+                            paymentInstruments.add(id);
+                            current |= currentPaymentInstrumentIds.contains(id);
+                        }
+                    }
+                    if (current) {
+                        add(CURRENT_PAYMENT_INSTRUMENT, window, amount);
+                    }
+                }
+                if (purchase.getDeviceContext() != null && purchase.getDeviceContext().getIpCountry() != null) {
+                    ipCountries.add(purchase.getDeviceContext().getIpCountry());
+                }
+            }
+            uniquePaymentInstruments[window] = paymentInstruments.size();
+            uniqueIPCountries[window] = ipCountries.size();
+        }
+
+        for (int selection = 0; selection < SELECTIONS; selection++) {
+            for (int window = DAY; window < WINDOWS; window++) {
+                counts[selection][window] += counts[selection][window - 1];
+                amounts[selection][window] = sum(amounts[selection][window - 1], amounts[selection][window]);
+            }
+        }
+    }
+
+    private void add(final int selection, final int window, final BigDecimal amount) {
+        counts[selection][window]++;
+        amounts[selection][window] = sum(amounts[selection][window], amount);
+    }
+
+    private void fill(final CalculatedFields calculatedFields) {
+        calculatedFields.setTransactionCount(countVelocity(ALL));
+        calculatedFields.setTransactionAmount(amountVelocity(ALL));
+        calculatedFields.setRejectedTransactionCount(countVelocity(REJECTED));
+        calculatedFields.setRejectedTransactionAmount(amountVelocity(REJECTED));
+        calculatedFields.setFailedTransactionCount(countVelocity(FAILED));
+        calculatedFields.setFailedTransactionAmount(amountVelocity(FAILED));
+        calculatedFields.setSuccessfulTransactionCount(countVelocity(SUCCESSFUL));
+        calculatedFields.setSuccessfulTransactionAmount(amountVelocity(SUCCESSFUL));
+        calculatedFields.setUniquePaymentInstrumentCount(velocity(uniquePaymentInstruments));
+        calculatedFields.setCurrentPaymentInstrumentTransactionCount(countVelocity(CURRENT_PAYMENT_INSTRUMENT));
+        calculatedFields.setCurrentPaymentInstrumentTransactionAmount(amountVelocity(CURRENT_PAYMENT_INSTRUMENT));
+        calculatedFields.setUniqueIPCountries(velocity(uniqueIPCountries));
+    }
+
+    private Velocity<Long> countVelocity(final int selection) {
+        return velocity(counts[selection]);
+    }
+
+    private Velocity<BigDecimal> amountVelocity(final int selection) {
+        BigDecimal[] sums = amounts[selection];
+        return new Velocity<>(
+                Objects.requireNonNullElse(sums[HOUR], BigDecimal.ZERO),
+                Objects.requireNonNullElse(sums[DAY], BigDecimal.ZERO),
+                Objects.requireNonNullElse(sums[WEEK], BigDecimal.ZERO),
+                Objects.requireNonNullElse(sums[LIFETIME], BigDecimal.ZERO));
+    }
+
+    private static Velocity<Long> velocity(final long[] values) {
+        return new Velocity<>(values[HOUR], values[DAY], values[WEEK], values[LIFETIME]);
+    }
+
+    /**
+     * Adds amounts which may be absent, so the sum keeps the scale
+     * of the amounts instead of the scale of zero.
+     */
+    private static BigDecimal sum(final BigDecimal a, final BigDecimal b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.add(b);
+    }
+}
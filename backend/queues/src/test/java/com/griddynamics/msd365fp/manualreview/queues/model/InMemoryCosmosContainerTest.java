@@ -0,0 +1,209 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.model;
+
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.BulkWriteResult;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedConsumer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ChangeFeedSettings;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosStore;
+import com.griddynamics.msd365fp.manualreview.model.ItemLock;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ITEMS_CONTAINER_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class InMemoryCosmosContainerTest {
+
+    private final ObjectMapper jsonMapper = new Jackson2ObjectMapperBuilder().build()
+            .setTimeZone(TimeZone.getTimeZone("UTC"))
+            .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private ExtendedCosmosContainer itemsContainer;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryCosmosStore store = new InMemoryCosmosStore(jsonMapper);
+        itemsContainer = new InMemoryCosmosContainer(store.getCollection(ITEMS_CONTAINER_NAME), jsonMapper);
+        itemsContainer.upsertAll(List.of(
+                item("1", true, Set.of("q1", "q2"), "q1"),
+                item("2", true, Set.of("q1"), null),
+                item("3", false, Set.of("q2"), "q2"),
+                item("4", true, Set.of(), null)));
+    }
+
+    @Test
+    void upsertAllSetsEtagAndRejectsStaleVersions() {
+        Item item = item("5", true, Set.of(), null);
+        List<BulkWriteResult<Item>> created = itemsContainer.upsertAll(List.of(item));
+        assertTrue(created.get(0).isSuccessful());
+        assertNotNull(item.get_etag());
+
+        Item stale = item.toBuilder().build();
+        itemsContainer.upsertAll(List.of(item));
+        List<BulkWriteResult<Item>> rejected = itemsContainer.upsertAll(List.of(stale));
+        assertTrue(rejected.get(0).isPreconditionFailed());
+    }
+
+    @Test
+    void constructedQueriesAreExecuted() {
+        ItemQuery.ItemQueryConstructor constructor = ItemQuery.constructor("i")
+                .queueIds(Set.of("q1"), false)
+                .and().active(true);
+
+        Collection<Item> items = constructor.constructSelectExecutor("select", itemsContainer).execute(10, null);
+        assertEquals(Set.of("1", "2"), items.stream().map(Item::getId).collect(Collectors.toSet()));
+        assertEquals(2, constructor.constructCountExecutor("count", itemsContainer).execute());
+    }
+
+    @Test
+    void groupingQueriesAreExecuted() {
+        SqlQuerySpec query = new SqlQuerySpec("SELECT VALUE root FROM \n" +
+                "(SELECT COUNT(1) as count, i.lock.queueId FROM i \n" +
+                "WHERE ARRAY_CONTAINS(@queueIds, i.lock.queueId) " +
+                "GROUP BY i.lock.queueId) as root",
+                new SqlParameter("@queueIds", List.of("q1", "q2")));
+        Map<String, Long> counts = itemsContainer.streamCrossPartitionQuery(query)
+                .collect(Collectors.toMap(cip -> cip.get("queueId").asText(), cip -> cip.get("count").asLong()));
+        assertEquals(Map.of("q1", 1L, "q2", 1L), counts);
+
+        SqlQuerySpec joinQuery = new SqlQuerySpec("SELECT VALUE root FROM (" +
+                "SELECT qid, count(1) As cnt FROM i " +
+                "JOIN (SELECT VALUE queueId FROM queueId IN i.queueIds WHERE ARRAY_CONTAINS(@queueIds, queueId)) qid " +
+                "WHERE i.active " +
+                "GROUP BY qid) " +
+                "AS root",
+                new SqlParameter("@queueIds", List.of("q1", "q2")));
+        Map<String, Integer> sizes = itemsContainer.streamCrossPartitionQuery(joinQuery)
+                .collect(Collectors.toMap(cip -> cip.get("qid").asText(), cip -> cip.get("cnt").asInt()));
+        assertEquals(Map.of("q1", 2, "q2", 1), sizes);
+    }
+
+    @Test
+    void pageableQueriesReturnContinuationTokens() {
+        SqlQuerySpec query = new SqlQuerySpec("SELECT i.id FROM i ORDER BY i.id DESC");
+        ExtendedCosmosContainer.Page first = itemsContainer.runCrossPartitionPageableQuery(query, 3, null);
+        assertEquals(List.of("4", "3", "2"), first.getContent().map(cip -> cip.get("id").asText())
+                .collect(Collectors.toList()));
+        assertNotNull(first.getContinuationToken());
+
+        ExtendedCosmosContainer.Page second = itemsContainer.runCrossPartitionPageableQuery(
+                query, 3, first.getContinuationToken());
+        assertEquals(List.of("1"), second.getContent().map(cip -> cip.get("id").asText())
+                .collect(Collectors.toList()));
+        assertNull(second.getContinuationToken());
+    }
+
+    @Test
+    void patchChangesOnlyPatchedFields() {
+        Item item = itemsContainer.runCrossPartitionQuery("SELECT * FROM i WHERE i.id = '2'")
+                .map(cip -> itemsContainer.castCosmosObjectToClassInstance(cip, Item.class).orElseThrow())
+                .findFirst()
+                .orElseThrow();
+        String etag = item.get_etag();
+
+        itemsContainer.patch(item, DocumentPatch.create()
+                .set("/lock/queueId", "q1")
+                .set("/active", false));
+        assertNotNull(item.get_etag());
+        assertFalse(etag.equals(item.get_etag()));
+
+        JsonNode stored = itemsContainer.runCrossPartitionQuery("SELECT * FROM i WHERE i.id = '2'")
+                .findFirst()
+                .orElseThrow();
+        assertEquals("q1", stored.path("lock").path("queueId").asText());
+        assertFalse(stored.path("active").asBoolean());
+        assertEquals("q1", stored.path("queueIds").path(0).asText());
+    }
+
+    @Test
+    void changeFeedConsumerContinuesFromCheckpoint() throws InterruptedException {
+        InMemoryCosmosStore store = new InMemoryCosmosStore(jsonMapper);
+        ExtendedCosmosContainer leaseContainer = new InMemoryCosmosContainer(store.getCollection("Leases"), jsonMapper);
+        ChangeFeedSettings settings = ChangeFeedSettings.builder()
+                .name("test")
+                .hostName("host")
+                .startFromBeginning(true)
+                .maxItemCount(2)
+                .pollDelay(Duration.ofMillis(10))
+                .build();
+        BlockingQueue<String> changedIds = new LinkedBlockingQueue<>();
+        ChangeFeedConsumer consumer = itemsContainer.changeFeedConsumer(settings, leaseContainer, Item.class,
+                changes -> changes.forEach(item -> changedIds.add(item.getId())));
+
+        consumer.start();
+        Set<String> received = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            received.add(changedIds.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Set.of("1", "2", "3", "4"), received);
+        consumer.stop();
+
+        itemsContainer.upsertAll(List.of(item("5", true, Set.of(), null)));
+        assertEquals(Map.of("0", 1), consumer.getEstimatedLag());
+        consumer = itemsContainer.changeFeedConsumer(settings, leaseContainer, Item.class,
+                changes -> changes.forEach(item -> changedIds.add(item.getId())));
+        consumer.start();
+        assertEquals("5", changedIds.poll(5, TimeUnit.SECONDS));
+        consumer.stop();
+        assertTrue(changedIds.isEmpty());
+    }
+
+    @Test
+    void changeFeedConsumerRequiresLeaseContainerOfTheSameBackend() {
+        InMemoryCosmosStore store = new InMemoryCosmosStore(jsonMapper);
+        ExtendedCosmosContainer inMemoryLeases = new InMemoryCosmosContainer(store.getCollection("Leases"), jsonMapper);
+        ExtendedCosmosContainer cosmosContainer =
+                new ExtendedCosmosContainer(mock(CosmosAsyncContainer.class), jsonMapper);
+        ChangeFeedSettings settings = ChangeFeedSettings.builder()
+                .name("test")
+                .hostName("host")
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () ->
+                cosmosContainer.changeFeedConsumer(settings, inMemoryLeases, Item.class, changes -> { }));
+        assertThrows(IllegalArgumentException.class, () ->
+                itemsContainer.changeFeedConsumer(settings, cosmosContainer, Item.class, changes -> { }));
+    }
+
+    private static Item item(String id, boolean active, Set<String> queueIds, String lockQueueId) {
+        return Item.builder()
+                .id(id)
+                .active(active)
+                .queueIds(queueIds)
+                .lock(ItemLock.builder().queueId(lockQueueId).build())
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.model;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.spring.data.cosmos.core.convert.ObjectMapperFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosCollection;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosStore;
+import com.griddynamics.msd365fp.manualreview.model.Decision;
+import com.griddynamics.msd365fp.manualreview.queues.model.ItemQuery.ItemQueryConstructor.IncorrectFilterException;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ITEMS_CONTAINER_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemFilterPredicateTest {
+
+    private final ObjectMapper jsonMapper = ObjectMapperFactory.getObjectMapper();
+
+    private InMemoryCosmosCollection items;
+    private final List<JsonNode> documents = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        items = new InMemoryCosmosStore(jsonMapper).getCollection(ITEMS_CONTAINER_NAME);
+        store("{'id':'full','imported':1614600000,'decision':{'riskScore':700},'purchase':{" +
+                "'TotalAmountInUSD':150.5,'User':{'Country':'US','AuthenticationProvider':'MSA'}," +
+                "'ProductList':[{'Sku':'sku-1','Category':'Books'},{'Sku':'sku-2','Category':'Games'}]," +
+                "'CalculatedFields':{'aggregatedEmailConfirmed':true,'billingCountries':['US','CA']}}}");
+        store("{'id':'other','imported':1614700000,'decision':{'riskScore':120},'purchase':{" +
+                "'TotalAmountInUSD':20,'User':{'Country':'CA','AuthenticationProvider':'Facebook'}," +
+                "'ProductList':[{'Sku':'sku-1','Category':'Games'}]," +
+                "'CalculatedFields':{'aggregatedEmailConfirmed':false,'billingCountries':['CA']}}}");
+        store("{'id':'empty','imported':1614800000,'purchase':{'User':{},'ProductList':[]," +
+                "'CalculatedFields':{'aggregatedEmailConfirmed':null}}}");
+        store("{'id':'mistyped','imported':'2021-03-01T12:00:00Z','decision':{'riskScore':'700'},'purchase':{" +
+                "'TotalAmountInUSD':'150.5','User':{'Country':1,'AuthenticationProvider':['MSA']}," +
+                "'ProductList':{'Sku':'sku-1'}," +
+                "'CalculatedFields':{'aggregatedEmailConfirmed':'true','billingCountries':'US'}}}");
+        store("{'id':'missing'}");
+    }
+
+    @Test
+    void inAndNotInConditionsMatchTheQuery() {
+        assertParity(Set.of("full"), filter("USER_COUNTRY", "IN", "US", "GB"));
+        assertParity(Set.of("other", "mistyped"), filter("USER_COUNTRY", "NOT_IN", "US", "GB"));
+        assertParity(Set.of("full", "other"), filter("PI_COUNTRY", "IN", "CA"));
+        assertParity(Set.of("full"), filter("PI_COUNTRY", "NOT_IN", "CA"));
+    }
+
+    @Test
+    void stringConditionsMatchTheQuery() {
+        assertParity(Set.of("other"), filter("AUTHENTICATION_PROVIDER", "CONTAINS", "book"));
+        assertParity(Set.of("full", "other"), filter("AUTHENTICATION_PROVIDER", "REGEXP", "^(MSA|Face)"));
+        assertParity(Set.of("full"), filter("USER_COUNTRY", "EQUAL_ALPH", "US"));
+        assertParity(Set.of("other"), filter("USER_COUNTRY", "NOT_EQUAL_ALPH", "US"));
+        assertParity(Set.of("full"), filter("USER_COUNTRY", "GREATER_ALPH", "CA"));
+        assertParity(Set.of("other"), filter("USER_COUNTRY", "NOT_BETWEEN_ALPH", "DE", "ZZ"));
+        assertParity(Set.of("full", "other"), filter("USER_COUNTRY", "BETWEEN_ALPH", "CA", "US"));
+    }
+
+    @Test
+    void numericConditionsMatchTheQuery() {
+        assertParity(Set.of("full"), filter("TOTAL_AMOUNT", "GREATER", "100"));
+        assertParity(Set.of("full"), filter("TOTAL_AMOUNT", "EQUAL", "150.50"));
+        assertParity(Set.of("other"), filter("TOTAL_AMOUNT", "NOT_EQUAL", "150.5"));
+        assertParity(Set.of("other"), filter("TOTAL_AMOUNT", "LESS_OR_EQUAL", "20"));
+        assertParity(Set.of("full"), filter("SCORE", "BETWEEN", "500", "700"));
+        assertParity(Set.of("other"), filter("SCORE", "NOT_BETWEEN", "500", "700"));
+    }
+
+    @Test
+    void dateConditionsMatchTheQuery() {
+        assertParity(Set.of("full", "other"), filter("IMPORT_DATE", "LESS_DATE", "2021-03-03T19:00:00Z"));
+        assertParity(Set.of("other"),
+                filter("IMPORT_DATE", "BETWEEN_DATE", "2021-03-02T00:00:00+03:00", "2021-03-03T00:00:00Z"));
+        assertParity(Set.of("full", "empty"),
+                filter("IMPORT_DATE", "NOT_BETWEEN_DATE", "2021-03-02T00:00:00+03:00", "2021-03-03T00:00:00Z"));
+    }
+
+    @Test
+    void booleanConditionsMatchTheQuery() {
+        assertParity(Set.of("full"), filter("AGGREGATED_EMAIL_CONFIRMED", "IS_TRUE", "true"));
+        assertParity(Set.of("other", "empty", "missing"), filter("AGGREGATED_EMAIL_CONFIRMED", "IS_TRUE", "false"));
+    }
+
+    @Test
+    void conditionsOverTheSameArrayAreMetBySingleElement() {
+        assertParity(Set.of("other"),
+                filter("PRODUCT_SKU", "IN", "sku-1"),
+                filter("PRODUCT_CATEGORY", "IN", "Games"));
+        assertParity(Set.of("full"),
+                filter("PRODUCT_SKU", "IN", "sku-2"),
+                filter("PRODUCT_CATEGORY", "NOT_IN", "Books"),
+                filter("PI_COUNTRY", "IN", "US"),
+                filter("SCORE", "GREATER_OR_EQUAL", "700"));
+        assertParity(Set.of(),
+                filter("PRODUCT_SKU", "IN", "sku-2"),
+                filter("PRODUCT_CATEGORY", "IN", "Books"));
+    }
+
+    @Test
+    void emptyFiltersMatchEverything() {
+        assertParity(Set.of("full", "other", "empty", "mistyped", "missing"));
+    }
+
+    @Test
+    void itemsAreTestedAsStoredDocuments() {
+        Item item = Item.builder()
+                .id("item")
+                .imported(OffsetDateTime.parse("2021-03-01T12:00:00Z"))
+                .decision(Decision.builder().riskScore(700).build())
+                .build();
+        List<ItemFilter> filters = List.of(
+                filter("IMPORT_DATE", "GREATER_OR_EQUAL_DATE", "2021-03-01T12:00:00Z"),
+                filter("SCORE", "EQUAL", "700"));
+
+        assertTrue(ItemFilterPredicate.compile(filters).test(item));
+        assertFalse(ItemFilterPredicate.compile(List.of(
+                filter("IMPORT_DATE", "GREATER_DATE", "2021-03-01T12:00:00Z"))).test(item));
+    }
+
+    @Test
+    void incorrectFiltersAreRejected() {
+        assertThrows(IncorrectFilterException.class,
+                () -> ItemFilterPredicate.compile(List.of(filter("SCORE", "GREATER", "high"))));
+        assertThrows(IncorrectFilterException.class,
+                () -> ItemFilterPredicate.compile(List.of(filter("USER_COUNTRY", "REGEXP", "(US"))));
+        assertThrows(IncorrectFilterException.class,
+                () -> ItemFilterPredicate.compile(List.of(filter("IMPORT_DATE", "LESS_DATE", "yesterday"))));
+    }
+
+    private void assertParity(final Set<String> expected, final ItemFilter... filters) {
+        List<ItemFilter> filterList = List.of(filters);
+        Set<String> queried = items.query(ItemQuery.constructor("i").all(filterList).constructSelectSpec(), null)
+                .stream()
+                .map(row -> row.has("i") ? row.get("i") : row)
+                .map(document -> document.get("id").textValue())
+                .collect(Collectors.toSet());
+        ItemFilterPredicate predicate = ItemFilterPredicate.compile(filterList);
+        Set<String> matched = documents.stream()
+                .filter(predicate)
+                .map(document -> document.get("id").textValue())
+                .collect(Collectors.toSet());
+
+        assertEquals(expected, queried);
+        assertEquals(queried, matched);
+    }
+
+    private void store(final String document) {
+        try {
+            ObjectNode node = (ObjectNode) jsonMapper.readTree(document.replace('\'', '"'));
+            documents.add(node.deepCopy());
+            items.create(node, new PartitionKey(node.get("id").textValue()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private ItemFilter filter(final String field, final String condition, final String... values) {
+        try {
+            return jsonMapper.readValue(String.format("{\"field\":\"%s\",\"condition\":\"%s\",\"values\":%s}",
+                    field, condition, jsonMapper.writeValueAsString(values)), ItemFilter.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
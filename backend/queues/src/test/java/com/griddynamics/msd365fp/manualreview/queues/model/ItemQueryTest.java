@@ -3,8 +3,10 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.model;
 
+import com.azure.cosmos.models.SqlParameter;
 import org.junit.jupiter.api.Test;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -17,20 +19,22 @@ class ItemQueryTest {
         filter.setCondition(ItemDataFieldCondition.IN);
         filter.setField(ItemFilterField.PRODUCT_SKU);
         filter.setValues(List.of("edu", "sales"));
-        String select = ItemQuery.constructor("i")
+        ItemQuery.ItemQueryConstructor constructor = ItemQuery.constructor("i")
                 .all(List.of(filter))
-                .and().active(true)
-                .constructSelect();
+                .and().active(true);
         assertEquals(
                 "SELECT VALUE root FROM (" +
                         "SELECT DISTINCT i FROM i " +
                         "JOIN (SELECT DISTINCT VALUE purchaseProductList " +
                         "FROM purchaseProductList IN i.purchase.ProductList " +
-                        "WHERE purchaseProductList.Sku IN ('edu', 'sales')" +
+                        "WHERE ARRAY_CONTAINS(@p0, purchaseProductList.Sku)" +
                         ") purchaseProductList " +
                         "WHERE true AND i.active=true" +
                         ") AS root ",
-                select);
+                constructor.constructSelect());
+        assertEquals(
+                List.of(new SqlParameter("@p0", List.of("edu", "sales"))),
+                constructor.getParameters());
 
     }
 
@@ -44,21 +48,25 @@ class ItemQueryTest {
         filter2.setCondition(ItemDataFieldCondition.IN);
         filter2.setField(ItemFilterField.PRODUCT_SKU);
         filter2.setValues(List.of("edu", "dreams"));
-        String select = ItemQuery.constructor("i")
+        ItemQuery.ItemQueryConstructor constructor = ItemQuery.constructor("i")
                 .all(List.of(filter1, filter2))
-                .and().active(true)
-                .constructSelect();
+                .and().active(true);
         assertEquals(
                 "SELECT VALUE root FROM (" +
                         "SELECT DISTINCT i FROM i " +
                         "JOIN (SELECT DISTINCT VALUE purchaseProductList " +
                         "FROM purchaseProductList IN i.purchase.ProductList " +
-                        "WHERE purchaseProductList.Sku IN ('edu', 'sales') " +
-                        "AND purchaseProductList.Sku IN ('edu', 'dreams')" +
+                        "WHERE ARRAY_CONTAINS(@p0, purchaseProductList.Sku) " +
+                        "AND ARRAY_CONTAINS(@p1, purchaseProductList.Sku)" +
                         ") purchaseProductList " +
                         "WHERE true AND true AND i.active=true" +
                         ") AS root ",
-                select);
+                constructor.constructSelect());
+        assertEquals(
+                List.of(
+                        new SqlParameter("@p0", List.of("edu", "sales")),
+                        new SqlParameter("@p1", List.of("edu", "dreams"))),
+                constructor.getParameters());
 
     }
 
@@ -81,10 +89,10 @@ class ItemQueryTest {
                         "(SELECT DISTINCT i FROM i " +
                         "JOIN (SELECT DISTINCT VALUE purchaseProductList " +
                         "FROM purchaseProductList IN i.purchase.ProductList " +
-                        "WHERE purchaseProductList.Sku IN ('edu', 'sales')" +
+                        "WHERE ARRAY_CONTAINS(@p0, purchaseProductList.Sku)" +
                         ") purchaseProductList " +
                         "WHERE true " +
-                        "AND i.decision.riskScore IN ('0', '1') " +
+                        "AND ARRAY_CONTAINS(@p1, i.decision.riskScore) " +
                         "AND i.active=true) AS root ",
                 select);
     }
@@ -100,7 +108,7 @@ class ItemQueryTest {
                 .and().active(true)
                 .constructSelect();
         assertEquals(
-                "SELECT i FROM i WHERE i.decision.riskScore IN ('0', '1') AND i.active=true ",
+                "SELECT i FROM i WHERE ARRAY_CONTAINS(@p0, i.decision.riskScore) AND i.active=true ",
                 select);
     }
 
@@ -122,9 +130,32 @@ class ItemQueryTest {
                 "SELECT VALUE COUNT(1) FROM i " +
                         "JOIN (SELECT DISTINCT VALUE purchaseProductList " +
                         "FROM purchaseProductList IN i.purchase.ProductList " +
-                        "WHERE purchaseProductList.Sku IN ('edu', 'sales')) purchaseProductList " +
-                        "WHERE true AND i.decision.riskScore IN ('0', '1') AND i.active=true",
+                        "WHERE ARRAY_CONTAINS(@p0, purchaseProductList.Sku)) purchaseProductList " +
+                        "WHERE true AND ARRAY_CONTAINS(@p1, i.decision.riskScore) AND i.active=true",
                 counting);
     }
 
-}
\ No newline at end of file
+    @Test
+    void ItemQueryKeepsTextStableForDifferentValues() {
+        ItemQuery.ItemQueryConstructor first = ItemQuery.constructor("i")
+                .queueIds(List.of("q1"), false)
+                .and().updatedAfter(OffsetDateTime.parse("2020-01-01T00:00:00Z"));
+        ItemQuery.ItemQueryConstructor second = ItemQuery.constructor("i")
+                .queueIds(List.of("q1", "q2", "q3"), false)
+                .and().updatedAfter(OffsetDateTime.parse("2021-01-01T00:00:00Z"));
+        assertEquals(first.constructSelect(), second.constructSelect());
+        assertEquals(
+                "SELECT i FROM i WHERE (" +
+                        "ARRAY_CONTAINS(@p0, i.label.queueId) " +
+                        "OR EXISTS(SELECT VALUE queueIds FROM queueIds IN i.queueIds WHERE ARRAY_CONTAINS(@p0, queueIds)) " +
+                        "OR false) " +
+                        "AND i._ts>=@p1 ",
+                second.constructSelect());
+        assertEquals(
+                List.of(
+                        new SqlParameter("@p0", List.of("q1", "q2", "q3")),
+                        new SqlParameter("@p1", OffsetDateTime.parse("2021-01-01T00:00:00Z").toEpochSecond())),
+                second.getParameters());
+    }
+
+}
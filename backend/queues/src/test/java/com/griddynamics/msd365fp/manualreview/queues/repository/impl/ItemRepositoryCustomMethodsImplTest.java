@@ -0,0 +1,68 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.repository.impl;
+
+import com.azure.spring.data.cosmos.core.convert.ObjectMapperFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.DocumentPatch;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.ExtendedCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosContainer;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.inmemory.InMemoryCosmosStore;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ITEMS_CONTAINER_NAME;
+import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.ITEM_NEXT_ENRICHMENT_ATTEMPT_PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ItemRepositoryCustomMethodsImplTest {
+
+    private final ObjectMapper jsonMapper = ObjectMapperFactory.getObjectMapper();
+    private final OffsetDateTime now = OffsetDateTime.now();
+
+    private ExtendedCosmosContainer itemsContainer;
+    private ItemRepositoryCustomMethodsImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        itemsContainer = new InMemoryCosmosContainer(
+                new InMemoryCosmosStore(jsonMapper).getCollection(ITEMS_CONTAINER_NAME), jsonMapper);
+        repository = new ItemRepositoryCustomMethodsImpl(itemsContainer);
+        itemsContainer.upsertAll(List.of(
+                item("new", now),
+                item("imported", now.minusMinutes(10)),
+                item("retried", now.minusMinutes(10)),
+                item("scheduled", now.minusMinutes(10))));
+        itemsContainer.patch(Item.builder().id("retried").build(),
+                DocumentPatch.create().set(ITEM_NEXT_ENRICHMENT_ATTEMPT_PATH, now.minusSeconds(10)));
+        itemsContainer.patch(Item.builder().id("scheduled").build(),
+                DocumentPatch.create().set(ITEM_NEXT_ENRICHMENT_ATTEMPT_PATH, now.plusMinutes(1)));
+    }
+
+    @Test
+    void unenrichedItemsScheduledForRetryAreSkipped() {
+        assertEquals(Set.of("imported", "retried"),
+                ids(repository.findUnenrichedItems(now.minusMinutes(1), now, 10, null)));
+        assertEquals(Set.of("new", "imported", "retried", "scheduled"),
+                ids(repository.findUnenrichedItems(10, null)));
+    }
+
+    private static Set<String> ids(final Collection<Item> items) {
+        return items.stream().map(Item::getId).collect(Collectors.toSet());
+    }
+
+    private static Item item(final String id, final OffsetDateTime imported) {
+        return Item.builder()
+                .id(id)
+                .imported(imported)
+                .build();
+    }
+}
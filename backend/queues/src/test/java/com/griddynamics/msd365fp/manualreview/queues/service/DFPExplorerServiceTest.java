@@ -0,0 +1,211 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.service;
+
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.ExplorerEntity;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.PurchaseNodeData;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DFPExplorerServiceTest {
+
+    private static final String TRAVERSAL = "{\"nodes\":[" +
+            "{\"id\":\"user\",\"name\":\"User\",\"data\":{\"UserId\":\"user\"}}," +
+            "{\"id\":\"p-1\",\"name\":\"Purchase\",\"data\":{\"PurchaseId\":\"p-1\",\"MerchantLocalDate\":\"2021-03-01T10:00:00Z\"}}," +
+            "{\"id\":\"p-2\",\"name\":\"Purchase\",\"data\":{\"PurchaseId\":\"p-2\",\"MerchantLocalDate\":\"2021-03-02T10:00:00Z\"}}" +
+            "],\"edges\":[{\"id\":\"e-1\",\"name\":\"UserLabel\",\"data\":{\"LabelState\":\"Fraud\"}}]}";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch responseAllowed = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private DFPExplorerService dfpExplorerService;
+    private String responseBody = "{\"nodes\":[],\"edges\":[]}";
+    private HttpStatus responseStatus = HttpStatus.OK;
+
+    @TempDir
+    Path diskCacheDirectory;
+
+    @BeforeEach
+    void setUp() {
+        dfpExplorerService = createService(false);
+    }
+
+    private DFPExplorerService createService(final boolean diskCacheEnabled) {
+        DFPExplorerService dfpExplorerService = new DFPExplorerService(
+                meterRegistry, new Jackson2ObjectMapperBuilder().build(), circuitBreakerRegistry);
+        dfpExplorerService.setDfpClient(WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.incrementAndGet();
+                    return Mono.fromCallable(() -> responseAllowed.await(5, TimeUnit.SECONDS))
+                            .map(allowed -> ClientResponse.create(responseStatus)
+                                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                    .body(responseBody)
+                                    .build());
+                })
+                .build());
+        dfpExplorerService.setCacheManager(new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(dfpExplorerService, "dfpExplorerUrl", "http://dfp/explorer");
+        ReflectionTestUtils.setField(dfpExplorerService, "dfpExplorerTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(dfpExplorerService, "userHistoryLimit", 1);
+        ReflectionTestUtils.setField(dfpExplorerService, "initialConcurrencyLimit", 2);
+        ReflectionTestUtils.setField(dfpExplorerService, "minConcurrencyLimit", 1);
+        ReflectionTestUtils.setField(dfpExplorerService, "maxConcurrencyLimit", 4);
+        ReflectionTestUtils.setField(dfpExplorerService, "maxPendingRequests", 16);
+        ReflectionTestUtils.setField(dfpExplorerService, "diskCacheEnabled", diskCacheEnabled);
+        ReflectionTestUtils.setField(dfpExplorerService, "diskCacheDirectory", diskCacheDirectory.toString());
+        ReflectionTestUtils.setField(dfpExplorerService, "diskCacheTtl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(dfpExplorerService, "diskCacheSegmentSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(dfpExplorerService, "diskCacheMaxSize", DataSize.ofMegabytes(1));
+        dfpExplorerService.initialize();
+        return dfpExplorerService;
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        dfpExplorerService.stop();
+    }
+
+    @Test
+    void concurrentExplorationsOfTheSameNodeAreCoalesced() throws Exception {
+        Future<ExplorerEntity> first = executor.submit(() -> dfpExplorerService.exploreUser("user"));
+        waitFor(() -> requests.get() == 1);
+        Future<ExplorerEntity> second = executor.submit(() -> dfpExplorerService.exploreUser("user"));
+        waitFor(() -> meterRegistry.counter("dfp.explorer.coalesced", "traversal", "User").count() == 1);
+        responseAllowed.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+        assertEquals("user", first.get().getRequestAttributeValue());
+        assertEquals(1, meterRegistry.timer("dfp.explorer.latency", "traversal", "User").count());
+    }
+
+    @Test
+    void explorationsOfDifferentNodesAreNotCoalesced() throws Exception {
+        responseAllowed.countDown();
+
+        dfpExplorerService.exploreUser("user");
+        dfpExplorerService.explorePaymentInstrument("user");
+        dfpExplorerService.exploreUser("user");
+
+        assertEquals(3, requests.get());
+        assertEquals(0, meterRegistry.counter("dfp.explorer.coalesced", "traversal", "User").count());
+    }
+
+    @Test
+    void userHistoryIsExploredSeparatelyFromUser() {
+        responseBody = TRAVERSAL;
+        responseAllowed.countDown();
+
+        ExplorerEntity user = dfpExplorerService.exploreUser("user");
+        ExplorerEntity history = dfpExplorerService.exploreUserHistoryAsync("user").block();
+
+        assertEquals(2, requests.get());
+        assertEquals(3, user.getNodes().size());
+        assertEquals(1, user.getEdges().size());
+        assertNotNull(history);
+        assertEquals(1, history.getNodes().size());
+        assertEquals("p-2", ((PurchaseNodeData) history.getNodes().get(0).getData()).getPurchaseId());
+        assertTrue(history.getEdges().isEmpty());
+        assertSame(user, dfpExplorerService.exploreUser("user"));
+        assertSame(history, dfpExplorerService.exploreUserHistoryAsync("user").block());
+    }
+
+    @Test
+    void explorationsFailFastWhenCircuitBreakerIsOpen() {
+        responseAllowed.countDown();
+        circuitBreakerRegistry.circuitBreaker(DFPExplorerService.DFP_CIRCUIT_BREAKER).transitionToForcedOpenState();
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> dfpExplorerService.exploreUser("user"));
+
+        assertEquals(0, requests.get());
+        assertFalse(dfpExplorerService.isAvailable());
+        assertTrue(dfpExplorerService.isUnavailabilityCause(failure));
+        assertTrue(Exceptions.unwrap(failure) instanceof CallNotPermittedException);
+    }
+
+    @Test
+    void serverErrorsAreRecordedByCircuitBreaker() {
+        responseStatus = HttpStatus.SERVICE_UNAVAILABLE;
+        responseAllowed.countDown();
+
+        assertThrows(RuntimeException.class, () -> dfpExplorerService.exploreUser("user"));
+
+        assertEquals(1, circuitBreakerRegistry.circuitBreaker(DFPExplorerService.DFP_CIRCUIT_BREAKER)
+                .getMetrics().getNumberOfFailedCalls());
+        assertEquals(0, meterRegistry.get("dfp.limiter.in-flight").gauge().value());
+    }
+
+    @Test
+    void restartedServiceIsWarmedUpFromDiskCache() {
+        dfpExplorerService = createService(true);
+        responseBody = TRAVERSAL;
+        responseAllowed.countDown();
+
+        ExplorerEntity explored = dfpExplorerService.exploreUser("user");
+        dfpExplorerService.stop();
+        dfpExplorerService = createService(true);
+        ExplorerEntity restored = dfpExplorerService.exploreUser("user");
+
+        assertEquals(1, requests.get());
+        assertNotSame(explored, restored);
+        assertEquals(explored, restored);
+        assertTrue(restored.getNodes().get(1).getData() instanceof PurchaseNodeData);
+        assertEquals(1, meterRegistry.counter("dfp.disk-cache.requests", "traversal", "User", "result", "hit").count());
+        assertSame(restored, dfpExplorerService.exploreUser("user"));
+    }
+
+    @Test
+    void emptyExplorationsAreNotCachedOnDisk() {
+        dfpExplorerService = createService(true);
+        responseAllowed.countDown();
+
+        dfpExplorerService.exploreUser("user");
+        dfpExplorerService.stop();
+        dfpExplorerService = createService(true);
+        dfpExplorerService.exploreUser("user");
+
+        assertEquals(2, requests.get());
+        assertEquals(2, meterRegistry.counter("dfp.disk-cache.requests", "traversal", "User", "result", "miss").count());
+    }
+
+    private void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition hasn't been met in time");
+            Thread.sleep(10);
+        }
+    }
+}
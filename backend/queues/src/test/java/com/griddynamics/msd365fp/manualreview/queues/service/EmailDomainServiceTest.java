@@ -0,0 +1,165 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.service;
+
+import com.griddynamics.msd365fp.manualreview.model.DisposabilityCheck;
+import com.griddynamics.msd365fp.manualreview.model.DisposabilityCheckServiceResponse;
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.EmailDomain;
+import com.griddynamics.msd365fp.manualreview.queues.repository.EmailDomainRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailDomainServiceTest {
+
+    private static final String DOMAIN = "example.com";
+
+    private EmailDomainService emailDomainService;
+
+    @Mock
+    private KickboxEmailDomainCheckProvider kickboxProvider;
+    @Mock
+    private NameApiEmailDomainCheckProvider nameApiProvider;
+    @Mock
+    private EmailDomainRepository emailDomainRepository;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        emailDomainService = new EmailDomainService(kickboxProvider, nameApiProvider, emailDomainRepository);
+        emailDomainService.setThisService(emailDomainService);
+        emailDomainService.setCacheManager(new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(emailDomainService, "emailDomainTtl", Duration.ofDays(7));
+        ReflectionTestUtils.setField(emailDomainService, "checkTimeout", Duration.ofSeconds(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void checkedDomainsAreServedFromNearCache() {
+        when(emailDomainRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(kickboxProvider.checkAsync(DOMAIN)).thenReturn(Mono.just(response("kickbox", false)));
+        when(nameApiProvider.checkAsync(DOMAIN)).thenReturn(Mono.empty());
+
+        DisposabilityCheck first = emailDomainService.checkDisposability(DOMAIN);
+        DisposabilityCheck second = emailDomainService.checkDisposability(DOMAIN);
+
+        assertFalse(first.getDisposable());
+        assertSame(first, second);
+        verify(emailDomainRepository, times(1)).findById(anyString());
+        verify(kickboxProvider, times(1)).checkAsync(DOMAIN);
+        verify(emailDomainRepository, times(1)).save(any(EmailDomain.class));
+    }
+
+    @Test
+    void storedDomainsAreNotRequestedFromProviders() {
+        DisposabilityCheck stored = new DisposabilityCheck();
+        stored.setDisposable(true);
+        when(emailDomainRepository.findById(DOMAIN)).thenReturn(Optional.of(
+                EmailDomain.builder().id(DOMAIN).emailDomainName(DOMAIN).disposabilityCheck(stored).build()));
+
+        assertSame(stored, emailDomainService.checkDisposability(DOMAIN));
+        assertSame(stored, emailDomainService.checkDisposability(DOMAIN));
+
+        verify(emailDomainRepository, times(1)).findById(DOMAIN);
+        verifyNoInteractions(kickboxProvider, nameApiProvider);
+    }
+
+    @Test
+    void unknownDomainsAreCachedButNotStored() {
+        when(emailDomainRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(kickboxProvider.checkAsync(DOMAIN)).thenReturn(Mono.just(response("kickbox", null)));
+        when(nameApiProvider.checkAsync(DOMAIN)).thenReturn(Mono.empty());
+
+        assertNull(emailDomainService.checkDisposability(DOMAIN).getDisposable());
+        assertNull(emailDomainService.checkDisposability(DOMAIN).getDisposable());
+
+        verify(kickboxProvider, times(1)).checkAsync(DOMAIN);
+        verify(emailDomainRepository, never()).save(any(EmailDomain.class));
+    }
+
+    @Test
+    void providersAreCalledConcurrentlyWithinTimeout() {
+        ReflectionTestUtils.setField(emailDomainService, "checkTimeout", Duration.ofMillis(500));
+        when(emailDomainRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(kickboxProvider.checkAsync(DOMAIN)).thenReturn(Mono.never());
+        when(nameApiProvider.checkAsync(DOMAIN))
+                .thenReturn(Mono.just(response("NameApi", true)).delayElement(Duration.ofMillis(300)));
+
+        long start = System.nanoTime();
+        DisposabilityCheck check = emailDomainService.checkDisposability(DOMAIN);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(check.getDisposable());
+        assertEquals(1, check.getDisposabilityResponses().size());
+        assertEquals("NameApi", check.getDisposabilityResponses().get(0).getResource());
+        assertTrue(elapsed < 1500, "check took " + elapsed + " ms");
+    }
+
+    @Test
+    void concurrentChecksOfTheSameDomainAreCoalesced() throws Exception {
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch lookupAllowed = new CountDownLatch(1);
+        when(emailDomainRepository.findById(anyString())).thenAnswer(invocation -> {
+            lookupStarted.countDown();
+            assertTrue(lookupAllowed.await(5, TimeUnit.SECONDS));
+            return Optional.empty();
+        });
+        when(kickboxProvider.checkAsync(DOMAIN)).thenReturn(Mono.just(response("kickbox", true)));
+        when(nameApiProvider.checkAsync(DOMAIN)).thenReturn(Mono.empty());
+
+        Future<DisposabilityCheck> first = executor.submit(() -> emailDomainService.checkDisposability(DOMAIN));
+        assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+        Future<DisposabilityCheck> second = executor.submit(() -> emailDomainService.checkDisposability(DOMAIN));
+        Thread.sleep(200);
+        lookupAllowed.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        verify(emailDomainRepository, times(1)).findById(anyString());
+        verify(kickboxProvider, times(1)).checkAsync(DOMAIN);
+    }
+
+    @Test
+    void missingDomainIsNotChecked() {
+        DisposabilityCheck check = emailDomainService.checkDisposability(null);
+
+        assertNull(check.getDisposable());
+        assertTrue(check.getDisposabilityResponses().isEmpty());
+        verifyNoInteractions(emailDomainRepository, kickboxProvider, nameApiProvider);
+    }
+
+    private static DisposabilityCheckServiceResponse response(final String resource, final Boolean disposable) {
+        return DisposabilityCheckServiceResponse.builder()
+                .disposable(disposable)
+                .resource(resource)
+                .checked(OffsetDateTime.now())
+                .rawResponse(String.valueOf(disposable))
+                .build();
+    }
+}
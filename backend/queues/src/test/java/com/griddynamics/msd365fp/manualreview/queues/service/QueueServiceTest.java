@@ -3,11 +3,15 @@
 
 package com.griddynamics.msd365fp.manualreview.queues.service;
 
+import com.griddynamics.msd365fp.manualreview.model.Decision;
 import com.griddynamics.msd365fp.manualreview.model.ItemLock;
 import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
 import com.griddynamics.msd365fp.manualreview.model.event.type.LockActionType;
 import com.griddynamics.msd365fp.manualreview.model.exception.BusyException;
+import com.griddynamics.msd365fp.manualreview.queues.model.ItemDataFieldCondition;
 import com.griddynamics.msd365fp.manualreview.queues.model.ItemFilter;
+import com.griddynamics.msd365fp.manualreview.queues.model.ItemFilterComparison;
+import com.griddynamics.msd365fp.manualreview.queues.model.ItemFilterField;
 import com.griddynamics.msd365fp.manualreview.queues.model.QueueSortSettings;
 import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
 import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Queue;
@@ -24,6 +28,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static com.griddynamics.msd365fp.manualreview.queues.config.Constants.DEFAULT_QUEUE_PAGE_SIZE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -103,4 +108,91 @@ public class QueueServiceTest {
         assertEquals(2, queueCaptor.getAllValues().stream().filter(q -> !q.isResidual()).findFirst().get().getSize());
     }
 
+    /**
+     * {@link QueueService#findMatchingQueueIds(Item)} should test the item against
+     * compiled filters of active queues and retrieve queues only once.
+     */
+    @Test
+    public void findMatchingQueueIdsTestsItemAgainstQueueFilters() {
+        Queue highRiskQueue = Queue.builder()
+                .active(true)
+                .id(TEST_QUEUE_ID)
+                .filters(Collections.singleton(scoreFilter(ItemDataFieldCondition.GREATER, "500")))
+                .build();
+        Queue lowRiskQueue = Queue.builder()
+                .active(true)
+                .id(TEST_QUEUE_ID.replaceFirst("1", "2"))
+                .filters(Collections.singleton(scoreFilter(ItemDataFieldCondition.LESS_OR_EQUAL, "500")))
+                .build();
+        Queue brokenQueue = Queue.builder()
+                .active(true)
+                .id(TEST_QUEUE_ID.replaceFirst("1", "3"))
+                .filters(Collections.singleton(scoreFilter(ItemDataFieldCondition.GREATER, "high")))
+                .build();
+        when(queueRepository.getQueueList(eq(true), eq(false), eq(DEFAULT_QUEUE_PAGE_SIZE), isNull()))
+                .thenReturn(new PageableCollection<>(Arrays.asList(highRiskQueue, lowRiskQueue, brokenQueue), null));
+
+        Set<String> highRiskQueueIds = queueService.findMatchingQueueIds(Item.builder()
+                .id("1")
+                .decision(Decision.builder().riskScore(700).build())
+                .build());
+        Set<String> lowRiskQueueIds = queueService.findMatchingQueueIds(Item.builder()
+                .id("2")
+                .decision(Decision.builder().riskScore(300).build())
+                .build());
+
+        assertEquals(Set.of(highRiskQueue.getId()), highRiskQueueIds);
+        assertEquals(Set.of(lowRiskQueue.getId()), lowRiskQueueIds);
+        verify(queueRepository, times(1)).getQueueList(any(), any(), anyInt(), any());
+    }
+
+    /**
+     * {@link QueueService#findMatchingQueueIds(Item)} called concurrently should
+     * compile queue filters once.
+     */
+    @Test
+    public void findMatchingQueueIdsCompilesFiltersOnceForConcurrentCalls() throws Exception {
+        Queue queue = Queue.builder()
+                .active(true)
+                .id(TEST_QUEUE_ID)
+                .filters(Collections.singleton(scoreFilter(ItemDataFieldCondition.GREATER, "500")))
+                .build();
+        CountDownLatch retrieving = new CountDownLatch(1);
+        when(queueRepository.getQueueList(eq(true), eq(false), eq(DEFAULT_QUEUE_PAGE_SIZE), isNull()))
+                .thenAnswer(invocation -> {
+                    retrieving.countDown();
+                    Thread.sleep(100);
+                    return new PageableCollection<>(List.of(queue), null);
+                });
+        Item item = Item.builder()
+                .id("1")
+                .decision(Decision.builder().riskScore(700).build())
+                .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Set<String>> first = executor.submit(() -> queueService.findMatchingQueueIds(item));
+            assertTrue(retrieving.await(5, TimeUnit.SECONDS));
+            List<Future<Set<String>>> others = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                others.add(executor.submit(() -> queueService.findMatchingQueueIds(item)));
+            }
+
+            assertEquals(Set.of(TEST_QUEUE_ID), first.get(5, TimeUnit.SECONDS));
+            for (Future<Set<String>> other : others) {
+                assertEquals(Set.of(TEST_QUEUE_ID), other.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(queueRepository, times(1)).getQueueList(any(), any(), anyInt(), any());
+    }
+
+    private static ItemFilter scoreFilter(final ItemDataFieldCondition condition, final String value) {
+        ItemFilterComparison filter = new ItemFilterComparison();
+        filter.setField(ItemFilterField.SCORE);
+        filter.setCondition(condition);
+        filter.setValues(List.of(value));
+        return filter;
+    }
 }
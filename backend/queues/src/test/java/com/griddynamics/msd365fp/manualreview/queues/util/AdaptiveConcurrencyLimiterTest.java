@@ -0,0 +1,179 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void limitGrowsWhileItIsUsed() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 8, 0);
+
+        for (int round = 0; round < 20; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll(limiter, limiter.getLimit());
+            tick(10);
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::onSuccess);
+        }
+
+        assertTrue(limiter.getLimit() > 4);
+        assertTrue(limiter.getLimit() <= 8);
+    }
+
+    @Test
+    void limitDoesNotGrowWhileItIsUnused() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 8, 0);
+
+        for (int round = 0; round < 100; round++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+            tick(10);
+            permit.onSuccess();
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksOnceWhenConcurrentCallsAreDropped() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 2, 20, 0);
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll(limiter, 10);
+        tick(10);
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::onDropped);
+        assertEquals(18, limiter.getLimit());
+
+        for (int round = 0; round < 30; round++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+            tick(10);
+            permit.onDropped();
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyExceedsTolerance() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 1, 10, 0);
+
+        for (int round = 0; round < 10; round++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+            tick(10);
+            permit.onSuccess();
+        }
+        assertEquals(10, limiter.getLimit());
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+        tick(100);
+        permit.onSuccess();
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    void waitersGetPermitsInOrderOfArrival() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 2);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().block();
+        List<String> order = new ArrayList<>();
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> second = new AtomicReference<>();
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> third = new AtomicReference<>();
+
+        limiter.acquire().subscribe(permit -> {
+            order.add("second");
+            second.set(permit);
+        });
+        limiter.acquire().subscribe(permit -> {
+            order.add("third");
+            third.set(permit);
+        });
+        assertEquals(2, limiter.getPending());
+
+        first.onSuccess();
+        assertEquals(List.of("second"), order);
+        second.get().onIgnore();
+        assertEquals(List.of("second", "third"), order);
+        third.get().onIgnore();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    void callersAreRejectedWhenTooManyOfThemAreWaiting() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 1);
+        limiter.acquire().block();
+        limiter.acquire().subscribe();
+
+        assertThrows(AdaptiveConcurrencyLimiter.LimitExceededException.class, () -> limiter.acquire().block());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    void callersAreRejectedWhenPermitIsNotGrantedInTime() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 1);
+        limiter.acquire().block();
+
+        assertThrows(AdaptiveConcurrencyLimiter.LimitExceededException.class,
+                () -> limiter.acquire(Duration.ofMillis(10)).block());
+        assertEquals(1, limiter.getRejected());
+        assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    void permitsAreReleasedOnlyOnce() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 2, 0);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+        limiter.acquire().block();
+
+        permit.onSuccess();
+        permit.onDropped();
+
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void cancelledWaitersDoNotHoldPermits() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 1);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+        Disposable waiter = limiter.acquire().subscribe();
+
+        waiter.dispose();
+        permit.onSuccess();
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getPending());
+    }
+
+    @Test
+    void incorrectLimitsAreNotAccepted() {
+        assertThrows(IllegalArgumentException.class, () -> limiter(1, 2, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> limiter(8, 1, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> limiter(1, 0, 4, 0));
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(final int initial, final int min, final int max, final int maxPending) {
+        return new AdaptiveConcurrencyLimiter("test", initial, min, max, maxPending, clock::get);
+    }
+
+    private List<AdaptiveConcurrencyLimiter.Permit> acquireAll(final AdaptiveConcurrencyLimiter limiter, final int count) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.acquire().block());
+        }
+        return permits;
+    }
+
+    private void tick(final long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.griddynamics.msd365fp.manualreview.model.dfp.DeviceContext;
+import com.griddynamics.msd365fp.manualreview.model.dfp.User;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.PurchaseDeviceContextEdgeData;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.PurchaseUserEdgeData;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.UserNodeData;
+import com.griddynamics.msd365fp.manualreview.queues.config.DFPModelMapperConfig;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DFPDataMapperTest {
+
+    @Test
+    void mappingIsSameAsByModelMapper() {
+        assertEquals(List.of(), DFPDataMapper.compareWith(new DFPModelMapperConfig().dfpModelMapper()));
+    }
+
+    @Test
+    void nodeAndEdgeDataAreMerged() {
+        OffsetDateTime merchantLocalDate = OffsetDateTime.now();
+        UserNodeData node = new UserNodeData();
+        node.setUserId("user-1");
+        node.setEmail("user@example.com");
+        node.setTotalSpend(0.1);
+        node.setAdditionalParam("Node", "1");
+        PurchaseUserEdgeData edge = new PurchaseUserEdgeData();
+        edge.setMerchantLocalDate(merchantLocalDate);
+        edge.setAdditionalParam("Edge", "2");
+
+        User user = new User();
+        DFPDataMapper.map(node, user);
+        DFPDataMapper.map(edge, user);
+
+        assertEquals("user-1", user.getUserId());
+        assertEquals("user@example.com", user.getEmail());
+        assertEquals(merchantLocalDate, user.getMerchantLocalDate());
+        assertEquals(new BigDecimal("0.1"), user.getTotalSpend());
+        assertEquals(BigDecimal.ZERO, user.getTotalTransactions());
+        assertEquals(Map.of("Node", "1", "Edge", "2"), user.getAdditionalParams());
+    }
+
+    @Test
+    void absentValuesDontOverrideMappedOnes() {
+        DeviceContext deviceContext = new DeviceContext();
+        deviceContext.setIpCountry("US");
+        deviceContext.setIpLatitude(BigDecimal.ONE);
+
+        DFPDataMapper.map(new PurchaseDeviceContextEdgeData(), deviceContext);
+
+        assertEquals("US", deviceContext.getIpCountry());
+        assertEquals(BigDecimal.ONE, deviceContext.getIpLatitude());
+        assertNull(deviceContext.getPurchaseId());
+    }
+}
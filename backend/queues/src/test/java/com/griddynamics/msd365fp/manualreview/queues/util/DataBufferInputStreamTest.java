@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataBufferInputStreamTest {
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    @Test
+    void buffersAreReadAsSingleStream() throws IOException {
+        try (DataBufferInputStream input = new DataBufferInputStream(
+                Flux.just("{\"nodes\":", "", "[]", ",\"edges\":[]}").map(this::buffer), 2)) {
+            assertEquals("{\"nodes\":[],\"edges\":[]}", new String(input.readAllBytes(), StandardCharsets.UTF_8));
+            assertEquals(-1, input.read());
+        }
+    }
+
+    @Test
+    void buffersAreRequestedWhileStreamIsRead() throws IOException {
+        AtomicInteger requested = new AtomicInteger();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<DataBuffer> body = Flux.range(0, 100)
+                .map(i -> buffer("chunk-" + i))
+                .doOnRequest(n -> requested.addAndGet((int) Math.min(n, Integer.MAX_VALUE)))
+                .doOnCancel(() -> cancelled.set(true));
+
+        DataBufferInputStream input = new DataBufferInputStream(body, 4);
+        byte[] first = new byte["chunk-0".length()];
+        assertEquals(first.length, input.read(first, 0, first.length));
+        assertEquals("chunk-0", new String(first, StandardCharsets.UTF_8));
+        assertTrue(requested.get() < 100);
+
+        input.close();
+        assertTrue(cancelled.get());
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    void failureOfBodyIsThrownByStream() {
+        DataBufferInputStream input = new DataBufferInputStream(
+                Flux.concat(Flux.just(buffer("{")), Flux.error(new UncheckedIOException(new IOException("reset")))), 2);
+
+        assertThrows(UncheckedIOException.class, input::readAllBytes);
+    }
+
+    private DataBuffer buffer(final String value) {
+        return bufferFactory.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
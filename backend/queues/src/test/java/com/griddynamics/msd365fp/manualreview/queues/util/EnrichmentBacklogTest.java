@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.griddynamics.msd365fp.manualreview.queues.model.persistence.Item;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnrichmentBacklogTest {
+
+    private static final OffsetDateTime NOW = OffsetDateTime.of(2021, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private final EnrichmentBacklog backlog = new EnrichmentBacklog(
+            Duration.ofSeconds(5), Duration.ofMinutes(15), Duration.ofMinutes(5), Duration.ofMinutes(15));
+
+    @Test
+    void freshItemsAreOrderedByImport() {
+        assertEquals(List.of("older", "middle", "newer"), plan(
+                item("newer", 2, 0, 0),
+                item("older", 8, 0, 0),
+                item("middle", 4, 0, 0)));
+    }
+
+    @Test
+    void itemsCloseToMaxDelayAreEnrichedFirst() {
+        assertEquals(List.of("overdue", "urgent", "fresh"), plan(
+                item("fresh", 2, 0, 0),
+                item("urgent", 12, 0, 1),
+                item("overdue", 20, 0, 1)));
+    }
+
+    @Test
+    void itemsWithFewerRetriesGoFirst() {
+        assertEquals(List.of("fresh", "postponed", "failed"), plan(
+                item("failed", 6, 3, 3),
+                item("postponed", 6, 0, 1),
+                item("fresh", 1, 0, 0)));
+    }
+
+    @Test
+    void failedItemsAreNotUrgent() {
+        assertEquals(List.of("fresh", "failed"), plan(
+                item("failed", 14, 1, 1),
+                item("fresh", 1, 0, 0)));
+    }
+
+    @Test
+    void retriesAreBackedOffExponentiallyUpToMaxDelay() {
+        assertEquals(Duration.ofSeconds(5), backlog.backoff(1));
+        assertEquals(Duration.ofSeconds(10), backlog.backoff(2));
+        assertEquals(Duration.ofSeconds(80), backlog.backoff(5));
+        assertEquals(Duration.ofMinutes(15), backlog.backoff(10));
+        assertEquals(Duration.ofMinutes(15), backlog.backoff(100));
+    }
+
+    private List<String> plan(final Item... items) {
+        Collection<Item> planned = backlog.plan(List.of(items), NOW);
+        return planned.stream().map(Item::getId).collect(Collectors.toList());
+    }
+
+    private static Item item(final String id,
+                             final long importedMinutesAgo,
+                             final int enrichmentAttempts,
+                             final int enrichmentRetries) {
+        return Item.builder()
+                .id(id)
+                .imported(NOW.minusMinutes(importedMinutesAgo))
+                .enrichmentAttempts(enrichmentAttempts)
+                .enrichmentRetries(enrichmentRetries)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnrichmentMetricsTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EnrichmentMetrics metrics = new EnrichmentMetrics(meterRegistry);
+
+    @Test
+    void nestedStagesAreExcludedFromOuterOnes() {
+        EnrichmentMetrics.Trace trace = metrics.trace("item");
+
+        trace.stage(EnrichmentMetrics.Stage.DERIVED_FIELDS, () -> {
+            sleep(20);
+            String result = trace.stage(EnrichmentMetrics.Stage.EMAIL_DOMAIN_CHECK, () -> {
+                sleep(100);
+                return "checked";
+            });
+            assertEquals("checked", result);
+        });
+
+        double derivedFields = stageTime(EnrichmentMetrics.Stage.DERIVED_FIELDS);
+        double emailDomainCheck = stageTime(EnrichmentMetrics.Stage.EMAIL_DOMAIN_CHECK);
+        assertTrue(emailDomainCheck >= 100, "email domain check: " + emailDomainCheck);
+        assertTrue(derivedFields >= 20 && derivedFields < 100, "derived fields: " + derivedFields);
+    }
+
+    @Test
+    void stagesAreRecordedWhenTheyFail() {
+        EnrichmentMetrics.Trace trace = metrics.trace("item");
+
+        assertThrows(IllegalStateException.class, () -> trace.stage(EnrichmentMetrics.Stage.SAVE, () -> {
+            throw new IllegalStateException("conflict");
+        }));
+
+        assertEquals(1, meterRegistry.get("item.enrichment.stage")
+                .tag(EnrichmentMetrics.STAGE_TAG, "save").timer().count());
+    }
+
+    @Test
+    void asynchronousStagesAreRecordedOnTermination() {
+        EnrichmentMetrics.Trace trace = metrics.trace("item");
+        Mono<String> exploration = trace.stage(EnrichmentMetrics.Stage.USER_TRAVERSAL,
+                Mono.just("user").delayElement(Duration.ofMillis(50)));
+
+        assertEquals(0, meterRegistry.get("item.enrichment.stage")
+                .tag(EnrichmentMetrics.STAGE_TAG, "user-traversal").timer().count());
+        assertEquals("user", exploration.block());
+        assertTrue(stageTime(EnrichmentMetrics.Stage.USER_TRAVERSAL) >= 50);
+    }
+
+    @Test
+    void enrichmentsAreCountedByOutcome() {
+        metrics.trace("failed").finish();
+        EnrichmentMetrics.Trace postponed = metrics.trace("postponed");
+        postponed.setOutcome(EnrichmentMetrics.Outcome.POSTPONED);
+        postponed.finish();
+        EnrichmentMetrics.Trace succeeded = metrics.trace("succeeded");
+        succeeded.setOutcome(EnrichmentMetrics.Outcome.SUCCEEDED);
+        succeeded.finish();
+
+        for (String outcome : new String[]{"failed", "postponed", "succeeded"}) {
+            assertEquals(1, meterRegistry.get("item.enrichment.outcome")
+                    .tag(EnrichmentMetrics.OUTCOME_TAG, outcome).counter().count(), outcome);
+            assertEquals(1, meterRegistry.get("item.enrichment.duration")
+                    .tag(EnrichmentMetrics.OUTCOME_TAG, outcome).timer().count(), outcome);
+        }
+        assertEquals(0, meterRegistry.get("item.enrichment.outcome")
+                .tag(EnrichmentMetrics.OUTCOME_TAG, "skipped").counter().count());
+    }
+
+    @Test
+    void backlogIsReported() {
+        assertEquals(0, meterRegistry.get("item.enrichment.backlog.age").gauge().value());
+
+        metrics.updateBacklog(42, OffsetDateTime.now().minusMinutes(10));
+
+        assertEquals(42, meterRegistry.get("item.enrichment.backlog.size").gauge().value());
+        double age = meterRegistry.get("item.enrichment.backlog.age").gauge().value();
+        assertTrue(age >= 600 && age < 660, "backlog age: " + age);
+
+        metrics.updateBacklog(0, null);
+
+        assertEquals(0, meterRegistry.get("item.enrichment.backlog.size").gauge().value());
+        assertEquals(0, meterRegistry.get("item.enrichment.backlog.age").gauge().value());
+    }
+
+    private double stageTime(final EnrichmentMetrics.Stage stage) {
+        return meterRegistry.get("item.enrichment.stage")
+                .tag(EnrichmentMetrics.STAGE_TAG, stage.getTag())
+                .timer()
+                .totalTime(TimeUnit.MILLISECONDS);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
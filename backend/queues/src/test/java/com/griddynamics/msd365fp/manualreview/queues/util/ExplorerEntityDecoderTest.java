@@ -0,0 +1,118 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.msd365fp.manualreview.model.dfp.raw.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExplorerEntityDecoderTest {
+
+    private final ObjectMapper mapper = new Jackson2ObjectMapperBuilder().build();
+
+    private static final String TRAVERSAL = "{" +
+            "\"nodes\":[" +
+            "{\"nodeIdAttribute\":\"UserId\",\"id\":\"user-1\",\"name\":\"User\"," +
+            "\"data\":{\"UserId\":\"user-1\",\"Email\":\"user@example.com\",\"TotalSpend\":10.5,\"Unknown\":\"x\"}}," +
+            "{\"data\":{\"PurchaseId\":\"p-1\",\"MerchantLocalDate\":\"2021-03-01T10:00:00Z\",\"TotalAmount\":1.5}," +
+            "\"id\":\"p-1\",\"name\":\"Purchase\",\"nodeIdAttribute\":\"PurchaseId\"}," +
+            "{\"nodeIdAttribute\":\"PurchaseId\",\"id\":\"p-2\",\"name\":\"Purchase\",\"unexpected\":{\"a\":[1,2]}," +
+            "\"data\":{\"PurchaseId\":\"p-2\",\"MerchantLocalDate\":\"2021-03-03T10:00:00Z\"}}," +
+            "{\"nodeIdAttribute\":\"PurchaseId\",\"id\":\"p-3\",\"name\":\"Purchase\"," +
+            "\"data\":{\"PurchaseId\":\"p-3\",\"MerchantLocalDate\":\"2021-03-02T10:00:00Z\"}}," +
+            "{\"nodeIdAttribute\":\"Id\",\"id\":\"t-1\",\"name\":\"Thing\",\"data\":{\"Some\":\"value\"}}," +
+            "{\"nodeIdAttribute\":\"AddressId\",\"id\":\"a-1\",\"name\":\"Address\",\"data\":null}," +
+            "{\"nodeIdAttribute\":\"Id\",\"id\":\"n-1\",\"data\":{\"Nameless\":\"true\"}}" +
+            "]," +
+            "\"edges\":[" +
+            "{\"sourceNode\":\"p-1\",\"destinationNode\":\"user-1\",\"edgeIdAttributeList\":[\"PurchaseId\",\"UserId\"]," +
+            "\"id\":\"e-1\",\"name\":\"PurchaseUser\",\"data\":{\"PurchaseId\":\"p-1\",\"UserId\":\"user-1\"}}," +
+            "{\"data\":{\"LabelState\":\"Fraud\"},\"sourceNode\":\"user-1\",\"destinationNode\":\"user-1\"," +
+            "\"id\":\"e-2\",\"name\":\"UserLabel\"}" +
+            "]," +
+            "\"metadata\":{\"took\":12}" +
+            "}";
+
+    @Test
+    void fullDecodingIsSameAsByObjectMapper() throws IOException {
+        ExplorerEntityDecoder decoder = ExplorerEntityDecoder.builder().mapper(mapper).build();
+
+        ExplorerEntity expected = mapper.readValue(TRAVERSAL, ExplorerEntity.class);
+        ExplorerEntity actual = decoder.decode(TRAVERSAL.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(expected, actual);
+        assertTrue(actual.getNodes().get(1).getData() instanceof PurchaseNodeData);
+        assertTrue(actual.getNodes().get(4).getData() instanceof DefaultNodeData);
+        assertTrue(actual.getEdges().get(0).getData() instanceof PurchaseUserEdgeData);
+        assertTrue(actual.getEdges().get(1).getData() instanceof DefaultEdgeData);
+    }
+
+    @Test
+    void emptyTraversalIsSameAsByObjectMapper() throws IOException {
+        ExplorerEntityDecoder decoder = ExplorerEntityDecoder.builder().mapper(mapper).build();
+
+        for (String traversal : List.of("{}", "{\"nodes\":[],\"edges\":null}", "{\"nodes\":[null]}")) {
+            assertEquals(mapper.readValue(traversal, ExplorerEntity.class),
+                    decoder.decode(traversal.getBytes(StandardCharsets.UTF_8)), traversal);
+        }
+    }
+
+    @Test
+    void onlyRequiredNodesAreDecoded() throws IOException {
+        ExplorerEntityDecoder decoder = ExplorerEntityDecoder.builder()
+                .mapper(mapper)
+                .nodeNames(Set.of(PurchaseNodeData.NODE_NAME))
+                .skipEdges(true)
+                .build();
+
+        ExplorerEntity entity = decoder.decode(TRAVERSAL.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of("p-1", "p-2", "p-3"), ids(entity));
+        assertEquals(List.of(), entity.getEdges());
+    }
+
+    @Test
+    void latestNodesAreKeptInTraversalOrder() throws IOException {
+        ExplorerEntityDecoder decoder = ExplorerEntityDecoder.builder()
+                .mapper(mapper)
+                .nodeLimits(Map.of(PurchaseNodeData.NODE_NAME, 2))
+                .nodePriority(Comparator.comparing(node -> ((PurchaseNodeData) node.getData()).getMerchantLocalDate()))
+                .build();
+
+        ExplorerEntity entity = decoder.decode(TRAVERSAL.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of("user-1", "p-2", "p-3", "t-1", "a-1", "n-1"), ids(entity));
+        assertEquals(OffsetDateTime.parse("2021-03-03T10:00:00Z"),
+                ((PurchaseNodeData) entity.getNodes().get(1).getData()).getMerchantLocalDate());
+        assertEquals(2, entity.getEdges().size());
+    }
+
+    @Test
+    void firstNodesAreKeptWithoutPriority() throws IOException {
+        ExplorerEntityDecoder decoder = ExplorerEntityDecoder.builder()
+                .mapper(mapper)
+                .nodeLimits(Map.of(PurchaseNodeData.NODE_NAME, 1))
+                .build();
+
+        ExplorerEntity entity = decoder.decode(TRAVERSAL.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of("user-1", "p-1", "t-1", "a-1", "n-1"), ids(entity));
+    }
+
+    private static List<String> ids(final ExplorerEntity entity) {
+        return entity.getNodes().stream().map(Node::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,223 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedDiskCacheTest {
+
+    private static final long SEGMENT_SIZE = 1024;
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private MappedDiskCache cache;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    @Test
+    void storedValuesAreReturned() throws IOException {
+        cache = open(SEGMENT_SIZE * 4);
+
+        assertTrue(cache.put("user:1", bytes("first"), TTL));
+        assertTrue(cache.put("user:2", bytes("second"), TTL));
+        assertTrue(cache.put("user:1", bytes("updated"), TTL));
+
+        assertEquals("updated", string(cache.get("user:1")));
+        assertEquals("second", string(cache.get("user:2")));
+        assertNull(cache.get("user:3"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void expiredValuesAreNotReturned() throws IOException {
+        cache = open(SEGMENT_SIZE * 4);
+        cache.put("user:1", bytes("first"), TTL);
+
+        clock.addAndGet(TTL.toMillis());
+
+        assertNull(cache.get("user:1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void valuesBiggerThanSegmentAreNotStored() throws IOException {
+        cache = open(SEGMENT_SIZE * 4);
+
+        assertFalse(cache.put("user:1", new byte[(int) SEGMENT_SIZE], TTL));
+        assertNull(cache.get("user:1"));
+    }
+
+    @Test
+    void valuesAreRestoredAfterReopening() throws IOException {
+        cache = open(SEGMENT_SIZE * 8);
+        for (int i = 0; i < 20; i++) {
+            cache.put("user:" + i, value(i), TTL);
+        }
+        cache.put("user:expiring", bytes("expiring"), Duration.ofMinutes(1));
+        cache.close();
+
+        clock.addAndGet(Duration.ofMinutes(5).toMillis());
+        cache = open(SEGMENT_SIZE * 8);
+
+        assertEquals(20, cache.size());
+        for (int i = 0; i < 20; i++) {
+            assertArrayEquals(value(i), cache.get("user:" + i));
+        }
+        assertNull(cache.get("user:expiring"));
+    }
+
+    @Test
+    void tornRecordIsDroppedOnReopening() throws IOException {
+        cache = open(SEGMENT_SIZE * 4);
+        cache.put("user:1", bytes("first"), TTL);
+        cache.put("user:2", bytes("second"), TTL);
+        cache.close();
+
+        // corrupt the last byte of the second record as if it hasn't been written entirely
+        Path segment = segmentFiles()[0];
+        int secondRecordEnd = 2 * (20 + 6) + "first".length() + "second".length();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0}), secondRecordEnd - 1);
+        }
+        cache = open(SEGMENT_SIZE * 4);
+
+        assertEquals("first", string(cache.get("user:1")));
+        assertNull(cache.get("user:2"));
+        assertTrue(cache.put("user:3", bytes("third"), TTL));
+        cache.close();
+        cache = open(SEGMENT_SIZE * 4);
+        assertEquals("first", string(cache.get("user:1")));
+        assertEquals("third", string(cache.get("user:3")));
+    }
+
+    @Test
+    void expiredSegmentsAreCompacted() throws IOException {
+        cache = open(SEGMENT_SIZE * 16);
+        for (int i = 0; i < 40; i++) {
+            cache.put("short:" + i, value(i), Duration.ofMinutes(1));
+        }
+        assertTrue(segmentFiles().length > 1);
+
+        clock.addAndGet(Duration.ofMinutes(2).toMillis());
+        cache.put("long:0", value(0), TTL);
+        cache.compact();
+
+        assertEquals(1, cache.size());
+        assertEquals(1, segmentFiles().length);
+        assertEquals(SEGMENT_SIZE, cache.diskSize());
+        assertArrayEquals(value(0), cache.get("long:0"));
+    }
+
+    @Test
+    void segmentsAreCompactedOnlyOnRequest() throws IOException {
+        cache = open(SEGMENT_SIZE * 16);
+        for (int i = 0; i < 40; i++) {
+            cache.put("short:" + i, value(i), Duration.ofMinutes(1));
+        }
+        clock.addAndGet(Duration.ofMinutes(2).toMillis());
+        for (int i = 0; i < 40; i++) {
+            cache.put("long:" + i, value(i), TTL);
+        }
+        int segments = segmentFiles().length;
+
+        assertEquals(80, cache.size());
+        cache.compact();
+        assertEquals(40, cache.size());
+        assertTrue(segmentFiles().length < segments);
+    }
+
+    @Test
+    void sparseSegmentsAreRewritten() throws IOException {
+        cache = open(SEGMENT_SIZE * 16);
+        for (int i = 0; i < 40; i++) {
+            cache.put("user:" + i, value(i), TTL);
+        }
+        for (int i = 0; i < 40; i++) {
+            if (i % 4 != 0) {
+                cache.put("user:" + i, value(i + 100), TTL);
+            }
+        }
+        cache.compact();
+
+        assertEquals(40, cache.size());
+        for (int i = 0; i < 40; i++) {
+            assertArrayEquals(value(i % 4 == 0 ? i : i + 100), cache.get("user:" + i));
+        }
+        cache.close();
+        cache = open(SEGMENT_SIZE * 16);
+        assertEquals(40, cache.size());
+        assertArrayEquals(value(0), cache.get("user:0"));
+        assertArrayEquals(value(101), cache.get("user:1"));
+    }
+
+    @Test
+    void oldestSegmentsAreDroppedAboveMaxSize() throws IOException {
+        cache = open(SEGMENT_SIZE * 2);
+        for (int i = 0; i < 100; i++) {
+            cache.put("user:" + i, value(i), TTL);
+        }
+
+        assertTrue(cache.diskSize() <= SEGMENT_SIZE * 2);
+        assertTrue(segmentFiles().length <= 2);
+        assertNull(cache.get("user:0"));
+        assertArrayEquals(value(99), cache.get("user:99"));
+    }
+
+    @Test
+    void directoryIsLockedByOpenedCache() throws IOException {
+        cache = open(SEGMENT_SIZE * 4);
+
+        assertThrows(IOException.class, () -> open(SEGMENT_SIZE * 4));
+    }
+
+    private MappedDiskCache open(final long maxSize) throws IOException {
+        return MappedDiskCache.open(directory, SEGMENT_SIZE, maxSize, clock::get);
+    }
+
+    private Path[] segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .toArray(Path[]::new);
+        }
+    }
+
+    private static byte[] value(final int i) {
+        byte[] value = new byte[100];
+        value[0] = (byte) i;
+        value[99] = (byte) (i >> 8);
+        return value;
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(final byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
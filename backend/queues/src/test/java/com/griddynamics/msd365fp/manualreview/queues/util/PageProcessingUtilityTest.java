@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.PageProcessingUtility;
+import com.griddynamics.msd365fp.manualreview.cosmos.utilities.RequestUnitBudget;
+import com.griddynamics.msd365fp.manualreview.model.PageableCollection;
+import com.griddynamics.msd365fp.manualreview.model.exception.BusyException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageProcessingUtilityTest {
+
+    private static final int EMPTY_PAGES = 10;
+
+    @Test
+    void emptyPagesAreSkippedWithoutPause() throws BusyException {
+        long started = System.nanoTime();
+
+        PageableCollection<String> page = PageProcessingUtility.getNotEmptyPage(
+                null, PageProcessingUtilityTest::query, RequestUnitBudget.unlimited());
+
+        assertEquals(List.of("value-" + EMPTY_PAGES), new ArrayList<>(page.getValues()));
+        assertEquals(String.valueOf(EMPTY_PAGES + 1), page.getContinuationToken());
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(1)) < 0);
+    }
+
+    @Test
+    void allPagesAreCollectedAcrossEmptyPages() throws BusyException {
+        long started = System.nanoTime();
+
+        Collection<String> all = PageProcessingUtility.getAllPages(PageProcessingUtilityTest::query);
+
+        assertEquals(List.of("value-" + EMPTY_PAGES, "value-" + (2 * EMPTY_PAGES + 1)), new ArrayList<>(all));
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(1)) < 0);
+    }
+
+    /**
+     * Every {@code EMPTY_PAGES + 1}-th page contains a single value, the others are empty.
+     * The query is finished after two non-empty pages.
+     */
+    private static PageableCollection<String> query(final String continuation) {
+        int page = continuation == null ? 0 : Integer.parseInt(continuation);
+        List<String> values = page % (EMPTY_PAGES + 1) == EMPTY_PAGES ? List.of("value-" + page) : List.of();
+        String next = page < 2 * EMPTY_PAGES + 1 ? String.valueOf(page + 1) : null;
+        return new PageableCollection<>(values, next);
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private final BlockingQueue<String> expired = new LinkedBlockingQueue<>();
+    private final TimingWheel<String> timingWheel =
+            new TimingWheel<>("test-timing-wheel", Duration.ofMillis(10), 4, expired::add);
+
+    @AfterEach
+    void stop() {
+        timingWheel.stop();
+    }
+
+    @Test
+    void keysExpireInOrderOfDelays() throws InterruptedException {
+        timingWheel.schedule("late", Duration.ofMillis(150));
+        timingWheel.schedule("early", Duration.ofMillis(20));
+
+        assertTrue(timingWheel.isScheduled("late"));
+        assertEquals("early", expired.poll(1, TimeUnit.SECONDS));
+        assertEquals("late", expired.poll(1, TimeUnit.SECONDS));
+        assertFalse(timingWheel.isScheduled("late"));
+        assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    void rescheduledKeyExpiresOnce() throws InterruptedException {
+        timingWheel.schedule("key", Duration.ofMillis(20));
+        timingWheel.schedule("key", Duration.ofMillis(100));
+
+        assertEquals("key", expired.poll(1, TimeUnit.SECONDS));
+        assertNull(expired.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void cancelledKeyDoesNotExpire() throws InterruptedException {
+        timingWheel.schedule("key", Duration.ofMillis(20));
+        timingWheel.cancel("key");
+
+        assertFalse(timingWheel.isScheduled("key"));
+        assertNull(expired.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
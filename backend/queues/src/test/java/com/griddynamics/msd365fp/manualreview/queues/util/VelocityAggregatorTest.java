@@ -0,0 +1,204 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.griddynamics.msd365fp.manualreview.queues.util;
+
+import com.griddynamics.msd365fp.manualreview.model.dfp.CalculatedFields;
+import com.griddynamics.msd365fp.manualreview.model.dfp.DeviceContext;
+import com.griddynamics.msd365fp.manualreview.model.dfp.PaymentInstrument;
+import com.griddynamics.msd365fp.manualreview.model.dfp.PreviousPurchase;
+import com.griddynamics.msd365fp.manualreview.model.dfp.Velocity;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VelocityAggregatorTest {
+
+    private static final OffsetDateTime TIME = OffsetDateTime.of(2021, 3, 14, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final Set<String> CURRENT_PAYMENT_INSTRUMENTS = Set.of("pi-0", "pi-3");
+    private static final String[] STATUSES = {"Approved", "APPROVED", "Rejected", "failed", "Pending", null};
+
+    @Test
+    void latestPurchaseOfOrderIsCountedInEachWindow() {
+        List<PreviousPurchase> history = List.of(
+                purchase("p1", "order-1", TIME.minusMinutes(10), "10.00", "Approved", "pi-0", "US"),
+                purchase("p2", "order-1", TIME.minusDays(3), "100", "Rejected", "pi-1", "FR"),
+                purchase("p3", null, TIME.minusHours(5), "1.5", "Failed", "pi-2", "US"),
+                purchase("p4", null, TIME.minusWeeks(2), null, "Rejected", "pi-3", "DE"),
+                purchase("p5", "order-5", TIME.minusDays(1), "7", "Approved", null, null));
+
+        CalculatedFields fields = new CalculatedFields();
+        VelocityAggregator.aggregate(history, TIME, CURRENT_PAYMENT_INSTRUMENTS, fields);
+
+        assertEquals(new Velocity<>(1L, 2L, 3L, 4L), fields.getTransactionCount());
+        assertEquals(new Velocity<>(new BigDecimal("10.00"), new BigDecimal("11.50"),
+                new BigDecimal("18.50"), new BigDecimal("18.50")), fields.getTransactionAmount());
+        assertEquals(new Velocity<>(0L, 0L, 0L, 1L), fields.getRejectedTransactionCount());
+        assertEquals(new Velocity<>(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO),
+                fields.getRejectedTransactionAmount());
+        assertEquals(new Velocity<>(0L, 1L, 1L, 1L), fields.getFailedTransactionCount());
+        assertEquals(new Velocity<>(1L, 1L, 2L, 2L), fields.getSuccessfulTransactionCount());
+        assertEquals(new Velocity<>(1L, 1L, 1L, 2L), fields.getCurrentPaymentInstrumentTransactionCount());
+        assertEquals(new Velocity<>(1L, 2L, 2L, 3L), fields.getUniquePaymentInstrumentCount());
+        assertEquals(new Velocity<>(1L, 1L, 1L, 2L), fields.getUniqueIPCountries());
+    }
+
+    @Test
+    void velocitiesMatchStreamCalculation() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<PreviousPurchase> history = randomHistory(random, random.nextInt(60));
+
+            CalculatedFields expected = new CalculatedFields();
+            calculateWithStreams(history, TIME, CURRENT_PAYMENT_INSTRUMENTS, expected);
+            CalculatedFields actual = new CalculatedFields();
+            VelocityAggregator.aggregate(history, TIME, CURRENT_PAYMENT_INSTRUMENTS, actual);
+
+            assertEquals(expected, actual, "Velocities differ for " + history);
+        }
+    }
+
+    private static List<PreviousPurchase> randomHistory(final Random random, final int size) {
+        Duration[] boundaries = {Duration.ofHours(1), Duration.ofDays(1), Duration.ofDays(7)};
+        List<PreviousPurchase> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            OffsetDateTime date;
+            if (random.nextInt(5) == 0) {
+                date = TIME.minus(boundaries[random.nextInt(boundaries.length)]).plusNanos(random.nextInt(3) - 1);
+            } else {
+                date = TIME.minusMinutes(random.nextInt(60 * 24 * 14));
+            }
+            if (random.nextBoolean()) {
+                date = date.withOffsetSameInstant(ZoneOffset.ofHours(random.nextInt(5)));
+            }
+            String amount = random.nextInt(6) == 0 ? null : BigDecimal.valueOf(random.nextInt(10000), random.nextInt(3)).toString();
+            history.add(purchase(
+                    "p" + i,
+                    random.nextBoolean() ? null : "order-" + random.nextInt(Math.max(1, size / 2)),
+                    date,
+                    amount,
+                    STATUSES[random.nextInt(STATUSES.length)],
+                    random.nextInt(4) == 0 ? null : "pi-" + random.nextInt(6),
+                    random.nextInt(4) == 0 ? null : "C" + random.nextInt(5)));
+        }
+        return history;
+    }
+
+    private static PreviousPurchase purchase(final String id,
+                                             final String orderId,
+                                             final OffsetDateTime date,
+                                             final String amount,
+                                             final String status,
+                                             final String paymentInstrumentId,
+                                             final String ipCountry) {
+        PreviousPurchase purchase = new PreviousPurchase();
+        purchase.setPurchaseId(id);
+        purchase.setOriginalOrderId(orderId);
+        purchase.setMerchantLocalDate(date);
+        purchase.setTotalAmountInUSD(amount == null ? null : new BigDecimal(amount));
+        purchase.setLastMerchantStatus(status);
+        if (paymentInstrumentId != null) {
+            PaymentInstrument paymentInstrument = new PaymentInstrument();
+            paymentInstrument.setPaymentInstrumentId(paymentInstrumentId);
+            purchase.setPaymentInstrumentList(List.of(paymentInstrument));
+        }
+        if (ipCountry != null) {
+            DeviceContext deviceContext = new DeviceContext();
+            deviceContext.setIpCountry(ipCountry);
+            purchase.setDeviceContext(deviceContext);
+        }
+        return purchase;
+    }
+
+    /**
+     * Calculation of velocities by filtering the history for each
+     * window and each metric separately.
+     */
+    private static void calculateWithStreams(final List<PreviousPurchase> history,
+                                             final OffsetDateTime time,
+                                             final Set<String> currentPaymentInstrumentIds,
+                                             final CalculatedFields fields) {
+        Set<PreviousPurchase> lifetime = latestOfOrders(history, pp -> true);
+        Set<PreviousPurchase> week = latestOfOrders(history, pp -> pp.getMerchantLocalDate().isAfter(time.minusWeeks(1)));
+        Set<PreviousPurchase> day = latestOfOrders(week, pp -> pp.getMerchantLocalDate().isAfter(time.minusDays(1)));
+        Set<PreviousPurchase> hour = latestOfOrders(day, pp -> pp.getMerchantLocalDate().isAfter(time.minusHours(1)));
+        List<Set<PreviousPurchase>> windows = List.of(hour, day, week, lifetime);
+        Predicate<PreviousPurchase> currentPaymentInstrument = pp -> pp.getPaymentInstrumentList() != null &&
+                pp.getPaymentInstrumentList().stream()
+                        .map(PaymentInstrument::getPaymentInstrumentId)
+                        .filter(Objects::nonNull)
+                        .anyMatch(currentPaymentInstrumentIds::contains);
+
+        fields.setTransactionCount(count(windows, pp -> true));
+        fields.setTransactionAmount(sum(windows, pp -> true));
+        fields.setRejectedTransactionCount(count(windows, status("Rejected")));
+        fields.setRejectedTransactionAmount(sum(windows, status("Rejected")));
+        fields.setFailedTransactionCount(count(windows, status("Failed")));
+        fields.setFailedTransactionAmount(sum(windows, status("Failed")));
+        fields.setSuccessfulTransactionCount(count(windows, status("Approved")));
+        fields.setSuccessfulTransactionAmount(sum(windows, status("Approved")));
+        fields.setCurrentPaymentInstrumentTransactionCount(count(windows, currentPaymentInstrument));
+        fields.setCurrentPaymentInstrumentTransactionAmount(sum(windows, currentPaymentInstrument));
+        fields.setUniquePaymentInstrumentCount(velocity(windows, window -> window.stream()
+                .filter(pp -> pp.getPaymentInstrumentList() != null)
+                .flatMap(pp -> pp.getPaymentInstrumentList().stream())
+                .map(PaymentInstrument::getPaymentInstrumentId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .count()));
+        fields.setUniqueIPCountries(velocity(windows, window -> window.stream()
+                .map(PreviousPurchase::getDeviceContext)
+                .filter(dc -> dc != null && dc.getIpCountry() != null)
+                .map(DeviceContext::getIpCountry)
+                .distinct()
+                .count()));
+    }
+
+    private static Set<PreviousPurchase> latestOfOrders(final Collection<PreviousPurchase> history,
+                                                        final Predicate<PreviousPurchase> filter) {
+        return history.stream()
+                .filter(filter)
+                .collect(groupingBy(m -> m.getOriginalOrderId() == null ? m.getPurchaseId() : m.getOriginalOrderId()))
+                .values().stream()
+                .flatMap(m -> m.stream().max(Comparator.comparing(PreviousPurchase::getMerchantLocalDate)).stream())
+                .collect(Collectors.toSet());
+    }
+
+    private static Predicate<PreviousPurchase> status(final String status) {
+        return pp -> status.equalsIgnoreCase(pp.getLastMerchantStatus());
+    }
+
+    private static Velocity<Long> count(final List<Set<PreviousPurchase>> windows,
+                                        final Predicate<PreviousPurchase> filter) {
+        return velocity(windows, window -> window.stream().filter(filter).count());
+    }
+
+    private static Velocity<BigDecimal> sum(final List<Set<PreviousPurchase>> windows,
+                                            final Predicate<PreviousPurchase> filter) {
+        return velocity(windows, window -> window.stream()
+                .filter(filter)
+                .map(pp -> Objects.requireNonNullElse(pp.getTotalAmountInUSD(), BigDecimal.ZERO))
+                .reduce(BigDecimal::add)
+                .orElse(BigDecimal.ZERO));
+    }
+
+    private static <T extends Serializable> Velocity<T> velocity(final List<Set<PreviousPurchase>> windows,
+                                                                 final Function<Set<PreviousPurchase>, T> metric) {
+        return new Velocity<>(
+                metric.apply(windows.get(0)),
+                metric.apply(windows.get(1)),
+                metric.apply(windows.get(2)),
+                metric.apply(windows.get(3)));
+    }
+}